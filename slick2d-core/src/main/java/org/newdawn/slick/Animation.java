@@ -3,6 +3,7 @@ package org.newdawn.slick;
 import java.util.ArrayList;
 
 import org.lwjgl.Sys;
+import org.newdawn.slick.geom.Transform;
 import org.newdawn.slick.util.Log;
 
 /**
@@ -382,6 +383,96 @@ public class Animation implements Renderable {
 		frame.image.draw(x,y,width,height, col);
 	}
 
+	/**
+	 * Draw the current frame of the animation into a sprite batch
+	 *
+	 * @param batch The batch to record the frame into
+	 * @param x The x position to draw the animation at
+	 * @param y The y position to draw the animation at
+	 */
+	public void draw(SpriteBatch batch, float x, float y) {
+		if (frames.size() == 0) {
+			return;
+		}
+
+		checkAutoUpdate();
+
+		Frame frame = (Frame) frames.get(currentFrame);
+		batch.draw(frame.image, x, y, Color.white);
+	}
+
+	/**
+	 * Draw the current frame of the animation into a sprite batch
+	 *
+	 * @param batch The batch to record the frame into
+	 * @param x The x position to draw the animation at
+	 * @param y The y position to draw the animation at
+	 * @param width The width to draw the animation at
+	 * @param height The height to draw the animation at
+	 * @param col The colour filter to use
+	 */
+	public void draw(SpriteBatch batch, float x, float y, float width, float height, Color col) {
+		if (frames.size() == 0) {
+			return;
+		}
+
+		checkAutoUpdate();
+
+		Frame frame = (Frame) frames.get(currentFrame);
+		batch.draw(frame.image, x, y, width, height, col);
+	}
+
+	/**
+	 * Draw the current frame of the animation into a sprite batch with its corners
+	 * placed through a transform
+	 *
+	 * @param batch The batch to record the frame into
+	 * @param transform The transform to apply to the corners of the frame
+	 * @param col The colour filter to use
+	 */
+	public void draw(SpriteBatch batch, Transform transform, Color col) {
+		if (frames.size() == 0) {
+			return;
+		}
+
+		checkAutoUpdate();
+
+		Frame frame = (Frame) frames.get(currentFrame);
+		batch.draw(frame.image, transform, col);
+	}
+
+	/**
+	 * Get the frame that would be drawn now, moving the animation on as drawing
+	 * it would. Used by graphics contexts that record drawing to be performed later.
+	 *
+	 * @return The image of the frame to draw or null if there are no frames
+	 */
+	Image getDeferredFrame() {
+		if (frames.size() == 0) {
+			return null;
+		}
+		checkAutoUpdate();
+
+		return ((Frame) frames.get(currentFrame)).image;
+	}
+
+	/**
+	 * Move the animation on based on the time since it was last drawn if
+	 * auto update is enabled
+	 */
+	private void checkAutoUpdate() {
+		if (autoUpdate) {
+			long now = getTime();
+			long delta = now - lastUpdate;
+			if (firstUpdate) {
+				delta = 0;
+				firstUpdate = false;
+			}
+			lastUpdate = now;
+			nextFrame(delta);
+		}
+	}
+
 	/**
 	 * Render the appropriate frame when the spriteSheet backing this Animation is in use.
 	 * @param x The x position to draw the animation at
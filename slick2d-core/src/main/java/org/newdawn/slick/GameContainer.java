@@ -14,6 +14,8 @@ import org.newdawn.slick.gui.GUIContext;
 import org.newdawn.slick.openal.SoundStore;
 import org.newdawn.slick.opengl.CursorLoader;
 import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.opengl.renderer.InstrumentedSGL;
+import org.newdawn.slick.opengl.renderer.RenderStatistics;
 import org.newdawn.slick.opengl.renderer.Renderer;
 import org.newdawn.slick.opengl.renderer.SGL;
 import org.newdawn.slick.util.Log;
@@ -60,6 +62,8 @@ public abstract class GameContainer implements GUIContext {
 	protected int targetFPS = -1;
 	/** True if we should show the fps */
 	private boolean showFPS = true;
+	/** True if we should show the render statistics with the fps */
+	private boolean showRenderStatistics = true;
 	/** The minimum logic update interval */
 	protected long minimumLogicInterval = 1;
 	/** The stored delta */
@@ -690,13 +694,27 @@ public abstract class GameContainer implements GUIContext {
 				Log.error(e);
 				throw new SlickException("Game.render() failure - check the game code.");
 			}
+			if (graphics.isDeferred()) {
+				graphics.flush();
+			}
 			graphics.resetTransform();
 			
+			InstrumentedSGL instrumented = getInstrumentedRenderer();
+			if (instrumented != null) {
+				instrumented.setPaused(true);
+			}
 			if (showFPS) {
 				defaultFont.drawString(10, 10, "FPS: "+recordedFPS);
+				if ((instrumented != null) && (showRenderStatistics)) {
+					defaultFont.drawString(10, 25, instrumented.getFrameStatistics().toString());
+				}
 			}
 			
 			GL.flush();
+			if (instrumented != null) {
+				instrumented.setPaused(false);
+				instrumented.endFrame();
+			}
 		}
 		
 		if (targetFPS != -1) {
@@ -785,6 +803,55 @@ public abstract class GameContainer implements GUIContext {
 		return showFPS;
 	}
 	
+	/**
+	 * Indicate whether the render statistics should be shown along with the FPS. They
+	 * are only available when the renderer has been instrumented.
+	 * 
+	 * @see Renderer#instrument()
+	 * @param show True if the container should show the render statistics
+	 */
+	public void setShowRenderStatistics(boolean show) {
+		showRenderStatistics = show;
+	}
+	
+	/**
+	 * Check if the render statistics are shown along with the FPS
+	 * 
+	 * @return True if the render statistics are shown
+	 */
+	public boolean isShowingRenderStatistics() {
+		return showRenderStatistics;
+	}
+	
+	/**
+	 * Get the counts of rendering operations for the last frame rendered. These are
+	 * only available when the renderer was instrumented before the game was started.
+	 * 
+	 * @see Renderer#instrument()
+	 * @return The counts for the last frame or null if the renderer isn't instrumented
+	 */
+	public RenderStatistics getRenderStatistics() {
+		InstrumentedSGL instrumented = getInstrumentedRenderer();
+		if (instrumented == null) {
+			return null;
+		}
+		
+		return instrumented.getFrameStatistics();
+	}
+	
+	/**
+	 * Get the renderer in use if it's counting rendering operations
+	 * 
+	 * @return The instrumented renderer or null if the renderer isn't instrumented
+	 */
+	private InstrumentedSGL getInstrumentedRenderer() {
+		if (GL instanceof InstrumentedSGL) {
+			return (InstrumentedSGL) GL;
+		}
+		
+		return null;
+	}
+	
 	/**
 	 * Set the target fps we're hoping to get
 	 * 
@@ -6,11 +6,14 @@ import java.nio.FloatBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 import org.lwjgl.BufferUtils;
 import org.newdawn.slick.geom.Rectangle;
 import org.newdawn.slick.geom.Shape;
 import org.newdawn.slick.geom.ShapeRenderer;
+import org.newdawn.slick.geom.Transform;
 import org.newdawn.slick.opengl.TextureImpl;
 import org.newdawn.slick.opengl.renderer.LineStripRenderer;
 import org.newdawn.slick.opengl.renderer.Renderer;
@@ -50,6 +53,39 @@ public class Graphics {
 	
 	/** The default number of segments that will be used when drawing an oval */
 	private static final int DEFAULT_SEGMENTS = 50;
+	/** The number of floats stored for each entry on the transform stack */
+	private static final int STACK_ENTRY_SIZE = 24;
+	
+	/** The order deferred draws are replayed in - by layer, then the order they were drawn in */
+	private static final Comparator DEFERRED_ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			DeferredDraw a = (DeferredDraw) o1;
+			DeferredDraw b = (DeferredDraw) o2;
+			
+			if (a.layer != b.layer) {
+				return a.layer < b.layer ? -1 : 1;
+			}
+			return a.order - b.order;
+		}
+	};
+	/** The order deferred draws are replayed in when sorted - by layer, texture, drawing mode, then the order they were drawn in */
+	private static final Comparator DEFERRED_SORTED_ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			DeferredDraw a = (DeferredDraw) o1;
+			DeferredDraw b = (DeferredDraw) o2;
+			
+			if (a.layer != b.layer) {
+				return a.layer < b.layer ? -1 : 1;
+			}
+			if (a.texture != b.texture) {
+				return a.texture < b.texture ? -1 : 1;
+			}
+			if (a.mode != b.mode) {
+				return a.mode < b.mode ? -1 : 1;
+			}
+			return a.order - b.order;
+		}
+	};
 
 	/** The last graphics context in use */
 	protected static Graphics currentGraphics = null;
@@ -70,6 +106,7 @@ public class Graphics {
 	public static void setCurrent(Graphics current) {
 		if (currentGraphics != current) {
 			if (currentGraphics != null) {
+				currentGraphics.flushDeferred();
 				currentGraphics.disable();
 			}
 			currentGraphics = current;
@@ -117,6 +154,25 @@ public class Graphics {
 	private ArrayList stack = new ArrayList();
 	/** The index into the stack we're using */
 	private int stackIndex;
+	/** The transform applied since the matrix was last reset, tracked so deferred draws can be placed */
+	private Transform transform = new Transform();
+	
+	/** True if image drawing is being deferred until the context is flushed */
+	private boolean deferred;
+	/** True if deferred draws within a layer are sorted by texture and drawing mode */
+	private boolean deferredSorting;
+	/** The layer deferred draws are currently recorded into */
+	private int layer;
+	/** The pool of deferred draws, the first deferredCount of which are waiting to be drawn */
+	private ArrayList deferredDraws = new ArrayList();
+	/** The number of deferred draws waiting to be drawn */
+	private int deferredCount;
+	/** The batch deferred draws are replayed through */
+	private SpriteBatch deferredBatch;
+	/** The transform used to place deferred draws when they're replayed */
+	private Transform replayTransform;
+	/** The colour used as a filter when deferred draws are replayed */
+	private Color replayColor;
 
 	/**
 	 * Default constructor for sub-classes
@@ -176,8 +232,18 @@ public class Graphics {
 	 *            The mode to apply.
 	 */
 	public void setDrawMode(int mode) {
-		predraw();
+		prestate();
 		currentDrawingMode = mode;
+		applyDrawMode(mode);
+		postdraw();
+	}
+	
+	/**
+	 * Apply the GL state for a drawing mode
+	 * 
+	 * @param currentDrawingMode The drawing mode to apply
+	 */
+	private void applyDrawMode(int currentDrawingMode) {
 		if (currentDrawingMode == MODE_NORMAL) {
 			GL.glEnable(SGL.GL_BLEND);
 			GL.glColorMask(true, true, true, true);
@@ -207,7 +273,6 @@ public class Graphics {
 			GL.glColorMask(true, true, true, true);
 			GL.glBlendFunc(SGL.GL_ONE, SGL.GL_ONE_MINUS_SRC_COLOR);
 		}
-		postdraw();
 	}
 
 	/**
@@ -216,6 +281,7 @@ public class Graphics {
 	 * nothing will be drawn.
 	 */
 	public void clearAlphaMap() {
+		predraw();
 		pushTransform();
 		GL.glLoadIdentity();
 		
@@ -231,10 +297,21 @@ public class Graphics {
 
 	/**
 	 * Must be called before all OpenGL operations to maintain context for
-	 * dynamic images
+	 * dynamic images. Any deferred drawing is flushed so that it appears
+	 * before the operation.
 	 */
 	private void predraw() {
 		setCurrent(this);
+		flushDeferred();
+	}
+
+	/**
+	 * Must be called before OpenGL state changes that deferred drawing
+	 * records for itself, i.e. colour and transform changes, to maintain 
+	 * context for dynamic images
+	 */
+	private void prestate() {
+		setCurrent(this);
 	}
 
 	/**
@@ -254,6 +331,8 @@ public class Graphics {
 	 * Flush this graphics context to the underlying rendering context
 	 */
 	public void flush() {
+		flushDeferred();
+		
 		if (currentGraphics == this) {
 			currentGraphics.disable();
 			currentGraphics = null;
@@ -318,9 +397,10 @@ public class Graphics {
 	public void resetTransform() {
 		sx = 1;
 		sy = 1;
+		resetMatrix(transform.getMatrixPosition());
 		
 		if (pushed) {
-			predraw();
+			prestate();
 			GL.glPopMatrix();
 			pushed = false;
 			postdraw();
@@ -332,7 +412,7 @@ public class Graphics {
 	 */
 	private void checkPush() {
 		if (!pushed) {
-			predraw();
+			prestate();
 			GL.glPushMatrix();
 			pushed = true;
 			postdraw();
@@ -351,10 +431,19 @@ public class Graphics {
 		this.sx = this.sx * sx;
 		this.sy = this.sy * sy;
 		
+		if ((sx == 0) || (sy == 0)) {
+			// deferred draws can't be placed through a transform that can't be inverted
+			predraw();
+		}
 		checkPush();
 
-		predraw();
+		prestate();
 		GL.glScalef(sx, sy, 1);
+		float[] m = transform.getMatrixPosition();
+		m[0] *= sx;
+		m[3] *= sx;
+		m[1] *= sy;
+		m[4] *= sy;
 		postdraw();
 	}
 
@@ -371,9 +460,18 @@ public class Graphics {
 	public void rotate(float rx, float ry, float ang) {
 		checkPush();
 
-		predraw();
+		prestate();
 		translate(rx, ry);
 		GL.glRotatef(ang, 0, 0, 1);
+		float[] m = transform.getMatrixPosition();
+		float cos = (float) FastTrig.cos(Math.toRadians(ang));
+		float sin = (float) FastTrig.sin(Math.toRadians(ang));
+		float m0 = m[0];
+		float m3 = m[3];
+		m[0] = (m0 * cos) + (m[1] * sin);
+		m[1] = (m[1] * cos) - (m0 * sin);
+		m[3] = (m3 * cos) + (m[4] * sin);
+		m[4] = (m[4] * cos) - (m3 * sin);
 		translate(-rx, -ry);
 		postdraw();
 	}
@@ -389,8 +487,11 @@ public class Graphics {
 	public void translate(float x, float y) {
 		checkPush();
 
-		predraw();
+		prestate();
 		GL.glTranslatef(x, y, 0);
+		float[] m = transform.getMatrixPosition();
+		m[2] += (m[0] * x) + (m[1] * y);
+		m[5] += (m[3] * x) + (m[4] * y);
 		postdraw();
 	}
 
@@ -423,7 +524,7 @@ public class Graphics {
 		}
 		
 		currentColor = new Color(color);
-		predraw();
+		prestate();
 		currentColor.bind();
 		postdraw();
 	}
@@ -1380,6 +1481,13 @@ public class Graphics {
 	 *            The color to apply to the image as a filter
 	 */
 	public void drawImage(Image image, float x, float y, Color col) {
+		if (deferred) {
+			image.init();
+			if (defer(image, x, y, x + image.getWidth(), y + image.getHeight(), false, 0, 0, 0, 0, col)) {
+				return;
+			}
+		}
+		
 		predraw();
 		image.draw(x, y, col);
 		currentColor.bind();
@@ -1413,6 +1521,13 @@ public class Graphics {
 	 *            The color to apply to the animation as a filter
 	 */
 	public void drawAnimation(Animation anim, float x, float y, Color col) {
+		if (deferred) {
+			Image frame = anim.getDeferredFrame();
+			if ((frame == null) || defer(frame, x, y, x + anim.getWidth(), y + anim.getHeight(), false, 0, 0, 0, 0, col)) {
+				return;
+			}
+		}
+		
 		predraw();
 		anim.draw(x, y, col);
 		currentColor.bind();
@@ -1462,6 +1577,10 @@ public class Graphics {
 	 */
 	public void drawImage(Image image, float x, float y, float x2, float y2,
 			float srcx, float srcy, float srcx2, float srcy2) {
+		if (deferred && defer(image, x, y, x2, y2, true, srcx, srcy, srcx2, srcy2, Color.white)) {
+			return;
+		}
+		
 		predraw();
 		image.draw(x, y, x2, y2, srcx, srcy, srcx2, srcy2);
 		currentColor.bind();
@@ -1509,6 +1628,8 @@ public class Graphics {
 	 *            The y position to copy from
 	 */
 	public void copyArea(Image target, int x, int y) {
+		flushDeferred();
+		
 		int format = target.getTexture().hasAlpha() ? SGL.GL_RGBA : SGL.GL_RGB;
 		target.bind();
 		GL.glCopyTexImage2D(SGL.GL_TEXTURE_2D, 0, format, x, screenHeight
@@ -1605,6 +1726,10 @@ public class Graphics {
 	 */
 	public void drawImage(Image image, float x, float y, float x2, float y2,
 			float srcx, float srcy, float srcx2, float srcy2, Color col) {
+		if (deferred && defer(image, x, y, x2, y2, true, srcx, srcy, srcx2, srcy2, col)) {
+			return;
+		}
+		
 		predraw();
 		image.draw(x, y, x2, y2, srcx, srcy, srcx2, srcy2, col);
 		currentColor.bind();
@@ -1732,11 +1857,11 @@ public class Graphics {
 	 * of the rendering loop.
 	 */
 	public void pushTransform() {
-		predraw();
+		prestate();
 		
 		FloatBuffer buffer;
 		if (stackIndex >= stack.size()) {
-			buffer = BufferUtils.createFloatBuffer(18);
+			buffer = BufferUtils.createFloatBuffer(STACK_ENTRY_SIZE);
 			stack.add(buffer);
 		} else {
 			buffer = (FloatBuffer) stack.get(stackIndex);
@@ -1745,6 +1870,10 @@ public class Graphics {
 		GL.glGetFloat(SGL.GL_MODELVIEW_MATRIX, buffer);
 		buffer.put(16, sx);
 		buffer.put(17, sy);
+		float[] m = transform.getMatrixPosition();
+		for (int i=0;i<6;i++) {
+			buffer.put(18+i, m[i]);
+		}
 		stackIndex++;
 		
 		postdraw();
@@ -1759,17 +1888,314 @@ public class Graphics {
 			throw new RuntimeException("Attempt to pop a transform that hasn't be pushed");
 		}
 		
-		predraw();
+		prestate();
 		
 		stackIndex--;
 		FloatBuffer oldBuffer = (FloatBuffer) stack.get(stackIndex);
 		GL.glLoadMatrix(oldBuffer);
 		sx = oldBuffer.get(16);
 		sy = oldBuffer.get(17);
+		float[] m = transform.getMatrixPosition();
+		for (int i=0;i<6;i++) {
+			m[i] = oldBuffer.get(18+i);
+		}
 		
 		postdraw();
 	}
 	
+	/**
+	 * Indicate whether image drawing should be deferred. When deferred, images and animations 
+	 * drawn through this context are recorded rather than drawn. When the context is flushed, 
+	 * or any other drawing is performed, the recorded images are sorted by layer and drawn 
+	 * through a sprite batch, so images that follow each other with the same texture and 
+	 * drawing mode are drawn together. Grouping images that share a texture into the same 
+	 * layer cuts down the texture binds needed when images from many textures are interleaved.
+	 * 
+	 * Layers are drawn in ascending order. Within a layer images are drawn in the order they 
+	 * were given, so overlapping images are painted just as they would be without deferring, 
+	 * unless sorting is turned on with setDeferredSorting(). Images drawn directly, rather than 
+	 * through this context, are not deferred. Images that can't be drawn through a sprite 
+	 * batch, such as a BigImage, are drawn straight away after the images recorded so far.
+	 * 
+	 * @see #setLayer(int)
+	 * @see #setDeferredSorting(boolean)
+	 * @param deferred True if image drawing should be deferred
+	 */
+	public void setDeferred(boolean deferred) {
+		if (!deferred) {
+			flushDeferred();
+		}
+		this.deferred = deferred;
+	}
+	
+	/**
+	 * Check if image drawing is being deferred
+	 * 
+	 * @return True if image drawing is being deferred until the context is flushed
+	 */
+	public boolean isDeferred() {
+		return deferred;
+	}
+	
+	/**
+	 * Indicate whether deferred images within a layer should be sorted by texture and 
+	 * drawing mode before they're drawn, so each texture is bound once per layer. Images 
+	 * in a layer are then no longer painted in the order they were given, so sorting 
+	 * should only be turned on when the images in a layer don't overlap, or their order 
+	 * doesn't matter. Layers are still drawn in ascending order. Off by default.
+	 * 
+	 * @see #setDeferred(boolean)
+	 * @param deferredSorting True if deferred images should be sorted within each layer
+	 */
+	public void setDeferredSorting(boolean deferredSorting) {
+		this.deferredSorting = deferredSorting;
+	}
+	
+	/**
+	 * Check if deferred images within a layer are sorted by texture and drawing mode
+	 * 
+	 * @return True if deferred images are sorted within each layer
+	 */
+	public boolean isDeferredSorting() {
+		return deferredSorting;
+	}
+	
+	/**
+	 * Set the layer that deferred image drawing is recorded into. Lower layers are 
+	 * drawn first.
+	 * 
+	 * @see #setDeferred(boolean)
+	 * @param layer The layer to record deferred images into
+	 */
+	public void setLayer(int layer) {
+		this.layer = layer;
+	}
+	
+	/**
+	 * Get the layer that deferred image drawing is recorded into
+	 * 
+	 * @return The layer deferred images are recorded into
+	 */
+	public int getLayer() {
+		return layer;
+	}
+	
+	/**
+	 * Record an image to be drawn when deferred drawing is flushed. Images without a 
+	 * texture of their own, such as a BigImage, can't be drawn through the batch and 
+	 * aren't recorded.
+	 * 
+	 * @param image The image to draw
+	 * @param x The x position to draw the image
+	 * @param y The y position to draw the image
+	 * @param x2 The x position of the bottom right corner of the drawn image
+	 * @param y2 The y position of the bottom right corner of the drawn image
+	 * @param section True if only a section of the image should be drawn
+	 * @param srcx The x position of the section to draw
+	 * @param srcy The y position of the section to draw
+	 * @param srcx2 The x position of the bottom right corner of the section to draw
+	 * @param srcy2 The y position of the bottom right corner of the section to draw
+	 * @param col The color to apply to the image as a filter
+	 * @return True if the image was recorded, false if it should be drawn directly
+	 */
+	private boolean defer(Image image, float x, float y, float x2, float y2, boolean section,
+						  float srcx, float srcy, float srcx2, float srcy2, Color col) {
+		image.init();
+		if (image.texture == null) {
+			return false;
+		}
+		
+		DeferredDraw draw;
+		if (deferredCount < deferredDraws.size()) {
+			draw = (DeferredDraw) deferredDraws.get(deferredCount);
+		} else {
+			draw = new DeferredDraw();
+			deferredDraws.add(draw);
+		}
+		
+		draw.image = image;
+		draw.texture = image.texture.getTextureID();
+		draw.layer = layer;
+		draw.mode = currentDrawingMode;
+		draw.order = deferredCount;
+		draw.x = x;
+		draw.y = y;
+		draw.x2 = x2;
+		draw.y2 = y2;
+		draw.section = section;
+		draw.srcx = srcx;
+		draw.srcy = srcy;
+		draw.srcx2 = srcx2;
+		draw.srcy2 = srcy2;
+		if (col == null) {
+			col = Color.white;
+		}
+		draw.r = col.r;
+		draw.g = col.g;
+		draw.b = col.b;
+		draw.a = col.a;
+		draw.alpha = image.alpha;
+		draw.angle = image.angle;
+		draw.centerX = image.centerX;
+		draw.centerY = image.centerY;
+		System.arraycopy(transform.getMatrixPosition(), 0, draw.matrix, 0, 6);
+		
+		deferredCount++;
+		return true;
+	}
+	
+	/**
+	 * Draw any images that have been deferred, sorted by layer
+	 */
+	private void flushDeferred() {
+		if (deferredCount == 0) {
+			return;
+		}
+		
+		int count = deferredCount;
+		deferredCount = 0;
+		setCurrent(this);
+		
+		if (deferredBatch == null) {
+			deferredBatch = new SpriteBatch();
+			replayTransform = new Transform();
+			replayColor = new Color(Color.white);
+		}
+		Collections.sort(deferredDraws.subList(0, count), deferredSorting ? DEFERRED_SORTED_ORDER : DEFERRED_ORDER);
+		
+		// draws were recorded against the transform at the time, the GL matrix now includes
+		// the current transform so that's undone on the CPU as they're placed
+		float[] m = transform.getMatrixPosition();
+		float det = (m[0] * m[4]) - (m[1] * m[3]);
+		float i0 = m[4] / det;
+		float i1 = -m[1] / det;
+		float i3 = -m[3] / det;
+		float i4 = m[0] / det;
+		float i2 = -((i0 * m[2]) + (i1 * m[5]));
+		float i5 = -((i3 * m[2]) + (i4 * m[5]));
+		float[] r = replayTransform.getMatrixPosition();
+		
+		int mode = currentDrawingMode;
+		deferredBatch.setTransform(replayTransform);
+		deferredBatch.begin();
+		for (int i=0;i<count;i++) {
+			DeferredDraw draw = (DeferredDraw) deferredDraws.get(i);
+			if (draw.mode != mode) {
+				deferredBatch.flush();
+				mode = draw.mode;
+				applyDrawMode(mode);
+			}
+			
+			float[] d = draw.matrix;
+			r[0] = (i0 * d[0]) + (i1 * d[3]);
+			r[1] = (i0 * d[1]) + (i1 * d[4]);
+			r[2] = (i0 * d[2]) + (i1 * d[5]) + i2;
+			r[3] = (i3 * d[0]) + (i4 * d[3]);
+			r[4] = (i3 * d[1]) + (i4 * d[4]);
+			r[5] = (i3 * d[2]) + (i4 * d[5]) + i5;
+			
+			replayColor.r = draw.r;
+			replayColor.g = draw.g;
+			replayColor.b = draw.b;
+			replayColor.a = draw.a;
+			
+			// the image may have been changed since it was drawn so it's put back
+			// how it was for the replay
+			Image image = draw.image;
+			float alpha = image.alpha;
+			float angle = image.angle;
+			float centerX = image.centerX;
+			float centerY = image.centerY;
+			image.alpha = draw.alpha;
+			image.angle = draw.angle;
+			image.centerX = draw.centerX;
+			image.centerY = draw.centerY;
+			if (draw.section) {
+				deferredBatch.draw(image, draw.x, draw.y, draw.x2, draw.y2, 
+								   draw.srcx, draw.srcy, draw.srcx2, draw.srcy2, replayColor);
+			} else {
+				deferredBatch.draw(image, draw.x, draw.y, draw.x2 - draw.x, draw.y2 - draw.y, replayColor);
+			}
+			image.alpha = alpha;
+			image.angle = angle;
+			image.centerX = centerX;
+			image.centerY = centerY;
+			draw.image = null;
+		}
+		deferredBatch.end();
+		
+		if (mode != currentDrawingMode) {
+			applyDrawMode(currentDrawingMode);
+		}
+		currentColor.bind();
+	}
+	
+	/**
+	 * Reset a matrix to the identity
+	 * 
+	 * @param m The matrix to reset, in the form used by Transform
+	 */
+	private void resetMatrix(float[] m) {
+		m[0] = 1;
+		m[1] = 0;
+		m[2] = 0;
+		m[3] = 0;
+		m[4] = 1;
+		m[5] = 0;
+	}
+	
+	/**
+	 * An image drawing operation recorded while drawing is deferred
+	 */
+	private static class DeferredDraw {
+		/** The image to draw */
+		private Image image;
+		/** The ID of the texture the image is drawn from */
+		private int texture;
+		/** The layer the image was drawn into */
+		private int layer;
+		/** The drawing mode the image was drawn with */
+		private int mode;
+		/** The order the image was drawn in */
+		private int order;
+		/** The x position to draw the image */
+		private float x;
+		/** The y position to draw the image */
+		private float y;
+		/** The x position of the bottom right corner of the drawn image */
+		private float x2;
+		/** The y position of the bottom right corner of the drawn image */
+		private float y2;
+		/** True if only a section of the image is drawn */
+		private boolean section;
+		/** The x position of the section to draw */
+		private float srcx;
+		/** The y position of the section to draw */
+		private float srcy;
+		/** The x position of the bottom right corner of the section to draw */
+		private float srcx2;
+		/** The y position of the bottom right corner of the section to draw */
+		private float srcy2;
+		/** The red component of the filter colour */
+		private float r;
+		/** The green component of the filter colour */
+		private float g;
+		/** The blue component of the filter colour */
+		private float b;
+		/** The alpha component of the filter colour */
+		private float a;
+		/** The alpha of the image when it was drawn */
+		private float alpha;
+		/** The rotation of the image when it was drawn */
+		private float angle;
+		/** The x coordinate of the image's centre of rotation when it was drawn */
+		private float centerX;
+		/** The y coordinate of the image's centre of rotation when it was drawn */
+		private float centerY;
+		/** The transform applied when the image was drawn */
+		private float[] matrix = new float[6];
+	}
+	
 	/**
 	 * Dispose this graphics context, this will release any underlying resourses. However
 	 * this will also invalidate it's use
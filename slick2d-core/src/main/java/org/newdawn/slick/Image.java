@@ -3,6 +3,9 @@ package org.newdawn.slick;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.newdawn.slick.atlas.AtlasRegion;
+import org.newdawn.slick.atlas.AtlasRegistry;
+import org.newdawn.slick.geom.Transform;
 import org.newdawn.slick.opengl.ImageData;
 import org.newdawn.slick.opengl.InternalTextureLoader;
 import org.newdawn.slick.opengl.Texture;
@@ -81,6 +84,8 @@ public class Image implements Renderable {
     private boolean flipped;
     /** The transparent colour set if any */
     private Color transparent;
+    /** True if the texture is an atlas page shared with other images */
+    private boolean atlased;
     
 	/**
 	 * Create a texture as a copy of another
@@ -167,7 +172,12 @@ public class Image implements Renderable {
 	}
 	
 	/**
-	 * Create an image based on a file at the specified location
+	 * Create an image based on a file at the specified location. If the image
+	 * has been packed into an atlas registered with the AtlasRegistry, isn't
+	 * to be flipped or have a transparent colour, and uses the same filter as
+	 * the atlas, the part of the atlas page holding it is used instead of 
+	 * loading the file. Such an image shares the page so its filter can't be
+	 * changed and it can't be drawn to.
 	 * 
 	 * @param ref The location of the image file to load
 	 * @param flipped True if the image should be flipped on the y-axis on load
@@ -180,6 +190,15 @@ public class Image implements Renderable {
 		this.transparent = transparent;
 		this.flipped = flipped;
 		
+		if (!flipped && (transparent == null)) {
+			AtlasRegion region = AtlasRegistry.getRegion(ref);
+			if ((region != null) && region.isPlain() && (region.getAtlas().getFilter() == f)) {
+				this.ref = ref;
+				useRegion(region.getImage());
+				return;
+			}
+		}
+		
 		try {
 			this.ref = ref;
 			int[] trans = null;
@@ -196,14 +215,41 @@ public class Image implements Renderable {
 		}
 	}
 	
+	/**
+	 * Take on the part of an atlas page holding this image
+	 * 
+	 * @param sub The image of the sprite cut from the atlas page
+	 */
+	private void useRegion(Image sub) {
+		texture = sub.texture;
+		textureOffsetX = sub.textureOffsetX;
+		textureOffsetY = sub.textureOffsetY;
+		textureWidth = sub.textureWidth;
+		textureHeight = sub.textureHeight;
+		width = sub.width;
+		height = sub.height;
+		centerX = width / 2;
+		centerY = height / 2;
+		inited = true;
+		atlased = true;
+	}
+	
 	/**
 	 * Set the image filtering to be used. Note that this will also affect any
-	 * image that was derived from this one (i.e. sub-images etc)
+	 * image that was derived from this one (i.e. sub-images etc). The filter
+	 * of an image sharing an atlas page can't be changed.
 	 * 
 	 * @param f The filtering mode to use
 	 */
 	public void setFilter(int f) {
-		this.filter = f == FILTER_LINEAR ? SGL.GL_LINEAR : SGL.GL_NEAREST;
+		int newFilter = f == FILTER_LINEAR ? SGL.GL_LINEAR : SGL.GL_NEAREST;
+		if (atlased) {
+			if (newFilter == filter) {
+				return;
+			}
+			throw new RuntimeException("Can't change the filter of an image sharing an atlas page: "+ref);
+		}
+		this.filter = newFilter;
 
 		texture.bind();
 		GL.glTexParameteri(SGL.GL_TEXTURE_2D, SGL.GL_TEXTURE_MIN_FILTER, filter); 
@@ -438,9 +484,13 @@ public class Image implements Renderable {
 	 * Get a graphics context that can be used to draw to this image
 	 * 
 	 * @return The graphics context used to render to this image
-	 * @throws SlickException Indicates a failure to create a graphics context
+	 * @throws SlickException Indicates a failure to create a graphics context,
+	 * or that the image shares an atlas page and can't be drawn to
 	 */
 	public Graphics getGraphics() throws SlickException {
+		if (atlased) {
+			throw new SlickException("Can't draw to an image sharing an atlas page: "+ref);
+		}
 		return GraphicsFactory.getGraphicsForImage(this);
 	}
 	
@@ -794,9 +844,57 @@ public class Image implements Renderable {
         GL.glTranslatef(-x, -y, 0);
     } 
 
+	/**
+	 * Draw this image into a sprite batch at the specified location
+	 *
+	 * @param batch The batch to record the image into
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 */
+	public void draw(SpriteBatch batch, float x, float y) {
+		batch.draw(this, x, y);
+	}
+
+	/**
+	 * Draw this image into a sprite batch at the specified location
+	 *
+	 * @param batch The batch to record the image into
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 * @param filter The color to filter with while drawing
+	 */
+	public void draw(SpriteBatch batch, float x, float y, Color filter) {
+		batch.draw(this, x, y, filter);
+	}
+
+	/**
+	 * Draw this image into a sprite batch at a specified location and size
+	 *
+	 * @param batch The batch to record the image into
+	 * @param x The x location to draw the image at
+	 * @param y The y location to draw the image at
+	 * @param width The width to render the image at
+	 * @param height The height to render the image at
+	 * @param filter The color to filter with while drawing
+	 */
+	public void draw(SpriteBatch batch, float x, float y, float width, float height, Color filter) {
+		batch.draw(this, x, y, width, height, filter);
+	}
+
+	/**
+	 * Draw this image into a sprite batch with its corners placed through a transform
+	 *
+	 * @param batch The batch to record the image into
+	 * @param transform The transform to apply to the corners of the image
+	 * @param filter The color to filter with while drawing
+	 */
+	public void draw(SpriteBatch batch, Transform transform, Color filter) {
+		batch.draw(this, transform, filter);
+	}
+
 	/**
 	 * Draw this image at a specified location and size as a silohette
-	 * 
+	 *
 	 * @param x The x location to draw the image at
 	 * @param y The y location to draw the image at
 	 * @param width The width to render the image at
@@ -976,6 +1074,7 @@ public class Image implements Renderable {
 		sub.ref = ref;
 		sub.centerX = width / 2;
 		sub.centerY = height / 2;
+		sub.atlased = atlased;
 		
 		return sub;
 	}
@@ -1422,7 +1521,10 @@ public class Image implements Renderable {
 		}
 		
 		destroyed = true;
-		texture.release();
+		// atlas pages are shared with other images, they're released with the atlas
+		if (!atlased) {
+			texture.release();
+		}
 		GraphicsFactory.releaseGraphicsForImage(this);
 	}
 	
@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import org.lwjgl.BufferUtils;
+import org.newdawn.slick.opengl.DynamicAtlas;
 import org.newdawn.slick.opengl.ImageData;
 
 /**
@@ -150,6 +151,21 @@ public class ImageBuffer implements ImageData {
 		return new Image(this, filter);
 	}
 	
+	/**
+	 * Get an image generated based on this buffer, packed into a page of an
+	 * atlas rather than given a texture of its own. A buffer too big for the
+	 * atlas pages gets a texture of its own.
+	 * 
+	 * @param atlas The atlas to pack the image into
+	 * @return The image generated from this buffer
+	 */
+	public Image getImage(DynamicAtlas atlas) {
+		if (!atlas.fits(width, height)) {
+			return new Image(this);
+		}
+		return atlas.add(this);
+	}
+	
     /**
      * Get the closest greater power of 2 to the fold number
      * 
@@ -0,0 +1,545 @@
+package org.newdawn.slick;
+
+import org.newdawn.slick.geom.Transform;
+import org.newdawn.slick.opengl.Texture;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.newdawn.slick.util.FastTrig;
+
+/**
+ * A batch of textured quads that are transformed on the CPU and sent to the
+ * renderer in as few draws as possible.
+ *
+ * Image.draw() positions each sprite by pushing translations and rotations into
+ * the GL matrix which forces any batching renderer to flush for every sprite. This
+ * batch instead works out the final position of each corner itself and records it into
+ * a single interleaved vertex array. The array is only sent down to GL when the texture
+ * or blend function changes, when it's full or when the batch is ended.
+ *
+ * Usage is:
+ * <pre>
+ * batch.begin();
+ * image.draw(batch, x, y);
+ * sheet.renderInUse(batch, x, y, sx, sy);
+ * batch.end();
+ * </pre>
+ *
+ * No other rendering should be performed between begin() and end() without first
+ * calling flush().
+ */
+public class SpriteBatch {
+	/** The renderer to use for all GL operations */
+	protected static SGL GL = Renderer.get();
+
+	/** The default number of sprites held before the batch is flushed */
+	public static final int DEFAULT_SIZE = 1000;
+	/** The number of floats stored for each vertex - x, y, u, v, r, g, b, a */
+	public static final int VERTEX_SIZE = 8;
+	/** The number of floats stored for each sprite */
+	private static final int SPRITE_SIZE = VERTEX_SIZE * 4;
+
+	/** The interleaved vertex data for the sprites recorded so far */
+	private float[] vertices;
+	/** The maximum number of sprites held before the batch is flushed */
+	private int capacity;
+	/** The number of sprites recorded since the last flush */
+	private int count;
+	/** The texture the recorded sprites are drawn with */
+	private Texture texture;
+	/** True if we're between begin() and end() */
+	private boolean drawing;
+
+	/** The source blend factor to render with */
+	private int blendSrc = SGL.GL_SRC_ALPHA;
+	/** The destination blend factor to render with */
+	private int blendDest = SGL.GL_ONE_MINUS_SRC_ALPHA;
+	/** True if the blend function needs to be applied before the next flush */
+	private boolean blendDirty;
+
+	/** The number of times the batch has been sent to GL since begin() */
+	private int renderCalls;
+	/** The largest number of sprites sent in a single flush since begin() */
+	private int maxSpritesInBatch;
+
+	/** The scratch space the corners of a quad are transformed in */
+	private float[] corners = new float[8];
+	/** The transform applied to every sprite drawn or null if none */
+	private Transform transform;
+
+	/**
+	 * Create a new sprite batch with the default capacity
+	 */
+	public SpriteBatch() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * Create a new sprite batch
+	 *
+	 * @param capacity The number of sprites to hold before the batch is flushed
+	 */
+	public SpriteBatch(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Sprite batch capacity must be positive: "+capacity);
+		}
+
+		this.capacity = capacity;
+		vertices = new float[capacity * SPRITE_SIZE];
+	}
+
+	/**
+	 * Start recording sprites into this batch
+	 */
+	public void begin() {
+		if (drawing) {
+			throw new RuntimeException("SpriteBatch.end() must be called before begin()");
+		}
+
+		drawing = true;
+		renderCalls = 0;
+		maxSpritesInBatch = 0;
+		blendDirty = !isDefaultBlend();
+	}
+
+	/**
+	 * Stop recording sprites, flushing anything left in the batch and restoring the
+	 * default blend function if it was changed.
+	 */
+	public void end() {
+		if (!drawing) {
+			throw new RuntimeException("SpriteBatch.begin() must be called before end()");
+		}
+
+		flush();
+		drawing = false;
+		texture = null;
+
+		if (!isDefaultBlend()) {
+			GL.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+		}
+		Color.white.bind();
+	}
+
+	/**
+	 * Set a transform to apply to every sprite drawn from now on, after it has been
+	 * placed. Unlike changing the GL matrix this doesn't cause the batch to be flushed.
+	 * The transform is read as each sprite is drawn so changes to it apply immediately.
+	 *
+	 * @param transform The transform to apply or null to apply none
+	 */
+	public void setTransform(Transform transform) {
+		this.transform = transform;
+	}
+
+	/**
+	 * Get the transform applied to every sprite drawn
+	 *
+	 * @return The transform applied to every sprite drawn or null if none
+	 */
+	public Transform getTransform() {
+		return transform;
+	}
+
+	/**
+	 * Check if this batch is currently recording sprites
+	 *
+	 * @return True if we're between begin() and end()
+	 */
+	public boolean isDrawing() {
+		return drawing;
+	}
+
+	/**
+	 * Set the blend function used to render the sprites that follow. Changing the
+	 * function causes the sprites recorded so far to be flushed.
+	 *
+	 * @param src The source blend factor, e.g. SGL.GL_SRC_ALPHA
+	 * @param dest The destination blend factor, e.g. SGL.GL_ONE
+	 */
+	public void setBlendFunc(int src, int dest) {
+		if ((src == blendSrc) && (dest == blendDest)) {
+			return;
+		}
+
+		flush();
+		blendSrc = src;
+		blendDest = dest;
+		blendDirty = true;
+	}
+
+	/**
+	 * Get the source blend factor in use
+	 *
+	 * @return The source blend factor in use
+	 */
+	public int getBlendSrc() {
+		return blendSrc;
+	}
+
+	/**
+	 * Get the destination blend factor in use
+	 *
+	 * @return The destination blend factor in use
+	 */
+	public int getBlendDest() {
+		return blendDest;
+	}
+
+	/**
+	 * Check if the blend function is the one Slick normally renders with
+	 *
+	 * @return True if the blend function is the standard alpha blend
+	 */
+	private boolean isDefaultBlend() {
+		return (blendSrc == SGL.GL_SRC_ALPHA) && (blendDest == SGL.GL_ONE_MINUS_SRC_ALPHA);
+	}
+
+	/**
+	 * Get the number of times the batch has been sent down to GL since
+	 * the last call to begin()
+	 *
+	 * @return The number of flushes since begin()
+	 */
+	public int getRenderCalls() {
+		return renderCalls;
+	}
+
+	/**
+	 * Get the largest number of sprites sent down in a single flush since
+	 * the last call to begin()
+	 *
+	 * @return The largest number of sprites sent in one go
+	 */
+	public int getMaxSpritesInBatch() {
+		return maxSpritesInBatch;
+	}
+
+	/**
+	 * Get the maximum number of sprites this batch holds before flushing
+	 *
+	 * @return The capacity of the batch in sprites
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Send the sprites recorded so far down to GL. The blend function is applied
+	 * even if there are no sprites, so anything rendered directly after a flush
+	 * gets the blend the batch is set to.
+	 */
+	public void flush() {
+		if (blendDirty) {
+			GL.glBlendFunc(blendSrc, blendDest);
+			blendDirty = false;
+		}
+		if (count == 0) {
+			return;
+		}
+
+		renderCalls++;
+		maxSpritesInBatch = Math.max(maxSpritesInBatch, count);
+
+		texture.bind();
+
+		float[] v = vertices;
+		int end = count * SPRITE_SIZE;
+		GL.glBegin(SGL.GL_QUADS);
+		for (int i=0;i<end;i+=VERTEX_SIZE) {
+			GL.glColor4f(v[i+4], v[i+5], v[i+6], v[i+7]);
+			GL.glTexCoord2f(v[i+2], v[i+3]);
+			GL.glVertex2f(v[i], v[i+1]);
+		}
+		GL.glEnd();
+
+		count = 0;
+	}
+
+	/**
+	 * Draw an image at its natural size, taking account of the image's
+	 * rotation in the same way as Image.draw()
+	 *
+	 * @param image The image to draw
+	 * @param x The x position to draw the image at
+	 * @param y The y position to draw the image at
+	 */
+	public void draw(Image image, float x, float y) {
+		image.init();
+		draw(image, x, y, image.width, image.height, Color.white);
+	}
+
+	/**
+	 * Draw an image at its natural size, taking account of the image's
+	 * rotation in the same way as Image.draw()
+	 *
+	 * @param image The image to draw
+	 * @param x The x position to draw the image at
+	 * @param y The y position to draw the image at
+	 * @param filter The colour filter to apply
+	 */
+	public void draw(Image image, float x, float y, Color filter) {
+		image.init();
+		draw(image, x, y, image.width, image.height, filter);
+	}
+
+	/**
+	 * Draw an image at a given size, taking account of the image's
+	 * rotation in the same way as Image.draw()
+	 *
+	 * @param image The image to draw
+	 * @param x The x position to draw the image at
+	 * @param y The y position to draw the image at
+	 * @param width The width to draw the image at
+	 * @param height The height to draw the image at
+	 * @param filter The colour filter to apply
+	 */
+	public void draw(Image image, float x, float y, float width, float height, Color filter) {
+		image.init();
+		draw(image, x, y, image.centerX, image.centerY, width, height, 1, 1, image.angle, filter);
+	}
+
+	/**
+	 * Draw an image scaled and rotated around an origin. The image's own rotation
+	 * is ignored in favour of the one supplied.
+	 *
+	 * @param image The image to draw
+	 * @param x The x position of the top left corner of the unrotated image
+	 * @param y The y position of the top left corner of the unrotated image
+	 * @param originX The x coordinate of the origin relative to the top left corner
+	 * @param originY The y coordinate of the origin relative to the top left corner
+	 * @param width The width to draw the image at
+	 * @param height The height to draw the image at
+	 * @param scaleX The scale to apply on the x axis around the origin
+	 * @param scaleY The scale to apply on the y axis around the origin
+	 * @param rotation The rotation in degrees to apply around the origin
+	 * @param filter The colour filter to apply
+	 */
+	public void draw(Image image, float x, float y, float originX, float originY,
+					 float width, float height, float scaleX, float scaleY, float rotation, Color filter) {
+		place(x, y, originX, originY, width, height, scaleX, scaleY, rotation);
+		image.init();
+		add(image, corners, image.textureOffsetX, image.textureOffsetY,
+			image.textureOffsetX + image.textureWidth, image.textureOffsetY + image.textureHeight,
+			true, filter);
+	}
+
+	/**
+	 * Draw a section of an image at a particular location and scale, taking account of
+	 * the image's rotation in the same way as Image.draw(). As with Image the colours
+	 * set on the corners of the image are not applied to sections.
+	 *
+	 * @param image The image to draw a section of
+	 * @param x The x position to draw the image
+	 * @param y The y position to draw the image
+	 * @param x2 The x position of the bottom right corner of the drawn image
+	 * @param y2 The y position of the bottom right corner of the drawn image
+	 * @param srcx The x position of the rectangle to draw from the image
+	 * @param srcy The y position of the rectangle to draw from the image
+	 * @param srcx2 The x position of the bottom right corner of the rectangle to draw from the image
+	 * @param srcy2 The y position of the bottom right corner of the rectangle to draw from the image
+	 * @param filter The colour filter to apply
+	 */
+	public void draw(Image image, float x, float y, float x2, float y2,
+					 float srcx, float srcy, float srcx2, float srcy2, Color filter) {
+		image.init();
+		place(x, y, image.centerX, image.centerY, x2 - x, y2 - y, 1, 1, image.angle);
+
+		float u1 = ((srcx / image.width) * image.textureWidth) + image.textureOffsetX;
+		float v1 = ((srcy / image.height) * image.textureHeight) + image.textureOffsetY;
+		float u2 = u1 + (((srcx2 - srcx) / image.width) * image.textureWidth);
+		float v2 = v1 + (((srcy2 - srcy) / image.height) * image.textureHeight);
+
+		add(image, corners, u1, v1, u2, v2, false, filter);
+	}
+
+	/**
+	 * Work out the corners of a quad scaled and rotated around an origin, storing
+	 * them in the corners scratch space
+	 *
+	 * @param x The x position of the top left corner of the unrotated quad
+	 * @param y The y position of the top left corner of the unrotated quad
+	 * @param originX The x coordinate of the origin relative to the top left corner
+	 * @param originY The y coordinate of the origin relative to the top left corner
+	 * @param width The width of the quad
+	 * @param height The height of the quad
+	 * @param scaleX The scale to apply on the x axis around the origin
+	 * @param scaleY The scale to apply on the y axis around the origin
+	 * @param rotation The rotation in degrees to apply around the origin
+	 */
+	private void place(float x, float y, float originX, float originY,
+					   float width, float height, float scaleX, float scaleY, float rotation) {
+		float[] c = corners;
+
+		if ((rotation == 0) && (scaleX == 1) && (scaleY == 1)) {
+			c[0] = x;
+			c[1] = y;
+			c[2] = x;
+			c[3] = y + height;
+			c[4] = x + width;
+			c[5] = y + height;
+			c[6] = x + width;
+			c[7] = y;
+		} else {
+			float left = -originX * scaleX;
+			float top = -originY * scaleY;
+			float right = (width - originX) * scaleX;
+			float bottom = (height - originY) * scaleY;
+			float worldX = x + originX;
+			float worldY = y + originY;
+
+			if (rotation == 0) {
+				c[0] = worldX + left;
+				c[1] = worldY + top;
+				c[2] = worldX + left;
+				c[3] = worldY + bottom;
+				c[4] = worldX + right;
+				c[5] = worldY + bottom;
+				c[6] = worldX + right;
+				c[7] = worldY + top;
+			} else {
+				double theta = Math.toRadians(rotation);
+				float cos = (float) FastTrig.cos(theta);
+				float sin = (float) FastTrig.sin(theta);
+
+				c[0] = worldX + (cos * left) - (sin * top);
+				c[1] = worldY + (sin * left) + (cos * top);
+				c[2] = worldX + (cos * left) - (sin * bottom);
+				c[3] = worldY + (sin * left) + (cos * bottom);
+				c[4] = worldX + (cos * right) - (sin * bottom);
+				c[5] = worldY + (sin * right) + (cos * bottom);
+				c[6] = worldX + (cos * right) - (sin * top);
+				c[7] = worldY + (sin * right) + (cos * top);
+			}
+		}
+	}
+
+	/**
+	 * Draw an image at its natural size with its corners placed through a transform.
+	 * The image's own rotation is ignored.
+	 *
+	 * @param image The image to draw
+	 * @param transform The transform to place the corners of the image with
+	 * @param filter The colour filter to apply
+	 */
+	public void draw(Image image, Transform transform, Color filter) {
+		image.init();
+		draw(image, 0, 0, image.width, image.height, transform, filter);
+	}
+
+	/**
+	 * Draw an image into a rectangle that is then placed through a transform.
+	 * The image's own rotation is ignored.
+	 *
+	 * @param image The image to draw
+	 * @param x The x position of the rectangle before transformation
+	 * @param y The y position of the rectangle before transformation
+	 * @param width The width of the rectangle before transformation
+	 * @param height The height of the rectangle before transformation
+	 * @param transform The transform to place the corners of the image with
+	 * @param filter The colour filter to apply
+	 */
+	public void draw(Image image, float x, float y, float width, float height, Transform transform, Color filter) {
+		float[] m = transform.getMatrixPosition();
+		float[] c = corners;
+		float x2 = x + width;
+		float y2 = y + height;
+
+		c[0] = (m[0] * x) + (m[1] * y) + m[2];
+		c[1] = (m[3] * x) + (m[4] * y) + m[5];
+		c[2] = (m[0] * x) + (m[1] * y2) + m[2];
+		c[3] = (m[3] * x) + (m[4] * y2) + m[5];
+		c[4] = (m[0] * x2) + (m[1] * y2) + m[2];
+		c[5] = (m[3] * x2) + (m[4] * y2) + m[5];
+		c[6] = (m[0] * x2) + (m[1] * y) + m[2];
+		c[7] = (m[3] * x2) + (m[4] * y) + m[5];
+
+		image.init();
+		add(image, c, image.textureOffsetX, image.textureOffsetY,
+			image.textureOffsetX + image.textureWidth, image.textureOffsetY + image.textureHeight,
+			true, filter);
+	}
+
+	/**
+	 * Record a quad into the batch, flushing first if the texture has changed or
+	 * the batch is full.
+	 *
+	 * @param image The image providing the texture
+	 * @param c The corners of the quad - top left, bottom left, bottom right, top right
+	 * @param u1 The texture x coordinate of the top left corner
+	 * @param v1 The texture y coordinate of the top left corner
+	 * @param u2 The texture x coordinate of the bottom right corner
+	 * @param v2 The texture y coordinate of the bottom right corner
+	 * @param useCorners True if the colours set on the corners of the image should be applied
+	 * @param filter The colour filter to apply
+	 */
+	private void add(Image image, float[] c, float u1, float v1, float u2, float v2, boolean useCorners, Color filter) {
+		if (!drawing) {
+			throw new RuntimeException("SpriteBatch.begin() must be called before drawing");
+		}
+
+		if (transform != null) {
+			float[] m = transform.getMatrixPosition();
+			for (int i=0;i<8;i+=2) {
+				float x = c[i];
+				float y = c[i+1];
+				c[i] = (m[0] * x) + (m[1] * y) + m[2];
+				c[i+1] = (m[3] * x) + (m[4] * y) + m[5];
+			}
+		}
+
+		Texture tex = image.texture;
+		if (tex != texture) {
+			flush();
+			texture = tex;
+		} else if (count == capacity) {
+			flush();
+		}
+
+		if (filter == null) {
+			filter = Color.white;
+		}
+		float alpha = image.alpha;
+
+		Color[] cols = useCorners ? image.corners : null;
+		int i = count * SPRITE_SIZE;
+		if (cols == null) {
+			i = put(i, c[0], c[1], u1, v1, filter, alpha);
+			i = put(i, c[2], c[3], u1, v2, filter, alpha);
+			i = put(i, c[4], c[5], u2, v2, filter, alpha);
+			put(i, c[6], c[7], u2, v1, filter, alpha);
+		} else {
+			i = put(i, c[0], c[1], u1, v1, cols[Image.TOP_LEFT], 1);
+			i = put(i, c[2], c[3], u1, v2, cols[Image.BOTTOM_LEFT], 1);
+			i = put(i, c[4], c[5], u2, v2, cols[Image.BOTTOM_RIGHT], 1);
+			put(i, c[6], c[7], u2, v1, cols[Image.TOP_RIGHT], 1);
+		}
+		count++;
+	}
+
+	/**
+	 * Write a single vertex into the vertex array
+	 *
+	 * @param i The index in the vertex array to write at
+	 * @param x The x coordinate of the vertex
+	 * @param y The y coordinate of the vertex
+	 * @param u The u texture coordinate of the vertex
+	 * @param v The v texture coordinate of the vertex
+	 * @param col The colour of the vertex
+	 * @param alpha The scale to apply to the alpha of the colour
+	 * @return The index in the vertex array following the vertex
+	 */
+	private int put(int i, float x, float y, float u, float v, Color col, float alpha) {
+		float[] verts = vertices;
+
+		verts[i++] = x;
+		verts[i++] = y;
+		verts[i++] = u;
+		verts[i++] = v;
+		verts[i++] = col.r;
+		verts[i++] = col.g;
+		verts[i++] = col.b;
+		verts[i++] = col.a * alpha;
+
+		return i;
+	}
+}
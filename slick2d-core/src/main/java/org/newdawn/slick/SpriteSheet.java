@@ -268,6 +268,21 @@ public class SpriteSheet extends Image {
 		subImages[sx][sy].drawEmbedded(x, y, tw, th);
 	}
 
+	/**
+	 * Render a sprite into a sprite batch. Unlike renderInUse(int, int, int, int) this
+	 * does not require the sheet to be in use and can be mixed with sprites from other
+	 * sheets in the same batch.
+	 *
+	 * @param batch The batch to record the sprite into
+	 * @param x The x position to render the sprite at
+	 * @param y The y position to render the sprite at
+	 * @param sx The x location of the cell to render
+	 * @param sy The y location of the cell to render
+	 */
+	public void renderInUse(SpriteBatch batch, float x, float y, int sx, int sy) {
+		batch.draw(getSubImage(sx, sy), x, y, tw, th, Color.white);
+	}
+
 	/**
 	 * @see org.newdawn.slick.Image#endUse()
 	 */
@@ -0,0 +1,559 @@
+package org.newdawn.slick.atlas;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+import javax.imageio.ImageIO;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * A tool to pack images into texture atlas pages ahead of time. It runs
+ * without a display so it can be used from a build, and writes a PNG for each
+ * page and an XML descriptor that's read by TextureAtlas. Sprites are packed
+ * with the maximal rectangles algorithm, starting a new page whenever one
+ * fills up.
+ *
+ * Sprites can be spaced apart with padding, have their edge pixels extruded
+ * outwards to stop neighbours bleeding in when filtered, be trimmed of
+ * transparent edges and be rotated to pack better. Sprites that are trimmed
+ * or rotated can only be drawn through their AtlasRegion, so both are off by
+ * default to keep every sprite usable in place of its image.
+ *
+ * Usage: AtlasCompiler [-width n] [-height n] [-padding n] [-extrude n]
+ * [-rotate] [-trim] [-npot] [-prefix name] &lt;atlas.xml&gt; &lt;images or directories...&gt;
+ */
+public class AtlasCompiler {
+	/** The largest width of a page */
+	private int pageWidth = 1024;
+	/** The largest height of a page */
+	private int pageHeight = 1024;
+	/** The gap left between sprites */
+	private int padding = 2;
+	/** The number of times the edge pixels of each sprite are repeated outwards */
+	private int extrude;
+	/** True if sprites can be turned 90 degrees to pack better */
+	private boolean rotation;
+	/** True if transparent edges are cut from the sprites */
+	private boolean trim;
+	/** True if pages are sized to powers of two */
+	private boolean powerOfTwo = true;
+	/** The sprites added to be packed - Sprite */
+	private ArrayList sprites = new ArrayList();
+
+	/**
+	 * Set the largest size of a page. Pages are shrunk to fit the sprites on
+	 * them.
+	 *
+	 * @param pageWidth The largest width of a page
+	 * @param pageHeight The largest height of a page
+	 */
+	public void setPageSize(int pageWidth, int pageHeight) {
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+	}
+
+	/**
+	 * Set the gap left between sprites
+	 *
+	 * @param padding The gap in pixels
+	 */
+	public void setPadding(int padding) {
+		this.padding = padding;
+	}
+
+	/**
+	 * Set the number of times the edge pixels of each sprite are repeated
+	 * outwards, so filtering at the edge of the sprite doesn't pick up its
+	 * neighbours
+	 *
+	 * @param extrude The number of pixels to extrude each edge by
+	 */
+	public void setExtrude(int extrude) {
+		this.extrude = extrude;
+	}
+
+	/**
+	 * Indicate whether sprites can be turned 90 degrees to pack better
+	 *
+	 * @param rotation True if sprites can be rotated
+	 */
+	public void setRotation(boolean rotation) {
+		this.rotation = rotation;
+	}
+
+	/**
+	 * Indicate whether transparent edges should be cut from the sprites
+	 *
+	 * @param trim True if sprites should be trimmed
+	 */
+	public void setTrim(boolean trim) {
+		this.trim = trim;
+	}
+
+	/**
+	 * Indicate whether pages should be sized to powers of two
+	 *
+	 * @param powerOfTwo True if pages should be sized to powers of two
+	 */
+	public void setPowerOfTwo(boolean powerOfTwo) {
+		this.powerOfTwo = powerOfTwo;
+	}
+
+	/**
+	 * Add an image to be packed
+	 *
+	 * @param name The name to give the sprite, usually the location the game loads the image from
+	 * @param image The image to pack
+	 */
+	public void add(String name, BufferedImage image) {
+		sprites.add(new Sprite(name.replace('\\', '/'), image));
+	}
+
+	/**
+	 * Add an image file to be packed
+	 *
+	 * @param name The name to give the sprite, usually the location the game loads the image from
+	 * @param file The file to read the image from
+	 * @throws IOException Indicates a failure to read the image
+	 */
+	public void add(String name, File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			throw new IOException("Unsupported image format: "+file);
+		}
+		add(name, image);
+	}
+
+	/**
+	 * Add all the images in a directory and those below it. Each sprite is
+	 * named by its path within the directory, after the prefix given.
+	 *
+	 * @param dir The directory to search for images
+	 * @param prefix The prefix to give the names, for instance "res/sprites/"
+	 * @throws IOException Indicates a failure to read one of the images
+	 */
+	public void addDirectory(File dir, String prefix) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Unable to list directory: "+dir);
+		}
+		Arrays.sort(files);
+
+		for (int i=0;i<files.length;i++) {
+			String name = files[i].getName();
+			if (files[i].isDirectory()) {
+				addDirectory(files[i], prefix+name+"/");
+			} else {
+				String lower = name.toLowerCase();
+				if (lower.endsWith(".png") || lower.endsWith(".gif") || lower.endsWith(".jpg")
+						|| lower.endsWith(".jpeg") || lower.endsWith(".bmp")) {
+					add(prefix+name, files[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the number of sprites added
+	 *
+	 * @return The number of sprites to be packed
+	 */
+	public int getSpriteCount() {
+		return sprites.size();
+	}
+
+	/**
+	 * Pack the sprites added and write out the pages and descriptor. The
+	 * pages are written next to the descriptor, named after it with the index
+	 * of the page added.
+	 *
+	 * @param descriptor The file to write the XML descriptor to
+	 * @return The number of pages written
+	 * @throws IOException Indicates a sprite that can't fit on a page or a failure to write the files
+	 */
+	public int compile(File descriptor) throws IOException {
+		ArrayList pages = pack();
+
+		String base = descriptor.getName();
+		if (base.lastIndexOf('.') > 0) {
+			base = base.substring(0, base.lastIndexOf('.'));
+		}
+		File dir = descriptor.getAbsoluteFile().getParentFile();
+
+		PrintStream out = new PrintStream(new FileOutputStream(descriptor), false, "UTF-8");
+		try {
+			out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			out.println("<atlas>");
+			for (int p=0;p<pages.size();p++) {
+				Page page = (Page) pages.get(p);
+				String imageName = base+"-"+p+".png";
+				if (!ImageIO.write(page.render(), "PNG", new File(dir, imageName))) {
+					throw new IOException("No PNG writer available");
+				}
+
+				out.println("\t<page image=\""+escape(imageName)+"\" width=\""+page.width+"\" height=\""+page.height+"\">");
+				for (int i=0;i<page.sprites.size();i++) {
+					Sprite sprite = (Sprite) page.sprites.get(i);
+					out.print("\t\t<sprite name=\""+escape(sprite.name)+"\"");
+					out.print(" x=\""+sprite.x+"\" y=\""+sprite.y+"\"");
+					out.print(" width=\""+sprite.getPackedWidth()+"\" height=\""+sprite.getPackedHeight()+"\"");
+					if (sprite.rotated) {
+						out.print(" rotated=\"true\"");
+					}
+					if ((sprite.width != sprite.image.getWidth()) || (sprite.height != sprite.image.getHeight())) {
+						out.print(" offsetX=\""+sprite.offsetX+"\" offsetY=\""+sprite.offsetY+"\"");
+						out.print(" originalWidth=\""+sprite.image.getWidth()+"\" originalHeight=\""+sprite.image.getHeight()+"\"");
+					}
+					out.println("/>");
+				}
+				out.println("\t</page>");
+			}
+			out.println("</atlas>");
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Failed to write atlas descriptor: "+descriptor);
+		}
+
+		return pages.size();
+	}
+
+	/**
+	 * Pack the sprites added onto as many pages as they need
+	 *
+	 * @return The pages packed - Page
+	 * @throws IOException Indicates a sprite that's too big to fit on a page
+	 */
+	private ArrayList pack() throws IOException {
+		ArrayList order = new ArrayList(sprites);
+		for (int i=0;i<order.size();i++) {
+			((Sprite) order.get(i)).prepare();
+		}
+		// biggest first, the names keep the result the same from run to run
+		Collections.sort(order, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				Sprite a = (Sprite) o1;
+				Sprite b = (Sprite) o2;
+				int diff = Math.max(b.width, b.height) - Math.max(a.width, a.height);
+				if (diff == 0) {
+					diff = (b.width * b.height) - (a.width * a.height);
+				}
+				if (diff == 0) {
+					diff = a.name.compareTo(b.name);
+				}
+				return diff;
+			}
+		});
+
+		ArrayList pages = new ArrayList();
+		int[] result = new int[3];
+		for (int i=0;i<order.size();i++) {
+			Sprite sprite = (Sprite) order.get(i);
+			int space = extrude * 2 + padding;
+
+			Page target = null;
+			for (int p=0;(p<pages.size()) && (target == null);p++) {
+				Page page = (Page) pages.get(p);
+				if (page.packer.insert(sprite.width + space, sprite.height + space, result)) {
+					target = page;
+				}
+			}
+			if (target == null) {
+				// the padding is only needed between sprites, so the page is given room for one more
+				target = new Page(new MaxRectsPacker(pageWidth + padding, pageHeight + padding, rotation));
+				if (!target.packer.insert(sprite.width + space, sprite.height + space, result)) {
+					throw new IOException("Sprite is too big to fit on a page: "+sprite.name);
+				}
+				pages.add(target);
+			}
+
+			sprite.x = result[0] + extrude;
+			sprite.y = result[1] + extrude;
+			sprite.rotated = result[2] != 0;
+			target.sprites.add(sprite);
+		}
+
+		for (int p=0;p<pages.size();p++) {
+			Page page = (Page) pages.get(p);
+			page.width = Math.max(1, page.packer.getUsedWidth() - padding);
+			page.height = Math.max(1, page.packer.getUsedHeight() - padding);
+			if (powerOfTwo) {
+				page.width = getPowerOfTwo(page.width);
+				page.height = getPowerOfTwo(page.height);
+			}
+		}
+
+		return pages;
+	}
+
+	/**
+	 * Get the smallest power of two at least as big as a size
+	 *
+	 * @param size The size needed
+	 * @return The power of two
+	 */
+	private static int getPowerOfTwo(int size) {
+		int ret = 1;
+		while (ret < size) {
+			ret *= 2;
+		}
+		return ret;
+	}
+
+	/**
+	 * Escape a value to be written as an XML attribute
+	 *
+	 * @param value The value to escape
+	 * @return The escaped value
+	 */
+	private static String escape(String value) {
+		StringBuffer buffer = new StringBuffer();
+		for (int i=0;i<value.length();i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				buffer.append("&amp;");
+				break;
+			case '<':
+				buffer.append("&lt;");
+				break;
+			case '>':
+				buffer.append("&gt;");
+				break;
+			case '"':
+				buffer.append("&quot;");
+				break;
+			default:
+				buffer.append(c);
+			}
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Entry point to the tool
+	 *
+	 * @param argv The options, the descriptor to write and the images or
+	 * directories of images to pack
+	 */
+	public static void main(String[] argv) {
+		AtlasCompiler compiler = new AtlasCompiler();
+		String prefix = "";
+		int i = 0;
+		try {
+			int width = compiler.pageWidth;
+			int height = compiler.pageHeight;
+			for (;(i<argv.length) && argv[i].startsWith("-");i++) {
+				String option = argv[i];
+				if (option.equals("-width")) {
+					width = Integer.parseInt(argv[++i]);
+				} else if (option.equals("-height")) {
+					height = Integer.parseInt(argv[++i]);
+				} else if (option.equals("-padding")) {
+					compiler.setPadding(Integer.parseInt(argv[++i]));
+				} else if (option.equals("-extrude")) {
+					compiler.setExtrude(Integer.parseInt(argv[++i]));
+				} else if (option.equals("-rotate")) {
+					compiler.setRotation(true);
+				} else if (option.equals("-trim")) {
+					compiler.setTrim(true);
+				} else if (option.equals("-npot")) {
+					compiler.setPowerOfTwo(false);
+				} else if (option.equals("-prefix")) {
+					prefix = argv[++i];
+				} else {
+					throw new IllegalArgumentException("Unknown option: "+option);
+				}
+			}
+			compiler.setPageSize(width, height);
+		} catch (RuntimeException e) {
+			Log.error(e.getMessage());
+			i = argv.length;
+		}
+
+		if (argv.length - i < 2) {
+			System.err.println("Usage: AtlasCompiler [-width n] [-height n] [-padding n] [-extrude n] [-rotate] [-trim] [-npot] [-prefix name] <atlas.xml> <images or directories...>");
+			System.exit(1);
+		}
+
+		try {
+			File descriptor = new File(argv[i]);
+			for (int j=i+1;j<argv.length;j++) {
+				File input = new File(argv[j]);
+				if (input.isDirectory()) {
+					compiler.addDirectory(input, prefix);
+				} else {
+					compiler.add(prefix+input.getName(), input);
+				}
+			}
+			int pages = compiler.compile(descriptor);
+			Log.info("Packed "+compiler.getSpriteCount()+" sprites onto "+pages+" pages");
+		} catch (Exception e) {
+			Log.error(e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * A page of the atlas being packed
+	 */
+	private class Page {
+		/** The packer placing the sprites on the page */
+		private MaxRectsPacker packer;
+		/** The sprites on the page - Sprite */
+		private ArrayList sprites = new ArrayList();
+		/** The width of the page image */
+		private int width;
+		/** The height of the page image */
+		private int height;
+
+		/**
+		 * Create a new page
+		 *
+		 * @param packer The packer placing the sprites on the page
+		 */
+		public Page(MaxRectsPacker packer) {
+			this.packer = packer;
+		}
+
+		/**
+		 * Draw the sprites onto the page image
+		 *
+		 * @return The page image
+		 */
+		public BufferedImage render() {
+			BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			for (int i=0;i<sprites.size();i++) {
+				((Sprite) sprites.get(i)).render(result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * An image to be packed
+	 */
+	private class Sprite {
+		/** The name of the sprite */
+		private String name;
+		/** The image the sprite was added from */
+		private BufferedImage image;
+		/** The x position of the part of the image kept */
+		private int offsetX;
+		/** The y position of the part of the image kept */
+		private int offsetY;
+		/** The width of the part of the image kept */
+		private int width;
+		/** The height of the part of the image kept */
+		private int height;
+		/** The x position of the sprite on its page */
+		private int x;
+		/** The y position of the sprite on its page */
+		private int y;
+		/** True if the sprite was turned 90 degrees clockwise on its page */
+		private boolean rotated;
+
+		/**
+		 * Create a new sprite
+		 *
+		 * @param name The name of the sprite
+		 * @param image The image the sprite was added from
+		 */
+		public Sprite(String name, BufferedImage image) {
+			this.name = name;
+			this.image = image;
+		}
+
+		/**
+		 * Work out the part of the image to keep
+		 */
+		public void prepare() {
+			offsetX = 0;
+			offsetY = 0;
+			width = image.getWidth();
+			height = image.getHeight();
+			if (!trim) {
+				return;
+			}
+
+			int minX = width;
+			int minY = height;
+			int maxX = -1;
+			int maxY = -1;
+			for (int yp=0;yp<height;yp++) {
+				for (int xp=0;xp<width;xp++) {
+					if ((image.getRGB(xp, yp) >>> 24) != 0) {
+						minX = Math.min(minX, xp);
+						minY = Math.min(minY, yp);
+						maxX = Math.max(maxX, xp);
+						maxY = Math.max(maxY, yp);
+					}
+				}
+			}
+
+			if (maxX < 0) {
+				// entirely transparent, keep a single pixel
+				width = 1;
+				height = 1;
+			} else {
+				offsetX = minX;
+				offsetY = minY;
+				width = maxX - minX + 1;
+				height = maxY - minY + 1;
+			}
+		}
+
+		/**
+		 * Get the width the sprite takes on its page
+		 *
+		 * @return The width the sprite takes on its page
+		 */
+		public int getPackedWidth() {
+			return rotated ? height : width;
+		}
+
+		/**
+		 * Get the height the sprite takes on its page
+		 *
+		 * @return The height the sprite takes on its page
+		 */
+		public int getPackedHeight() {
+			return rotated ? width : height;
+		}
+
+		/**
+		 * Draw the sprite onto its page, with its edges extruded
+		 *
+		 * @param page The page image
+		 */
+		public void render(BufferedImage page) {
+			int[] pixels = image.getRGB(offsetX, offsetY, width, height, null, 0, width);
+			int packedWidth = getPackedWidth();
+			int packedHeight = getPackedHeight();
+
+			for (int py=-extrude;py<packedHeight+extrude;py++) {
+				int sy = Math.max(0, Math.min(packedHeight - 1, py));
+				for (int px=-extrude;px<packedWidth+extrude;px++) {
+					int sx = Math.max(0, Math.min(packedWidth - 1, px));
+					int pixel;
+					if (rotated) {
+						// turned clockwise, so the page's columns run up the sprite's rows
+						pixel = pixels[((height - 1 - sx) * width) + sy];
+					} else {
+						pixel = pixels[(sy * width) + sx];
+					}
+					page.setRGB(x + px, y + py, pixel);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package org.newdawn.slick.atlas;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * A sprite packed into a page of a texture atlas. The sprite may have been
+ * trimmed of transparent edges and turned 90 degrees clockwise to pack it
+ * better, in which case draw() puts it back as it was.
+ */
+public class AtlasRegion {
+	/** The atlas the sprite is packed in */
+	private TextureAtlas atlas;
+	/** The name of the sprite */
+	private String name;
+	/** The index of the page the sprite is packed on */
+	private int page;
+	/** The x position of the sprite on the page */
+	private int x;
+	/** The y position of the sprite on the page */
+	private int y;
+	/** The width of the sprite on the page */
+	private int width;
+	/** The height of the sprite on the page */
+	private int height;
+	/** True if the sprite was turned 90 degrees clockwise on the page */
+	private boolean rotated;
+	/** The x position of the trimmed sprite within the original image */
+	private int offsetX;
+	/** The y position of the trimmed sprite within the original image */
+	private int offsetY;
+	/** The width of the original image */
+	private int originalWidth;
+	/** The height of the original image */
+	private int originalHeight;
+	/** The part of the page holding the sprite, or null if it's not been cut out yet */
+	private Image image;
+
+	/**
+	 * Create a new region
+	 *
+	 * @param atlas The atlas the sprite is packed in
+	 * @param name The name of the sprite
+	 * @param page The index of the page the sprite is packed on
+	 * @param x The x position of the sprite on the page
+	 * @param y The y position of the sprite on the page
+	 * @param width The width of the sprite on the page
+	 * @param height The height of the sprite on the page
+	 * @param rotated True if the sprite was turned 90 degrees clockwise on the page
+	 * @param offsetX The x position of the trimmed sprite within the original image
+	 * @param offsetY The y position of the trimmed sprite within the original image
+	 * @param originalWidth The width of the original image
+	 * @param originalHeight The height of the original image
+	 */
+	AtlasRegion(TextureAtlas atlas, String name, int page, int x, int y, int width, int height,
+			boolean rotated, int offsetX, int offsetY, int originalWidth, int originalHeight) {
+		this.atlas = atlas;
+		this.name = name;
+		this.page = page;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.rotated = rotated;
+		this.offsetX = offsetX;
+		this.offsetY = offsetY;
+		this.originalWidth = originalWidth;
+		this.originalHeight = originalHeight;
+	}
+
+	/**
+	 * Get the atlas the sprite is packed in
+	 *
+	 * @return The atlas the sprite is packed in
+	 */
+	public TextureAtlas getAtlas() {
+		return atlas;
+	}
+
+	/**
+	 * Get the name of the sprite
+	 *
+	 * @return The name of the sprite
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the index of the page the sprite is packed on
+	 *
+	 * @return The index of the page the sprite is packed on
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * Get the x position of the sprite on the page
+	 *
+	 * @return The x position of the sprite on the page
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Get the y position of the sprite on the page
+	 *
+	 * @return The y position of the sprite on the page
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Get the width of the sprite on the page, which is its height if it
+	 * was rotated
+	 *
+	 * @return The width of the sprite on the page
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the sprite on the page, which is its width if it
+	 * was rotated
+	 *
+	 * @return The height of the sprite on the page
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Check if the sprite was turned 90 degrees clockwise on the page
+	 *
+	 * @return True if the sprite was rotated
+	 */
+	public boolean isRotated() {
+		return rotated;
+	}
+
+	/**
+	 * Get the x position of the trimmed sprite within the original image
+	 *
+	 * @return The number of columns trimmed from the left of the image
+	 */
+	public int getOffsetX() {
+		return offsetX;
+	}
+
+	/**
+	 * Get the y position of the trimmed sprite within the original image
+	 *
+	 * @return The number of rows trimmed from the top of the image
+	 */
+	public int getOffsetY() {
+		return offsetY;
+	}
+
+	/**
+	 * Get the width of the original image
+	 *
+	 * @return The width of the original image
+	 */
+	public int getOriginalWidth() {
+		return originalWidth;
+	}
+
+	/**
+	 * Get the height of the original image
+	 *
+	 * @return The height of the original image
+	 */
+	public int getOriginalHeight() {
+		return originalHeight;
+	}
+
+	/**
+	 * Check if the sprite is on the page exactly as the original image, so
+	 * it can stand in for it as an image
+	 *
+	 * @return True if the sprite was neither rotated nor trimmed
+	 */
+	public boolean isPlain() {
+		return !rotated && (width == originalWidth) && (height == originalHeight);
+	}
+
+	/**
+	 * Get the part of the page holding the sprite, as it's stored on the page.
+	 * The page is loaded if it hasn't been already.
+	 *
+	 * @return The image of the sprite as stored on the page
+	 * @throws SlickException Indicates a failure to load the page
+	 */
+	public Image getImage() throws SlickException {
+		if (image == null) {
+			image = atlas.getPage(page).getSubImage(x, y, width, height);
+		}
+		return image;
+	}
+
+	/**
+	 * Forget the image cut from the page, once the page has been released
+	 */
+	void reset() {
+		image = null;
+	}
+
+	/**
+	 * Draw the sprite at its original size
+	 *
+	 * @param x The x position to draw the original image at
+	 * @param y The y position to draw the original image at
+	 * @throws SlickException Indicates a failure to load the page
+	 */
+	public void draw(float x, float y) throws SlickException {
+		draw(x, y, originalWidth, originalHeight);
+	}
+
+	/**
+	 * Draw the sprite, putting back any rotation and the space trimmed from
+	 * around it
+	 *
+	 * @param x The x position to draw the original image at
+	 * @param y The y position to draw the original image at
+	 * @param drawWidth The width to draw the original image
+	 * @param drawHeight The height to draw the original image
+	 * @throws SlickException Indicates a failure to load the page
+	 */
+	public void draw(float x, float y, float drawWidth, float drawHeight) throws SlickException {
+		float scaleX = drawWidth / originalWidth;
+		float scaleY = drawHeight / originalHeight;
+		float left = x + (offsetX * scaleX);
+		float top = y + (offsetY * scaleY);
+
+		if (!rotated) {
+			getImage().draw(left, top, width * scaleX, height * scaleY);
+			return;
+		}
+
+		// turned clockwise on the page, so the page's top left is the sprite's bottom left
+		float right = left + (height * scaleX);
+		float bottom = top + (width * scaleY);
+		getImage().drawWarped(left, bottom, right, bottom, right, top, left, top);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "[AtlasRegion "+name+" page="+page+" "+x+","+y+" "+width+"x"+height+(rotated ? " rotated" : "")+"]";
+	}
+}
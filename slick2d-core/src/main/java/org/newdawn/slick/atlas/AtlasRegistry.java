@@ -0,0 +1,97 @@
+package org.newdawn.slick.atlas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The texture atlases that images created by name are looked up in. Once an
+ * atlas is registered, new Image("sprites/ship.png") gives the part of the
+ * atlas page holding a sprite of that name instead of loading a texture of
+ * its own, as long as the sprite was packed without being rotated or trimmed
+ * and the image isn't flipped or given a transparent colour. Images that
+ * aren't in any registered atlas load as normal.
+ *
+ * When a name is in more than one atlas the one registered last is used.
+ */
+public class AtlasRegistry {
+	/** The atlases registered - TextureAtlas */
+	private static ArrayList atlases = new ArrayList();
+	/** The sprites in the registered atlases - String name to AtlasRegion */
+	private static HashMap regions = new HashMap();
+
+	/**
+	 * Registry can't be created
+	 */
+	private AtlasRegistry() {
+	}
+
+	/**
+	 * Register an atlas so images named after its sprites use it
+	 *
+	 * @param atlas The atlas to register
+	 */
+	public static synchronized void register(TextureAtlas atlas) {
+		atlases.remove(atlas);
+		atlases.add(atlas);
+		add(atlas);
+	}
+
+	/**
+	 * Remove an atlas from the registry. Images already created from it carry
+	 * on using it.
+	 *
+	 * @param atlas The atlas to remove
+	 */
+	public static synchronized void unregister(TextureAtlas atlas) {
+		if (!atlases.remove(atlas)) {
+			return;
+		}
+
+		regions.clear();
+		for (int i=0;i<atlases.size();i++) {
+			add((TextureAtlas) atlases.get(i));
+		}
+	}
+
+	/**
+	 * Remove all the atlases from the registry
+	 */
+	public static synchronized void clear() {
+		atlases.clear();
+		regions.clear();
+	}
+
+	/**
+	 * Get the number of atlases registered
+	 *
+	 * @return The number of atlases registered
+	 */
+	public static synchronized int getAtlasCount() {
+		return atlases.size();
+	}
+
+	/**
+	 * Find the sprite with a given name in the registered atlases
+	 *
+	 * @param ref The name of the sprite, usually the location of the image it was packed from
+	 * @return The sprite or null if it isn't in any registered atlas
+	 */
+	public static synchronized AtlasRegion getRegion(String ref) {
+		if (regions.isEmpty() || (ref == null)) {
+			return null;
+		}
+		return (AtlasRegion) regions.get(ref.replace('\\', '/'));
+	}
+
+	/**
+	 * Add the sprites of an atlas to the lookup, replacing any of the same name
+	 *
+	 * @param atlas The atlas whose sprites should be added
+	 */
+	private static void add(TextureAtlas atlas) {
+		for (int i=0;i<atlas.getRegionCount();i++) {
+			AtlasRegion region = atlas.getRegion(i);
+			regions.put(region.getName(), region);
+		}
+	}
+}
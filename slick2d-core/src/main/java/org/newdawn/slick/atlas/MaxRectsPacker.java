@@ -0,0 +1,349 @@
+package org.newdawn.slick.atlas;
+
+import java.util.ArrayList;
+
+/**
+ * Packs rectangles into a fixed size area using the maximal rectangles
+ * algorithm. The area left free is kept as a list of the largest rectangles
+ * that fit in it, which may overlap, and each rectangle is placed in the free
+ * rectangle that leaves the shortest side left over (best short side fit).
+ * This packs far tighter than filling rows, especially with sprites of mixed
+ * sizes.
+ */
+public class MaxRectsPacker {
+	/** The width of the area being packed */
+	private int width;
+	/** The height of the area being packed */
+	private int height;
+	/** True if rectangles can be turned 90 degrees to fit better */
+	private boolean allowRotation;
+	/** The largest free rectangles left in the area - Rect */
+	private ArrayList free = new ArrayList();
+	/** The rectangles placed and not yet freed - Rect */
+	private ArrayList used = new ArrayList();
+	/** The area taken by the rectangles placed so far */
+	private long usedArea;
+	/** The right hand edge of the rectangles placed so far */
+	private int usedWidth;
+	/** The bottom edge of the rectangles placed so far */
+	private int usedHeight;
+
+	/**
+	 * Create a new packer for an empty area
+	 *
+	 * @param width The width of the area to pack
+	 * @param height The height of the area to pack
+	 * @param allowRotation True if rectangles can be turned 90 degrees to fit better
+	 */
+	public MaxRectsPacker(int width, int height, boolean allowRotation) {
+		this.width = width;
+		this.height = height;
+		this.allowRotation = allowRotation;
+
+		free.add(new Rect(0, 0, width, height));
+	}
+
+	/**
+	 * Get the width of the area being packed
+	 *
+	 * @return The width of the area being packed
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the area being packed
+	 *
+	 * @return The height of the area being packed
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the right hand edge of the rectangles placed so far, including any
+	 * that have since been freed
+	 *
+	 * @return The width of the area used
+	 */
+	public int getUsedWidth() {
+		return usedWidth;
+	}
+
+	/**
+	 * Get the bottom edge of the rectangles placed so far, including any
+	 * that have since been freed
+	 *
+	 * @return The height of the area used
+	 */
+	public int getUsedHeight() {
+		return usedHeight;
+	}
+
+	/**
+	 * Get the proportion of the area taken by the rectangles placed
+	 *
+	 * @return The proportion of the area used, from 0 to 1
+	 */
+	public float getOccupancy() {
+		return (float) usedArea / ((long) width * height);
+	}
+
+	/**
+	 * Place a rectangle in the area
+	 *
+	 * @param rectWidth The width of the rectangle
+	 * @param rectHeight The height of the rectangle
+	 * @param result An array of at least three elements that's given the x and y
+	 * position of the rectangle, and 1 if it was rotated or 0 if not. Rotated
+	 * rectangles take rectHeight across and rectWidth down.
+	 * @return True if the rectangle was placed, false if there's no room for it
+	 */
+	public boolean insert(int rectWidth, int rectHeight, int[] result) {
+		Rect best = null;
+		boolean bestRotated = false;
+		int bestShort = Integer.MAX_VALUE;
+		int bestLong = Integer.MAX_VALUE;
+
+		for (int i=0;i<free.size();i++) {
+			Rect rect = (Rect) free.get(i);
+			if ((rect.width >= rectWidth) && (rect.height >= rectHeight)) {
+				int leftX = rect.width - rectWidth;
+				int leftY = rect.height - rectHeight;
+				int shortSide = Math.min(leftX, leftY);
+				int longSide = Math.max(leftX, leftY);
+				if ((shortSide < bestShort) || ((shortSide == bestShort) && (longSide < bestLong))) {
+					best = rect;
+					bestRotated = false;
+					bestShort = shortSide;
+					bestLong = longSide;
+				}
+			}
+			if (allowRotation && (rect.width >= rectHeight) && (rect.height >= rectWidth)) {
+				int leftX = rect.width - rectHeight;
+				int leftY = rect.height - rectWidth;
+				int shortSide = Math.min(leftX, leftY);
+				int longSide = Math.max(leftX, leftY);
+				if ((shortSide < bestShort) || ((shortSide == bestShort) && (longSide < bestLong))) {
+					best = rect;
+					bestRotated = true;
+					bestShort = shortSide;
+					bestLong = longSide;
+				}
+			}
+		}
+
+		if (best == null) {
+			return false;
+		}
+
+		Rect placed = bestRotated ? new Rect(best.x, best.y, rectHeight, rectWidth)
+								  : new Rect(best.x, best.y, rectWidth, rectHeight);
+		place(placed);
+
+		result[0] = placed.x;
+		result[1] = placed.y;
+		result[2] = bestRotated ? 1 : 0;
+		return true;
+	}
+
+	/**
+	 * Give the space taken by a rectangle placed earlier back to the free
+	 * area. The largest free rectangles running through the space are worked
+	 * out again from the rectangles still placed, so the free list is the
+	 * same as if the rectangle had never been placed.
+	 *
+	 * @param x The x position the rectangle was placed at
+	 * @param y The y position the rectangle was placed at
+	 * @param rectWidth The width the rectangle takes across the area
+	 * @param rectHeight The height the rectangle takes down the area
+	 */
+	public void free(int x, int y, int rectWidth, int rectHeight) {
+		Rect freed = null;
+		for (int i=0;i<used.size();i++) {
+			Rect rect = (Rect) used.get(i);
+			if ((rect.x == x) && (rect.y == y) && (rect.width == rectWidth) && (rect.height == rectHeight)) {
+				freed = rect;
+				used.remove(i);
+				break;
+			}
+		}
+		if (freed == null) {
+			throw new IllegalArgumentException("No rectangle placed at "+x+","+y+" of size "+rectWidth+"x"+rectHeight);
+		}
+
+		// split the whole area around the rectangles left, only following the
+		// parts that reach into the freed space since the rest are unchanged
+		ArrayList rects = new ArrayList();
+		rects.add(new Rect(0, 0, width, height));
+		for (int i=0;i<used.size();i++) {
+			Rect placed = (Rect) used.get(i);
+			int count = rects.size();
+			for (int j=0;j<count;j++) {
+				Rect rect = (Rect) rects.get(j);
+				if (split(rect, placed, rects)) {
+					rects.remove(j);
+					j--;
+					count--;
+				}
+			}
+			for (int j=0;j<rects.size();j++) {
+				if (!((Rect) rects.get(j)).overlaps(freed)) {
+					rects.remove(j);
+					j--;
+				}
+			}
+			prune(rects);
+		}
+
+		free.addAll(rects);
+		prune(free);
+
+		usedArea -= (long) rectWidth * rectHeight;
+	}
+
+	/**
+	 * Take a placed rectangle out of the free area
+	 *
+	 * @param placed The rectangle placed
+	 */
+	private void place(Rect placed) {
+		int count = free.size();
+		for (int i=0;i<count;i++) {
+			Rect rect = (Rect) free.get(i);
+			if (split(rect, placed, free)) {
+				free.remove(i);
+				i--;
+				count--;
+			}
+		}
+		prune(free);
+		used.add(placed);
+
+		usedArea += (long) placed.width * placed.height;
+		usedWidth = Math.max(usedWidth, placed.x + placed.width);
+		usedHeight = Math.max(usedHeight, placed.y + placed.height);
+	}
+
+	/**
+	 * Split a free rectangle around a placed one, adding the parts of it left
+	 * free to the end of a list
+	 *
+	 * @param rect The free rectangle to split
+	 * @param placed The rectangle placed
+	 * @param free The list to add the parts left free to - Rect
+	 * @return True if the rectangles overlap and the free rectangle should be removed
+	 */
+	private static boolean split(Rect rect, Rect placed, ArrayList free) {
+		if (!rect.overlaps(placed)) {
+			return false;
+		}
+
+		// the parts of the free rectangle above, below, left and right of the placed one
+		if (placed.y > rect.y) {
+			free.add(new Rect(rect.x, rect.y, rect.width, placed.y - rect.y));
+		}
+		if (placed.bottom() < rect.bottom()) {
+			free.add(new Rect(rect.x, placed.bottom(), rect.width, rect.bottom() - placed.bottom()));
+		}
+		if (placed.x > rect.x) {
+			free.add(new Rect(rect.x, rect.y, placed.x - rect.x, rect.height));
+		}
+		if (placed.right() < rect.right()) {
+			free.add(new Rect(placed.right(), rect.y, rect.right() - placed.right(), rect.height));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Remove the free rectangles that lie entirely within another
+	 *
+	 * @param free The list of free rectangles to prune - Rect
+	 */
+	private static void prune(ArrayList free) {
+		for (int i=0;i<free.size();i++) {
+			Rect a = (Rect) free.get(i);
+			for (int j=i+1;j<free.size();j++) {
+				Rect b = (Rect) free.get(j);
+				if (b.contains(a)) {
+					free.remove(i);
+					i--;
+					break;
+				}
+				if (a.contains(b)) {
+					free.remove(j);
+					j--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A rectangle in the area being packed
+	 */
+	private static class Rect {
+		/** The x position of the rectangle */
+		private int x;
+		/** The y position of the rectangle */
+		private int y;
+		/** The width of the rectangle */
+		private int width;
+		/** The height of the rectangle */
+		private int height;
+
+		/**
+		 * Create a new rectangle
+		 *
+		 * @param x The x position of the rectangle
+		 * @param y The y position of the rectangle
+		 * @param width The width of the rectangle
+		 * @param height The height of the rectangle
+		 */
+		public Rect(int x, int y, int width, int height) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Get the right hand edge of the rectangle
+		 *
+		 * @return The x coordinate just past the rectangle
+		 */
+		public int right() {
+			return x + width;
+		}
+
+		/**
+		 * Get the bottom edge of the rectangle
+		 *
+		 * @return The y coordinate just past the rectangle
+		 */
+		public int bottom() {
+			return y + height;
+		}
+
+		/**
+		 * Check if another rectangle lies entirely within this one
+		 *
+		 * @param other The rectangle to check
+		 * @return True if the other rectangle is inside this one
+		 */
+		public boolean contains(Rect other) {
+			return (other.x >= x) && (other.y >= y) && (other.right() <= right()) && (other.bottom() <= bottom());
+		}
+
+		/**
+		 * Check if another rectangle shares any space with this one
+		 *
+		 * @param other The rectangle to check
+		 * @return True if the rectangles overlap
+		 */
+		public boolean overlaps(Rect other) {
+			return (other.x < right()) && (other.right() > x) && (other.y < bottom()) && (other.bottom() > y);
+		}
+	}
+}
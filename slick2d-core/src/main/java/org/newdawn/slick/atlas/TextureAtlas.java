@@ -0,0 +1,223 @@
+package org.newdawn.slick.atlas;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.util.ResourceLoader;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * A set of sprites packed onto one or more pages by the AtlasCompiler. The
+ * descriptor is read when the atlas is created, but each page image is only
+ * loaded the first time a sprite on it is used.
+ *
+ * Registering the atlas with the AtlasRegistry makes images created by name
+ * use the atlas, so sprites drawn from the same page can be batched together.
+ */
+public class TextureAtlas {
+	/** The location of the descriptor */
+	private String ref;
+	/** The filter used when scaling the pages */
+	private int filter;
+	/** The references to the page images */
+	private String[] pageRefs;
+	/** The page images loaded, null where a page hasn't been loaded yet */
+	private Image[] pages;
+	/** The sprites in the atlas - String name to AtlasRegion */
+	private HashMap regions = new HashMap();
+	/** The sprites in the order they're listed in the descriptor - AtlasRegion */
+	private ArrayList regionList = new ArrayList();
+
+	/**
+	 * Create a new atlas whose pages are scaled with linear filtering
+	 *
+	 * @param ref The location of the descriptor written by the AtlasCompiler
+	 * @throws SlickException Indicates a failure to read the descriptor
+	 */
+	public TextureAtlas(String ref) throws SlickException {
+		this(ref, Image.FILTER_LINEAR);
+	}
+
+	/**
+	 * Create a new atlas
+	 *
+	 * @param ref The location of the descriptor written by the AtlasCompiler
+	 * @param filter The filter to use when scaling the pages, Image.FILTER_LINEAR or Image.FILTER_NEAREST
+	 * @throws SlickException Indicates a failure to read the descriptor
+	 */
+	public TextureAtlas(String ref, int filter) throws SlickException {
+		this.ref = ref.replace('\\', '/');
+		this.filter = filter;
+
+		String base = this.ref.substring(0, this.ref.lastIndexOf('/') + 1);
+		try {
+			InputStream in = ResourceLoader.getResourceAsStream(ref);
+			Document doc;
+			try {
+				DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+				doc = builder.parse(in);
+			} finally {
+				in.close();
+			}
+
+			NodeList pageList = doc.getElementsByTagName("page");
+			pageRefs = new String[pageList.getLength()];
+			pages = new Image[pageList.getLength()];
+			for (int p=0;p<pageList.getLength();p++) {
+				Element page = (Element) pageList.item(p);
+				pageRefs[p] = base + page.getAttribute("image");
+
+				NodeList sprites = page.getElementsByTagName("sprite");
+				for (int i=0;i<sprites.getLength();i++) {
+					Element sprite = (Element) sprites.item(i);
+					String name = sprite.getAttribute("name");
+					int width = Integer.parseInt(sprite.getAttribute("width"));
+					int height = Integer.parseInt(sprite.getAttribute("height"));
+					boolean rotated = "true".equals(sprite.getAttribute("rotated"));
+
+					AtlasRegion region = new AtlasRegion(this, name, p,
+							Integer.parseInt(sprite.getAttribute("x")),
+							Integer.parseInt(sprite.getAttribute("y")),
+							width, height, rotated,
+							getInt(sprite, "offsetX", 0),
+							getInt(sprite, "offsetY", 0),
+							getInt(sprite, "originalWidth", rotated ? height : width),
+							getInt(sprite, "originalHeight", rotated ? width : height));
+					regions.put(name, region);
+					regionList.add(region);
+				}
+			}
+		} catch (Exception e) {
+			throw new SlickException("Failed to parse texture atlas: "+ref, e);
+		}
+	}
+
+	/**
+	 * Get an optional integer attribute
+	 *
+	 * @param element The element holding the attribute
+	 * @param name The name of the attribute
+	 * @param def The value to use if the attribute isn't given
+	 * @return The value of the attribute or the default
+	 */
+	private static int getInt(Element element, String name, int def) {
+		String value = element.getAttribute(name);
+		if (value.length() == 0) {
+			return def;
+		}
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * Get the location of the descriptor this atlas was read from
+	 *
+	 * @return The location of the descriptor
+	 */
+	public String getResourceReference() {
+		return ref;
+	}
+
+	/**
+	 * Get the filter used when scaling the pages
+	 *
+	 * @return The filter, Image.FILTER_LINEAR or Image.FILTER_NEAREST
+	 */
+	public int getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Get the number of pages in the atlas
+	 *
+	 * @return The number of pages in the atlas
+	 */
+	public int getPageCount() {
+		return pages.length;
+	}
+
+	/**
+	 * Get a page of the atlas, loading it if it hasn't been already
+	 *
+	 * @param index The index of the page
+	 * @return The image of the whole page
+	 * @throws SlickException Indicates a failure to load the page
+	 */
+	public Image getPage(int index) throws SlickException {
+		if (pages[index] == null) {
+			pages[index] = new Image(pageRefs[index], false, filter);
+		}
+		return pages[index];
+	}
+
+	/**
+	 * Get the number of sprites in the atlas
+	 *
+	 * @return The number of sprites in the atlas
+	 */
+	public int getRegionCount() {
+		return regionList.size();
+	}
+
+	/**
+	 * Get a sprite in the atlas
+	 *
+	 * @param index The index of the sprite, in the order they're listed in the descriptor
+	 * @return The sprite
+	 */
+	public AtlasRegion getRegion(int index) {
+		return (AtlasRegion) regionList.get(index);
+	}
+
+	/**
+	 * Get a sprite by name
+	 *
+	 * @param name The name of the sprite
+	 * @return The sprite or null if there's none with the name in this atlas
+	 */
+	public AtlasRegion getRegion(String name) {
+		return (AtlasRegion) regions.get(name);
+	}
+
+	/**
+	 * Get the image of a sprite by name. Sprites that were rotated or trimmed
+	 * are given as stored on the page, use AtlasRegion.draw() to draw them as
+	 * they were.
+	 *
+	 * @param name The name of the sprite
+	 * @return The image of the sprite or null if there's none with the name in this atlas
+	 * @throws SlickException Indicates a failure to load the page
+	 */
+	public Image getImage(String name) throws SlickException {
+		AtlasRegion region = getRegion(name);
+		if (region == null) {
+			return null;
+		}
+		return region.getImage();
+	}
+
+	/**
+	 * Release the pages that have been loaded. The atlas can still be used,
+	 * loading the pages again.
+	 *
+	 * @throws SlickException Indicates a failure to release the pages
+	 */
+	public void destroy() throws SlickException {
+		for (int i=0;i<pages.length;i++) {
+			if (pages[i] != null) {
+				pages[i].destroy();
+				pages[i] = null;
+			}
+		}
+		for (int i=0;i<regionList.size();i++) {
+			((AtlasRegion) regionList.get(i)).reset();
+		}
+	}
+}
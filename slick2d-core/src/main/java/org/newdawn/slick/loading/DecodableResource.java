@@ -0,0 +1,29 @@
+package org.newdawn.slick.loading;
+
+import java.io.IOException;
+
+/**
+ * A deferred resource whose loading can be split in two - decoding the data,
+ * which can be done on any thread, and uploading it to OpenGL or OpenAL, which
+ * has to be done on the game thread. load() should do both.
+ *
+ * @see ParallelLoader
+ */
+public interface DecodableResource extends DeferredResource {
+
+	/**
+	 * Decode the data for the resource. This may be called on any thread and
+	 * does nothing if the data has already been decoded.
+	 * 
+	 * @throws IOException Indicates a failure to read or decode the resource
+	 */
+	public void decode() throws IOException;
+	
+	/**
+	 * Upload the decoded data, decoding it first if that hasn't been done.
+	 * This must be called on the game thread.
+	 * 
+	 * @throws IOException Indicates a failure to load the resource
+	 */
+	public void upload() throws IOException;
+}
@@ -50,6 +50,8 @@ public class LoadingList {
 	private ArrayList deferred = new ArrayList();
 	/** The total number of elements that have been added - does not go down as elements are removed */
 	private int total;
+	/** The number of elements taken by a ParallelLoader that haven't finished loading */
+	private int inProgress;
 	
 	/**
 	 * Create a new list
@@ -75,8 +77,10 @@ public class LoadingList {
 	 */
 	public void remove(DeferredResource resource) {
 		Log.info("Early loading of deferred resource due to req: "+resource.getDescription());
-		total--;
-		deferred.remove(resource);
+		// a resource being loaded in parallel is counted when the loader finishes it
+		if (deferred.remove(resource)) {
+			total--;
+		}
 	}
 	
 	/**
@@ -94,7 +98,7 @@ public class LoadingList {
 	 * @return The number of resources that still need to be loaded
 	 */
 	public int getRemainingResources() {
-		return deferred.size();
+		return deferred.size() + inProgress;
 	}
 	
 	/**
@@ -109,4 +113,28 @@ public class LoadingList {
 		
 		return (DeferredResource) deferred.remove(0);
 	}
+	
+	/**
+	 * Take the next resource to be loaded over a number of frames. The
+	 * resource is still counted as remaining until finished() is called.
+	 * 
+	 * @return The next resource to load or null if there are no more remaining
+	 */
+	DeferredResource take() {
+		DeferredResource next = getNext();
+		if (next != null) {
+			inProgress++;
+		}
+		
+		return next;
+	}
+	
+	/**
+	 * Indicate that a resource returned from take() has finished loading
+	 * 
+	 * @param resource The resource that has been loaded
+	 */
+	void finished(DeferredResource resource) {
+		inProgress--;
+	}
 }
@@ -0,0 +1,225 @@
+package org.newdawn.slick.loading;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the resources in a LoadingList over a number of frames, decoding them
+ * on a pool of worker threads. Resources that implement DecodableResource, such
+ * as deferred textures and sounds, are decoded in parallel and only uploaded on
+ * the game thread. Other resources are loaded on the game thread as they would
+ * be one at a time.
+ *
+ * update() should be called once a frame from the game thread. Each call
+ * uploads the resources that have finished decoding until the upload budget
+ * for the frame is used up. The loading list keeps counting a resource as
+ * remaining until it's been uploaded, so its progress can be shown as before.
+ */
+public class ParallelLoader {
+	/** The default time spent uploading resources each frame in milliseconds */
+	private static final int DEFAULT_UPLOAD_BUDGET = 8;
+
+	/** The list the resources are taken from */
+	private LoadingList list;
+	/** The workers decoding the resources */
+	private ExecutorService workers;
+	/** The resources taken from the list that haven't been uploaded yet - Pending */
+	private ArrayList pending = new ArrayList();
+	/** The most resources decoded or waiting to be uploaded at once */
+	private int maxPending;
+	/** The time spent uploading resources each frame in nanoseconds */
+	private long uploadBudget = DEFAULT_UPLOAD_BUDGET * 1000000L;
+	/** The last resource uploaded */
+	private DeferredResource last;
+
+	/**
+	 * Create a new loader working through the global loading list
+	 *
+	 * @param threads The number of threads to decode resources on
+	 */
+	public ParallelLoader(int threads) {
+		this(LoadingList.get(), threads);
+	}
+
+	/**
+	 * Create a new loader
+	 *
+	 * @param list The list to load the resources from
+	 * @param threads The number of threads to decode resources on
+	 */
+	public ParallelLoader(LoadingList list, int threads) {
+		this.list = list;
+		maxPending = threads * 2;
+		workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Slick Resource Decoder");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Set the time spent uploading resources each frame. At least one
+	 * resource is uploaded each frame if there's one ready, however long it
+	 * takes.
+	 *
+	 * @param millis The time to spend uploading in milliseconds
+	 */
+	public void setUploadBudget(int millis) {
+		uploadBudget = millis * 1000000L;
+	}
+
+	/**
+	 * Get the time spent uploading resources each frame
+	 *
+	 * @return The time to spend uploading in milliseconds
+	 */
+	public int getUploadBudget() {
+		return (int) (uploadBudget / 1000000L);
+	}
+
+	/**
+	 * Get the last resource that was uploaded
+	 *
+	 * @return The last resource that was uploaded or null if none have been
+	 */
+	public DeferredResource getLastLoaded() {
+		return last;
+	}
+
+	/**
+	 * Check if all the resources have been loaded
+	 *
+	 * @return True if all the resources have been loaded
+	 */
+	public boolean isComplete() {
+		return pending.isEmpty() && (list.getRemainingResources() == 0);
+	}
+
+	/**
+	 * Start decoding resources, then upload those that have been decoded until
+	 * the budget for this frame is used up. This must be called on the game
+	 * thread.
+	 *
+	 * @return True if all the resources have been loaded
+	 * @throws IOException Indicates a failure to load a resource. The resource
+	 * is counted as loaded so loading can continue with the next update.
+	 */
+	public boolean update() throws IOException {
+		long start = System.nanoTime();
+		fill();
+
+		boolean uploaded = false;
+		for (int i=0;i<pending.size();i++) {
+			Pending next = (Pending) pending.get(i);
+			if (!next.isDecoded()) {
+				continue;
+			}
+			if (uploaded && (System.nanoTime() - start >= uploadBudget)) {
+				break;
+			}
+
+			pending.remove(i--);
+			last = next.resource;
+			uploaded = true;
+			try {
+				next.upload();
+			} finally {
+				list.finished(next.resource);
+				fill();
+			}
+		}
+
+		return isComplete();
+	}
+
+	/**
+	 * Take resources from the list to decode until enough are in progress
+	 */
+	private void fill() {
+		while (pending.size() < maxPending) {
+			DeferredResource resource = list.take();
+			if (resource == null) {
+				return;
+			}
+			pending.add(new Pending(resource));
+		}
+	}
+
+	/**
+	 * Stop the worker threads. Resources still in progress are not loaded.
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+	}
+
+	/**
+	 * A resource taken from the list that hasn't been uploaded yet
+	 */
+	private class Pending implements Callable {
+		/** The resource to load */
+		private DeferredResource resource;
+		/** The result of decoding the resource or null if it can't be decoded separately */
+		private Future decoded;
+
+		/**
+		 * Create a new pending resource, starting it decoding if possible
+		 *
+		 * @param resource The resource to load
+		 */
+		public Pending(DeferredResource resource) {
+			this.resource = resource;
+			if (resource instanceof DecodableResource) {
+				decoded = workers.submit(this);
+			}
+		}
+
+		/**
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Object call() throws Exception {
+			((DecodableResource) resource).decode();
+			return null;
+		}
+
+		/**
+		 * Check if the resource is ready to be uploaded
+		 *
+		 * @return True if the resource is ready to be uploaded
+		 */
+		public boolean isDecoded() {
+			return (decoded == null) || decoded.isDone();
+		}
+
+		/**
+		 * Upload the resource, or load it if it can't be decoded separately
+		 *
+		 * @throws IOException Indicates a failure to decode or load the resource
+		 */
+		public void upload() throws IOException {
+			if (decoded == null) {
+				resource.load();
+				return;
+			}
+
+			try {
+				decoded.get();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("Interrupted decoding: "+resource.getDescription());
+			} catch (ExecutionException e) {
+				IOException x = new IOException("Failed to decode: "+resource.getDescription());
+				x.initCause(e.getCause());
+				throw x;
+			}
+			((DecodableResource) resource).upload();
+		}
+	}
+}
@@ -1,11 +1,15 @@
 package org.newdawn.slick.openal;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
-import org.newdawn.slick.loading.DeferredResource;
+import org.lwjgl.openal.AL10;
+import org.newdawn.slick.loading.DecodableResource;
 import org.newdawn.slick.loading.LoadingList;
 import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
 
 /**
  * A sound implementation that can load the actual sound file at a later 
@@ -13,7 +17,7 @@ import org.newdawn.slick.util.Log;
  *
  * @author kevin
  */
-public class DeferredSound extends AudioImpl implements DeferredResource {
+public class DeferredSound extends AudioImpl implements DecodableResource {
 	/** Indicate a OGG to be loaded */
 	public static final int OGG = 1;
 	/** Indicate a WAV to be loaded */
@@ -31,6 +35,12 @@ public class DeferredSound extends AudioImpl implements DeferredResource {
 	private Audio target;
 	/** The input stream to load the sound this proxy wraps from (can be null) */
 	private InputStream in;
+	/** The decoded samples waiting to be uploaded, or null if they haven't been decoded */
+	private ByteBuffer data;
+	/** The OpenAL format of the decoded samples */
+	private int format;
+	/** The sample rate of the decoded samples */
+	private int rate;
 	
 	/**
 	 * Create a new sound on request to load
@@ -64,6 +74,67 @@ public class DeferredSound extends AudioImpl implements DeferredResource {
 	 * @see org.newdawn.slick.loading.DeferredResource#load()
 	 */
 	public void load() throws IOException {
+		upload();
+	}
+	
+	/**
+	 * Decode the samples of the sound. MOD/XM sounds are played from their
+	 * patterns so they're loaded entirely in upload().
+	 * 
+	 * @see org.newdawn.slick.loading.DecodableResource#decode()
+	 */
+	public synchronized void decode() throws IOException {
+		if ((target != null) || (data != null) || (type == MOD)) {
+			return;
+		}
+		
+		InputStream input = (in != null) ? in : ResourceLoader.getResourceAsStream(ref);
+		switch (type) {
+		case OGG:
+			OggData ogg = new OggDecoder().getData(input);
+			format = ogg.channels > 1 ? AL10.AL_FORMAT_STEREO16 : AL10.AL_FORMAT_MONO16;
+			rate = ogg.rate;
+			data = ogg.data;
+			break;
+		case WAV:
+			WaveData wav = WaveData.create(input);
+			if (wav == null) {
+				throw new IOException("Failed to load: "+ref);
+			}
+			format = wav.format;
+			rate = wav.samplerate;
+			data = wav.data;
+			break;
+		case AIF:
+			AiffData aif = AiffData.create(new BufferedInputStream(input));
+			if (aif == null) {
+				throw new IOException("Failed to load: "+ref);
+			}
+			format = aif.format;
+			rate = aif.samplerate;
+			data = aif.data;
+			break;
+		default:
+			Log.error("Unrecognised sound type: "+type);
+			break;
+		}
+	}
+	
+	/**
+	 * @see org.newdawn.slick.loading.DecodableResource#upload()
+	 */
+	public synchronized void upload() throws IOException {
+		if (target != null) {
+			return;
+		}
+		
+		decode();
+		if (data != null) {
+			target = SoundStore.get().getSound(ref, format, data, rate);
+			data = null;
+			return;
+		}
+		
 		boolean before = SoundStore.get().isDeferredLoading();
 		SoundStore.get().setDeferredLoading(false);
 		if (in != null) {
@@ -4,6 +4,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.security.AccessController;
@@ -854,6 +855,48 @@ public class SoundStore {
 		return new AudioImpl(this, buffer);
 	}
 	
+	/**
+	 * Get a sound from samples that have already been decoded, for instance on
+	 * another thread. Only the OpenAL buffer is created here.
+	 * 
+	 * @param ref The reference to the sound, used to share buffers between sounds from the same file
+	 * @param format The OpenAL format of the samples
+	 * @param data The decoded samples
+	 * @param rate The sample rate of the samples
+	 * @return The sound holding the samples
+	 * @throws IOException Indicates a failure to create the buffer
+	 */
+	public Audio getSound(String ref, int format, ByteBuffer data, int rate) throws IOException {
+		if (!soundWorks) {
+			return new NullAudio();
+		}
+		if (!inited) {
+			throw new RuntimeException("Can't load sounds until SoundStore is init(). Use the container init() method.");
+		}
+		
+		int buffer;
+		if (loaded.get(ref) != null) {
+			buffer = ((Integer) loaded.get(ref)).intValue();
+		} else {
+			try {
+				IntBuffer buf = BufferUtils.createIntBuffer(1);
+				AL10.alGenBuffers(buf);
+				AL10.alBufferData(buf.get(0), format, data, rate);
+				
+				buffer = buf.get(0);
+				loaded.put(ref,new Integer(buffer));
+			} catch (Exception e) {
+				Log.error(e);
+				IOException x = new IOException("Failed to load: "+ref);
+				x.initCause(e);
+				
+				throw x;
+			}
+		}
+		
+		return new AudioImpl(this, buffer);
+	}
+	
 	/**
 	 * Set the mod thats being streamed if any
 	 * 
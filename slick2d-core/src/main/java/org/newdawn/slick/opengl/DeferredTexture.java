@@ -1,9 +1,11 @@
 package org.newdawn.slick.opengl;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
-import org.newdawn.slick.loading.DeferredResource;
+import org.newdawn.slick.loading.DecodableResource;
 import org.newdawn.slick.loading.LoadingList;
 import org.newdawn.slick.opengl.renderer.SGL;
 
@@ -13,7 +15,7 @@ import org.newdawn.slick.opengl.renderer.SGL;
  *
  * @author kevin
  */
-public class DeferredTexture extends TextureImpl implements DeferredResource {
+public class DeferredTexture extends TextureImpl implements DecodableResource {
 	/** The stream to read the texture from */
 	private InputStream in;
 	/** The name of the resource to load */
@@ -26,6 +28,10 @@ public class DeferredTexture extends TextureImpl implements DeferredResource {
 	private TextureImpl target;
 	/** The color to be transparent */
 	private int[] trans;
+	/** The image data describing the decoded image, or null if it hasn't been decoded */
+	private LoadableImageData imageData;
+	/** The decoded image waiting to be uploaded */
+	private ByteBuffer textureBuffer;
 	
 	/**
 	 * Create a new deferred texture
@@ -50,10 +56,34 @@ public class DeferredTexture extends TextureImpl implements DeferredResource {
 	 * @see org.newdawn.slick.loading.DeferredResource#load()
 	 */
 	public void load() throws IOException {
-		boolean before = InternalTextureLoader.get().isDeferredLoading();
-		InternalTextureLoader.get().setDeferredLoading(false);
-		target = InternalTextureLoader.get().getTexture(in, resourceName, flipped, filter, trans);
-		InternalTextureLoader.get().setDeferredLoading(before);
+		upload();
+	}
+	
+	/**
+	 * @see org.newdawn.slick.loading.DecodableResource#decode()
+	 */
+	public synchronized void decode() throws IOException {
+		if ((target != null) || (imageData != null)) {
+			return;
+		}
+		
+		LoadableImageData data = ImageDataFactory.getImageDataFor(resourceName);
+		textureBuffer = data.loadImage(new BufferedInputStream(in), flipped, trans);
+		imageData = data;
+	}
+	
+	/**
+	 * @see org.newdawn.slick.loading.DecodableResource#upload()
+	 */
+	public synchronized void upload() throws IOException {
+		if (target != null) {
+			return;
+		}
+		
+		decode();
+		target = InternalTextureLoader.get().getTexture(imageData, textureBuffer, resourceName, flipped, filter, trans);
+		imageData = null;
+		textureBuffer = null;
 	}
 	
 	/**
@@ -71,6 +101,15 @@ public class DeferredTexture extends TextureImpl implements DeferredResource {
 		}
 	}
 	
+	/**
+	 * @see org.newdawn.slick.opengl.TextureImpl#resolve()
+	 */
+	TextureImpl resolve() {
+		checkTarget();
+		
+		return target;
+	}
+	
 	/**
 	 * @see org.newdawn.slick.opengl.TextureImpl#bind()
 	 */
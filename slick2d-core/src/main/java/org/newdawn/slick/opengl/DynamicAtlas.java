@@ -0,0 +1,590 @@
+package org.newdawn.slick.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.atlas.MaxRectsPacker;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * Packs small images created while the game runs into shared pages of
+ * texture, rather than giving each a power of two texture of its own. Images
+ * added are uploaded into the free space of a page with glTexSubImage2D and
+ * handed back as images that draw part of the page, so images from the same
+ * page can be drawn without changing texture and without the padding a
+ * texture of their own would need.
+ *
+ * Destroying an image gives its space on the page back to the atlas, and a
+ * page with no images left is released. Freeing and adding images breaks up
+ * the space on the pages over time, defragment() packs the images left
+ * again from scratch, moving them onto as few pages as it can.
+ *
+ * The images handed out by the atlas follow their place on the pages, but
+ * images cut or copied from them with getSubImage(), copy(),
+ * getScaledCopy() and the like keep the place they were cut from. Once
+ * defragment() has moved the images, or the atlas has been destroyed, those
+ * images throw a RuntimeException when drawn rather than drawing whatever
+ * has taken their place, and should be cut again.
+ *
+ * All the methods must be called on the thread that owns the GL context.
+ */
+public class DynamicAtlas {
+	/** The default width and height of a page */
+	public static final int DEFAULT_PAGE_SIZE = 512;
+
+	/** The renderer to use for all GL operations */
+	private SGL gl;
+	/** The width of each page */
+	private int pageWidth;
+	/** The height of each page */
+	private int pageHeight;
+	/** The GL filter the pages are scaled with */
+	private int filter;
+	/** The space left between images on a page */
+	private int padding = 1;
+	/** The pages of the atlas - Page */
+	private ArrayList pages = new ArrayList();
+	/** The number of images on the pages */
+	private int imageCount;
+	/** The pixels taken by the images on the pages */
+	private long usedArea;
+	/** A working buffer used to reorder image data before upload */
+	private ByteBuffer scratch;
+
+	/**
+	 * Create a new atlas with pages of the default size, scaled linearly
+	 */
+	public DynamicAtlas() {
+		this(DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE, Image.FILTER_LINEAR);
+	}
+
+	/**
+	 * Create a new atlas
+	 *
+	 * @param pageWidth The width of each page, rounded up to a power of two
+	 * @param pageHeight The height of each page, rounded up to a power of two
+	 * @param filter The filter to use when scaling images from the atlas, Image.FILTER_LINEAR or Image.FILTER_NEAREST
+	 */
+	public DynamicAtlas(int pageWidth, int pageHeight, int filter) {
+		this(Renderer.get(), pageWidth, pageHeight, filter);
+	}
+
+	/**
+	 * Create a new atlas that works through a given renderer
+	 *
+	 * @param gl The renderer to use for all GL operations
+	 * @param pageWidth The width of each page, rounded up to a power of two
+	 * @param pageHeight The height of each page, rounded up to a power of two
+	 * @param filter The filter to use when scaling images from the atlas, Image.FILTER_LINEAR or Image.FILTER_NEAREST
+	 */
+	DynamicAtlas(SGL gl, int pageWidth, int pageHeight, int filter) {
+		this.gl = gl;
+		this.pageWidth = get2Fold(pageWidth);
+		this.pageHeight = get2Fold(pageHeight);
+		this.filter = filter == Image.FILTER_LINEAR ? SGL.GL_LINEAR : SGL.GL_NEAREST;
+	}
+
+	/**
+	 * Set the space left between images on a page, which keeps them from
+	 * bleeding into each other when scaled with a linear filter. Only images
+	 * added afterwards are affected.
+	 *
+	 * @param padding The number of pixels to leave between images
+	 */
+	public void setPadding(int padding) {
+		this.padding = padding;
+	}
+
+	/**
+	 * Get the space left between images on a page
+	 *
+	 * @return The number of pixels left between images
+	 */
+	public int getPadding() {
+		return padding;
+	}
+
+	/**
+	 * Get the width of each page
+	 *
+	 * @return The width of each page
+	 */
+	public int getPageWidth() {
+		return pageWidth;
+	}
+
+	/**
+	 * Get the height of each page
+	 *
+	 * @return The height of each page
+	 */
+	public int getPageHeight() {
+		return pageHeight;
+	}
+
+	/**
+	 * Get the number of pages the atlas has
+	 *
+	 * @return The number of pages
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Get the texture of a page
+	 *
+	 * @param index The index of the page
+	 * @return The texture holding the page
+	 */
+	public Texture getPage(int index) {
+		return ((Page) pages.get(index)).texture;
+	}
+
+	/**
+	 * Get the number of images on the pages
+	 *
+	 * @return The number of images on the pages
+	 */
+	public int getImageCount() {
+		return imageCount;
+	}
+
+	/**
+	 * Get the proportion of the pages taken by images
+	 *
+	 * @return The proportion of the pages used, from 0 to 1, or 0 if there are no pages
+	 */
+	public float getOccupancy() {
+		if (pages.isEmpty()) {
+			return 0;
+		}
+		return (float) usedArea / ((long) pageWidth * pageHeight * pages.size());
+	}
+
+	/**
+	 * Check if an image of a given size can be put on a page
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return True if the image fits on a page
+	 */
+	public boolean fits(int width, int height) {
+		return (width > 0) && (height > 0) && (width <= pageWidth) && (height <= pageHeight);
+	}
+
+	/**
+	 * Add an image to the atlas
+	 *
+	 * @param data The data of the image, 24 or 32 bit
+	 * @return The image drawing the part of the page the data was put on
+	 */
+	public Image add(ImageData data) {
+		int width = data.getWidth();
+		int height = data.getHeight();
+		int components = data.getDepth() / 8;
+		int stride = data.getTexWidth() * components;
+		ByteBuffer source = data.getImageBufferData();
+		int start = source.position();
+
+		ByteBuffer rgba = getScratch(width * height * 4);
+		for (int y=0;y<height;y++) {
+			int ofs = start + (y * stride);
+			for (int x=0;x<width;x++) {
+				rgba.put(source.get(ofs));
+				rgba.put(source.get(ofs + 1));
+				rgba.put(source.get(ofs + 2));
+				rgba.put(components == 4 ? source.get(ofs + 3) : (byte) 255);
+				ofs += components;
+			}
+		}
+		rgba.flip();
+
+		return add(width, height, rgba);
+	}
+
+	/**
+	 * Add an image to the atlas
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param rgba The pixels of the image, 4 bytes a pixel in RGBA order, row by row
+	 * with no gap between rows
+	 * @return The image drawing the part of the page the pixels were put on
+	 */
+	public Image add(int width, int height, ByteBuffer rgba) {
+		if (!fits(width, height)) {
+			throw new RuntimeException("Image too big for the atlas pages: "+width+"x"+height);
+		}
+
+		int[] place = new int[3];
+		Page page = null;
+		for (int i=0;i<pages.size();i++) {
+			Page current = (Page) pages.get(i);
+			if (current.packer.insert(width + padding, height + padding, place)) {
+				page = current;
+				break;
+			}
+		}
+		if (page == null) {
+			page = createPage();
+			page.packer.insert(width + padding, height + padding, place);
+		}
+
+		bind(page);
+		gl.glTexSubImage2D(SGL.GL_TEXTURE_2D, 0, place[0], place[1], width, height, SGL.GL_RGBA, SGL.GL_UNSIGNED_BYTE, rgba);
+		TextureImpl.unbind();
+
+		DynamicAtlasImage image = new DynamicAtlasImage(this, width, height, padding);
+		image.place(page.texture, place[0], place[1]);
+		page.images.add(image);
+		imageCount++;
+		usedArea += (long) width * height;
+
+		return image;
+	}
+
+	/**
+	 * Give the space taken by an image back to its page, releasing the page
+	 * if it has no images left on it
+	 *
+	 * @param image The image being destroyed
+	 */
+	void remove(DynamicAtlasImage image) {
+		for (int i=0;i<pages.size();i++) {
+			Page page = (Page) pages.get(i);
+			if (page.images.remove(image)) {
+				imageCount--;
+				usedArea -= (long) image.getWidth() * image.getHeight();
+				if (page.images.isEmpty()) {
+					release(page);
+					pages.remove(i);
+				} else {
+					page.packer.free(image.getPageX(), image.getPageY(),
+							image.getWidth() + image.getPadding(), image.getHeight() + image.getPadding());
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Pack the images on the pages again from scratch, largest first, moving
+	 * them onto as few pages as possible and releasing the pages left empty.
+	 * The pages are read back from the card to move the images, so this
+	 * needs memory for all the pages at once and shouldn't be done every
+	 * frame.
+	 *
+	 * The images handed out by the atlas are updated to draw from their new
+	 * place. Images cut or copied from them can't be drawn afterwards and
+	 * should be cut again.
+	 *
+	 * @return The number of pages released
+	 */
+	public int defragment() {
+		int oldCount = pages.size();
+		if (oldCount == 0) {
+			return 0;
+		}
+
+		// read the pages back so images can be copied from them
+		HashMap sources = new HashMap();
+		ArrayList images = new ArrayList();
+		for (int i=0;i<oldCount;i++) {
+			Page page = (Page) pages.get(i);
+			ByteBuffer contents = createBuffer(pageWidth * pageHeight * 4);
+			bind(page);
+			gl.glGetTexImage(SGL.GL_TEXTURE_2D, 0, SGL.GL_RGBA, SGL.GL_UNSIGNED_BYTE, contents);
+			for (int j=0;j<page.images.size();j++) {
+				Object image = page.images.get(j);
+				sources.put(image, contents);
+				images.add(image);
+			}
+			page.images.clear();
+			page.packer = new MaxRectsPacker(pageWidth + padding, pageHeight + padding, false);
+
+			// images cut from the old places keep the old view and fail when drawn
+			page.texture.stale = true;
+			page.texture = createTexture(page.texture.getTextureID());
+		}
+		TextureImpl.unbind();
+
+		Collections.sort(images, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				DynamicAtlasImage a = (DynamicAtlasImage) o1;
+				DynamicAtlasImage b = (DynamicAtlasImage) o2;
+
+				int asize = Math.max(a.getWidth(), a.getHeight());
+				int bsize = Math.max(b.getWidth(), b.getHeight());
+				if (asize != bsize) {
+					return bsize - asize;
+				}
+				return (b.getWidth() * b.getHeight()) - (a.getWidth() * a.getHeight());
+			}
+		});
+
+		// the pages keep their textures, new pages are only made in the rare
+		// case the images don't pack as tightly as they did before
+		HashMap targets = new HashMap();
+		int[] place = new int[3];
+		for (int i=0;i<images.size();i++) {
+			DynamicAtlasImage image = (DynamicAtlasImage) images.get(i);
+			int width = image.getWidth() + image.getPadding();
+			int height = image.getHeight() + image.getPadding();
+			Page page = null;
+			for (int p=0;p<pages.size();p++) {
+				Page current = (Page) pages.get(p);
+				if (current.packer.insert(width, height, place)) {
+					page = current;
+					break;
+				}
+			}
+			if (page == null) {
+				page = createPage();
+				page.packer.insert(width, height, place);
+			}
+			page.images.add(image);
+
+			ByteBuffer target = (ByteBuffer) targets.get(page);
+			if (target == null) {
+				target = createBuffer(pageWidth * pageHeight * 4);
+				targets.put(page, target);
+			}
+			copy((ByteBuffer) sources.get(image), image.getPageX(), image.getPageY(),
+				 target, place[0], place[1], image.getWidth(), image.getHeight());
+			image.place(page.texture, place[0], place[1]);
+		}
+
+		for (int i=0;i<pages.size();i++) {
+			Page page = (Page) pages.get(i);
+			if (page.images.isEmpty()) {
+				release(page);
+				pages.remove(i);
+				i--;
+				continue;
+			}
+
+			bind(page);
+			gl.glTexSubImage2D(SGL.GL_TEXTURE_2D, 0, 0, 0, pageWidth, pageHeight, SGL.GL_RGBA, SGL.GL_UNSIGNED_BYTE,
+					(ByteBuffer) targets.get(page));
+		}
+		TextureImpl.unbind();
+
+		return Math.max(0, oldCount - pages.size());
+	}
+
+	/**
+	 * Release all the pages of the atlas. Images from the atlas, and any cut
+	 * from them, throw a RuntimeException if drawn afterwards.
+	 */
+	public void destroy() {
+		for (int i=0;i<pages.size();i++) {
+			release((Page) pages.get(i));
+		}
+		pages.clear();
+		imageCount = 0;
+		usedArea = 0;
+	}
+
+	/**
+	 * Create a new, empty, page and add it to the atlas
+	 *
+	 * @return The page created
+	 */
+	private Page createPage() {
+		IntBuffer ids = createBuffer(4).asIntBuffer();
+		gl.glGenTextures(ids);
+		int id = ids.get(0);
+
+		gl.glBindTexture(SGL.GL_TEXTURE_2D, id);
+		gl.glTexParameteri(SGL.GL_TEXTURE_2D, SGL.GL_TEXTURE_MIN_FILTER, filter);
+		gl.glTexParameteri(SGL.GL_TEXTURE_2D, SGL.GL_TEXTURE_MAG_FILTER, filter);
+		// a new direct buffer is all zeroes, so the page starts transparent
+		gl.glTexImage2D(SGL.GL_TEXTURE_2D, 0, SGL.GL_RGBA8, pageWidth, pageHeight, 0, SGL.GL_RGBA,
+				SGL.GL_UNSIGNED_BYTE, createBuffer(pageWidth * pageHeight * 4));
+
+		PageTexture texture = createTexture(id);
+		TextureImpl.unbind();
+
+		Page page = new Page(texture, new MaxRectsPacker(pageWidth + padding, pageHeight + padding, false));
+		pages.add(page);
+		return page;
+	}
+
+	/**
+	 * Create the texture images use to draw from a page
+	 *
+	 * @param id The GL texture ID of the page
+	 * @return The texture created
+	 */
+	private PageTexture createTexture(int id) {
+		PageTexture texture = new PageTexture(id);
+		texture.setTextureWidth(pageWidth);
+		texture.setTextureHeight(pageHeight);
+		texture.setWidth(pageWidth);
+		texture.setHeight(pageHeight);
+		texture.setAlpha(true);
+		return texture;
+	}
+
+	/**
+	 * Release the texture of a page
+	 *
+	 * @param page The page to release
+	 */
+	private void release(Page page) {
+		IntBuffer ids = createBuffer(4).asIntBuffer();
+		ids.put(page.texture.getTextureID());
+		ids.flip();
+		gl.glDeleteTextures(ids);
+		page.texture.stale = true;
+
+		if (TextureImpl.getLastBind() == page.texture) {
+			TextureImpl.unbind();
+		}
+	}
+
+	/**
+	 * Bind the texture of a page to work on it. The texture bound through
+	 * TextureImpl is forgotten, so it's bound again before it's next used.
+	 *
+	 * @param page The page to bind
+	 */
+	private void bind(Page page) {
+		TextureImpl.unbind();
+		gl.glBindTexture(SGL.GL_TEXTURE_2D, page.texture.getTextureID());
+	}
+
+	/**
+	 * Copy the pixels of an image from one page's contents to another's
+	 *
+	 * @param source The contents of the page the image is on
+	 * @param sx The x position of the image on the source page
+	 * @param sy The y position of the image on the source page
+	 * @param target The contents of the page the image is moving to
+	 * @param tx The x position of the image on the target page
+	 * @param ty The y position of the image on the target page
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 */
+	private void copy(ByteBuffer source, int sx, int sy, ByteBuffer target, int tx, int ty, int width, int height) {
+		byte[] row = new byte[width * 4];
+		for (int y=0;y<height;y++) {
+			source.position(((sy + y) * pageWidth + sx) * 4);
+			source.get(row);
+			target.position(((ty + y) * pageWidth + tx) * 4);
+			target.put(row);
+		}
+		source.clear();
+		target.clear();
+	}
+
+	/**
+	 * Get the working buffer, big enough for a given number of bytes
+	 *
+	 * @param size The number of bytes needed
+	 * @return The working buffer, cleared
+	 */
+	private ByteBuffer getScratch(int size) {
+		if ((scratch == null) || (scratch.capacity() < size)) {
+			scratch = createBuffer(size);
+		}
+		scratch.clear();
+		return scratch;
+	}
+
+	/**
+	 * Create a direct buffer in native order, as GL needs
+	 *
+	 * @param size The number of bytes in the buffer
+	 * @return The buffer created, all zeroes
+	 */
+	private static ByteBuffer createBuffer(int size) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+		buffer.order(ByteOrder.nativeOrder());
+		return buffer;
+	}
+
+	/**
+	 * Get the closest greater power of 2 to the fold number
+	 *
+	 * @param fold The target number
+	 * @return The power of 2
+	 */
+	private static int get2Fold(int fold) {
+		int ret = 2;
+		while (ret < fold) {
+			ret *= 2;
+		}
+		return ret;
+	}
+
+	/**
+	 * The texture images draw a page through. A page gets a new one each
+	 * time its images are moved, so images still drawing from the old places
+	 * can be caught.
+	 */
+	private static class PageTexture extends TextureImpl {
+		/** True if the images on the page have moved or the page was released */
+		private boolean stale;
+
+		/**
+		 * Create a new texture for a page
+		 *
+		 * @param id The GL texture ID of the page
+		 */
+		public PageTexture(int id) {
+			super("dynamic atlas page", SGL.GL_TEXTURE_2D, id);
+		}
+
+		/**
+		 * @see org.newdawn.slick.opengl.TextureImpl#bind()
+		 */
+		public void bind() {
+			if (stale) {
+				throw new RuntimeException("Image cut from a dynamic atlas page that has since been defragmented or"
+						+ " destroyed, cut it again from the atlas image");
+			}
+			super.bind();
+		}
+
+		/**
+		 * Pages are shared between images and released by the atlas, so
+		 * destroying an image cut from a page leaves the page alone.
+		 *
+		 * @see org.newdawn.slick.opengl.TextureImpl#release()
+		 */
+		public void release() {
+		}
+	}
+
+	/**
+	 * A page of the atlas
+	 */
+	private static class Page {
+		/** The texture holding the page */
+		private PageTexture texture;
+		/** The packer placing images on the page */
+		private MaxRectsPacker packer;
+		/** The images on the page - DynamicAtlasImage */
+		private ArrayList images = new ArrayList();
+
+		/**
+		 * Create a new page
+		 *
+		 * @param texture The texture holding the page
+		 * @param packer The packer placing images on the page
+		 */
+		public Page(PageTexture texture, MaxRectsPacker packer) {
+			this.texture = texture;
+			this.packer = packer;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.newdawn.slick.opengl;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * An image packed into a page of a DynamicAtlas. The image draws the part of
+ * the page it was put on, and follows it if the atlas is defragmented.
+ * Images cut or copied from it don't, and throw a RuntimeException when
+ * drawn once the atlas has been defragmented or destroyed. Destroying the
+ * image gives its space back to the atlas rather than releasing the page,
+ * which other images share.
+ */
+public class DynamicAtlasImage extends Image {
+	/** The atlas the image is packed in */
+	private DynamicAtlas atlas;
+	/** The x position of the image on its page */
+	private int pageX;
+	/** The y position of the image on its page */
+	private int pageY;
+	/** The space left after the image on its page */
+	private int padding;
+
+	/**
+	 * Create a new image in an atlas, yet to be placed on a page
+	 *
+	 * @param atlas The atlas the image is packed in
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param padding The space left after the image on its page
+	 */
+	DynamicAtlasImage(DynamicAtlas atlas, int width, int height, int padding) {
+		this.atlas = atlas;
+		this.width = width;
+		this.height = height;
+		this.padding = padding;
+
+		ref = "dynamic atlas image";
+		inited = true;
+		centerX = width / 2;
+		centerY = height / 2;
+	}
+
+	/**
+	 * Put the image at a position on a page
+	 *
+	 * @param page The texture of the page
+	 * @param x The x position of the image on the page
+	 * @param y The y position of the image on the page
+	 */
+	void place(Texture page, int x, int y) {
+		texture = page;
+		pageX = x;
+		pageY = y;
+
+		textureOffsetX = x / (float) page.getTextureWidth();
+		textureOffsetY = y / (float) page.getTextureHeight();
+		textureWidth = width / (float) page.getTextureWidth();
+		textureHeight = height / (float) page.getTextureHeight();
+		pixelData = null;
+	}
+
+	/**
+	 * Get the atlas the image is packed in
+	 *
+	 * @return The atlas the image is packed in
+	 */
+	public DynamicAtlas getAtlas() {
+		return atlas;
+	}
+
+	/**
+	 * Get the x position of the image on its page
+	 *
+	 * @return The x position of the image on its page
+	 */
+	public int getPageX() {
+		return pageX;
+	}
+
+	/**
+	 * Get the y position of the image on its page
+	 *
+	 * @return The y position of the image on its page
+	 */
+	public int getPageY() {
+		return pageY;
+	}
+
+	/**
+	 * Get the space left after the image on its page
+	 *
+	 * @return The number of pixels left to the right of and below the image
+	 */
+	int getPadding() {
+		return padding;
+	}
+
+	/**
+	 * @see org.newdawn.slick.Image#destroy()
+	 */
+	public void destroy() throws SlickException {
+		if (isDestroyed()) {
+			return;
+		}
+
+		destroyed = true;
+		atlas.remove(this);
+	}
+}
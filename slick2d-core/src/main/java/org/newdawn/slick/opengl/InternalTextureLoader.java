@@ -5,12 +5,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
 
 import org.lwjgl.BufferUtils;
 import org.newdawn.slick.opengl.renderer.Renderer;
@@ -40,10 +38,8 @@ public class InternalTextureLoader {
 		return loader;
 	}
 	
-    /** The table of textures that have been loaded in this loader */
-    private HashMap texturesLinear = new HashMap();
-    /** The table of textures that have been loaded in this loader */
-    private HashMap texturesNearest = new HashMap();
+    /** The textures that have been loaded in this loader */
+    private TextureCache cache = new TextureCache();
     /** The destination pixel format */
     private int dstPixelFormat = SGL.GL_RGBA8;
     /** True if we're using deferred loading */
@@ -67,6 +63,16 @@ public class InternalTextureLoader {
     	this.holdTextureData = holdTextureData;
     }
     
+    /**
+     * Get the cache of textures loaded, through which the memory the textures
+     * may take can be limited and textures can be pinned
+     * 
+     * @return The cache of textures loaded
+     */
+    public TextureCache getTextureCache() {
+    	return cache;
+    }
+    
     /**
      * True if we should only record the request to load in the intention
      * of loading the texture later
@@ -92,16 +98,14 @@ public class InternalTextureLoader {
      * @param name The name of the image to be cleared
      */
     public void clear(String name) {
-    	texturesLinear.remove(name);
-    	texturesNearest.remove(name);
+    	cache.remove(name);
     }
     
     /**
      * Clear out the cached textures
      */
     public void clear() {
-    	texturesLinear.clear();
-    	texturesNearest.clear();
+    	cache.clear();
     }
     
     /**
@@ -216,32 +220,50 @@ public class InternalTextureLoader {
 	    	return new DeferredTexture(in, resourceName, flipped, filter, transparent);
 	    }
     	
-    	HashMap hash = texturesLinear;
-        if (filter == SGL.GL_NEAREST) {
-        	hash = texturesNearest;
-        }
-        
+    	return getTexture(in, null, null, resourceName, flipped, filter, transparent);
+    }
+    
+    /**
+     * Get a texture from image data that's already been decoded, for instance on 
+     * another thread. Only the texture itself is created here. 
+     * 
+     * @param imageData The image data describing the decoded image
+     * @param textureBuffer The decoded image as returned by imageData.loadImage()
+     * @param resourceName The name to give this image in the internal cache
+     * @param flipped True if the image was flipped on the y-axis while decoding
+     * @param filter The filter to use when scaling the texture
+	 * @param transparent The colour interpreted as transparent while decoding or null if none
+     * @return The texture loaded
+     * @throws IOException Indicates a failure to create the texture
+     */
+    public TextureImpl getTexture(LoadableImageData imageData, ByteBuffer textureBuffer, String resourceName, boolean flipped, int filter, int[] transparent) throws IOException {
+    	return getTexture(null, imageData, textureBuffer, resourceName, flipped, filter, transparent);
+    }
+    
+    /**
+     * Get a texture from the cache or create it from a stream or decoded image data
+     * 
+     * @param in The stream from which we can load the image or null if it's been decoded
+     * @param imageData The image data describing the decoded image or null if it's to be read from the stream
+     * @param textureBuffer The decoded image or null if it's to be read from the stream
+     * @param resourceName The name to give this image in the internal cache
+     * @param flipped True if we should flip the image on the y-axis while loading
+     * @param filter The filter to use when scaling the texture
+	 * @param transparent The colour to interpret as transparent or null if none
+     * @return The texture loaded
+     * @throws IOException Indicates a failure to load the image
+     */
+    private TextureImpl getTexture(InputStream in, LoadableImageData imageData, ByteBuffer textureBuffer, 
+    		String resourceName, boolean flipped, int filter, int[] transparent) throws IOException {
         String resName = resourceName;
         if (transparent != null) {
         	resName += ":"+transparent[0]+":"+transparent[1]+":"+transparent[2];
         }
-        resName += ":"+flipped;
+        resName += ":"+flipped+":"+filter;
         
-        if (holdTextureData) {
-        	TextureImpl tex = (TextureImpl)  hash.get(resName);
-        	if (tex != null) {
-        		return tex;
-        	}
-        } else {
-	    	SoftReference ref = (SoftReference) hash.get(resName);
-	    	if (ref != null) {
-		    	TextureImpl tex = (TextureImpl) ref.get();
-		        if (tex != null) {
-		        	return tex;
-		        } else {
-		        	hash.remove(resName);
-		        }
-	    	}
+        TextureImpl cached = cache.get(resName);
+        if (cached != null) {
+        	return cached;
         }
         
         // horrible test until I can find something more suitable
@@ -251,46 +273,42 @@ public class InternalTextureLoader {
         	throw new RuntimeException("Image based resources must be loaded as part of init() or the game loop. They cannot be loaded before initialisation.");
         }
         
-        TextureImpl tex = getTexture(in, resourceName,
+        if (imageData == null) {
+        	imageData = ImageDataFactory.getImageDataFor(resourceName);
+        	textureBuffer = imageData.loadImage(new BufferedInputStream(in), flipped, transparent);
+        }
+        TextureImpl tex = getTexture(imageData, textureBuffer, resourceName,
                          SGL.GL_TEXTURE_2D, 
                          filter, 
-                         filter, flipped, transparent);
+                         filter);
         
         tex.setCacheName(resName);
-        if (holdTextureData) {
-        	hash.put(resName, tex);
-        } else {
-        	hash.put(resName, new SoftReference(tex));
-        }
+        tex.setSource(flipped, filter, transparent);
+        cache.put(resName, tex, TextureCache.getSize(tex, dstPixelFormat));
         
         return tex;
     }
 
     /**
-     * Get a texture from a image file
+     * Create a texture from decoded image data
      * 
-     * @param in The stream from which we can load the image
+     * @param imageData The image data describing the decoded image
+     * @param textureBuffer The decoded image
      * @param resourceName The name to give this image in the internal cache
-     * @param flipped True if we should flip the image on the y-axis while loading
      * @param target The texture target we're loading this texture into
      * @param minFilter The scaling down filter
      * @param magFilter The scaling up filter
-	 * @param transparent The colour to interpret as transparent or null if none
      * @return The texture loaded
      * @throws IOException Indicates a failure to load the image
      */
-    private TextureImpl getTexture(InputStream in, 
+    private TextureImpl getTexture(LoadableImageData imageData, 
+    						  ByteBuffer textureBuffer,
     						  String resourceName, 
                               int target, 
                               int magFilter, 
-                              int minFilter, boolean flipped, int[] transparent) throws IOException 
+                              int minFilter) throws IOException 
     { 
         // create the texture ID for this texture 
-        ByteBuffer textureBuffer;
-        
-        LoadableImageData imageData = ImageDataFactory.getImageDataFor(resourceName);
-    	textureBuffer = imageData.loadImage(new BufferedInputStream(in), flipped, transparent);
-
         int textureID = createTextureID(); 
         TextureImpl texture = new TextureImpl(resourceName, target, textureID); 
         // bind this texture 
@@ -484,13 +502,38 @@ public class InternalTextureLoader {
      * Reload all the textures loaded in this loader
      */
     public void reload() {
-    	Iterator texs = texturesLinear.values().iterator();
-    	while (texs.hasNext()) {
-    		((TextureImpl) texs.next()).reload();
+    	ArrayList texs = cache.getTextures();
+    	for (int i=0;i<texs.size();i++) {
+    		TextureImpl tex = (TextureImpl) texs.get(i);
+    		if (!tex.isEvicted()) {
+    			tex.reload();
+    		}
     	}
-    	texs = texturesNearest.values().iterator();
-    	while (texs.hasNext()) {
-    		((TextureImpl) texs.next()).reload();
+    }
+    
+    /**
+     * Reload a texture that's been evicted from the cache from the resource it
+     * was originally loaded from
+     * 
+     * @param texture The texture being reloaded
+     * @param flipped True if the texture was flipped on the y axis while loading
+     * @param filter The filter the texture was loaded with
+     * @param transparent The colour interpreted as transparent or null if none
+     * @return The ID of the newly created texture
+     * @throws IOException Indicates a failure to read the resource
+     */
+    int reload(TextureImpl texture, boolean flipped, int filter, int[] transparent) throws IOException {
+    	String ref = texture.getTextureRef();
+    	InputStream in = ResourceLoader.getResourceAsStream(ref);
+    	try {
+	    	LoadableImageData imageData = ImageDataFactory.getImageDataFor(ref);
+	    	ByteBuffer textureBuffer = imageData.loadImage(new BufferedInputStream(in), flipped, transparent);
+	    	
+	    	int srcPixelFormat = texture.hasAlpha() ? SGL.GL_RGBA : SGL.GL_RGB;
+	    	int componentCount = texture.hasAlpha() ? 4 : 3;
+	    	return reload(texture, srcPixelFormat, componentCount, filter, filter, textureBuffer);
+    	} finally {
+    		in.close();
     	}
     }
 
@@ -33,7 +33,10 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.io.InterruptedIOException;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
@@ -84,6 +87,17 @@ public class PNGDecoder {
     private static final byte COLOR_INDEXED = 3;
     private static final byte COLOR_GREYALPHA = 4;
     private static final byte COLOR_TRUEALPHA = 6;  
+
+    /** The number of bytes of filtered rows inflated at a time */
+    private static final int STRIP_SIZE = 64 * 1024;
+    /** The number of strips that can be inflated ahead of the one being unfiltered when pipelined */
+    private static final int PIPELINE_STRIPS = 4;
+    /** The number of bytes of compressed data read from an IDAT chunk at a time */
+    private static final int INPUT_SIZE = 32 * 1024;
+    /** The inflater for each thread, reset after each image - Inflater */
+    private static final ThreadLocal INFLATERS = new ThreadLocal();
+    /** The working buffers for each thread - Scratch */
+    private static final ThreadLocal SCRATCH = new ThreadLocal();
     
     private final InputStream input;
     private final CRC32 crc;
@@ -101,6 +115,8 @@ public class PNGDecoder {
     private byte[] palette;
     private byte[] paletteA;
     private byte[] transPixel;
+    /** The buffer compressed data is read into while decoding */
+    private byte[] inflateInput;
     
     public PNGDecoder(InputStream input) throws IOException {
         this.input = input;
@@ -195,355 +211,561 @@ public class PNGDecoder {
         }
     }
     
+    /**
+     * Decodes the image into a buffer, a row at a time at the given stride.
+     *
+     * @param buffer the buffer to decode into, starting at its position
+     * @param stride the distance in bytes from the start of one row to the next
+     * @param fmt the format to convert the pixels to
+     * @throws IOException if the image data is broken
+     */
     public void decode(ByteBuffer buffer, int stride, Format fmt) throws IOException {
-        final int offset = buffer.position();
+        decode(buffer, stride, fmt, null);
+    }
+
+    /**
+     * Decodes the image into a buffer, a row at a time at the given stride.
+     * The rows are inflated in strips into a working buffer, then unfiltered
+     * in place and copied into the buffer with a single put each.
+     *
+     * If an executor is given the strips are unfiltered and copied on it
+     * while this thread carries on inflating the strips after them, so the
+     * two halves of the work overlap. The rows of a PNG can't be decoded
+     * independently - each is filtered against the one before and they're
+     * all compressed in one stream - so this is as far as one image can be
+     * split.
+     *
+     * @param buffer the buffer to decode into, starting at its position
+     * @param stride the distance in bytes from the start of one row to the next
+     * @param fmt the format to convert the pixels to
+     * @param executor the executor to unfilter rows on, or null to decode on this thread alone
+     * @throws IOException if the image data is broken
+     */
+    public void decode(ByteBuffer buffer, int stride, Format fmt, Executor executor) throws IOException {
+        checkFormat(fmt);
+
         final int lineSize = ((width * bitdepth + 7) / 8) * bytesPerPixel;
-        byte[] curLine = new byte[lineSize+1];
-        byte[] prevLine = new byte[lineSize+1];
-        byte[] palLine = (bitdepth < 8) ? new byte[width+1] : null;
-        
-        final Inflater inflater = new Inflater();
+        final int rowBytes = lineSize + 1;
+        final int stripRows = Math.max(1, Math.min(height, STRIP_SIZE / rowBytes));
+        final int strips = (height + stripRows - 1) / stripRows;
+        final boolean pipelined = (executor != null) && (strips > 1);
+
+        Scratch scratch = getScratch(rowBytes, stripRows * rowBytes * (pipelined ? PIPELINE_STRIPS : 1), width * 4);
+        RowWriter writer = new RowWriter(buffer, stride, fmt, rowBytes, scratch);
+        Inflater inflater = getInflater();
+        inflateInput = scratch.input;
         try {
-            for(int y=0 ; y<height ; y++) {
-                readChunkUnzip(inflater, curLine, 0, curLine.length);
-                unfilter(curLine, prevLine);
+            if (pipelined && decodePipelined(inflater, writer, scratch.ring, stripRows, strips, executor)) {
+                return;
+            }
 
-                buffer.position(offset + y*stride);
+            for (int s=0 ; s<strips ; s++) {
+                int first = s * stripRows;
+                int count = Math.min(stripRows, height - first);
+                readChunkUnzip(inflater, scratch.ring, 0, count * rowBytes);
+                writer.write(scratch.ring, 0, first, count);
+            }
+        } finally {
+            inflater.reset();
+            inflateInput = null;
+        }
+    }
 
-                switch (colorType) {
-                case COLOR_TRUECOLOR:
-                    if (fmt == ABGR) {
-                    	copyRGBtoABGR(buffer, curLine); 
-                    }
-                    else if (fmt == RGBA) {
-                    	copyRGBtoRGBA(buffer, curLine); 
-                    }
-                    else if (fmt == BGRA) {
-                    	copyRGBtoBGRA(buffer, curLine); 
-                    }
-                    else if (fmt == RGB) {
-                    	copy(buffer, curLine); 
-                    } else {
-                    	throw new UnsupportedOperationException("Unsupported format for this image");
-                    }
-                    break;
-                case COLOR_TRUEALPHA:
-                    if (fmt == ABGR) {
-                    	copyRGBAtoABGR(buffer, curLine);
-                    } else if (fmt == RGBA) { 
-                    	copy(buffer, curLine);
-                    } else if (fmt == BGRA) {
-                    	copyRGBAtoBGRA(buffer, curLine); break;
-                    } else if (fmt == RGB) {
-                    	copyRGBAtoRGB(buffer, curLine); break;
-                    } else {
-                        throw new UnsupportedOperationException("Unsupported format for this image");
-                    }
-                    break;
-                case COLOR_GREYSCALE:
-                    if ((fmt == LUMINANCE) || (fmt == ALPHA)) {
-                    	copy(buffer, curLine);
-                    } else {
-                    	throw new UnsupportedOperationException("Unsupported format for this image");
-                    }
-                    break;
-                case COLOR_GREYALPHA:
-                    if (fmt == LUMINANCE_ALPHA) {
-                    	copy(buffer, curLine);
-                    } else {
-                    	throw new UnsupportedOperationException("Unsupported format for this image");
-                    }
-                    break;
-                case COLOR_INDEXED:
-                    switch(bitdepth) {
-                        case 8: palLine = curLine; break;
-                        case 4: expand4(curLine, palLine); break;
-                        case 2: expand2(curLine, palLine); break;
-                        case 1: expand1(curLine, palLine); break;
-                        default: throw new UnsupportedOperationException("Unsupported bitdepth for this image");
+    /**
+     * Inflates strips of rows into a ring of slots on this thread while they
+     * are unfiltered and copied on another.
+     *
+     * @param inflater the inflater reading the image data
+     * @param writer the writer unfiltering and copying the rows
+     * @param ring the slots the strips are inflated into
+     * @param stripRows the number of rows in a strip
+     * @param strips the number of strips in the image
+     * @param executor the executor to unfilter rows on
+     * @return false if the executor wouldn't take the work and nothing was decoded
+     * @throws IOException if the image data is broken
+     */
+    private boolean decodePipelined(Inflater inflater, final RowWriter writer, final byte[] ring,
+            final int stripRows, final int strips, Executor executor) throws IOException {
+        final int rowBytes = writer.rowBytes;
+        final int slotBytes = stripRows * rowBytes;
+        final Pipeline pipe = new Pipeline();
+
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    if (!pipe.start()) {
+                        return;
                     }
-                    if (fmt == ABGR) {
-                    	copyPALtoABGR(buffer, palLine);
-                    } else if (fmt == RGBA) {
-                    	copyPALtoRGBA(buffer, palLine);
-                    } else if (fmt == BGRA) {
-                    	copyPALtoBGRA(buffer, palLine);
-                    } else {
-                    	throw new UnsupportedOperationException("Unsupported format for this image");
+                    try {
+                        for (int s=0 ; s<strips ; s++) {
+                            if (!pipe.awaitInflated(s)) {
+                                return;
+                            }
+                            int first = s * stripRows;
+                            writer.write(ring, (s % PIPELINE_STRIPS) * slotBytes, first, Math.min(stripRows, height - first));
+                            pipe.setWritten(s + 1);
+                        }
+                    } catch (Throwable e) {
+                        pipe.fail(e);
+                    } finally {
+                        pipe.finish();
                     }
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Not yet implemented");
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
 
-                byte[] tmp = curLine;
-                curLine = prevLine;
-                prevLine = tmp;
+        boolean done = false;
+        try {
+            for (int s=0 ; s<strips ; s++) {
+                pipe.awaitSlot(s - PIPELINE_STRIPS + 1);
+                int first = s * stripRows;
+                int count = Math.min(stripRows, height - first);
+                readChunkUnzip(inflater, ring, (s % PIPELINE_STRIPS) * slotBytes, count * rowBytes);
+                pipe.setInflated(s + 1);
             }
+            pipe.awaitSlot(strips);
+            done = true;
         } finally {
-            inflater.end();
-        }
-    }
-    
-    private void copy(ByteBuffer buffer, byte[] curLine) {
-        buffer.put(curLine, 1, curLine.length-1);
-    }
-
-    private void copyRGBtoABGR(ByteBuffer buffer, byte[] curLine) {
-        if(transPixel != null) {
-            byte tr = transPixel[1];
-            byte tg = transPixel[3];
-            byte tb = transPixel[5];
-            for(int i=1,n=curLine.length ; i<n ; i+=3) {
-                byte r = curLine[i];
-                byte g = curLine[i+1];
-                byte b = curLine[i+2];
-                byte a = (byte)0xFF;
-                if(r==tr && g==tg && b==tb) {
-                    a = 0;
-                }
-                buffer.put(a).put(b).put(g).put(r);
-            }
-        } else {
-            for(int i=1,n=curLine.length ; i<n ; i+=3) {
-                buffer.put((byte)0xFF).put(curLine[i+2]).put(curLine[i+1]).put(curLine[i]);
+            if (!done) {
+                pipe.abort();
             }
         }
+        return true;
     }
 
-    private void copyRGBtoRGBA(ByteBuffer buffer, byte[] curLine) {
-        if(transPixel != null) {
-            byte tr = transPixel[1];
-            byte tg = transPixel[3];
-            byte tb = transPixel[5];
-            for(int i=1,n=curLine.length ; i<n ; i+=3) {
-                byte r = curLine[i];
-                byte g = curLine[i+1];
-                byte b = curLine[i+2];
-                byte a = (byte)0xFF;
-                if(r==tr && g==tg && b==tb) {
-                    a = 0;
-                }
-                buffer.put(r).put(g).put(b).put(a);
+    private void checkFormat(Format fmt) {
+        switch (colorType) {
+        case COLOR_TRUECOLOR:
+        case COLOR_TRUEALPHA:
+            if ((fmt != ABGR) && (fmt != RGBA) && (fmt != BGRA) && (fmt != RGB)) {
+                throw new UnsupportedOperationException("Unsupported format for this image");
             }
-        } else {
-            for(int i=1,n=curLine.length ; i<n ; i+=3) {
-                buffer.put(curLine[i]).put(curLine[i+1]).put(curLine[i+2]).put((byte)0xFF);
+            break;
+        case COLOR_GREYSCALE:
+            if ((fmt != LUMINANCE) && (fmt != ALPHA)) {
+                throw new UnsupportedOperationException("Unsupported format for this image");
             }
-        }
-    }
-
-    private void copyRGBtoBGRA(ByteBuffer buffer, byte[] curLine) {
-        if(transPixel != null) {
-            byte tr = transPixel[1];
-            byte tg = transPixel[3];
-            byte tb = transPixel[5];
-            for(int i=1,n=curLine.length ; i<n ; i+=3) {
-                byte r = curLine[i];
-                byte g = curLine[i+1];
-                byte b = curLine[i+2];
-                byte a = (byte)0xFF;
-                if(r==tr && g==tg && b==tb) {
-                    a = 0;
-                }
-                buffer.put(b).put(g).put(r).put(a);
+            break;
+        case COLOR_GREYALPHA:
+            if (fmt != LUMINANCE_ALPHA) {
+                throw new UnsupportedOperationException("Unsupported format for this image");
             }
-        } else {
-            for(int i=1,n=curLine.length ; i<n ; i+=3) {
-                buffer.put(curLine[i+2]).put(curLine[i+1]).put(curLine[i]).put((byte)0xFF);
+            break;
+        case COLOR_INDEXED:
+            if ((fmt != ABGR) && (fmt != RGBA) && (fmt != BGRA)) {
+                throw new UnsupportedOperationException("Unsupported format for this image");
             }
+            break;
+        default:
+            throw new UnsupportedOperationException("Not yet implemented");
         }
     }
 
-    private void copyRGBAtoABGR(ByteBuffer buffer, byte[] curLine) {
-        for(int i=1,n=curLine.length ; i<n ; i+=4) {
-            buffer.put(curLine[i+3]).put(curLine[i+2]).put(curLine[i+1]).put(curLine[i]);
+    private static Inflater getInflater() {
+        Inflater inflater = (Inflater) INFLATERS.get();
+        if (inflater == null) {
+            inflater = new Inflater();
+            INFLATERS.set(inflater);
         }
+        return inflater;
     }
 
-    private void copyRGBAtoBGRA(ByteBuffer buffer, byte[] curLine) {
-        for(int i=1,n=curLine.length ; i<n ; i+=4) {
-            buffer.put(curLine[i+2]).put(curLine[i+1]).put(curLine[i+0]).put(curLine[i+3]);
+    private static Scratch getScratch(int rowBytes, int ringBytes, int outBytes) {
+        Scratch scratch = (Scratch) SCRATCH.get();
+        if (scratch == null) {
+            scratch = new Scratch();
+            SCRATCH.set(scratch);
+        }
+        if (scratch.ring.length < ringBytes) {
+            scratch.ring = new byte[ringBytes];
+        }
+        if (scratch.prior.length < rowBytes) {
+            scratch.prior = new byte[rowBytes];
+        }
+        if (scratch.out.length < outBytes) {
+            scratch.out = new byte[outBytes];
+        }
+        if (scratch.indices.length < outBytes / 4) {
+            scratch.indices = new byte[outBytes / 4];
         }
+        return scratch;
     }
 
-    private void copyRGBAtoRGB(ByteBuffer buffer, byte[] curLine) {
-        for(int i=1,n=curLine.length ; i<n ; i+=4) {
-            buffer.put(curLine[i]).put(curLine[i+1]).put(curLine[i+2]);
-        }
+    /**
+     * The working buffers used to decode an image, kept for each thread
+     * between images.
+     */
+    private static class Scratch {
+        /** The filtered rows as they're inflated */
+        byte[] ring = new byte[0];
+        /** The last row unfiltered, which the next is filtered against */
+        byte[] prior = new byte[0];
+        /** A row converted to the destination format */
+        byte[] out = new byte[0];
+        /** A row of palette indices unpacked from less than 8 bits each */
+        byte[] indices = new byte[0];
+        /** The compressed data passed to the inflater */
+        byte[] input = new byte[INPUT_SIZE];
     }
 
-    private void copyPALtoABGR(ByteBuffer buffer, byte[] curLine) {
-        if(paletteA != null) {
-            for(int i=1,n=curLine.length ; i<n ; i+=1) {
-                int idx = curLine[i] & 255;
-                byte r = palette[idx*3 + 0];
-                byte g = palette[idx*3 + 1];
-                byte b = palette[idx*3 + 2];
-                byte a = paletteA[idx];
-                buffer.put(a).put(b).put(g).put(r);
+    /**
+     * The progress of a pipelined decode, shared between the thread
+     * inflating strips and the thread writing them.
+     */
+    private static class Pipeline {
+        /** The number of strips inflated */
+        private int inflated;
+        /** The number of strips unfiltered and copied out */
+        private int written;
+        /** True if the writer has started */
+        private boolean started;
+        /** True if the writer has finished */
+        private boolean finished;
+        /** True if the decode has been given up */
+        private boolean aborted;
+        /** The failure that stopped the writer, or null if none */
+        private Throwable failure;
+
+        synchronized boolean start() {
+            if (aborted) {
+                return false;
             }
-        } else {
-            for(int i=1,n=curLine.length ; i<n ; i+=1) {
-                int idx = curLine[i] & 255;
-                byte r = palette[idx*3 + 0];
-                byte g = palette[idx*3 + 1];
-                byte b = palette[idx*3 + 2];
-                byte a = (byte)0xFF;
-                buffer.put(a).put(b).put(g).put(r);
+            started = true;
+            return true;
+        }
+
+        synchronized void finish() {
+            finished = true;
+            notifyAll();
+        }
+
+        synchronized void fail(Throwable e) {
+            failure = e;
+        }
+
+        synchronized void setInflated(int strips) {
+            inflated = strips;
+            notifyAll();
+        }
+
+        synchronized void setWritten(int strips) {
+            written = strips;
+            notifyAll();
+        }
+
+        synchronized boolean awaitInflated(int strip) {
+            while ((inflated <= strip) && !aborted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    aborted = true;
+                }
             }
+            return !aborted;
         }
-    }
 
-    private void copyPALtoRGBA(ByteBuffer buffer, byte[] curLine) {
-        if(paletteA != null) {
-            for(int i=1,n=curLine.length ; i<n ; i+=1) {
-                int idx = curLine[i] & 255;
-                byte r = palette[idx*3 + 0];
-                byte g = palette[idx*3 + 1];
-                byte b = palette[idx*3 + 2];
-                byte a = paletteA[idx];
-                buffer.put(r).put(g).put(b).put(a);
+        synchronized void awaitSlot(int strips) throws IOException {
+            while ((written < strips) && (failure == null) && !(started && finished)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted decoding PNG");
+                }
             }
-        } else {
-            for(int i=1,n=curLine.length ; i<n ; i+=1) {
-                int idx = curLine[i] & 255;
-                byte r = palette[idx*3 + 0];
-                byte g = palette[idx*3 + 1];
-                byte b = palette[idx*3 + 2];
-                byte a = (byte)0xFF;
-                buffer.put(r).put(g).put(b).put(a);
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (written < strips) {
+                throw new IOException("PNG rows were not all written");
             }
         }
-    }
 
-    private void copyPALtoBGRA(ByteBuffer buffer, byte[] curLine) {
-        if(paletteA != null) {
-            for(int i=1,n=curLine.length ; i<n ; i+=1) {
-                int idx = curLine[i] & 255;
-                byte r = palette[idx*3 + 0];
-                byte g = palette[idx*3 + 1];
-                byte b = palette[idx*3 + 2];
-                byte a = paletteA[idx];
-                buffer.put(b).put(g).put(r).put(a);
+        synchronized void abort() {
+            aborted = true;
+            notifyAll();
+
+            // the rows mustn't be touched once the decode has returned
+            boolean interrupted = false;
+            while (started && !finished) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
             }
-        } else {
-            for(int i=1,n=curLine.length ; i<n ; i+=1) {
-                int idx = curLine[i] & 255;
-                byte r = palette[idx*3 + 0];
-                byte g = palette[idx*3 + 1];
-                byte b = palette[idx*3 + 2];
-                byte a = (byte)0xFF;
-                buffer.put(b).put(g).put(r).put(a);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 
-    private void expand4(byte[] src, byte[] dst) {
-        for(int i=1,n=dst.length ; i<n ; i+=2) {
-            int val = src[1 + (i >> 1)] & 255;
-            switch(n-i) {
-                default: dst[i+1] = (byte)(val & 15);
-                case 1:  dst[i  ] = (byte)(val >> 4);
+    /**
+     * Unfilters inflated rows and copies them into the destination buffer in
+     * its format.
+     */
+    private class RowWriter {
+        final ByteBuffer buffer;
+        final int offset;
+        final int stride;
+        final Format fmt;
+        final int rowBytes;
+        final byte[] prior;
+        final byte[] out;
+        final byte[] indices;
+        /** The positions of red, green, blue and alpha in a converted pixel */
+        final int ri, gi, bi, ai;
+        /** The palette in the destination format, 4 bytes an entry */
+        final byte[] pal;
+
+        RowWriter(ByteBuffer buffer, int stride, Format fmt, int rowBytes, Scratch scratch) {
+            this.buffer = buffer;
+            this.offset = buffer.position();
+            this.stride = stride;
+            this.fmt = fmt;
+            this.rowBytes = rowBytes;
+            this.prior = scratch.prior;
+            this.out = scratch.out;
+            this.indices = scratch.indices;
+            Arrays.fill(prior, 0, rowBytes, (byte)0);
+
+            if (fmt == ABGR) {
+                ri = 3; gi = 2; bi = 1; ai = 0;
+            } else if (fmt == BGRA) {
+                ri = 2; gi = 1; bi = 0; ai = 3;
+            } else {
+                ri = 0; gi = 1; bi = 2; ai = 3;
+            }
+
+            if (colorType == COLOR_INDEXED) {
+                pal = new byte[256 * 4];
+                for (int i=0,n=palette.length/3 ; i<n ; i++) {
+                    pal[i*4 + ri] = palette[i*3];
+                    pal[i*4 + gi] = palette[i*3 + 1];
+                    pal[i*4 + bi] = palette[i*3 + 2];
+                    pal[i*4 + ai] = (paletteA != null) ? paletteA[i] : (byte)0xFF;
+                }
+            } else {
+                pal = null;
             }
         }
-    }
 
-    private void expand2(byte[] src, byte[] dst) {
-        for(int i=1,n=dst.length ; i<n ; i+=4) {
-            int val = src[1 + (i >> 2)] & 255;
-            switch(n-i) {
-                default: dst[i+3] = (byte)((val     ) & 3);
-                case 3:  dst[i+2] = (byte)((val >> 2) & 3);
-                case 2:  dst[i+1] = (byte)((val >> 4) & 3);
-                case 1:  dst[i  ] = (byte)((val >> 6)    );
+        /**
+         * Unfilters a strip of rows in place and copies them out.
+         *
+         * @param data the array holding the strip
+         * @param start the index of the strip in the array
+         * @param firstRow the row of the image the strip starts at
+         * @param count the number of rows in the strip
+         * @throws IOException if a row has an unknown filter
+         */
+        void write(byte[] data, int start, int firstRow, int count) throws IOException {
+            for (int r=0 ; r<count ; r++) {
+                int cur = start + r*rowBytes;
+                if (r == 0) {
+                    unfilter(data, cur, prior, 0, rowBytes);
+                } else {
+                    unfilter(data, cur, data, cur - rowBytes, rowBytes);
+                }
+                buffer.position(offset + (firstRow + r)*stride);
+                copyRow(data, cur + 1);
+            }
+            System.arraycopy(data, start + (count-1)*rowBytes, prior, 0, rowBytes);
+        }
+
+        private void copyRow(byte[] src, int s) {
+            final int lineSize = rowBytes - 1;
+            switch (colorType) {
+            case COLOR_TRUECOLOR:
+                if (fmt == RGB) {
+                    buffer.put(src, s, lineSize);
+                } else {
+                    copyRGB(src, s, s + lineSize);
+                }
+                break;
+            case COLOR_TRUEALPHA:
+                if (fmt == RGBA) {
+                    buffer.put(src, s, lineSize);
+                } else if (fmt == RGB) {
+                    int o = 0;
+                    for (int i=s,n=s+lineSize ; i<n ; i+=4) {
+                        out[o++] = src[i];
+                        out[o++] = src[i+1];
+                        out[o++] = src[i+2];
+                    }
+                    buffer.put(out, 0, o);
+                } else {
+                    int o = 0;
+                    for (int i=s,n=s+lineSize ; i<n ; i+=4, o+=4) {
+                        out[o+ri] = src[i];
+                        out[o+gi] = src[i+1];
+                        out[o+bi] = src[i+2];
+                        out[o+ai] = src[i+3];
+                    }
+                    buffer.put(out, 0, o);
+                }
+                break;
+            case COLOR_GREYSCALE:
+            case COLOR_GREYALPHA:
+                buffer.put(src, s, lineSize);
+                break;
+            case COLOR_INDEXED:
+                copyPAL(src, s);
+                break;
+            default:
+                throw new UnsupportedOperationException("Not yet implemented");
+            }
+        }
+
+        private void copyRGB(byte[] src, int s, int n) {
+            int o = 0;
+            if (transPixel != null) {
+                byte tr = transPixel[1];
+                byte tg = transPixel[3];
+                byte tb = transPixel[5];
+                for (int i=s ; i<n ; i+=3, o+=4) {
+                    byte r = src[i];
+                    byte g = src[i+1];
+                    byte b = src[i+2];
+                    out[o+ri] = r;
+                    out[o+gi] = g;
+                    out[o+bi] = b;
+                    out[o+ai] = (r==tr && g==tg && b==tb) ? 0 : (byte)0xFF;
+                }
+            } else {
+                for (int i=s ; i<n ; i+=3, o+=4) {
+                    out[o+ri] = src[i];
+                    out[o+gi] = src[i+1];
+                    out[o+bi] = src[i+2];
+                    out[o+ai] = (byte)0xFF;
+                }
+            }
+            buffer.put(out, 0, o);
+        }
+
+        private void copyPAL(byte[] src, int s) {
+            byte[] idx = src;
+            int start = s;
+            switch (bitdepth) {
+            case 8: break;
+            case 4: expand4(src, s, indices); idx = indices; start = 0; break;
+            case 2: expand2(src, s, indices); idx = indices; start = 0; break;
+            case 1: expand1(src, s, indices); idx = indices; start = 0; break;
+            default: throw new UnsupportedOperationException("Unsupported bitdepth for this image");
+            }
+
+            for (int i=start,n=start+width,o=0 ; i<n ; i++, o+=4) {
+                int p = (idx[i] & 255) * 4;
+                out[o] = pal[p];
+                out[o+1] = pal[p+1];
+                out[o+2] = pal[p+2];
+                out[o+3] = pal[p+3];
             }
+            buffer.put(out, 0, width * 4);
         }
     }
 
-    private void expand1(byte[] src, byte[] dst) {
-        for(int i=1,n=dst.length ; i<n ; i+=8) {
-            int val = src[1 + (i >> 3)] & 255;
-            switch(n-i) {
-                default: dst[i+7] = (byte)((val     ) & 1);
-                case 7:  dst[i+6] = (byte)((val >> 1) & 1);
-                case 6:  dst[i+5] = (byte)((val >> 2) & 1);
-                case 5:  dst[i+4] = (byte)((val >> 3) & 1);
-                case 4:  dst[i+3] = (byte)((val >> 4) & 1);
-                case 3:  dst[i+2] = (byte)((val >> 5) & 1);
-                case 2:  dst[i+1] = (byte)((val >> 6) & 1);
-                case 1:  dst[i  ] = (byte)((val >> 7)    );
+    private void expand4(byte[] src, int s, byte[] dst) {
+        for(int i=0,n=width ; i<n ; i+=2) {
+            int val = src[s + (i >> 1)] & 255;
+            dst[i] = (byte)(val >> 4);
+            if(i+1 < n) {
+                dst[i+1] = (byte)(val & 15);
             }
         }
     }
+
+    private void expand2(byte[] src, int s, byte[] dst) {
+        for(int i=0,n=width ; i<n ; i++) {
+            int val = src[s + (i >> 2)] & 255;
+            dst[i] = (byte)((val >> (6 - ((i & 3) << 1))) & 3);
+        }
+    }
+
+    private void expand1(byte[] src, int s, byte[] dst) {
+        for(int i=0,n=width ; i<n ; i++) {
+            int val = src[s + (i >> 3)] & 255;
+            dst[i] = (byte)((val >> (7 - (i & 7))) & 1);
+        }
+    }
     
-    private void unfilter(byte[] curLine, byte[] prevLine) throws IOException {
-        switch (curLine[0]) {
+    private void unfilter(byte[] cur, int c, byte[] prev, int p, int rowBytes) throws IOException {
+        switch (cur[c]) {
             case 0: // none
                 break;
             case 1:
-                unfilterSub(curLine);
+                unfilterSub(cur, c, rowBytes);
                 break;
             case 2:
-                unfilterUp(curLine, prevLine);
+                unfilterUp(cur, c, prev, p, rowBytes);
                 break;
             case 3:
-                unfilterAverage(curLine, prevLine);
+                unfilterAverage(cur, c, prev, p, rowBytes);
                 break;
             case 4:
-                unfilterPaeth(curLine, prevLine);
+                unfilterPaeth(cur, c, prev, p, rowBytes);
                 break;
             default:
-                throw new IOException("invalide filter type in scanline: " + curLine[0]);
+                throw new IOException("invalide filter type in scanline: " + cur[c]);
         }
     }
     
-    private void unfilterSub(byte[] curLine) {
+    private void unfilterSub(byte[] cur, int c, int rowBytes) {
         final int bpp = this.bytesPerPixel;
-        for(int i=bpp+1,n=curLine.length ; i<n ; ++i) {
-            curLine[i] += curLine[i-bpp];
+        for(int i=c+bpp+1,n=c+rowBytes ; i<n ; ++i) {
+            cur[i] += cur[i-bpp];
         }
     }
     
-    private void unfilterUp(byte[] curLine, byte[] prevLine) {
-        final int bpp = this.bytesPerPixel;
-        for(int i=1,n=curLine.length ; i<n ; ++i) {
-            curLine[i] += prevLine[i];
+    private void unfilterUp(byte[] cur, int c, byte[] prev, int p, int rowBytes) {
+        final int d = p - c;
+        for(int i=c+1,n=c+rowBytes ; i<n ; ++i) {
+            cur[i] += prev[i+d];
         }
     }
     
-    private void unfilterAverage(byte[] curLine, byte[] prevLine) {
+    private void unfilterAverage(byte[] cur, int c, byte[] prev, int p, int rowBytes) {
         final int bpp = this.bytesPerPixel;
+        final int d = p - c;
         
         int i;
-        for(i=1 ; i<=bpp ; ++i) {
-            curLine[i] += (byte)((prevLine[i] & 0xFF) >>> 1);
+        for(i=c+1 ; i<=c+bpp ; ++i) {
+            cur[i] += (byte)((prev[i+d] & 0xFF) >>> 1);
         }
-        for(int n=curLine.length ; i<n ; ++i) {
-            curLine[i] += (byte)(((prevLine[i] & 0xFF) + (curLine[i - bpp] & 0xFF)) >>> 1);
+        for(int n=c+rowBytes ; i<n ; ++i) {
+            cur[i] += (byte)(((prev[i+d] & 0xFF) + (cur[i - bpp] & 0xFF)) >>> 1);
         }
     }
     
-    private void unfilterPaeth(byte[] curLine, byte[] prevLine) {
+    private void unfilterPaeth(byte[] cur, int c, byte[] prev, int p, int rowBytes) {
         final int bpp = this.bytesPerPixel;
+        final int d = p - c;
         
         int i;
-        for(i=1 ; i<=bpp ; ++i) {
-            curLine[i] += prevLine[i];
-        }
-        for(int n=curLine.length ; i<n ; ++i) {
-            int a = curLine[i - bpp] & 255;
-            int b = prevLine[i] & 255;
-            int c = prevLine[i - bpp] & 255;
-            int p = a + b - c;
-            int pa = p - a; if(pa < 0) pa = -pa;
-            int pb = p - b; if(pb < 0) pb = -pb;
-            int pc = p - c; if(pc < 0) pc = -pc;
+        for(i=c+1 ; i<=c+bpp ; ++i) {
+            cur[i] += prev[i+d];
+        }
+        for(int n=c+rowBytes ; i<n ; ++i) {
+            int a = cur[i - bpp] & 255;
+            int b = prev[i+d] & 255;
+            int cc = prev[i+d - bpp] & 255;
+            int pp = a + b - cc;
+            int pa = pp - a; if(pa < 0) pa = -pa;
+            int pb = pp - b; if(pb < 0) pb = -pb;
+            int pc = pp - cc; if(pc < 0) pc = -pc;
             if(pa<=pb && pa<=pc)
-                c = a;
+                cc = a;
             else if(pb<=pc)
-                c = b;
-            curLine[i] += (byte)c;
+                cc = b;
+            cur[i] += (byte)cc;
         }
     }
       
@@ -695,8 +917,8 @@ public class PNGDecoder {
             closeChunk();
             openChunk(IDAT);
         }
-        int read = readChunk(buffer, 0, buffer.length);
-        inflater.setInput(buffer, 0, read);
+        int read = readChunk(inflateInput, 0, inflateInput.length);
+        inflater.setInput(inflateInput, 0, read);
     }
     
     private void readChunkUnzip(Inflater inflater, byte[] buffer, int offset, int length) throws IOException {
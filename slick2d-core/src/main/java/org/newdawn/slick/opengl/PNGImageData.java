@@ -3,6 +3,10 @@ package org.newdawn.slick.opengl;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.lwjgl.BufferUtils;
 
@@ -12,6 +16,14 @@ import org.lwjgl.BufferUtils;
  * @author Matthias Mann (original code)
  */
 public class PNGImageData implements LoadableImageData {
+	/** The default number of bytes of decoded image at which PNGs are decoded on two threads */
+	public static final int DEFAULT_PIPELINE_THRESHOLD = 1024 * 1024;
+	
+	/** The number of bytes of decoded image at which PNGs are decoded on two threads */
+	private static int pipelineThreshold = DEFAULT_PIPELINE_THRESHOLD;
+	/** The threads rows are unfiltered on while they're inflated, created when first needed */
+	private static ExecutorService pipeline;
+	
 	/** The width of the data loaded */
 	private int width;
 	/** The height of the data loaded */
@@ -27,6 +39,50 @@ public class PNGImageData implements LoadableImageData {
 	/** The scratch buffer storing the image data */
 	private ByteBuffer scratch;
 	
+	/**
+	 * Set the size of image from which PNGs are decoded on two threads, one
+	 * inflating the image data while the other unfilters the rows inflated
+	 * before. Small images decode quicker on one thread, and images are
+	 * always decoded on one thread on a single processor.
+	 * 
+	 * @param threshold The number of bytes of decoded image at which to decode on
+	 * two threads, or Integer.MAX_VALUE to always decode on one
+	 */
+	public static void setPipelineThreshold(int threshold) {
+		pipelineThreshold = threshold;
+	}
+	
+	/**
+	 * Get the size of image from which PNGs are decoded on two threads
+	 * 
+	 * @return The number of bytes of decoded image at which PNGs are decoded on two threads
+	 */
+	public static int getPipelineThreshold() {
+		return pipelineThreshold;
+	}
+	
+	/**
+	 * Get the executor to unfilter rows on for an image of a given size
+	 * 
+	 * @param size The number of bytes of decoded image
+	 * @return The executor to unfilter rows on or null if the image should be decoded on one thread
+	 */
+	private static synchronized Executor getPipeline(long size) {
+		if ((size < pipelineThreshold) || (Runtime.getRuntime().availableProcessors() < 2)) {
+			return null;
+		}
+		if (pipeline == null) {
+			pipeline = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Slick PNG Decoder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pipeline;
+	}
+	
     /**
      * @see org.newdawn.slick.opengl.ImageData#getDepth()
      */
@@ -89,12 +145,14 @@ public class PNGImageData implements LoadableImageData {
 		texWidth = get2Fold(width);
 		texHeight = get2Fold(height);
 		
-		int perPixel = decoder.hasAlpha() ? 4 : 3;
-		bitDepth = decoder.hasAlpha() ? 32 : 24;
+		// images without alpha that need it are decoded straight to RGBA
+		int perPixel = (decoder.hasAlpha() || forceAlpha) ? 4 : 3;
+		bitDepth = perPixel * 8;
 		
 		// Get a pointer to the image memory
 		scratch = BufferUtils.createByteBuffer(texWidth * texHeight * perPixel);
-		decoder.decode(scratch, texWidth * perPixel, perPixel == 4 ? PNGDecoder.RGBA : PNGDecoder.RGB);
+		decoder.decode(scratch, texWidth * perPixel, perPixel == 4 ? PNGDecoder.RGBA : PNGDecoder.RGB,
+					   getPipeline((long) width * height * perPixel));
 
 		if (height < texHeight-1) {
 			int topOffset = (texHeight-1) * (texWidth*perPixel);
@@ -115,28 +173,6 @@ public class PNGImageData implements LoadableImageData {
 			}
 		}
 		
-		if (!decoder.hasAlpha() && forceAlpha) {
-			ByteBuffer temp = BufferUtils.createByteBuffer(texWidth * texHeight * 4);
-			for (int x=0;x<texWidth;x++) {
-				for (int y=0;y<texHeight;y++) {
-					int srcOffset = (y*3)+(x*texHeight*3);
-					int dstOffset = (y*4)+(x*texHeight*4);
-					
-					temp.put(dstOffset, scratch.get(srcOffset));
-					temp.put(dstOffset+1, scratch.get(srcOffset+1));
-					temp.put(dstOffset+2, scratch.get(srcOffset+2));
-					if ((x < getHeight()) && (y < getWidth())) {
-						temp.put(dstOffset+3, (byte) 255);
-					} else {
-						temp.put(dstOffset+3, (byte) 0);
-					}
-				}
-			}
-			
-			bitDepth = 32;
-			scratch = temp;
-		}
-			
 		if (transparent != null) {
 	        for (int i=0;i<texWidth*texHeight*4;i+=4) {
 	        	boolean match = true;
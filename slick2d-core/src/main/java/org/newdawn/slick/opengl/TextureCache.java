@@ -0,0 +1,353 @@
+package org.newdawn.slick.opengl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * The cache of textures loaded by the InternalTextureLoader. The cache has a
+ * budget of texture memory, worked out from the size and format of each
+ * texture. When the textures resident on the card go over the budget the
+ * least recently bound are evicted, releasing their GL textures. An evicted
+ * texture stays in the cache and is reloaded from its resource, or from the
+ * data held for it, the next time it's bound.
+ *
+ * Textures can be pinned to stop them being evicted, and the texture last
+ * bound is never evicted. Textures that can't be reloaded, for instance those
+ * read from a stream that isn't a resource, are never evicted either.
+ *
+ * The budget is unlimited by default, so textures stay loaded as before until
+ * they're released or the cache is cleared.
+ */
+public class TextureCache {
+	/** The textures in the cache - String cache name to Entry */
+	private HashMap entries = new HashMap();
+	/** The most bytes of textures allowed on the card before evicting */
+	private long budget = Long.MAX_VALUE;
+	/** The number of bytes taken by the textures resident on the card */
+	private long residentBytes;
+	/** The number of textures resident on the card */
+	private int residentCount;
+
+	/** The number of times a texture was found in the cache */
+	private int hits;
+	/** The number of times a texture had to be loaded */
+	private int misses;
+	/** The number of textures evicted */
+	private int evictions;
+	/** The number of evicted textures reloaded */
+	private int reloads;
+
+	/**
+	 * Create a new empty cache
+	 */
+	TextureCache() {
+	}
+
+	/**
+	 * Get the number of bytes a texture takes on the card
+	 *
+	 * @param texture The texture to size
+	 * @param dstPixelFormat The format the texture is stored in
+	 * @return The number of bytes the texture takes
+	 */
+	static int getSize(TextureImpl texture, int dstPixelFormat) {
+		int bytesPerPixel = (dstPixelFormat == SGL.GL_RGBA16) ? 8 : 4;
+		return texture.getTextureWidth() * texture.getTextureHeight() * bytesPerPixel;
+	}
+
+	/**
+	 * Set the most bytes of textures allowed on the card. Textures are evicted
+	 * straight away if the budget is already exceeded.
+	 *
+	 * @param budget The number of bytes allowed, or Long.MAX_VALUE for no limit
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+		trim(null);
+	}
+
+	/**
+	 * Get the most bytes of textures allowed on the card
+	 *
+	 * @return The number of bytes allowed, or Long.MAX_VALUE for no limit
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Get the number of bytes taken by the textures resident on the card
+	 *
+	 * @return The number of bytes taken
+	 */
+	public long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * Get the number of textures resident on the card
+	 *
+	 * @return The number of textures resident
+	 */
+	public int getResidentCount() {
+		return residentCount;
+	}
+
+	/**
+	 * Get the number of textures in the cache, including those evicted
+	 *
+	 * @return The number of textures in the cache
+	 */
+	public int getTextureCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Pin a texture so it won't be evicted. Each pin must be matched by a
+	 * call to unpin().
+	 *
+	 * @param texture The texture to pin
+	 */
+	public void pin(Texture texture) {
+		if (texture instanceof TextureImpl) {
+			((TextureImpl) texture).resolve().pins++;
+		}
+	}
+
+	/**
+	 * Remove a pin from a texture, allowing it to be evicted once it has none
+	 *
+	 * @param texture The texture to unpin
+	 */
+	public void unpin(Texture texture) {
+		if (texture instanceof TextureImpl) {
+			TextureImpl tex = ((TextureImpl) texture).resolve();
+			if (tex.pins > 0) {
+				tex.pins--;
+			}
+		}
+	}
+
+	/**
+	 * Check if a texture is pinned
+	 *
+	 * @param texture The texture to check
+	 * @return True if the texture is pinned
+	 */
+	public boolean isPinned(Texture texture) {
+		if (texture instanceof TextureImpl) {
+			return ((TextureImpl) texture).resolve().pins > 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the number of times a texture was found in the cache
+	 *
+	 * @return The number of cache hits
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of times a texture wasn't found in the cache
+	 *
+	 * @return The number of cache misses
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of textures evicted to stay within the budget
+	 *
+	 * @return The number of evictions
+	 */
+	public int getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Get the number of evicted textures that have been reloaded
+	 *
+	 * @return The number of reloads
+	 */
+	public int getReloads() {
+		return reloads;
+	}
+
+	/**
+	 * Reset the hit, miss, eviction and reload counts
+	 */
+	public void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		reloads = 0;
+	}
+
+	/**
+	 * Look up a texture, counting a hit or miss
+	 *
+	 * @param name The name the texture is cached under
+	 * @return The texture or null if it's not in the cache
+	 */
+	TextureImpl get(String name) {
+		Entry entry = (Entry) entries.get(name);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.texture;
+	}
+
+	/**
+	 * Add a texture that's just been loaded, evicting others if that takes
+	 * the cache over budget
+	 *
+	 * @param name The name to cache the texture under
+	 * @param texture The texture to add
+	 * @param bytes The number of bytes the texture takes on the card
+	 */
+	void put(String name, TextureImpl texture, int bytes) {
+		remove(name);
+
+		Entry entry = new Entry(texture, bytes);
+		entries.put(name, entry);
+		residentBytes += bytes;
+		residentCount++;
+		trim(texture);
+	}
+
+	/**
+	 * Remove a texture from the cache. Its GL texture isn't released.
+	 *
+	 * @param name The name the texture is cached under
+	 */
+	void remove(String name) {
+		Entry entry = (Entry) entries.remove(name);
+		if ((entry != null) && !entry.texture.isEvicted()) {
+			residentBytes -= entry.bytes;
+			residentCount--;
+		}
+	}
+
+	/**
+	 * Remove all the textures from the cache. Their GL textures aren't
+	 * released.
+	 */
+	void clear() {
+		entries.clear();
+		residentBytes = 0;
+		residentCount = 0;
+	}
+
+	/**
+	 * Get the textures in the cache
+	 *
+	 * @return The textures in the cache - TextureImpl
+	 */
+	ArrayList getTextures() {
+		ArrayList textures = new ArrayList();
+		Iterator values = entries.values().iterator();
+		while (values.hasNext()) {
+			textures.add(((Entry) values.next()).texture);
+		}
+		return textures;
+	}
+
+	/**
+	 * Notification that an evicted texture has been reloaded, evicting others
+	 * if that takes the cache over budget
+	 *
+	 * @param texture The texture reloaded
+	 */
+	void restored(TextureImpl texture) {
+		reloads++;
+
+		Entry entry = (Entry) entries.get(texture.getCacheName());
+		if ((entry == null) || (entry.texture != texture)) {
+			return;
+		}
+		residentBytes += entry.bytes;
+		residentCount++;
+		trim(texture);
+	}
+
+	/**
+	 * Evict the least recently bound textures until the cache is within its
+	 * budget or nothing more can be evicted
+	 *
+	 * @param keep A texture that mustn't be evicted or null if none
+	 */
+	private void trim(TextureImpl keep) {
+		while (residentBytes > budget) {
+			Entry oldest = null;
+			Iterator values = entries.values().iterator();
+			while (values.hasNext()) {
+				Entry entry = (Entry) values.next();
+				TextureImpl texture = entry.texture;
+				if ((texture == keep) || (texture == TextureImpl.lastBind) || (texture.pins > 0)
+						|| texture.isEvicted()) {
+					continue;
+				}
+				if ((oldest != null) && (texture.lastUsed >= oldest.texture.lastUsed)) {
+					continue;
+				}
+				if (!entry.canRestore()) {
+					continue;
+				}
+				oldest = entry;
+			}
+
+			if (oldest == null) {
+				return;
+			}
+			oldest.texture.evict();
+			residentBytes -= oldest.bytes;
+			residentCount--;
+			evictions++;
+		}
+	}
+
+	/**
+	 * A texture held in the cache
+	 */
+	private static class Entry {
+		/** The texture cached */
+		private TextureImpl texture;
+		/** The number of bytes the texture takes on the card */
+		private int bytes;
+		/** True if the texture can be reloaded, or null if that's not been checked */
+		private Boolean restorable;
+
+		/**
+		 * Create a new entry
+		 *
+		 * @param texture The texture cached
+		 * @param bytes The number of bytes the texture takes on the card
+		 */
+		public Entry(TextureImpl texture, int bytes) {
+			this.texture = texture;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Check if the texture can be reloaded once it's been evicted
+		 *
+		 * @return True if the texture can be reloaded
+		 */
+		public boolean canRestore() {
+			if (restorable == null) {
+				restorable = Boolean.valueOf(texture.canRestore());
+			}
+			return restorable.booleanValue();
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.newdawn.slick.opengl;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
@@ -8,6 +9,7 @@ import org.lwjgl.BufferUtils;
 import org.newdawn.slick.opengl.renderer.Renderer;
 import org.newdawn.slick.opengl.renderer.SGL;
 import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
 
 /**
  * A texture to be bound within JOGL. This object is responsible for 
@@ -38,6 +40,9 @@ public class TextureImpl implements Texture {
 		return lastBind;
 	}
 	
+	/** The number of times textures have been bound, used to find the least recently bound */
+	private static long useCount;
+	
     /** The GL target type */
     private int target; 
     /** The GL texture ID */
@@ -64,6 +69,19 @@ public class TextureImpl implements Texture {
     /** Data used to reload this texture */
     private ReloadData reloadData;
     
+    /** True if the texture was flipped on the y axis while loading */
+    private boolean flipped;
+    /** The filter the texture was loaded with */
+    private int filter;
+    /** The colour interpreted as transparent while loading or null if none */
+    private int[] transparent;
+    /** True if the GL texture has been released by the cache and must be reloaded before use */
+    private boolean evicted;
+    /** The number of times the texture has been pinned in the cache */
+    int pins;
+    /** The value of the use count when the texture was last bound */
+    long lastUsed;
+    
     /**
      * For subclasses to utilise
      */
@@ -93,6 +111,37 @@ public class TextureImpl implements Texture {
     	this.cacheName = cacheName;
     }
     
+    /**
+     * Get the name this texture is stored against in the cache
+     * 
+     * @return The name the texture is stored against in the cache or null if it isn't cached
+     */
+    String getCacheName() {
+    	return cacheName;
+    }
+    
+    /**
+     * Record how the texture was loaded so it can be loaded again once evicted
+     * 
+     * @param flipped True if the texture was flipped on the y axis while loading
+     * @param filter The filter the texture was loaded with
+     * @param transparent The colour interpreted as transparent or null if none
+     */
+    void setSource(boolean flipped, int filter, int[] transparent) {
+    	this.flipped = flipped;
+    	this.filter = filter;
+    	this.transparent = transparent;
+    }
+    
+    /**
+     * Get the texture that holds the GL texture for this one
+     * 
+     * @return The texture holding the GL texture
+     */
+    TextureImpl resolve() {
+    	return this;
+    }
+    
     /**
 	 * @see org.newdawn.slick.opengl.Texture#hasAlpha()
 	 */
@@ -138,6 +187,10 @@ public class TextureImpl implements Texture {
 	 */
     public void bind() {
     	if (lastBind != this) {
+    		if (evicted) {
+    			restore();
+    		}
+    		lastUsed = ++useCount;
     		lastBind = this;
     		GL.glEnable(SGL.GL_TEXTURE_2D);
     	    GL.glBindTexture(target, textureID);
@@ -250,11 +303,13 @@ public class TextureImpl implements Texture {
 	 * @see org.newdawn.slick.opengl.Texture#release()
 	 */
     public void release() {
-        IntBuffer texBuf = createIntBuffer(1); 
-        texBuf.put(textureID);
-        texBuf.flip();
-        
-    	GL.glDeleteTextures(texBuf);
+    	if (!evicted) {
+	        IntBuffer texBuf = createIntBuffer(1); 
+	        texBuf.put(textureID);
+	        texBuf.flip();
+	        
+	    	GL.glDeleteTextures(texBuf);
+    	}
     	
         if (lastBind == this) {
         	bindNone();
@@ -271,6 +326,9 @@ public class TextureImpl implements Texture {
 	 * @see org.newdawn.slick.opengl.Texture#getTextureID()
 	 */
     public int getTextureID() {
+    	if (evicted) {
+    		restore();
+    	}
     	return textureID;
     }
     
@@ -349,6 +407,61 @@ public class TextureImpl implements Texture {
 		}
 	}
 	
+	/**
+	 * Check if this texture can be loaded again once it's been evicted from
+	 * the cache
+	 * 
+	 * @return True if the texture data is held or the resource it was loaded from can be found
+	 */
+	boolean canRestore() {
+		if (reloadData != null) {
+			return true;
+		}
+		return (ref != null) && ResourceLoader.resourceExists(ref);
+	}
+	
+	/**
+	 * Check if the GL texture has been released by the cache
+	 * 
+	 * @return True if the texture must be reloaded before use
+	 */
+	boolean isEvicted() {
+		return evicted;
+	}
+	
+	/**
+	 * Release the GL texture to make room in the cache. The texture is loaded
+	 * again the next time it's used.
+	 */
+	void evict() {
+        IntBuffer texBuf = createIntBuffer(1); 
+        texBuf.put(textureID);
+        texBuf.flip();
+    	GL.glDeleteTextures(texBuf);
+    	
+    	textureID = 0;
+    	evicted = true;
+	}
+	
+	/**
+	 * Load the GL texture again after it's been evicted
+	 */
+	private void restore() {
+		try {
+			if (reloadData != null) {
+				textureID = reloadData.reload();
+			} else {
+				textureID = InternalTextureLoader.get().reload(this, flipped, filter, transparent);
+			}
+		} catch (IOException e) {
+			Log.error(e);
+			throw new RuntimeException("Unable to reload evicted texture: "+ref);
+		}
+		
+		evicted = false;
+		InternalTextureLoader.get().getTextureCache().restored(this);
+	}
+	
 	/** 
 	 * Reload this texture from it's original source data
 	 */
@@ -0,0 +1,585 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A renderer that wraps another and counts the operations passed through it - batches,
+ * vertices, texture binds, blend and matrix changes, and the flushes that break up
+ * batches along with the operation that caused each one.
+ *
+ * Counts are gathered for a frame at a time. The game container ends the frame
+ * when the renderer is in use through it, otherwise endFrame() should be called
+ * once per frame. Since renderers are captured when classes load the wrapper
+ * should be installed with Renderer.instrument() before the game is started.
+ */
+public class InstrumentedSGL implements SGL {
+	/** Indicates there is no geometry waiting to be flushed */
+	private static final int NONE = -1;
+
+	/** The renderer being counted */
+	private SGL gl;
+	/** The counts for the frame in progress */
+	private RenderStatistics current = new RenderStatistics();
+	/** The counts for the last completed frame */
+	private RenderStatistics last = new RenderStatistics();
+	/** The type of the geometry given since the last state change or NONE */
+	private int pendingType = NONE;
+	/** The ID of the texture last bound */
+	private int boundTexture = NONE;
+	/** The stack for entering list creation mode - operations in a list aren't executed so aren't counted */
+	private int listMode;
+	/** True if counting has been paused */
+	private boolean paused;
+
+	/**
+	 * Create a new renderer counting the operations passed to another
+	 *
+	 * @param gl The renderer to count operations for
+	 */
+	public InstrumentedSGL(SGL gl) {
+		this.gl = gl;
+	}
+
+	/**
+	 * Get the renderer operations are passed on to
+	 *
+	 * @return The renderer being counted
+	 */
+	public SGL getRenderer() {
+		return gl;
+	}
+
+	/**
+	 * Indicate whether counting should be paused, for instance while drawing
+	 * a debug overlay that shouldn't be included in the counts
+	 *
+	 * @param paused True if operations should not be counted
+	 */
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+	}
+
+	/**
+	 * End the current frame, making its counts available through getFrameStatistics()
+	 * and starting new counts for the next frame
+	 */
+	public void endFrame() {
+		last.set(current);
+		current.reset();
+		pendingType = NONE;
+	}
+
+	/**
+	 * Get the counts for the last completed frame. The object returned is updated
+	 * in place each time a frame ends.
+	 *
+	 * @return The counts for the last completed frame
+	 */
+	public RenderStatistics getFrameStatistics() {
+		return last;
+	}
+
+	/**
+	 * Get the counts for the frame in progress
+	 *
+	 * @return The counts gathered since the last frame ended
+	 */
+	public RenderStatistics getCurrentStatistics() {
+		return current;
+	}
+
+	/**
+	 * Check if operations are currently being counted
+	 *
+	 * @return True if operations are currently being counted
+	 */
+	private boolean counting() {
+		return (!paused) && (listMode == 0);
+	}
+
+	/**
+	 * Note a state change, counting a flush if there's geometry waiting
+	 *
+	 * @param reason The name of the operation changing state
+	 */
+	private void state(String reason) {
+		if (!counting()) {
+			return;
+		}
+		if (pendingType != NONE) {
+			current.addFlush(reason);
+			pendingType = NONE;
+		}
+	}
+
+	/**
+	 * Check if separate runs of a geometry type can be drawn together
+	 *
+	 * @param type The type of geometry
+	 * @return True if separate runs can be joined into one batch
+	 */
+	private boolean isMergeable(int type) {
+		return (type == SGL.GL_QUADS) || (type == SGL.GL_TRIANGLES) ||
+			   (type == SGL.GL_LINES) || (type == SGL.GL_POINTS);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#flush()
+	 */
+	public void flush() {
+		state("flush");
+		gl.flush();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#initDisplay(int, int)
+	 */
+	public void initDisplay(int width, int height) {
+		boundTexture = NONE;
+		gl.initDisplay(width, height);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#enterOrtho(int, int)
+	 */
+	public void enterOrtho(int xsize, int ysize) {
+		state("enterOrtho");
+		gl.enterOrtho(xsize, ysize);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearColor(float, float, float, float)
+	 */
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		gl.glClearColor(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClipPlane(int, java.nio.DoubleBuffer)
+	 */
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+		state("glClipPlane");
+		gl.glClipPlane(plane, buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScissor(int, int, int, int)
+	 */
+	public void glScissor(int x, int y, int width, int height) {
+		state("glScissor");
+		gl.glScissor(x, y, width, height);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLineWidth(float)
+	 */
+	public void glLineWidth(float width) {
+		state("glLineWidth");
+		gl.glLineWidth(width);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClear(int)
+	 */
+	public void glClear(int value) {
+		state("glClear");
+		gl.glClear(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColorMask(boolean, boolean, boolean, boolean)
+	 */
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		state("glColorMask");
+		gl.glColorMask(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadIdentity()
+	 */
+	public void glLoadIdentity() {
+		state("glLoadIdentity");
+		if (counting()) {
+			current.matrixChanges++;
+		}
+		gl.glLoadIdentity();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetInteger(int, java.nio.IntBuffer)
+	 */
+	public void glGetInteger(int id, IntBuffer ret) {
+		state("glGetInteger");
+		gl.glGetInteger(id, ret);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetFloat(int, java.nio.FloatBuffer)
+	 */
+	public void glGetFloat(int id, FloatBuffer ret) {
+		state("glGetFloat");
+		gl.glGetFloat(id, ret);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnable(int)
+	 */
+	public void glEnable(int item) {
+		state("glEnable");
+		if (counting()) {
+			current.stateChanges++;
+		}
+		gl.glEnable(item);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDisable(int)
+	 */
+	public void glDisable(int item) {
+		state("glDisable");
+		if (counting()) {
+			current.stateChanges++;
+		}
+		gl.glDisable(item);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBindTexture(int, int)
+	 */
+	public void glBindTexture(int target, int id) {
+		state("glBindTexture");
+		if (counting()) {
+			current.textureBinds++;
+			if (id == boundTexture) {
+				current.redundantTextureBinds++;
+			}
+			boundTexture = id;
+		}
+		gl.glBindTexture(target, id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetTexImage(int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+		state("glGetTexImage");
+		gl.glGetTexImage(target, level, format, type, pixels);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteTextures(java.nio.IntBuffer)
+	 */
+	public void glDeleteTextures(IntBuffer buffer) {
+		state("glDeleteTextures");
+		boundTexture = NONE;
+		gl.glDeleteTextures(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColor4f(float, float, float, float)
+	 */
+	public void glColor4f(float r, float g, float b, float a) {
+		gl.glColor4f(r, g, b, a);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexCoord2f(float, float)
+	 */
+	public void glTexCoord2f(float u, float v) {
+		gl.glTexCoord2f(u, v);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex3f(float, float, float)
+	 */
+	public void glVertex3f(float x, float y, float z) {
+		if (counting()) {
+			current.vertices++;
+		}
+		gl.glVertex3f(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex2f(float, float)
+	 */
+	public void glVertex2f(float x, float y) {
+		if (counting()) {
+			current.vertices++;
+		}
+		gl.glVertex2f(x, y);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glRotatef(float, float, float, float)
+	 */
+	public void glRotatef(float angle, float x, float y, float z) {
+		state("glRotatef");
+		if (counting()) {
+			current.matrixChanges++;
+		}
+		gl.glRotatef(angle, x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTranslatef(float, float, float)
+	 */
+	public void glTranslatef(float x, float y, float z) {
+		state("glTranslatef");
+		if (counting()) {
+			current.matrixChanges++;
+		}
+		gl.glTranslatef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBegin(int)
+	 */
+	public void glBegin(int geomType) {
+		if (counting()) {
+			if ((pendingType != NONE) && ((pendingType != geomType) || !isMergeable(geomType))) {
+				current.addFlush("glBegin");
+			}
+			current.batches++;
+			pendingType = geomType;
+		}
+		gl.glBegin(geomType);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnd()
+	 */
+	public void glEnd() {
+		gl.glEnd();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexEnvi(int, int, int)
+	 */
+	public void glTexEnvi(int target, int mode, int value) {
+		state("glTexEnvi");
+		gl.glTexEnvi(target, mode, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPointSize(float)
+	 */
+	public void glPointSize(float size) {
+		state("glPointSize");
+		gl.glPointSize(size);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScalef(float, float, float)
+	 */
+	public void glScalef(float x, float y, float z) {
+		state("glScalef");
+		if (counting()) {
+			current.matrixChanges++;
+		}
+		gl.glScalef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPushMatrix()
+	 */
+	public void glPushMatrix() {
+		state("glPushMatrix");
+		if (counting()) {
+			current.matrixPushes++;
+		}
+		gl.glPushMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPopMatrix()
+	 */
+	public void glPopMatrix() {
+		state("glPopMatrix");
+		if (counting()) {
+			current.matrixChanges++;
+		}
+		gl.glPopMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBlendFunc(int, int)
+	 */
+	public void glBlendFunc(int src, int dest) {
+		state("glBlendFunc");
+		if (counting()) {
+			current.blendChanges++;
+		}
+		gl.glBlendFunc(src, dest);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenLists(int)
+	 */
+	public int glGenLists(int count) {
+		return gl.glGenLists(count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glNewList(int, int)
+	 */
+	public void glNewList(int id, int option) {
+		state("glNewList");
+		listMode++;
+		gl.glNewList(id, option);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEndList()
+	 */
+	public void glEndList() {
+		listMode--;
+		gl.glEndList();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCallList(int)
+	 */
+	public void glCallList(int id) {
+		state("glCallList");
+		if (counting()) {
+			current.listCalls++;
+		}
+		gl.glCallList(id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCopyTexImage2D(int, int, int, int, int, int, int, int)
+	 */
+	public void glCopyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
+		state("glCopyTexImage2D");
+		gl.glCopyTexImage2D(target, level, internalFormat, x, y, width, height, border);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glReadPixels(int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, ByteBuffer pixels) {
+		state("glReadPixels");
+		gl.glReadPixels(x, y, width, height, format, type, pixels);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexParameteri(int, int, int)
+	 */
+	public void glTexParameteri(int target, int param, int value) {
+		state("glTexParameteri");
+		gl.glTexParameteri(target, param, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#getCurrentColor()
+	 */
+	public float[] getCurrentColor() {
+		return gl.getCurrentColor();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteLists(int, int)
+	 */
+	public void glDeleteLists(int list, int count) {
+		gl.glDeleteLists(list, count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthMask(boolean)
+	 */
+	public void glDepthMask(boolean mask) {
+		state("glDepthMask");
+		gl.glDepthMask(mask);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearDepth(float)
+	 */
+	public void glClearDepth(float value) {
+		gl.glClearDepth(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthFunc(int)
+	 */
+	public void glDepthFunc(int func) {
+		state("glDepthFunc");
+		gl.glDepthFunc(func);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setGlobalAlphaScale(float)
+	 */
+	public void setGlobalAlphaScale(float alphaScale) {
+		gl.setGlobalAlphaScale(alphaScale);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
+	 */
+	public void glLoadMatrix(FloatBuffer buffer) {
+		state("glLoadMatrix");
+		if (counting()) {
+			current.matrixChanges++;
+		}
+		gl.glLoadMatrix(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenTextures(java.nio.IntBuffer)
+	 */
+	public void glGenTextures(IntBuffer ids) {
+		gl.glGenTextures(ids);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetError()
+	 */
+	public void glGetError() {
+		gl.glGetError();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexImage2D(int target, int i, int dstPixelFormat, int width, int height, int j,
+							 int srcPixelFormat, int glUnsignedByte, ByteBuffer textureBuffer) {
+		state("glTexImage2D");
+		gl.glTexImage2D(target, i, dstPixelFormat, width, height, j, srcPixelFormat, glUnsignedByte, textureBuffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexSubImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY, int width, int height,
+								int glBgra, int glUnsignedByte, ByteBuffer scratchByteBuffer) {
+		state("glTexSubImage2D");
+		gl.glTexSubImage2D(glTexture2d, i, pageX, pageY, width, height, glBgra, glUnsignedByte, scratchByteBuffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canTextureMirrorClamp()
+	 */
+	public boolean canTextureMirrorClamp() {
+		return gl.canTextureMirrorClamp();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canSecondaryColor()
+	 */
+	public boolean canSecondaryColor() {
+		return gl.canSecondaryColor();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glSecondaryColor3ubEXT(byte, byte, byte)
+	 */
+	public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+		state("glSecondaryColor3ubEXT");
+		gl.glSecondaryColor3ubEXT(b, c, d);
+	}
+}
@@ -0,0 +1,228 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The counts of rendering operations recorded by an InstrumentedSGL
+ * over a single frame.
+ *
+ * A flush is counted whenever a state change or glBegin() arrives after geometry
+ * has been given - it's the point at which a batching renderer would have to draw
+ * what it has cached. The operation that caused each flush is recorded so the calls
+ * breaking up batches can be found.
+ */
+public class RenderStatistics {
+	/** The number of glBegin()/glEnd() batches */
+	int batches;
+	/** The number of vertices given */
+	int vertices;
+	/** The number of texture binds */
+	int textureBinds;
+	/** The number of texture binds to the texture that was already bound */
+	int redundantTextureBinds;
+	/** The number of blend function changes */
+	int blendChanges;
+	/** The number of capabilities enabled or disabled */
+	int stateChanges;
+	/** The number of matrix pushes */
+	int matrixPushes;
+	/** The number of changes to the current matrix */
+	int matrixChanges;
+	/** The number of display lists called */
+	int listCalls;
+	/** The number of times cached geometry had to be flushed */
+	int flushes;
+	/** The number of flushes caused by each operation - String to Integer */
+	private HashMap flushReasons = new HashMap();
+
+	/**
+	 * Clear all the counts ready for a new frame
+	 */
+	void reset() {
+		batches = 0;
+		vertices = 0;
+		textureBinds = 0;
+		redundantTextureBinds = 0;
+		blendChanges = 0;
+		stateChanges = 0;
+		matrixPushes = 0;
+		matrixChanges = 0;
+		listCalls = 0;
+		flushes = 0;
+		flushReasons.clear();
+	}
+
+	/**
+	 * Record a flush
+	 *
+	 * @param reason The name of the operation that caused the flush
+	 */
+	void addFlush(String reason) {
+		flushes++;
+		Integer count = (Integer) flushReasons.get(reason);
+		flushReasons.put(reason, Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+	}
+
+	/**
+	 * Get the number of glBegin()/glEnd() batches
+	 *
+	 * @return The number of glBegin()/glEnd() batches
+	 */
+	public int getBatches() {
+		return batches;
+	}
+
+	/**
+	 * Get the number of vertices given
+	 *
+	 * @return The number of vertices given
+	 */
+	public int getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Get the number of texture binds
+	 *
+	 * @return The number of texture binds
+	 */
+	public int getTextureBinds() {
+		return textureBinds;
+	}
+
+	/**
+	 * Get the number of texture binds to the texture that was already bound
+	 *
+	 * @return The number of texture binds that didn't change the texture
+	 */
+	public int getRedundantTextureBinds() {
+		return redundantTextureBinds;
+	}
+
+	/**
+	 * Get the number of blend function changes
+	 *
+	 * @return The number of blend function changes
+	 */
+	public int getBlendChanges() {
+		return blendChanges;
+	}
+
+	/**
+	 * Get the number of capabilities enabled or disabled
+	 *
+	 * @return The number of glEnable() and glDisable() calls
+	 */
+	public int getStateChanges() {
+		return stateChanges;
+	}
+
+	/**
+	 * Get the number of matrix pushes
+	 *
+	 * @return The number of matrix pushes
+	 */
+	public int getMatrixPushes() {
+		return matrixPushes;
+	}
+
+	/**
+	 * Get the number of changes to the current matrix, including pops
+	 *
+	 * @return The number of changes to the current matrix
+	 */
+	public int getMatrixChanges() {
+		return matrixChanges;
+	}
+
+	/**
+	 * Get the number of display lists called
+	 *
+	 * @return The number of display lists called
+	 */
+	public int getListCalls() {
+		return listCalls;
+	}
+
+	/**
+	 * Get the number of times cached geometry had to be flushed
+	 *
+	 * @return The number of flushes
+	 */
+	public int getFlushes() {
+		return flushes;
+	}
+
+	/**
+	 * Get the number of flushes caused by a given operation
+	 *
+	 * @param reason The name of the operation, i.e. "glBindTexture"
+	 * @return The number of flushes it caused
+	 */
+	public int getFlushes(String reason) {
+		Integer count = (Integer) flushReasons.get(reason);
+		return count == null ? 0 : count.intValue();
+	}
+
+	/**
+	 * Get the number of flushes caused by each operation
+	 *
+	 * @return A copy of the map from operation name (String) to flush count (Integer)
+	 */
+	public Map getFlushReasons() {
+		return new HashMap(flushReasons);
+	}
+
+	/**
+	 * Get the operation that caused the most flushes
+	 *
+	 * @return The name of the operation that caused the most flushes or null if there were none
+	 */
+	public String getTopFlushReason() {
+		String top = null;
+		int most = 0;
+
+		for (Iterator i=flushReasons.entrySet().iterator();i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			int count = ((Integer) entry.getValue()).intValue();
+			if (count > most) {
+				most = count;
+				top = (String) entry.getKey();
+			}
+		}
+
+		return top;
+	}
+
+	/**
+	 * Copy the counts from another set of statistics
+	 *
+	 * @param other The statistics to copy
+	 */
+	void set(RenderStatistics other) {
+		batches = other.batches;
+		vertices = other.vertices;
+		textureBinds = other.textureBinds;
+		redundantTextureBinds = other.redundantTextureBinds;
+		blendChanges = other.blendChanges;
+		stateChanges = other.stateChanges;
+		matrixPushes = other.matrixPushes;
+		matrixChanges = other.matrixChanges;
+		listCalls = other.listCalls;
+		flushes = other.flushes;
+		flushReasons.clear();
+		flushReasons.putAll(other.flushReasons);
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		String top = getTopFlushReason();
+
+		return "Batches: "+batches+" Verts: "+vertices+" Binds: "+textureBinds+
+			   " Flushes: "+flushes+(top == null ? "" : " ("+top+" "+getFlushes(top)+")");
+	}
+}
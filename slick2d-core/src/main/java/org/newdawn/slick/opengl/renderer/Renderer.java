@@ -12,6 +12,8 @@ public class Renderer {
 	public static final int IMMEDIATE_RENDERER = 1;
 	/** The indicator for vertex array based rendering */
 	public static final int VERTEX_ARRAY_RENDERER = 2;
+	/** The indicator for vertex buffer object based rendering */
+	public static final int VERTEX_BUFFER_RENDERER = 5;
 	
 	/** The indicator for direct GL line renderer (the default) */
 	public static final int DEFAULT_LINE_STRIP_RENDERER = 3;
@@ -37,6 +39,9 @@ public class Renderer {
 			case VERTEX_ARRAY_RENDERER:
 				setRenderer(new VAOGLRenderer());
 				return;
+			case VERTEX_BUFFER_RENDERER:
+				setRenderer(new VBOGLRenderer());
+				return;
 		}
 		
 		throw new RuntimeException("Unknown renderer type: "+type);
@@ -78,6 +83,21 @@ public class Renderer {
 		renderer = r;
 	}
 	
+	/**
+	 * Wrap the renderer in use so that the operations passed to it are counted each
+	 * frame. Like the other renderer settings this must be called before the game has
+	 * been started, and after the renderer type has been selected.
+	 * 
+	 * @return The renderer counting operations
+	 */
+	public static InstrumentedSGL instrument() {
+		if (!(renderer instanceof InstrumentedSGL)) {
+			renderer = new InstrumentedSGL(renderer);
+		}
+		
+		return (InstrumentedSGL) renderer;
+	}
+	
 	/**
 	 * Get the renderer to be used when accessing GL
 	 * 
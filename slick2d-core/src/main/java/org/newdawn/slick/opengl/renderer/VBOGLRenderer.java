@@ -0,0 +1,749 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
+import org.newdawn.slick.util.Log;
+
+/**
+ * A renderer that caches geometry into a single interleaved array and streams it
+ * to the card through a vertex buffer object.
+ *
+ * Each vertex is stored as x, y, z, u, v, r, g, b, a. Batches are written one after
+ * another into a ring of buffer space and the buffer is orphaned when it wraps, so the
+ * driver never has to wait for the card to finish with data it's still drawing. Quads are
+ * drawn as indexed triangles from a static index buffer, every other geometry type is drawn
+ * as it was given. If the card doesn't support vertex buffer objects the same interleaved
+ * data is drawn from client side arrays instead.
+ *
+ * Any state that isn't geometry is passed on to a delegate renderer, immediate mode
+ * by default, after the cached geometry has been flushed.
+ */
+public class VBOGLRenderer implements SGL {
+	/** The default maximum number of vertices drawn in one batch */
+	public static final int DEFAULT_CAPACITY = 16380;
+	/** The number of floats stored for each vertex - x, y, z, u, v, r, g, b, a */
+	public static final int VERTEX_SIZE = 9;
+	/** Indicates there is no current geometry buffer */
+	private static final int NONE = -1;
+	/** The size in bytes of a single vertex */
+	private static final int STRIDE = VERTEX_SIZE * 4;
+	/** The number of batches the streaming buffer can hold before it's orphaned */
+	private static final int RING_SIZE = 4;
+	/** The largest vertex count that can be addressed by a short index */
+	private static final int MAX_INDEXED_VERTS = 65536;
+
+	/** The renderer state changes are passed to */
+	private SGL gl;
+	/** The maximum number of vertices drawn in one batch */
+	private int capacity;
+
+	/** The type of the geometry currently being built - i.e. GL_QUADS */
+	private int currentType = NONE;
+	/** The last colour applied with the alpha scale applied */
+	private float[] color = new float[] {1f,1f,1f,1f};
+	/** The last colour applied as it was given */
+	private float[] rawColor = new float[] {1f,1f,1f,1f};
+	/** The last texture coordinate applied */
+	private float[] tex = new float[] {0f,0f};
+	/** The global colour scale */
+	private float alphaScale = 1;
+	/** The number of vertices cached */
+	private int vertIndex;
+	/** The interleaved vertex data cached */
+	private float[] verts;
+	/** The stack for entering list creation mode - when we're creating a list we can't buffer */
+	private int listMode = 0;
+
+	/** True if we're streaming through vertex buffer objects rather than client arrays */
+	private boolean useVBO;
+	/** The buffer used to pass the vertex data to GL */
+	private FloatBuffer vertices;
+	/** The client side indices used to draw quads when VBOs aren't available */
+	private ShortBuffer quadIndices;
+	/** The ID of the streaming vertex buffer */
+	private int vertexBufferID;
+	/** The ID of the static buffer holding the quad indices */
+	private int indexBufferID;
+	/** The size in bytes of the streaming vertex buffer */
+	private int bufferSize;
+	/** The offset in bytes the next batch will be written to in the streaming buffer */
+	private int bufferOffset;
+
+	/**
+	 * Create a new renderer with the default batch capacity
+	 */
+	public VBOGLRenderer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a new renderer
+	 *
+	 * @param capacity The maximum number of vertices to draw in one batch
+	 */
+	public VBOGLRenderer(int capacity) {
+		this(new ImmediateModeOGLRenderer(), capacity);
+	}
+
+	/**
+	 * Create a new renderer passing state changes to the given renderer
+	 *
+	 * @param gl The renderer state changes are passed to
+	 * @param capacity The maximum number of vertices to draw in one batch
+	 */
+	protected VBOGLRenderer(SGL gl, int capacity) {
+		// keep the capacity a multiple of 12 so quads, triangles and lines
+		// always split on a primitive boundary
+		capacity = Math.min(capacity, MAX_INDEXED_VERTS);
+		capacity = Math.max(12, capacity - (capacity % 12));
+
+		this.gl = gl;
+		this.capacity = capacity;
+		verts = new float[capacity * VERTEX_SIZE];
+	}
+
+	/**
+	 * Get the maximum number of vertices drawn in one batch
+	 *
+	 * @return The maximum number of vertices drawn in one batch
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Create the indices that draw a set of quads as pairs of triangles. Each quad
+	 * given as top left, bottom left, bottom right, top right is split into 0,1,2 and 2,3,0
+	 *
+	 * @param quads The number of quads to create indices for
+	 * @return The indices, six for each quad
+	 */
+	public static short[] createQuadIndices(int quads) {
+		short[] indices = new short[quads * 6];
+
+		for (int i=0;i<quads;i++) {
+			int vert = i * 4;
+			int index = i * 6;
+			indices[index] = (short) vert;
+			indices[index+1] = (short) (vert + 1);
+			indices[index+2] = (short) (vert + 2);
+			indices[index+3] = (short) (vert + 2);
+			indices[index+4] = (short) (vert + 3);
+			indices[index+5] = (short) vert;
+		}
+
+		return indices;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#initDisplay(int, int)
+	 */
+	public void initDisplay(int width, int height) {
+		gl.initDisplay(width, height);
+
+		if (vertices == null) {
+			vertices = BufferUtils.createFloatBuffer(capacity * VERTEX_SIZE);
+			short[] indices = createQuadIndices(capacity / 4);
+			quadIndices = BufferUtils.createShortBuffer(indices.length);
+			quadIndices.put(indices);
+			quadIndices.flip();
+		}
+
+		useVBO = GLContext.getCapabilities().OpenGL15;
+		if (useVBO) {
+			if (vertexBufferID == 0) {
+				vertexBufferID = GL15.glGenBuffers();
+				indexBufferID = GL15.glGenBuffers();
+			}
+
+			bufferSize = capacity * STRIDE * RING_SIZE;
+			bufferOffset = 0;
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBufferID);
+			GL15.glBufferData(GL15.GL_ARRAY_BUFFER, bufferSize, GL15.GL_STREAM_DRAW);
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBufferID);
+			GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, quadIndices, GL15.GL_STATIC_DRAW);
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		} else {
+			Log.warn("Vertex buffer objects not supported, using client side vertex arrays");
+		}
+
+		startBuffer();
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+	}
+
+	/**
+	 * Start a new buffer for a batch
+	 */
+	private void startBuffer() {
+		vertIndex = 0;
+	}
+
+	/**
+	 * Flush the currently cached data down to the card
+	 */
+	private void flushBuffer() {
+		if (listMode > 0) {
+			return;
+		}
+		if ((vertIndex != 0) && (currentType != NONE)) {
+			drawVertices(currentType, verts, vertIndex);
+		}
+
+		startBuffer();
+		currentType = NONE;
+	}
+
+	/**
+	 * Draw a batch of cached geometry. Quads are drawn as indexed triangles, any other
+	 * geometry type is drawn directly from the vertex data.
+	 *
+	 * @param type The type of geometry to draw - i.e. GL_QUADS
+	 * @param data The interleaved vertex data, VERTEX_SIZE floats per vertex
+	 * @param count The number of vertices to draw
+	 */
+	protected void drawVertices(int type, float[] data, int count) {
+		int floats = count * VERTEX_SIZE;
+		if (vertices.capacity() < floats) {
+			vertices = BufferUtils.createFloatBuffer(floats);
+		}
+		vertices.clear();
+		vertices.put(data, 0, floats);
+		vertices.flip();
+
+		int indexCount = (count / 4) * 6;
+
+		if (useVBO) {
+			int bytes = count * STRIDE;
+
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vertexBufferID);
+			if (bytes > bufferSize) {
+				bufferSize = bytes;
+				bufferOffset = bufferSize;
+			}
+			if (bufferOffset + bytes > bufferSize) {
+				// orphan the buffer, the driver gives us fresh storage while
+				// the card finishes with the old batches
+				GL15.glBufferData(GL15.GL_ARRAY_BUFFER, bufferSize, GL15.GL_STREAM_DRAW);
+				bufferOffset = 0;
+			}
+			GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, bufferOffset, vertices);
+
+			GL11.glVertexPointer(3, GL11.GL_FLOAT, STRIDE, bufferOffset);
+			GL11.glTexCoordPointer(2, GL11.GL_FLOAT, STRIDE, bufferOffset + 12);
+			GL11.glColorPointer(4, GL11.GL_FLOAT, STRIDE, bufferOffset + 20);
+
+			if (type == SGL.GL_QUADS) {
+				GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBufferID);
+				GL11.glDrawElements(GL11.GL_TRIANGLES, indexCount, GL11.GL_UNSIGNED_SHORT, 0);
+				GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+			} else {
+				GL11.glDrawArrays(type, 0, count);
+			}
+
+			bufferOffset += bytes;
+			GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		} else {
+			vertices.position(0);
+			GL11.glVertexPointer(3, STRIDE, vertices);
+			vertices.position(3);
+			GL11.glTexCoordPointer(2, STRIDE, vertices);
+			vertices.position(5);
+			GL11.glColorPointer(4, STRIDE, vertices);
+
+			if (type == SGL.GL_QUADS) {
+				quadIndices.position(0);
+				quadIndices.limit(indexCount);
+				GL11.glDrawElements(GL11.GL_TRIANGLES, quadIndices);
+				quadIndices.limit(quadIndices.capacity());
+			} else {
+				GL11.glDrawArrays(type, 0, count);
+			}
+		}
+	}
+
+	/**
+	 * Check if geometry of a given type can be joined on to the end of the
+	 * previous geometry of the same type
+	 *
+	 * @param type The type of geometry being built
+	 * @return True if separate runs of the geometry can be drawn as one
+	 */
+	private boolean isMergeable(int type) {
+		return (type == SGL.GL_QUADS) || (type == SGL.GL_TRIANGLES) ||
+			   (type == SGL.GL_LINES) || (type == SGL.GL_POINTS);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#flush()
+	 */
+	public void flush() {
+		flushBuffer();
+		gl.flush();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBegin(int)
+	 */
+	public void glBegin(int geomType) {
+		if (listMode > 0) {
+			gl.glBegin(geomType);
+			return;
+		}
+
+		if ((currentType != geomType) || (!isMergeable(geomType))) {
+			flushBuffer();
+			currentType = geomType;
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnd()
+	 */
+	public void glEnd() {
+		if (listMode > 0) {
+			gl.glEnd();
+			return;
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColor4f(float, float, float, float)
+	 */
+	public void glColor4f(float r, float g, float b, float a) {
+		rawColor[0] = r;
+		rawColor[1] = g;
+		rawColor[2] = b;
+		rawColor[3] = a;
+
+		color[0] = r;
+		color[1] = g;
+		color[2] = b;
+		color[3] = a * alphaScale;
+
+		if (listMode > 0) {
+			gl.glColor4f(r,g,b,a);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexCoord2f(float, float)
+	 */
+	public void glTexCoord2f(float u, float v) {
+		if (listMode > 0) {
+			gl.glTexCoord2f(u,v);
+			return;
+		}
+
+		tex[0] = u;
+		tex[1] = v;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex2f(float, float)
+	 */
+	public void glVertex2f(float x, float y) {
+		if (listMode > 0) {
+			gl.glVertex2f(x,y);
+			return;
+		}
+
+		glVertex3f(x,y,0);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glVertex3f(float, float, float)
+	 */
+	public void glVertex3f(float x, float y, float z) {
+		if (listMode > 0) {
+			gl.glVertex3f(x,y,z);
+			return;
+		}
+		if (currentType == NONE) {
+			return;
+		}
+
+		if ((vertIndex >= capacity) && isMergeable(currentType)) {
+			// the vertex array may have grown for a strip or fan, but batches that
+			// can be split still have to fit in the quad index buffer
+			int type = currentType;
+			flushBuffer();
+			currentType = type;
+		} else if (vertIndex == verts.length / VERTEX_SIZE) {
+			// strips and fans can't be split, make room for the whole thing
+			float[] grown = new float[verts.length * 2];
+			System.arraycopy(verts, 0, grown, 0, verts.length);
+			verts = grown;
+		}
+
+		int i = vertIndex * VERTEX_SIZE;
+		verts[i] = x;
+		verts[i+1] = y;
+		verts[i+2] = z;
+		verts[i+3] = tex[0];
+		verts[i+4] = tex[1];
+		verts[i+5] = color[0];
+		verts[i+6] = color[1];
+		verts[i+7] = color[2];
+		verts[i+8] = color[3];
+		vertIndex++;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#getCurrentColor()
+	 */
+	public float[] getCurrentColor() {
+		return color;
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#setGlobalAlphaScale(float)
+	 */
+	public void setGlobalAlphaScale(float alphaScale) {
+		this.alphaScale = alphaScale;
+		gl.setGlobalAlphaScale(alphaScale);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glNewList(int, int)
+	 */
+	public void glNewList(int id, int option) {
+		flushBuffer();
+		listMode++;
+		gl.glNewList(id, option);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEndList()
+	 */
+	public void glEndList() {
+		listMode--;
+		gl.glEndList();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCallList(int)
+	 */
+	public void glCallList(int id) {
+		flushBuffer();
+		gl.glColor4f(rawColor[0], rawColor[1], rawColor[2], rawColor[3]);
+		gl.glCallList(id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#enterOrtho(int, int)
+	 */
+	public void enterOrtho(int xsize, int ysize) {
+		flushBuffer();
+		gl.enterOrtho(xsize, ysize);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearColor(float, float, float, float)
+	 */
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		gl.glClearColor(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClipPlane(int, java.nio.DoubleBuffer)
+	 */
+	public void glClipPlane(int plane, DoubleBuffer buffer) {
+		flushBuffer();
+		gl.glClipPlane(plane, buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScissor(int, int, int, int)
+	 */
+	public void glScissor(int x, int y, int width, int height) {
+		flushBuffer();
+		gl.glScissor(x, y, width, height);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLineWidth(float)
+	 */
+	public void glLineWidth(float width) {
+		flushBuffer();
+		gl.glLineWidth(width);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClear(int)
+	 */
+	public void glClear(int value) {
+		flushBuffer();
+		gl.glClear(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glColorMask(boolean, boolean, boolean, boolean)
+	 */
+	public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		flushBuffer();
+		gl.glColorMask(red, green, blue, alpha);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadIdentity()
+	 */
+	public void glLoadIdentity() {
+		flushBuffer();
+		gl.glLoadIdentity();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetInteger(int, java.nio.IntBuffer)
+	 */
+	public void glGetInteger(int id, IntBuffer ret) {
+		flushBuffer();
+		gl.glGetInteger(id, ret);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetFloat(int, java.nio.FloatBuffer)
+	 */
+	public void glGetFloat(int id, FloatBuffer ret) {
+		flushBuffer();
+		gl.glGetFloat(id, ret);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glEnable(int)
+	 */
+	public void glEnable(int item) {
+		flushBuffer();
+		gl.glEnable(item);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDisable(int)
+	 */
+	public void glDisable(int item) {
+		flushBuffer();
+		gl.glDisable(item);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBindTexture(int, int)
+	 */
+	public void glBindTexture(int target, int id) {
+		flushBuffer();
+		gl.glBindTexture(target, id);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetTexImage(int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+		flushBuffer();
+		gl.glGetTexImage(target, level, format, type, pixels);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteTextures(java.nio.IntBuffer)
+	 */
+	public void glDeleteTextures(IntBuffer buffer) {
+		flushBuffer();
+		gl.glDeleteTextures(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glRotatef(float, float, float, float)
+	 */
+	public void glRotatef(float angle, float x, float y, float z) {
+		flushBuffer();
+		gl.glRotatef(angle, x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTranslatef(float, float, float)
+	 */
+	public void glTranslatef(float x, float y, float z) {
+		flushBuffer();
+		gl.glTranslatef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexEnvi(int, int, int)
+	 */
+	public void glTexEnvi(int target, int mode, int value) {
+		flushBuffer();
+		gl.glTexEnvi(target, mode, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPointSize(float)
+	 */
+	public void glPointSize(float size) {
+		flushBuffer();
+		gl.glPointSize(size);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glScalef(float, float, float)
+	 */
+	public void glScalef(float x, float y, float z) {
+		flushBuffer();
+		gl.glScalef(x, y, z);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPushMatrix()
+	 */
+	public void glPushMatrix() {
+		flushBuffer();
+		gl.glPushMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glPopMatrix()
+	 */
+	public void glPopMatrix() {
+		flushBuffer();
+		gl.glPopMatrix();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glBlendFunc(int, int)
+	 */
+	public void glBlendFunc(int src, int dest) {
+		flushBuffer();
+		gl.glBlendFunc(src, dest);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenLists(int)
+	 */
+	public int glGenLists(int count) {
+		return gl.glGenLists(count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glCopyTexImage2D(int, int, int, int, int, int, int, int)
+	 */
+	public void glCopyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
+		flushBuffer();
+		gl.glCopyTexImage2D(target, level, internalFormat, x, y, width, height, border);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glReadPixels(int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glReadPixels(int x, int y, int width, int height, int format, int type, ByteBuffer pixels) {
+		flushBuffer();
+		gl.glReadPixels(x, y, width, height, format, type, pixels);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexParameteri(int, int, int)
+	 */
+	public void glTexParameteri(int target, int param, int value) {
+		flushBuffer();
+		gl.glTexParameteri(target, param, value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDeleteLists(int, int)
+	 */
+	public void glDeleteLists(int list, int count) {
+		gl.glDeleteLists(list, count);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthMask(boolean)
+	 */
+	public void glDepthMask(boolean mask) {
+		flushBuffer();
+		gl.glDepthMask(mask);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glClearDepth(float)
+	 */
+	public void glClearDepth(float value) {
+		gl.glClearDepth(value);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glDepthFunc(int)
+	 */
+	public void glDepthFunc(int func) {
+		flushBuffer();
+		gl.glDepthFunc(func);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glLoadMatrix(java.nio.FloatBuffer)
+	 */
+	public void glLoadMatrix(FloatBuffer buffer) {
+		flushBuffer();
+		gl.glLoadMatrix(buffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGenTextures(java.nio.IntBuffer)
+	 */
+	public void glGenTextures(IntBuffer ids) {
+		gl.glGenTextures(ids);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glGetError()
+	 */
+	public void glGetError() {
+		gl.glGetError();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexImage2D(int target, int i, int dstPixelFormat, int width, int height, int j,
+							 int srcPixelFormat, int glUnsignedByte, ByteBuffer textureBuffer) {
+		flushBuffer();
+		gl.glTexImage2D(target, i, dstPixelFormat, width, height, j, srcPixelFormat, glUnsignedByte, textureBuffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glTexSubImage2D(int, int, int, int, int, int, int, int, java.nio.ByteBuffer)
+	 */
+	public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY, int width, int height,
+								int glBgra, int glUnsignedByte, ByteBuffer scratchByteBuffer) {
+		flushBuffer();
+		gl.glTexSubImage2D(glTexture2d, i, pageX, pageY, width, height, glBgra, glUnsignedByte, scratchByteBuffer);
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canTextureMirrorClamp()
+	 */
+	public boolean canTextureMirrorClamp() {
+		return gl.canTextureMirrorClamp();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#canSecondaryColor()
+	 */
+	public boolean canSecondaryColor() {
+		return gl.canSecondaryColor();
+	}
+
+	/**
+	 * @see org.newdawn.slick.opengl.renderer.SGL#glSecondaryColor3ubEXT(byte, byte, byte)
+	 */
+	public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+		flushBuffer();
+		gl.glSecondaryColor3ubEXT(b, c, d);
+	}
+}
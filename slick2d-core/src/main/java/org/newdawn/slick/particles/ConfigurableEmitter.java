@@ -9,6 +9,7 @@ import org.newdawn.slick.Color;
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.geom.Vector2f;
+import org.newdawn.slick.util.FastRandom;
 import org.newdawn.slick.util.FastTrig;
 import org.newdawn.slick.util.Log;
 
@@ -20,7 +21,7 @@ import org.newdawn.slick.util.Log;
  * 
  * @author kevin
  */
-public class ConfigurableEmitter implements ParticleEmitter {
+public class ConfigurableEmitter implements PackedParticleEmitter {
 	/** The path from which the images should be loaded */
 	private static String relativePath = "";
 
@@ -37,6 +38,12 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		relativePath = path;
 	}
 
+	/** The number of steps the colour range and interpolated values are sampled at */
+	private static final int TABLE_SIZE = 256;
+
+	/** The source of the random values used by this emitter */
+	private FastRandom generator = new FastRandom();
+
 	/** The spawn interval range property - how often spawn happens */
 	public Range spawnInterval = new Range(100, 100);
 	/** The spawn count property - how many particles are spawned each time */
@@ -135,6 +142,14 @@ public class ConfigurableEmitter implements ParticleEmitter {
 	protected float adjustx;
 	/** The amount to adjust on the y axis */
 	protected float adjusty;
+	/** The scratch space the colour of a particle is interpolated into */
+	private float[] rgb = new float[3];
+	/** The colour range sampled across the life of a particle, red, green and blue for each step */
+	private float[] colorTable = new float[(TABLE_SIZE + 1) * 3];
+	/** True for each step of the colour table that the colour range covers */
+	private boolean[] colorCovered = new boolean[TABLE_SIZE + 1];
+	/** The position, red, green and blue of each colour record when the colour table was sampled */
+	private float[] sampledColors = new float[0];
 	
 	/**
 	 * Create a new emitter configurable externally
@@ -169,6 +184,74 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		curve.add(new Vector2f(0.0f, 0.0f));
 		curve.add(new Vector2f(1.0f, 1.0f));
 		scaleY = new LinearInterpolator(curve, 0, 1);
+
+		sampleTables();
+	}
+
+	/**
+	 * Seed the random values this emitter uses. Seeding an emitter and then
+	 * calling replay() will play the effect out the same way each time it's
+	 * given the same updates.
+	 * 
+	 * @param seed
+	 *            The seed to generate random values from
+	 */
+	public void setSeed(long seed) {
+		generator.setSeed(seed);
+	}
+
+	/**
+	 * Sample the colour range and the active interpolated values into tables
+	 * so particles can look them up rather than search through them. The
+	 * ranges may be changed in place at any time, so each is compared with
+	 * what it was when last sampled and only sampled again if it's changed.
+	 */
+	private void sampleTables() {
+		if (colorsChanged()) {
+			for (int i = 0; i <= TABLE_SIZE; i++) {
+				colorCovered[i] = sampleColor((float) i / TABLE_SIZE, rgb);
+				colorTable[i * 3] = rgb[0];
+				colorTable[(i * 3) + 1] = rgb[1];
+				colorTable[(i * 3) + 2] = rgb[2];
+			}
+		}
+
+		alpha.sample();
+		size.sample();
+		velocity.sample();
+		scaleY.sample();
+	}
+
+	/**
+	 * Check if the colour range has changed since the colour table was last
+	 * sampled, recording it as it is now if it has
+	 * 
+	 * @return True if the colour table needs sampling again
+	 */
+	private boolean colorsChanged() {
+		boolean changed = sampledColors.length != colors.size() * 4;
+		for (int i = 0; (i < colors.size()) && (!changed); i++) {
+			ColorRecord record = (ColorRecord) colors.get(i);
+			changed = (sampledColors[i * 4] != record.pos)
+					|| (sampledColors[(i * 4) + 1] != record.col.r)
+					|| (sampledColors[(i * 4) + 2] != record.col.g)
+					|| (sampledColors[(i * 4) + 3] != record.col.b);
+		}
+		if (!changed) {
+			return false;
+		}
+
+		if (sampledColors.length != colors.size() * 4) {
+			sampledColors = new float[colors.size() * 4];
+		}
+		for (int i = 0; i < colors.size(); i++) {
+			ColorRecord record = (ColorRecord) colors.get(i);
+			sampledColors[i * 4] = record.pos;
+			sampledColors[(i * 4) + 1] = record.col.r;
+			sampledColors[(i * 4) + 2] = record.col.g;
+			sampledColors[(i * 4) + 3] = record.col.b;
+		}
+		return true;
 	}
 
 	/**
@@ -279,6 +362,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 	 */
 	public void update(ParticleSystem system, int delta) {
 		this.engine = system;
+		sampleTables();
 
 		if (!adjust) {
 			adjustx = 0;
@@ -339,12 +423,9 @@ public class ConfigurableEmitter implements ParticleEmitter {
 					float s = spread.getValue(0);
 					float ang = (s + angularOffset.getValue(0) - (spread
 							.getValue() / 2)) - 90;
-					float xa = (float) FastTrig.cos(Math.toRadians(ang)) * dist;
-					float ya = (float) FastTrig.sin(Math.toRadians(ang)) * dist;
-					p.adjustPosition(xa, ya);
-
 					float xv = (float) FastTrig.cos(Math.toRadians(ang));
 					float yv = (float) FastTrig.sin(Math.toRadians(ang));
+					p.adjustPosition(xv * dist, yv * dist);
 					p.setVelocity(xv, yv, power * 0.001f);
 				}
 
@@ -384,6 +465,143 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		
 		float offset = particle.getLife() / particle.getOriginalLife();
 		float inv = 1 - offset;
+
+		if (interpolateColor(inv, rgb)) {
+			float a;
+			if (alpha.isActive()) {
+				a = alpha.lookup(inv) / 255.0f;
+			} else {
+				a = ((startAlpha.getValue(0) / 255.0f) * offset)
+						+ ((endAlpha.getValue(0) / 255.0f) * inv);
+			}
+			particle.setColor(rgb[0], rgb[1], rgb[2], a);
+		}
+
+		if (size.isActive()) {
+			float s = size.lookup(inv);
+			particle.setSize(s);
+		} else {
+			particle.adjustSize(delta * growthFactor.getValue(0) * 0.001f);
+		}
+
+		if (velocity.isActive()) {
+			particle.setSpeed(velocity.lookup(inv));
+		}
+
+		if (scaleY.isActive()) {
+			particle.setScaleY(scaleY.lookup(inv));
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.PackedParticleEmitter#updateParticles(org.newdawn.slick.particles.PackedParticles,
+	 *      int, int, int, float[])
+	 */
+	public void updateParticles(PackedParticles particles, int from, int to, int delta, float[] rgb) {
+		// only one range starts at zero so only one thread counts the particles
+		if (from == 0) {
+			particleCount += particles.size();
+		}
+
+		float wind = windFactor.getValue(0) * 0.00005f * delta;
+		float gravity = gravityFactor.getValue(0) * 0.00005f * delta;
+		float start = startAlpha.getValue(0) / 255.0f;
+		float end = endAlpha.getValue(0) / 255.0f;
+		float growth = delta * growthFactor.getValue(0) * 0.001f;
+		boolean alphaActive = alpha.isActive();
+		boolean sizeActive = size.isActive();
+		boolean velocityActive = velocity.isActive();
+		boolean scaleYActive = scaleY.isActive();
+
+		float[] x = particles.x;
+		float[] y = particles.y;
+		float[] velx = particles.velx;
+		float[] vely = particles.vely;
+		float[] sizes = particles.size;
+		float[] r = particles.r;
+		float[] g = particles.g;
+		float[] b = particles.b;
+		float[] a = particles.a;
+		float[] life = particles.life;
+		float[] originalLife = particles.originalLife;
+		float[] scales = particles.scaleY;
+
+		for (int i = from; i < to; i++) {
+			x[i] += adjustx;
+			y[i] += adjusty;
+			velx[i] += wind;
+			vely[i] += gravity;
+
+			float offset = life[i] / originalLife[i];
+			float inv = 1 - offset;
+
+			if (interpolateColor(inv, rgb)) {
+				r[i] = rgb[0];
+				g[i] = rgb[1];
+				b[i] = rgb[2];
+				if (alphaActive) {
+					a[i] = alpha.lookup(inv) / 255.0f;
+				} else {
+					a[i] = (start * offset) + (end * inv);
+				}
+			}
+
+			if (sizeActive) {
+				sizes[i] = size.lookup(inv);
+			} else {
+				sizes[i] = Math.max(0, sizes[i] + growth);
+			}
+
+			if (velocityActive) {
+				float speed = velocity.lookup(inv);
+				float currentSpeed = (float) Math.sqrt((velx[i] * velx[i])
+						+ (vely[i] * vely[i]));
+				velx[i] = (velx[i] * speed) / currentSpeed;
+				vely[i] = (vely[i] * speed) / currentSpeed;
+			}
+
+			if (scaleYActive) {
+				scales[i] = scaleY.lookup(inv);
+			}
+		}
+	}
+
+	/**
+	 * Work out the colour of a particle from the sampled colour range
+	 * 
+	 * @param inv
+	 *            The proportion of the particle's life that has passed
+	 * @param rgb
+	 *            The array to write the red, green and blue components to
+	 * @return True if the colour range covers the point in the particle's
+	 *         life and the colour was written
+	 */
+	private boolean interpolateColor(float inv, float[] rgb) {
+		float pos = inv * TABLE_SIZE;
+		int i = (int) pos;
+		if ((inv < 0) || (i >= TABLE_SIZE) || !colorCovered[i] || !colorCovered[i + 1]) {
+			return sampleColor(inv, rgb);
+		}
+
+		float f = pos - i;
+		int index = i * 3;
+		rgb[0] = colorTable[index] + ((colorTable[index + 3] - colorTable[index]) * f);
+		rgb[1] = colorTable[index + 1] + ((colorTable[index + 4] - colorTable[index + 1]) * f);
+		rgb[2] = colorTable[index + 2] + ((colorTable[index + 5] - colorTable[index + 2]) * f);
+		return true;
+	}
+
+	/**
+	 * Work out the colour of a particle by searching the colour range
+	 * 
+	 * @param inv
+	 *            The proportion of the particle's life that has passed
+	 * @param rgb
+	 *            The array to write the red, green and blue components to
+	 * @return True if the colour range covers the point in the particle's
+	 *         life and the colour was written
+	 */
+	private boolean sampleColor(float inv, float[] rgb) {
 		float colOffset = 0;
 		float colInv = 1;
 
@@ -405,35 +623,14 @@ public class ConfigurableEmitter implements ParticleEmitter {
 			}
 		}
 
-		if (startColor != null) {
-			float r = (startColor.r * colOffset) + (endColor.r * colInv);
-			float g = (startColor.g * colOffset) + (endColor.g * colInv);
-			float b = (startColor.b * colOffset) + (endColor.b * colInv);
-
-			float a;
-			if (alpha.isActive()) {
-				a = alpha.getValue(inv) / 255.0f;
-			} else {
-				a = ((startAlpha.getValue(0) / 255.0f) * offset)
-						+ ((endAlpha.getValue(0) / 255.0f) * inv);
-			}
-			particle.setColor(r, g, b, a);
-		}
-
-		if (size.isActive()) {
-			float s = size.getValue(inv);
-			particle.setSize(s);
-		} else {
-			particle.adjustSize(delta * growthFactor.getValue(0) * 0.001f);
-		}
-
-		if (velocity.isActive()) {
-			particle.setSpeed(velocity.getValue(inv));
+		if (startColor == null) {
+			return false;
 		}
 
-		if (scaleY.isActive()) {
-			particle.setScaleY(scaleY.getValue(inv));
-		}
+		rgb[0] = (startColor.r * colOffset) + (endColor.r * colInv);
+		rgb[1] = (startColor.g * colOffset) + (endColor.g * colInv);
+		rgb[2] = (startColor.b * colOffset) + (endColor.b * colInv);
+		return true;
 	}
 
 	/**
@@ -484,6 +681,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		if (engine != null) {
 			engine.releaseAll(this);
 		}
+		sampleTables();
 	}
 
 	/**
@@ -599,7 +797,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		 * @return The currently configured value
 		 */
 		public float getValue(float time) {
-			return (float) (Math.random() * value);
+			return generator.nextFloat() * value;
 		}
 
 		/**
@@ -636,6 +834,10 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		private int min;
 		/** The maximum value in the data set */
 		private int max;
+		/** The value sampled at each step across the curve, filled while active */
+		private float[] table = new float[TABLE_SIZE + 1];
+		/** The x and y of each point of the curve when it was last sampled, null if it hasn't been */
+		private float[] sampledCurve;
 
 		/**
 		 * Create a new interpolated value
@@ -698,6 +900,65 @@ public class ConfigurableEmitter implements ParticleEmitter {
 			return 0;
 		}
 
+		/**
+		 * Sample the curve into the table if this value is in use and the
+		 * curve has changed since it was last sampled
+		 */
+		void sample() {
+			if ((!active) || (!curveChanged())) {
+				return;
+			}
+			for (int i = 0; i <= TABLE_SIZE; i++) {
+				table[i] = getValue((float) i / TABLE_SIZE);
+			}
+		}
+
+		/**
+		 * Check if the curve has changed since it was last sampled, recording
+		 * it as it is now if it has
+		 * 
+		 * @return True if the curve needs sampling again
+		 */
+		private boolean curveChanged() {
+			boolean changed = (sampledCurve == null)
+					|| (sampledCurve.length != curve.size() * 2);
+			for (int i = 0; (i < curve.size()) && (!changed); i++) {
+				Vector2f point = (Vector2f) curve.get(i);
+				changed = (sampledCurve[i * 2] != point.getX())
+						|| (sampledCurve[(i * 2) + 1] != point.getY());
+			}
+			if (!changed) {
+				return false;
+			}
+
+			if ((sampledCurve == null) || (sampledCurve.length != curve.size() * 2)) {
+				sampledCurve = new float[curve.size() * 2];
+			}
+			for (int i = 0; i < curve.size(); i++) {
+				Vector2f point = (Vector2f) curve.get(i);
+				sampledCurve[i * 2] = point.getX();
+				sampledCurve[(i * 2) + 1] = point.getY();
+			}
+			return true;
+		}
+
+		/**
+		 * Get the value to use at a given time value from the sampled curve,
+		 * which is only kept up to date while the value is active
+		 * 
+		 * @param t The time value (expecting t in [0,1])
+		 * @return The value to use at the specified time
+		 */
+		float lookup(float t) {
+			float pos = t * TABLE_SIZE;
+			int i = (int) pos;
+			if ((t < 0) || (i >= TABLE_SIZE)) {
+				return getValue(t);
+			}
+
+			return table[i] + ((table[i + 1] - table[i]) * (pos - i));
+		}
+
 		/**
 		 * Check if this interpolated value should be used
 		 * 
@@ -822,7 +1083,7 @@ public class ConfigurableEmitter implements ParticleEmitter {
 		 * @return The random number from the range
 		 */
 		public float random() {
-			return (float) (min + (Math.random() * (max - min)));
+			return min + (generator.nextFloat() * (max - min));
 		}
 
 		/**
@@ -0,0 +1,28 @@
+package org.newdawn.slick.particles;
+
+/**
+ * An emitter that can update its particles in a PackedParticleSystem a range
+ * at a time, working on the arrays of particle state directly rather than on
+ * a Particle at a time.
+ */
+public interface PackedParticleEmitter extends ParticleEmitter {
+	/** The number of floats in the scratch array given with each range */
+	public static final int SCRATCH_SIZE = 4;
+
+	/**
+	 * Update a range of the particles this emitter produced, in the same way
+	 * updateParticle() would update each of them. The ranges given in one
+	 * update cover all of the particles, and the system may update several
+	 * ranges at the same time on different threads, so this should only write
+	 * to the particles in the range and not change the emitter. The particles
+	 * are aged and moved along their velocity by the system afterwards.
+	 *
+	 * @param particles The particles to be updated
+	 * @param from The index of the first particle to update
+	 * @param to The index after the last particle to update
+	 * @param delta The amount of time in milliseconds since last particle update
+	 * @param scratch An array of SCRATCH_SIZE floats the emitter may use while
+	 * updating the range, which no other range uses at the same time
+	 */
+	public void updateParticles(PackedParticles particles, int from, int to, int delta, float[] scratch);
+}
@@ -0,0 +1,705 @@
+package org.newdawn.slick.particles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.SpriteBatch;
+import org.newdawn.slick.opengl.TextureImpl;
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.newdawn.slick.util.Log;
+
+/**
+ * A particle system that holds the state of its particles in arrays rather
+ * than as a Particle object each. The particles of each emitter are kept
+ * packed together so updating them never visits a dead particle, and each
+ * emitter's particles are rendered as a single run of quads with their
+ * rotation and scaling worked out on the CPU rather than through the GL
+ * matrix.
+ *
+ * Any ParticleEmitter can be used. Emitters that implement
+ * PackedParticleEmitter, as ConfigurableEmitter does, update all their
+ * particles in one go. Other emitters are given each particle in turn through
+ * a Particle the state is copied in and out of.
+ *
+ * The particles can optionally be updated in parallel by giving the system a
+ * ForkJoinPool. Emitters still spawn their particles one after another on the
+ * thread calling update(), so any random values are drawn in the same order,
+ * and only the update of existing particles is split into ranges across the
+ * pool. The results are the same as updating on a single thread. Rendering
+ * always happens on the calling thread.
+ *
+ * There are a few differences to ParticleSystem:
+ * <ul>
+ * <li>A Particle returned by getNewParticle() only stays connected to the
+ * particle until getNewParticle() is next called or the emitter's update
+ * ends, so emitters shouldn't hold on to it.</li>
+ * <li>Whether particles are drawn as points or oriented quads, and the image
+ * they're drawn with, comes from their emitter rather than each particle.</li>
+ * <li>createParticle() isn't used for the particles themselves so subclasses
+ * of Particle can't add state to them.</li>
+ * </ul>
+ */
+public class PackedParticleSystem extends ParticleSystem {
+	/** The default number of particles in the system */
+	private static final int DEFAULT_PARTICLES = 100;
+	/** The number of particles updated by each task when updating in parallel */
+	private static final int RANGE_SIZE = 4096;
+
+	/** The particles of each emitter */
+	private HashMap packedByEmitter = new HashMap();
+	/** The number of particles updated in the last update */
+	private int count;
+
+	/** The particle last handed out by getNewParticle() */
+	private Particle spawned;
+	/** The particles the last particle handed out belongs to, or null if none is outstanding */
+	private PackedParticles spawnedIn;
+	/** The index of the last particle handed out */
+	private int spawnedIndex;
+	/** The particle state is copied through to update it with emitters that work a particle at a time */
+	private Particle updating;
+	/** The colour particles are drawn with when recorded into a sprite batch */
+	private Color batchColor = new Color(1f, 1f, 1f, 1f);
+	/** The updates of ranges of particles, kept from one update to the next with their scratch space */
+	private ArrayList rangeUpdates = new ArrayList();
+	/** The pool particles are updated on, or null to update them on the calling thread */
+	private ForkJoinPool pool;
+
+	/**
+	 * Create a new particle system
+	 *
+	 * @param defaultSprite The sprite to render for each particle
+	 */
+	public PackedParticleSystem(Image defaultSprite) {
+		this(defaultSprite, DEFAULT_PARTICLES);
+	}
+
+	/**
+	 * Create a new particle system
+	 *
+	 * @param defaultSpriteRef The sprite to render for each particle
+	 */
+	public PackedParticleSystem(String defaultSpriteRef) {
+		this(defaultSpriteRef, DEFAULT_PARTICLES);
+	}
+
+	/**
+	 * Create a new particle system
+	 *
+	 * @param defaultSpriteRef The sprite to render for each particle
+	 * @param maxParticles The number of particles available to each emitter
+	 */
+	public PackedParticleSystem(String defaultSpriteRef, int maxParticles) {
+		this(defaultSpriteRef, maxParticles, null);
+	}
+
+	/**
+	 * Create a new particle system
+	 *
+	 * @param defaultSpriteRef The sprite to render for each particle
+	 * @param maxParticles The number of particles available to each emitter
+	 * @param mask The mask used to make the sprite image transparent
+	 */
+	public PackedParticleSystem(String defaultSpriteRef, int maxParticles, Color mask) {
+		super(defaultSpriteRef, maxParticles, mask);
+		spawned = new Particle(this);
+		updating = new Particle(this);
+	}
+
+	/**
+	 * Create a new particle system
+	 *
+	 * @param defaultSprite The sprite to render for each particle
+	 * @param maxParticles The number of particles available to each emitter
+	 */
+	public PackedParticleSystem(Image defaultSprite, int maxParticles) {
+		super(defaultSprite, maxParticles);
+		spawned = new Particle(this);
+		updating = new Particle(this);
+	}
+
+	/**
+	 * Get the particles produced by an emitter in this system
+	 *
+	 * @param emitter The emitter whose particles should be retrieved
+	 * @return The particles of the emitter or null if the emitter isn't in this system
+	 */
+	public PackedParticles getParticles(ParticleEmitter emitter) {
+		commit();
+		return (PackedParticles) packedByEmitter.get(emitter);
+	}
+
+	/**
+	 * Write the particle last handed out back into the arrays
+	 */
+	private void commit() {
+		if (spawnedIn == null) {
+			return;
+		}
+
+		spawnedIn.store(spawnedIndex, spawned);
+		if (spawned.life <= 0) {
+			// nothing has been added since so this is the last particle
+			spawnedIn.remove(spawnedIndex);
+		}
+		spawnedIn = null;
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#reset()
+	 */
+	public void reset() {
+		commit();
+		for (int i=0;i<emitters.size();i++) {
+			ParticleEmitter emitter = (ParticleEmitter) emitters.get(i);
+			((PackedParticles) packedByEmitter.get(emitter)).clear();
+			emitter.resetState();
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#addEmitter(org.newdawn.slick.particles.ParticleEmitter)
+	 */
+	public void addEmitter(ParticleEmitter emitter) {
+		emitters.add(emitter);
+		packedByEmitter.put(emitter, new PackedParticles(maxParticlesPerEmitter));
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#removeEmitter(org.newdawn.slick.particles.ParticleEmitter)
+	 */
+	public void removeEmitter(ParticleEmitter emitter) {
+		commit();
+		emitters.remove(emitter);
+		packedByEmitter.remove(emitter);
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#getNewParticle(org.newdawn.slick.particles.ParticleEmitter, float)
+	 */
+	public Particle getNewParticle(ParticleEmitter emitter, float life) {
+		commit();
+		if (!spawnAllowed()) {
+			return dummy;
+		}
+
+		PackedParticles particles = (PackedParticles) packedByEmitter.get(emitter);
+		int index = (particles == null) ? -1 : particles.add(life);
+		if (index < 0) {
+			Log.warn("Ran out of particles (increase the limit)!");
+			return dummy;
+		}
+
+		spawned.init(emitter, life);
+		spawned.setColor(1, 1, 1, 1);
+		spawned.setImage(getDefaultImage());
+		spawnedIn = particles;
+		spawnedIndex = index;
+
+		return spawned;
+	}
+
+	/**
+	 * Particles are released as soon as their life runs out so this does
+	 * nothing
+	 *
+	 * @see org.newdawn.slick.particles.ParticleSystem#release(org.newdawn.slick.particles.Particle)
+	 */
+	public void release(Particle particle) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#releaseAll(org.newdawn.slick.particles.ParticleEmitter)
+	 */
+	public void releaseAll(ParticleEmitter emitter) {
+		PackedParticles particles = getParticles(emitter);
+		if (particles != null) {
+			particles.clear();
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#moveAll(org.newdawn.slick.particles.ParticleEmitter, float, float)
+	 */
+	public void moveAll(ParticleEmitter emitter, float x, float y) {
+		PackedParticles particles = getParticles(emitter);
+		if (particles != null) {
+			particles.move(x, y);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#getParticleBounds(org.newdawn.slick.particles.ParticleEmitter, float[])
+	 */
+	protected boolean getParticleBounds(ParticleEmitter emitter, float[] bounds) {
+		PackedParticles particles = (PackedParticles) packedByEmitter.get(emitter);
+		return (particles != null) && particles.getBounds(bounds);
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#getParticleCount(org.newdawn.slick.particles.ParticleEmitter)
+	 */
+	protected int getParticleCount(ParticleEmitter emitter) {
+		PackedParticles particles = (PackedParticles) packedByEmitter.get(emitter);
+		return (particles == null) ? 0 : particles.size();
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#getParticleCount()
+	 */
+	public int getParticleCount() {
+		return count;
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#update(int)
+	 */
+	public void update(int delta) {
+		getDefaultImage();
+		commit();
+
+		culled.clear();
+		ArrayList emitters = new ArrayList(this.emitters);
+		for (int i=0;i<emitters.size();i++) {
+			ParticleEmitter emitter = (ParticleEmitter) emitters.get(i);
+			if (emitter.isEnabled()) {
+				if (cull(emitter)) {
+					culled.add(emitter);
+					continue;
+				}
+				emitter.update(this, delta);
+				commit();
+				if (isRemoveCompletedEmitters() && emitter.completed()) {
+					this.emitters.remove(emitter);
+					packedByEmitter.remove(emitter);
+				}
+			}
+		}
+
+		count = 0;
+		int ranges = 0;
+		for (int i=0;i<this.emitters.size();i++) {
+			ParticleEmitter emitter = (ParticleEmitter) this.emitters.get(i);
+			if (emitter.isEnabled() && !culled.contains(emitter)) {
+				PackedParticles particles = (PackedParticles) packedByEmitter.get(emitter);
+				count += particles.size();
+				if (!(emitter instanceof PackedParticleEmitter)) {
+					updateParticles(emitter, particles, delta);
+				}
+
+				int size = particles.size();
+				int step = pool == null ? Math.max(size, 1) : RANGE_SIZE;
+				for (int from=0;from<size;from+=step) {
+					if (ranges == rangeUpdates.size()) {
+						rangeUpdates.add(new RangeUpdate());
+					}
+					RangeUpdate range = (RangeUpdate) rangeUpdates.get(ranges++);
+					range.init(emitter, particles, from, Math.min(size, from + step), delta);
+				}
+			}
+		}
+		// don't keep hold of emitters through updates that are no longer needed
+		while (rangeUpdates.size() > ranges) {
+			rangeUpdates.remove(rangeUpdates.size() - 1);
+		}
+
+		if (pool == null) {
+			for (int i=0;i<ranges;i++) {
+				((RangeUpdate) rangeUpdates.get(i)).compute();
+			}
+		} else if (ranges > 0) {
+			pool.invoke(new AllRangesUpdate(rangeUpdates));
+		}
+
+		for (int i=0;i<this.emitters.size();i++) {
+			ParticleEmitter emitter = (ParticleEmitter) this.emitters.get(i);
+			if (emitter.isEnabled() && !culled.contains(emitter)) {
+				((PackedParticles) packedByEmitter.get(emitter)).removeDead();
+			}
+		}
+	}
+
+	/**
+	 * Update the particles of an emitter that works a particle at a time. This
+	 * is always done on the calling thread since the emitter may spawn
+	 * particles as it goes.
+	 *
+	 * @param emitter The emitter that produced the particles
+	 * @param particles The particles to update
+	 * @param delta The amount of time thats passed since last update in milliseconds
+	 */
+	private void updateParticles(ParticleEmitter emitter, PackedParticles particles, int delta) {
+		updating.init(emitter, 0);
+		for (int i=0;i<particles.size();i++) {
+			particles.load(i, updating);
+			emitter.updateParticle(updating, delta);
+			particles.store(i, updating);
+		}
+		// the emitter may have spawned particles as it went
+		commit();
+	}
+
+	/**
+	 * Set the pool the particles should be updated on. Each update is split
+	 * into ranges of particles that are updated across the pool, and update()
+	 * waits for them all to finish before returning.
+	 *
+	 * @param pool The pool to update particles on, or null to update them on the calling thread
+	 */
+	public void setUpdatePool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Get the pool the particles are updated on
+	 *
+	 * @return The pool the particles are updated on, or null if they're updated on the calling thread
+	 */
+	public ForkJoinPool getUpdatePool() {
+		return pool;
+	}
+
+	/**
+	 * The update of a range of one emitter's particles
+	 */
+	private static class RangeUpdate extends RecursiveAction {
+		/** The emitter that produced the particles */
+		private ParticleEmitter emitter;
+		/** The particles to update */
+		private PackedParticles particles;
+		/** The index of the first particle to update */
+		private int from;
+		/** The index after the last particle to update */
+		private int to;
+		/** The amount of time thats passed since last update in milliseconds */
+		private int delta;
+		/** The scratch space given to the emitter, only used by this range */
+		private float[] scratch = new float[PackedParticleEmitter.SCRATCH_SIZE];
+
+		/**
+		 * Set up this task to update a range of particles
+		 *
+		 * @param emitter The emitter that produced the particles
+		 * @param particles The particles to update
+		 * @param from The index of the first particle to update
+		 * @param to The index after the last particle to update
+		 * @param delta The amount of time thats passed since last update in milliseconds
+		 */
+		public void init(ParticleEmitter emitter, PackedParticles particles, int from, int to, int delta) {
+			this.emitter = emitter;
+			this.particles = particles;
+			this.from = from;
+			this.to = to;
+			this.delta = delta;
+			// the task is run again each update
+			reinitialize();
+		}
+
+		/**
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			if (emitter instanceof PackedParticleEmitter) {
+				((PackedParticleEmitter) emitter).updateParticles(particles, from, to, delta, scratch);
+			}
+			particles.age(from, to, delta);
+		}
+	}
+
+	/**
+	 * The update of all the ranges of particles in the pool
+	 */
+	private static class AllRangesUpdate extends RecursiveAction {
+		/** The updates of each range of particles */
+		private ArrayList ranges;
+
+		/**
+		 * Create a new update of all the ranges
+		 *
+		 * @param ranges The updates of each range of particles
+		 */
+		public AllRangesUpdate(ArrayList ranges) {
+			this.ranges = ranges;
+		}
+
+		/**
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		protected void compute() {
+			invokeAll(ranges);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#render(float, float)
+	 */
+	public void render(float x, float y) {
+		Image sprite = getDefaultImage();
+		commit();
+
+		if (!isVisible()) {
+			return;
+		}
+
+		GL.glTranslatef(x,y,0);
+
+		if (getBlendingMode() == BLEND_ADDITIVE) {
+			GL.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE);
+		}
+		if (usePoints()) {
+			GL.glEnable(SGL.GL_POINT_SMOOTH);
+			TextureImpl.bindNone();
+		}
+
+		for (int emitterIdx=0;emitterIdx<emitters.size();emitterIdx++) {
+			ParticleEmitter emitter = (ParticleEmitter) emitters.get(emitterIdx);
+			if (!emitter.isEnabled() || culled.contains(emitter)) {
+				continue;
+			}
+
+			if (emitter.useAdditive()) {
+				GL.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE);
+			}
+
+			PackedParticles particles = (PackedParticles) packedByEmitter.get(emitter);
+			if (emitter.usePoints(this)) {
+				renderPoints(particles);
+			} else {
+				Image image = emitter.getImage();
+				if (image == null) {
+					image = sprite;
+				}
+				if (image != null) {
+					renderQuads(particles, image, emitter.isOriented());
+				}
+			}
+
+			if (emitter.useAdditive()) {
+				GL.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+			}
+		}
+
+		if (usePoints()) {
+			GL.glDisable(SGL.GL_POINT_SMOOTH);
+		}
+		if (getBlendingMode() == BLEND_ADDITIVE) {
+			GL.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+		}
+
+		Color.white.bind();
+		GL.glTranslatef(-x,-y,0);
+	}
+
+	/**
+	 * Render a set of particles as points. Particles of the same size in a row
+	 * are drawn together.
+	 *
+	 * @param particles The particles to render
+	 */
+	private void renderPoints(PackedParticles particles) {
+		int count = particles.size();
+		if (count == 0) {
+			return;
+		}
+
+		TextureImpl.bindNone();
+		GL.glEnable(SGL.GL_POINT_SMOOTH);
+
+		float[] px = particles.x;
+		float[] py = particles.y;
+		float[] size = particles.size;
+		float[] r = particles.r;
+		float[] g = particles.g;
+		float[] b = particles.b;
+		float[] a = particles.a;
+
+		float pointSize = -1;
+		for (int i=0;i<count;i++) {
+			if (size[i] != pointSize) {
+				if (pointSize >= 0) {
+					GL.glEnd();
+				}
+				pointSize = size[i];
+				GL.glPointSize(pointSize / 2);
+				GL.glBegin(SGL.GL_POINTS);
+			}
+			GL.glColor4f(r[i], g[i], b[i], a[i]);
+			GL.glVertex2f(px[i], py[i]);
+		}
+		GL.glEnd();
+	}
+
+	/**
+	 * Render a set of particles as a single run of textured quads, placed in
+	 * the same way Particle.render() places them
+	 *
+	 * @param particles The particles to render
+	 * @param image The image to draw for each particle
+	 * @param oriented True if the particles should be rotated to face away from the emitter
+	 */
+	private void renderQuads(PackedParticles particles, Image image, boolean oriented) {
+		int count = particles.size();
+		if (count == 0) {
+			return;
+		}
+
+		float u1 = image.getTextureOffsetX();
+		float v1 = image.getTextureOffsetY();
+		float u2 = u1 + image.getTextureWidth();
+		float v2 = v1 + image.getTextureHeight();
+
+		float[] px = particles.x;
+		float[] py = particles.y;
+		float[] size = particles.size;
+		float[] scaleY = particles.scaleY;
+		float[] r = particles.r;
+		float[] g = particles.g;
+		float[] b = particles.b;
+		float[] a = particles.a;
+
+		image.getTexture().bind();
+		GL.glBegin(SGL.GL_QUADS);
+		for (int i=0;i<count;i++) {
+			float x = px[i];
+			float y = py[i];
+			float s = (int) size[i];
+			GL.glColor4f(r[i], g[i], b[i], a[i]);
+
+			if (!oriented && (scaleY[i] == 1.0f)) {
+				float x1 = (int) (x - (size[i] / 2));
+				float y1 = (int) (y - (size[i] / 2));
+				GL.glTexCoord2f(u1, v1);
+				GL.glVertex2f(x1, y1);
+				GL.glTexCoord2f(u1, v2);
+				GL.glVertex2f(x1, y1 + s);
+				GL.glTexCoord2f(u2, v2);
+				GL.glVertex2f(x1 + s, y1 + s);
+				GL.glTexCoord2f(u2, v1);
+				GL.glVertex2f(x1 + s, y1);
+				continue;
+			}
+
+			// the rotation to the angle of the position from the emitter
+			// needs no trig since it's the normalised position
+			float cos = 1;
+			float sin = 0;
+			if (oriented) {
+				float length = (float) Math.sqrt((x * x) + (y * y));
+				if (length > 0) {
+					cos = x / length;
+					sin = y / length;
+				}
+			}
+			float half = (int) (-(size[i] / 2));
+			float x1 = half;
+			float x2 = half + s;
+			float y1 = half * scaleY[i];
+			float y2 = (half + s) * scaleY[i];
+
+			GL.glTexCoord2f(u1, v1);
+			GL.glVertex2f(x + (cos * x1) - (sin * y1), y + (sin * x1) + (cos * y1));
+			GL.glTexCoord2f(u1, v2);
+			GL.glVertex2f(x + (cos * x1) - (sin * y2), y + (sin * x1) + (cos * y2));
+			GL.glTexCoord2f(u2, v2);
+			GL.glVertex2f(x + (cos * x2) - (sin * y2), y + (sin * x2) + (cos * y2));
+			GL.glTexCoord2f(u2, v1);
+			GL.glVertex2f(x + (cos * x2) - (sin * y1), y + (sin * x2) + (cos * y1));
+		}
+		GL.glEnd();
+	}
+
+	/**
+	 * @see org.newdawn.slick.particles.ParticleSystem#render(org.newdawn.slick.SpriteBatch, float, float)
+	 */
+	public void render(SpriteBatch batch, float x, float y) {
+		Image sprite = getDefaultImage();
+		commit();
+
+		if (!isVisible()) {
+			return;
+		}
+
+		for (int emitterIdx=0;emitterIdx<emitters.size();emitterIdx++) {
+			ParticleEmitter emitter = (ParticleEmitter) emitters.get(emitterIdx);
+			if (!emitter.isEnabled() || culled.contains(emitter)) {
+				continue;
+			}
+
+			if ((getBlendingMode() == BLEND_ADDITIVE) || emitter.useAdditive()) {
+				batch.setBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE);
+			} else {
+				batch.setBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+			}
+
+			PackedParticles particles = (PackedParticles) packedByEmitter.get(emitter);
+			if (emitter.usePoints(this)) {
+				// points can't be batched
+				batch.flush();
+				GL.glTranslatef(x, y, 0);
+				renderPoints(particles);
+				GL.glDisable(SGL.GL_POINT_SMOOTH);
+				GL.glTranslatef(-x, -y, 0);
+				continue;
+			}
+
+			Image image = emitter.getImage();
+			if (image == null) {
+				image = sprite;
+			}
+			if (image == null) {
+				continue;
+			}
+
+			boolean oriented = emitter.isOriented();
+			for (int i=0;i<particles.size();i++) {
+				float px = particles.x[i];
+				float py = particles.y[i];
+				float size = particles.size[i];
+				batchColor.r = particles.r[i];
+				batchColor.g = particles.g[i];
+				batchColor.b = particles.b[i];
+				batchColor.a = particles.a[i];
+
+				int half = (int) (-(size / 2));
+				if (oriented || (particles.scaleY[i] != 1.0f)) {
+					float angle = 0;
+					if (oriented) {
+						angle = (float) (Math.atan2(py, px) * 180 / Math.PI);
+					}
+
+					batch.draw(image, x + px + half, y + py + half, -half, -half,
+							(int) size, (int) size, 1.0f, particles.scaleY[i], angle, batchColor);
+				} else {
+					batch.draw(image, x + (int) (px - (size / 2)), y + (int) (py - (size / 2)), 0, 0,
+							(int) size, (int) size, 1.0f, 1.0f, 0, batchColor);
+				}
+			}
+		}
+
+		batch.setBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+	}
+
+	/**
+	 * Create a duplicate of this system, holding its particles in arrays as
+	 * this one does
+	 *
+	 * @see org.newdawn.slick.particles.ParticleSystem#duplicate()
+	 */
+	public ParticleSystem duplicate() throws SlickException {
+		ParticleSystem copy = super.duplicate();
+
+		PackedParticleSystem packed = new PackedParticleSystem(getDefaultImage(), maxParticlesPerEmitter);
+		packed.setBlendingMode(copy.getBlendingMode());
+		packed.setUsePoints(copy.usePoints());
+		for (int i=0;i<copy.getEmitterCount();i++) {
+			packed.addEmitter(copy.getEmitter(i));
+		}
+
+		return packed;
+	}
+}
@@ -0,0 +1,310 @@
+package org.newdawn.slick.particles;
+
+/**
+ * The particles of a single emitter in a PackedParticleSystem. Rather than an
+ * object per particle each property is held in its own array, and the live
+ * particles are kept packed at the start of the arrays - when a particle dies
+ * the last particle is moved into its place. Updating and rendering the
+ * particles is then a walk along a few arrays with no dead particles to skip.
+ *
+ * The arrays are grown as needed up to the capacity given, so they may be
+ * replaced when a particle is added.
+ */
+public class PackedParticles {
+	/** The size of the arrays when the first particle is added */
+	private static final int INITIAL_SIZE = 64;
+
+	/** The x coordinate of each particle */
+	public float[] x;
+	/** The y coordinate of each particle */
+	public float[] y;
+	/** The x component of the velocity of each particle */
+	public float[] velx;
+	/** The y component of the velocity of each particle */
+	public float[] vely;
+	/** The size of each particle in pixels */
+	public float[] size;
+	/** The red component of the colour of each particle */
+	public float[] r;
+	/** The green component of the colour of each particle */
+	public float[] g;
+	/** The blue component of the colour of each particle */
+	public float[] b;
+	/** The alpha component of the colour of each particle */
+	public float[] a;
+	/** The life left in each particle in milliseconds */
+	public float[] life;
+	/** The life each particle started with in milliseconds */
+	public float[] originalLife;
+	/** The scale applied on the y axis of each particle */
+	public float[] scaleY;
+	/** The type of each particle */
+	public int[] type;
+
+	/** The number of live particles, held at the start of the arrays */
+	private int count;
+	/** The most particles that can be held */
+	private int capacity;
+
+	/**
+	 * Create a new set of particles
+	 *
+	 * @param capacity The most particles that can be live at once
+	 */
+	public PackedParticles(int capacity) {
+		this.capacity = capacity;
+		allocate(Math.min(capacity, INITIAL_SIZE));
+	}
+
+	/**
+	 * Allocate the arrays, keeping the live particles
+	 *
+	 * @param length The length of the new arrays
+	 */
+	private void allocate(int length) {
+		x = grow(x, length);
+		y = grow(y, length);
+		velx = grow(velx, length);
+		vely = grow(vely, length);
+		size = grow(size, length);
+		r = grow(r, length);
+		g = grow(g, length);
+		b = grow(b, length);
+		a = grow(a, length);
+		life = grow(life, length);
+		originalLife = grow(originalLife, length);
+		scaleY = grow(scaleY, length);
+
+		int[] types = new int[length];
+		if (type != null) {
+			System.arraycopy(type, 0, types, 0, count);
+		}
+		type = types;
+	}
+
+	/**
+	 * Create a longer copy of an array of the live particles' values
+	 *
+	 * @param values The current values or null if there are none
+	 * @param length The length of the new array
+	 * @return The new array
+	 */
+	private float[] grow(float[] values, int length) {
+		float[] grown = new float[length];
+		if (values != null) {
+			System.arraycopy(values, 0, grown, 0, count);
+		}
+		return grown;
+	}
+
+	/**
+	 * Get the number of live particles
+	 *
+	 * @return The number of live particles
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Get the most particles that can be live at once
+	 *
+	 * @return The most particles that can be live at once
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Add a particle in the same state as a Particle that's just been
+	 * initialised - at the origin, still, white and 10 pixels across.
+	 *
+	 * @param lifeTime The life of the new particle in milliseconds
+	 * @return The index of the new particle or -1 if there's no room for it
+	 */
+	public int add(float lifeTime) {
+		if (count == capacity) {
+			return -1;
+		}
+		if (count == x.length) {
+			allocate((int) Math.min(capacity, x.length * 2L));
+		}
+
+		int i = count++;
+		x[i] = 0;
+		y[i] = 0;
+		velx[i] = 0;
+		vely[i] = 0;
+		size[i] = 10;
+		r[i] = 1;
+		g[i] = 1;
+		b[i] = 1;
+		a[i] = 1;
+		life[i] = lifeTime;
+		originalLife[i] = lifeTime;
+		scaleY[i] = 1;
+		type[i] = 0;
+
+		return i;
+	}
+
+	/**
+	 * Remove a particle by moving the last particle into its place. The
+	 * particle now at the index, if any, is one that hadn't been reached by a
+	 * walk forward through the particles.
+	 *
+	 * @param i The index of the particle to remove
+	 */
+	public void remove(int i) {
+		int last = --count;
+		if (i != last) {
+			x[i] = x[last];
+			y[i] = y[last];
+			velx[i] = velx[last];
+			vely[i] = vely[last];
+			size[i] = size[last];
+			r[i] = r[last];
+			g[i] = g[last];
+			b[i] = b[last];
+			a[i] = a[last];
+			life[i] = life[last];
+			originalLife[i] = originalLife[last];
+			scaleY[i] = scaleY[last];
+			type[i] = type[last];
+		}
+	}
+
+	/**
+	 * Remove all the particles
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Move all the particles a fixed amount
+	 *
+	 * @param dx The amount to move the particles on the horizontal axis
+	 * @param dy The amount to move the particles on the vertical axis
+	 */
+	public void move(float dx, float dy) {
+		for (int i=0;i<count;i++) {
+			x[i] += dx;
+			y[i] += dy;
+		}
+	}
+
+	/**
+	 * Age the particles and move them along their velocity, removing those
+	 * that have died
+	 *
+	 * @param delta The amount of time passed in milliseconds
+	 */
+	public void integrate(int delta) {
+		age(0, count, delta);
+		removeDead();
+	}
+
+	/**
+	 * Age a range of the particles and move them along their velocity. Only
+	 * the particles in the range are touched so different ranges can be aged
+	 * at the same time. Particles that die are left in place until
+	 * removeDead() is called.
+	 *
+	 * @param from The index of the first particle to age
+	 * @param to The index after the last particle to age
+	 * @param delta The amount of time passed in milliseconds
+	 */
+	public void age(int from, int to, int delta) {
+		for (int i=from;i<to;i++) {
+			life[i] -= delta;
+			x[i] += delta * velx[i];
+			y[i] += delta * vely[i];
+		}
+	}
+
+	/**
+	 * Remove the particles whose life has run out
+	 */
+	public void removeDead() {
+		for (int i=0;i<count;) {
+			if (life[i] > 0) {
+				i++;
+			} else {
+				remove(i);
+			}
+		}
+	}
+
+	/**
+	 * Measure the area covered by the particles
+	 *
+	 * @param bounds The array to write the minimum x, minimum y, maximum x then maximum y to
+	 * @return True if there are particles and the bounds were written
+	 */
+	public boolean getBounds(float[] bounds) {
+		if (count == 0) {
+			return false;
+		}
+
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int i=0;i<count;i++) {
+			float half = size[i] / 2;
+			minX = Math.min(minX, x[i] - half);
+			minY = Math.min(minY, y[i] - half);
+			maxX = Math.max(maxX, x[i] + half);
+			maxY = Math.max(maxY, y[i] + half);
+		}
+
+		bounds[0] = minX;
+		bounds[1] = minY;
+		bounds[2] = maxX;
+		bounds[3] = maxY;
+		return true;
+	}
+
+	/**
+	 * Copy the state of a particle into a Particle so it can be given to an
+	 * emitter that only works with Particles
+	 *
+	 * @param i The index of the particle to copy
+	 * @param particle The particle to copy into
+	 */
+	void load(int i, Particle particle) {
+		particle.x = x[i];
+		particle.y = y[i];
+		particle.velx = velx[i];
+		particle.vely = vely[i];
+		particle.size = size[i];
+		particle.setColor(r[i], g[i], b[i], a[i]);
+		particle.life = life[i];
+		particle.originalLife = originalLife[i];
+		particle.scaleY = scaleY[i];
+		particle.type = type[i];
+	}
+
+	/**
+	 * Copy the state of a Particle back into a particle
+	 *
+	 * @param i The index of the particle to copy into
+	 * @param particle The particle to copy from
+	 */
+	void store(int i, Particle particle) {
+		x[i] = particle.x;
+		y[i] = particle.y;
+		velx[i] = particle.velx;
+		vely[i] = particle.vely;
+		size[i] = particle.size;
+		r[i] = particle.color.r;
+		g[i] = particle.color.g;
+		b[i] = particle.color.b;
+		a[i] = particle.color.a;
+		life[i] = particle.life;
+		originalLife[i] = particle.originalLife;
+		scaleY[i] = particle.scaleY;
+		type[i] = particle.type;
+	}
+}
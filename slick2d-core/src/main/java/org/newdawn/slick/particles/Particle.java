@@ -2,6 +2,7 @@ package org.newdawn.slick.particles;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Image;
+import org.newdawn.slick.SpriteBatch;
 import org.newdawn.slick.opengl.TextureImpl;
 import org.newdawn.slick.opengl.renderer.Renderer;
 import org.newdawn.slick.opengl.renderer.SGL;
@@ -183,6 +184,43 @@ public class Particle {
 		}
 	}
 
+	/**
+	 * Render this particle into a sprite batch. Particles rendered as points can't be
+	 * batched so the batch is flushed and they're drawn directly.
+	 * 
+	 * @param batch The batch to record the particle into
+	 * @param offsetX The x offset of the owning system
+	 * @param offsetY The y offset of the owning system
+	 */
+	public void render(SpriteBatch batch, float offsetX, float offsetY) {
+		if ((engine.usePoints() && (usePoints == INHERIT_POINTS))
+				|| (usePoints == USE_POINTS)) {
+			batch.flush();
+			GL.glTranslatef(offsetX, offsetY, 0);
+			render();
+			GL.glDisable(SGL.GL_POINT_SMOOTH);
+			GL.glTranslatef(-offsetX, -offsetY, 0);
+			return;
+		}
+		if (image == null) {
+			return;
+		}
+		
+		int half = (int) (-(size / 2));
+		if (oriented || scaleY != 1.0f) {
+			float angle = 0;
+			if (oriented) {
+				angle = (float) (Math.atan2(y, x) * 180 / Math.PI);
+			}
+			
+			batch.draw(image, offsetX + x + half, offsetY + y + half, -half, -half,
+					(int) size, (int) size, 1.0f, scaleY, angle, color);
+		} else {
+			batch.draw(image, offsetX + (int) (x - (size / 2)), offsetY + (int) (y - (size / 2)), 0, 0,
+					(int) size, (int) size, 1.0f, 1.0f, 0, color);
+		}
+	}
+
 	/**
 	 * Update the state of this particle
 	 * 
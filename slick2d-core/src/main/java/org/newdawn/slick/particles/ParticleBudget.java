@@ -0,0 +1,337 @@
+package org.newdawn.slick.particles;
+
+import java.util.ArrayList;
+
+/**
+ * A limit on the number of particles shared between a set of particle
+ * systems. Systems are added to the budget with ParticleSystem.setBudget().
+ *
+ * The budget should be updated once a frame, before the systems are updated.
+ * It then:
+ * <ul>
+ * <li>Scales back the particles spawned as the particles alive across all the
+ * systems approach the limit, refusing every spawn once it's reached. Refused
+ * particles are given the system's dummy particle, as happens when a system
+ * runs out of particles.</li>
+ * <li>Culls emitters whose particles and position lie outside the view, if one
+ * has been set. Culled emitters are neither updated nor rendered, so their
+ * particles are frozen until the emitter comes back into view.</li>
+ * </ul>
+ * The counters for the frame can be read once the systems have been updated.
+ *
+ * The view is given in the coordinates the systems are positioned in, so the
+ * position of a system set with ParticleSystem.setPosition() is added to its
+ * particles to place them in the view.
+ */
+public class ParticleBudget {
+	/** The systems sharing this budget */
+	private ArrayList systems = new ArrayList();
+	/** The most particles allowed across all the systems */
+	private int maxParticles;
+	/** The proportion of the budget in use at which spawning starts to be scaled back */
+	private float throttleStart = 0.75f;
+
+	/** True if emitters outside the view should be culled */
+	private boolean useView;
+	/** The x coordinate of the top left corner of the view */
+	private float viewX;
+	/** The y coordinate of the top left corner of the view */
+	private float viewY;
+	/** The width of the view */
+	private float viewWidth;
+	/** The height of the view */
+	private float viewHeight;
+	/** The distance outside the view that emitters are still counted as in view */
+	private float cullMargin = 32;
+
+	/** The number of particles alive across all the systems at the start of the frame */
+	private int liveParticles;
+	/** The proportion of particles spawned this frame that are allowed */
+	private float spawnScale = 1;
+	/** The fractional number of spawns allowed that haven't been used yet */
+	private float spawnCredit;
+	/** The number of particles spawned this frame */
+	private int spawnedParticles;
+	/** The number of particles refused this frame */
+	private int throttledParticles;
+	/** The number of emitters culled this frame */
+	private int culledEmitters;
+	/** The number of particles belonging to emitters culled this frame */
+	private int culledParticles;
+
+	/**
+	 * Create a new budget
+	 *
+	 * @param maxParticles The most particles allowed across all the systems
+	 */
+	public ParticleBudget(int maxParticles) {
+		this.maxParticles = maxParticles;
+	}
+
+	/**
+	 * Add a system to those sharing this budget
+	 *
+	 * @param system The system to add
+	 */
+	void add(ParticleSystem system) {
+		if (!systems.contains(system)) {
+			systems.add(system);
+		}
+	}
+
+	/**
+	 * Remove a system from those sharing this budget
+	 *
+	 * @param system The system to remove
+	 */
+	void remove(ParticleSystem system) {
+		systems.remove(system);
+	}
+
+	/**
+	 * Get the number of systems sharing this budget
+	 *
+	 * @return The number of systems sharing this budget
+	 */
+	public int getSystemCount() {
+		return systems.size();
+	}
+
+	/**
+	 * Set the most particles allowed across all the systems
+	 *
+	 * @param maxParticles The most particles allowed across all the systems
+	 */
+	public void setMaxParticles(int maxParticles) {
+		this.maxParticles = maxParticles;
+	}
+
+	/**
+	 * Get the most particles allowed across all the systems
+	 *
+	 * @return The most particles allowed across all the systems
+	 */
+	public int getMaxParticles() {
+		return maxParticles;
+	}
+
+	/**
+	 * Set how much of the budget can be used before spawning is scaled back.
+	 * Between this point and the limit the proportion of particles allowed
+	 * falls from all of them to none.
+	 *
+	 * @param throttleStart The proportion of the budget, from 0 to 1
+	 */
+	public void setThrottleStart(float throttleStart) {
+		this.throttleStart = Math.max(0, Math.min(1, throttleStart));
+	}
+
+	/**
+	 * Get how much of the budget can be used before spawning is scaled back
+	 *
+	 * @return The proportion of the budget, from 0 to 1
+	 */
+	public float getThrottleStart() {
+		return throttleStart;
+	}
+
+	/**
+	 * Set the view emitters are culled against
+	 *
+	 * @param x The x coordinate of the top left corner of the view
+	 * @param y The y coordinate of the top left corner of the view
+	 * @param width The width of the view
+	 * @param height The height of the view
+	 */
+	public void setView(float x, float y, float width, float height) {
+		useView = true;
+		viewX = x;
+		viewY = y;
+		viewWidth = width;
+		viewHeight = height;
+	}
+
+	/**
+	 * Stop culling emitters against the view
+	 */
+	public void clearView() {
+		useView = false;
+	}
+
+	/**
+	 * Set how far outside the view an emitter or its particles can be and
+	 * still be counted as in view. This covers particles drawn larger than
+	 * their size, and particles that move into view while the emitter is
+	 * culled.
+	 *
+	 * @param cullMargin The distance outside the view in pixels
+	 */
+	public void setCullMargin(float cullMargin) {
+		this.cullMargin = cullMargin;
+	}
+
+	/**
+	 * Get how far outside the view an emitter can be and still be counted as
+	 * in view
+	 *
+	 * @return The distance outside the view in pixels
+	 */
+	public float getCullMargin() {
+		return cullMargin;
+	}
+
+	/**
+	 * Start a new frame, counting the particles alive across the systems and
+	 * resetting the counters
+	 */
+	public void update() {
+		// particles of culled emitters aren't updated but are still alive
+		liveParticles = culledParticles;
+		for (int i=0;i<systems.size();i++) {
+			liveParticles += ((ParticleSystem) systems.get(i)).getParticleCount();
+		}
+
+		int start = (int) (maxParticles * throttleStart);
+		if (liveParticles >= maxParticles) {
+			spawnScale = 0;
+		} else if (liveParticles <= start) {
+			spawnScale = 1;
+		} else {
+			spawnScale = (float) (maxParticles - liveParticles) / (maxParticles - start);
+		}
+
+		spawnCredit = 0;
+		spawnedParticles = 0;
+		throttledParticles = 0;
+		culledEmitters = 0;
+		culledParticles = 0;
+	}
+
+	/**
+	 * Check if a particle can be spawned, counting it as spawned if so. The
+	 * spawns allowed are spread evenly over those asked for.
+	 *
+	 * @return True if the particle can be spawned
+	 */
+	boolean spawn() {
+		if (liveParticles + spawnedParticles < maxParticles) {
+			spawnCredit += spawnScale;
+			if (spawnCredit >= 1) {
+				spawnCredit -= 1;
+				spawnedParticles++;
+				return true;
+			}
+		}
+
+		throttledParticles++;
+		return false;
+	}
+
+	/**
+	 * Check if an emitter should be culled, counting it if so
+	 *
+	 * @param system The system the emitter belongs to
+	 * @param emitter The emitter to check
+	 * @param bounds The bounds of the emitter's particles in the system, as
+	 * minimum x, minimum y, maximum x and maximum y, or null if it has none
+	 * @param particles The number of particles the emitter has
+	 * @return True if the emitter is outside the view and should be culled
+	 */
+	boolean cull(ParticleSystem system, ParticleEmitter emitter, float[] bounds, int particles) {
+		if (!useView) {
+			return false;
+		}
+
+		float minX;
+		float minY;
+		float maxX;
+		float maxY;
+		if (emitter instanceof ConfigurableEmitter) {
+			ConfigurableEmitter configurable = (ConfigurableEmitter) emitter;
+			minX = maxX = configurable.getX();
+			minY = maxY = configurable.getY();
+			if (bounds != null) {
+				minX = Math.min(minX, bounds[0]);
+				minY = Math.min(minY, bounds[1]);
+				maxX = Math.max(maxX, bounds[2]);
+				maxY = Math.max(maxY, bounds[3]);
+			}
+		} else if (bounds != null) {
+			minX = bounds[0];
+			minY = bounds[1];
+			maxX = bounds[2];
+			maxY = bounds[3];
+		} else {
+			// nowhere to place it so it can't be culled
+			return false;
+		}
+
+		float x = system.getPositionX();
+		float y = system.getPositionY();
+		if ((x + maxX + cullMargin < viewX) || (x + minX - cullMargin > viewX + viewWidth)
+				|| (y + maxY + cullMargin < viewY) || (y + minY - cullMargin > viewY + viewHeight)) {
+			culledEmitters++;
+			culledParticles += particles;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the number of particles alive across the systems at the start of
+	 * the frame, including those frozen by culling
+	 *
+	 * @return The number of particles alive at the start of the frame
+	 */
+	public int getLiveParticles() {
+		return liveParticles;
+	}
+
+	/**
+	 * Get the proportion of particles asked for that are being spawned this
+	 * frame
+	 *
+	 * @return The proportion of particles spawned, from 0 to 1
+	 */
+	public float getSpawnScale() {
+		return spawnScale;
+	}
+
+	/**
+	 * Get the number of particles spawned this frame
+	 *
+	 * @return The number of particles spawned this frame
+	 */
+	public int getSpawnedParticles() {
+		return spawnedParticles;
+	}
+
+	/**
+	 * Get the number of particles refused this frame
+	 *
+	 * @return The number of particles refused this frame
+	 */
+	public int getThrottledParticles() {
+		return throttledParticles;
+	}
+
+	/**
+	 * Get the number of emitters culled this frame
+	 *
+	 * @return The number of emitters culled this frame
+	 */
+	public int getCulledEmitters() {
+		return culledEmitters;
+	}
+
+	/**
+	 * Get the number of particles frozen this frame because their emitter was
+	 * culled
+	 *
+	 * @return The number of particles belonging to emitters culled this frame
+	 */
+	public int getCulledParticles() {
+		return culledParticles;
+	}
+}
@@ -7,11 +7,13 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
+import org.newdawn.slick.SpriteBatch;
 import org.newdawn.slick.opengl.TextureImpl;
 import org.newdawn.slick.opengl.renderer.Renderer;
 import org.newdawn.slick.opengl.renderer.SGL;
@@ -60,24 +62,58 @@ public class ParticleSystem {
 		public Particle[] particles;
 		/** The list of particles left to be used, if this size() == 0 then the particle engine was too small for the effect */
 		public ArrayList available;
+		/** The maximum number of particles in the pool */
+		public int maxParticles;
+		/** The bounds of the particles at the last update, minimum x, minimum y, maximum x then maximum y */
+		public float[] bounds = new float[4];
+		/** True if there were particles at the last update to give the bounds */
+		public boolean hasBounds;
 		
 		/**
-		 * Create a new particle pool contiaining a set of particles
+		 * Create a new particle pool that will contain a set of particles.
+		 * The particles are created as they're needed.
 		 * 
 		 * @param system The system that owns the particles over all
 		 * @param maxParticles The maximum number of particles in the pool
 		 */
 		public ParticlePool( ParticleSystem system, int maxParticles )
 		{
-			particles = new Particle[ maxParticles ];
+			this.maxParticles = maxParticles;
+			particles = new Particle[0];
 			available = new ArrayList();
+		}
+		
+		/**
+		 * Create more particles, doubling the size of the pool up to its
+		 * maximum
+		 * 
+		 * @param system The system that owns the particles over all
+		 * @return True if more particles were created
+		 */
+		public boolean grow(ParticleSystem system) {
+			int size = Math.min(maxParticles, Math.max(16, particles.length * 2));
+			if (size <= particles.length) {
+				return false;
+			}
 			
-			for( int i=0; i<particles.length; i++ )
+			Particle[] grown = new Particle[size];
+			System.arraycopy(particles, 0, grown, 0, particles.length);
+			for( int i=particles.length; i<size; i++ )
 			{
-				particles[i] = createParticle( system );
+				grown[i] = createParticle( system );
+				available.add(grown[i]);
 			}
-			
-			reset(system);
+			particles = grown;
+			return true;
+		}
+		
+		/**
+		 * Get the number of particles in use
+		 * 
+		 * @return The number of particles in use
+		 */
+		public int getParticleCount() {
+			return particles.length - available.size();
 		}
 		
 		/**
@@ -131,6 +167,12 @@ public class ParticleSystem {
 	private String defaultImageName;
 	/** The mask used to make the particle image background transparent if any */
 	private Color mask;
+	/** The budget shared with other systems, or null if this system has none */
+	private ParticleBudget budget;
+	/** The emitters culled by the budget at the last update */
+	protected HashSet culled = new HashSet();
+	/** The scratch space emitter bounds are retrieved into */
+	private float[] emitterBounds = new float[4];
 	
 	/**
 	 * Create a new particle system
@@ -186,6 +228,83 @@ public class ParticleSystem {
 		this.visible = visible;
 	}
 	
+	/**
+	 * Set the budget this system shares with other systems. The system is
+	 * removed from any budget it was sharing before.
+	 * 
+	 * @param budget The budget to share or null to stop sharing one
+	 */
+	public void setBudget(ParticleBudget budget) {
+		if (this.budget != null) {
+			this.budget.remove(this);
+		}
+		this.budget = budget;
+		if (budget != null) {
+			budget.add(this);
+		}
+	}
+	
+	/**
+	 * Get the budget this system shares with other systems
+	 * 
+	 * @return The budget this system shares or null if it has none
+	 */
+	public ParticleBudget getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Check with the budget if an emitter should be culled at this update
+	 * 
+	 * @param emitter The emitter to check
+	 * @return True if the emitter should be culled
+	 */
+	protected boolean cull(ParticleEmitter emitter) {
+		if (budget == null) {
+			return false;
+		}
+		
+		boolean hasBounds = getParticleBounds(emitter, emitterBounds);
+		return budget.cull(this, emitter, hasBounds ? emitterBounds : null, getParticleCount(emitter));
+	}
+	
+	/**
+	 * Check with the budget if a new particle can be spawned
+	 * 
+	 * @return True if the particle can be spawned
+	 */
+	protected boolean spawnAllowed() {
+		return (budget == null) || budget.spawn();
+	}
+	
+	/**
+	 * Get the bounds of an emitter's particles as they were at the last update.
+	 * The bounds are only kept while the system has a budget.
+	 * 
+	 * @param emitter The emitter whose particles should be measured
+	 * @param bounds The array to write the minimum x, minimum y, maximum x then maximum y to
+	 * @return True if the emitter had particles and the bounds were written
+	 */
+	protected boolean getParticleBounds(ParticleEmitter emitter, float[] bounds) {
+		ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+		if ((pool == null) || (!pool.hasBounds)) {
+			return false;
+		}
+		System.arraycopy(pool.bounds, 0, bounds, 0, 4);
+		return true;
+	}
+	
+	/**
+	 * Get the number of particles in use by an emitter
+	 * 
+	 * @param emitter The emitter whose particles should be counted
+	 * @return The number of particles in use by the emitter
+	 */
+	protected int getParticleCount(ParticleEmitter emitter) {
+		ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+		return (pool == null) ? 0 : pool.getParticleCount();
+	}
+	
 	/**
 	 * Indicate if completed emitters should be removed
 	 * 
@@ -195,6 +314,15 @@ public class ParticleSystem {
 		removeCompletedEmitters = remove;
 	}
 	
+	/**
+	 * Check if completed emitters are removed
+	 * 
+	 * @return True if completed emitters are removed
+	 */
+	public boolean isRemoveCompletedEmitters() {
+		return removeCompletedEmitters;
+	}
+	
 	/**
 	 * Indicate if this engine should use points to render the particles
 	 * 
@@ -411,7 +539,7 @@ public class ParticleSystem {
 			// get emitter
 			ParticleEmitter emitter = (ParticleEmitter) emitters.get(emitterIdx);
 			
-			if (!emitter.isEnabled()) {
+			if (!emitter.isEnabled() || culled.contains(emitter)) {
 				continue;
 			}
 			
@@ -458,6 +586,71 @@ public class ParticleSystem {
 		GL.glTranslatef(-x,-y,0);
 	}
 	
+	/**
+	 * Render the particles in the system into a sprite batch. Particles from all the
+	 * emitters are transformed on the CPU so they can share a batch with other sprites.
+	 * 
+	 * @param batch The batch to record the particles into
+	 */
+	public void render(SpriteBatch batch) {
+		render(batch,x,y);
+	}
+	
+	/**
+	 * Render the particles in the system into a sprite batch. Particles from all the
+	 * emitters are transformed on the CPU so they can share a batch with other sprites.
+	 * 
+	 * @param batch The batch to record the particles into
+	 * @param x The x coordinate to render the particle system at (in the current coordinate space)
+	 * @param y The y coordinate to render the particle system at (in the current coordiante space)
+	 */
+	public void render(SpriteBatch batch, float x, float y) {
+		if ((sprite == null) && (defaultImageName != null)) {
+			loadSystemParticleImage();
+		}
+		
+		if (!visible) {
+			return;
+		}
+		
+		for( int emitterIdx=0; emitterIdx<emitters.size(); emitterIdx++ )
+		{
+			ParticleEmitter emitter = (ParticleEmitter) emitters.get(emitterIdx);
+			
+			if (!emitter.isEnabled() || culled.contains(emitter)) {
+				continue;
+			}
+			
+			if ((blendingMode == BLEND_ADDITIVE) || emitter.useAdditive()) {
+				batch.setBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE);
+			} else {
+				batch.setBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+			}
+			
+			ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+			for (int i = 0; i < pool.particles.length; i++)
+			{
+				if (pool.particles[i].inUse())
+					pool.particles[i].render(batch, x, y);
+			} 
+		}
+		
+		batch.setBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE_MINUS_SRC_ALPHA);
+	}
+	
+	/**
+	 * Get the image particles are drawn with when their emitter doesn't
+	 * supply one, loading it if it hasn't been loaded yet
+	 * 
+	 * @return The default image for the particles or null if there isn't one
+	 */
+	protected Image getDefaultImage() {
+		if ((sprite == null) && (defaultImageName != null)) {
+			loadSystemParticleImage();
+		}
+		return sprite;
+	}
+	
 	/**
 	 * Load the system particle image as the extension permissions
 	 */
@@ -490,10 +683,15 @@ public class ParticleSystem {
 		}
 		
 		removeMe.clear();
+		culled.clear();
 		ArrayList emitters = new ArrayList(this.emitters);
 		for (int i=0;i<emitters.size();i++) {
 			ParticleEmitter emitter = (ParticleEmitter) emitters.get(i);
 			if (emitter.isEnabled()) {
+				if (cull(emitter)) {
+					culled.add(emitter);
+					continue;
+				}
 				emitter.update(this, delta);
 				if (removeCompletedEmitters) {
 					if (emitter.completed()) {
@@ -513,12 +711,16 @@ public class ParticleSystem {
 			while (it.hasNext())
 			{
 				ParticleEmitter emitter = (ParticleEmitter) it.next();
-				if (emitter.isEnabled()) {
+				if (emitter.isEnabled() && !culled.contains(emitter)) {
 					ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
+					pool.hasBounds = false;
 					for (int i=0;i<pool.particles.length;i++) {
 						if (pool.particles[i].life > 0) {
 							pool.particles[i].update(delta);
 							pCount++;
+							if ((budget != null) && pool.particles[i].inUse()) {
+								measure(pool, pool.particles[i]);
+							}
 						}
 					}
 				}
@@ -526,6 +728,28 @@ public class ParticleSystem {
 		}
 	}
 	
+	/**
+	 * Grow the bounds of a pool's particles to include a particle
+	 * 
+	 * @param pool The pool whose bounds should be grown
+	 * @param particle The particle to include
+	 */
+	private void measure(ParticlePool pool, Particle particle) {
+		float half = particle.size / 2;
+		if (!pool.hasBounds) {
+			pool.hasBounds = true;
+			pool.bounds[0] = particle.x - half;
+			pool.bounds[1] = particle.y - half;
+			pool.bounds[2] = particle.x + half;
+			pool.bounds[3] = particle.y + half;
+		} else {
+			pool.bounds[0] = Math.min(pool.bounds[0], particle.x - half);
+			pool.bounds[1] = Math.min(pool.bounds[1], particle.y - half);
+			pool.bounds[2] = Math.max(pool.bounds[2], particle.x + half);
+			pool.bounds[3] = Math.max(pool.bounds[3], particle.y + half);
+		}
+	}
+	
 	/**
 	 * Get the number of particles in use in this system
 	 * 
@@ -545,9 +769,13 @@ public class ParticleSystem {
 	 */
 	public Particle getNewParticle(ParticleEmitter emitter, float life)
 	{
+		if (!spawnAllowed()) {
+			return dummy;
+		}
+		
 		ParticlePool pool = (ParticlePool) particlesByEmitter.get(emitter);
 		ArrayList available = pool.available;
-		if (available.size() > 0)
+		if ((available.size() > 0) || pool.grow(this))
 		{
 			Particle p = (Particle) available.remove(available.size()-1);
 			p.init(emitter, life);
@@ -0,0 +1,113 @@
+package org.newdawn.slick.tiled;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * A stream of the bytes encoded in Base64 text as written by TilED, decoded as
+ * the text is read. Characters outside the Base64 alphabet, including
+ * whitespace and padding, are skipped.
+ */
+class Base64InputStream extends InputStream {
+	/** The code used to decode Base64 encoding */
+	private static byte[] baseCodes = new byte[256];
+
+	/**
+	 * Static initialiser for the codes created against Base64
+	 */
+	static {
+		for (int i = 0; i < 256; i++)
+			baseCodes[i] = -1;
+		for (int i = 'A'; i <= 'Z'; i++)
+			baseCodes[i] = (byte) (i - 'A');
+		for (int i = 'a'; i <= 'z'; i++)
+			baseCodes[i] = (byte) (26 + i - 'a');
+		for (int i = '0'; i <= '9'; i++)
+			baseCodes[i] = (byte) (52 + i - '0');
+		baseCodes['+'] = 62;
+		baseCodes['/'] = 63;
+	}
+
+	/** The text being decoded */
+	private Reader in;
+	/** The characters read from the text but not yet decoded */
+	private char[] text = new char[4096];
+	/** The position of the next character to decode */
+	private int position;
+	/** The number of characters read into the buffer */
+	private int limit;
+	/** The bits decoded but not yet returned */
+	private int accum;
+	/** The number of bits decoded but not yet returned */
+	private int shift;
+	/** A buffer for reading single bytes */
+	private byte[] single = new byte[1];
+
+	/**
+	 * Create a new stream
+	 * 
+	 * @param in
+	 *            The Base64 text to decode
+	 */
+	public Base64InputStream(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * @see java.io.InputStream#read()
+	 */
+	public int read() throws IOException {
+		if (read(single, 0, 1) == -1) {
+			return -1;
+		}
+
+		return single[0] & 0xff;
+	}
+
+	/**
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		int count = 0;
+		while (count < length) {
+			if (position == limit) {
+				if (count > 0) {
+					break;
+				}
+				limit = in.read(text, 0, text.length);
+				position = 0;
+				if (limit == -1) {
+					limit = 0;
+					return -1;
+				}
+				continue;
+			}
+
+			char c = text[position++];
+			int value = (c > 255) ? -1 : baseCodes[c];
+			if (value >= 0) {
+				accum = (accum << 6) | value;
+				shift += 6;
+				if (shift >= 8) {
+					shift -= 8;
+					buffer[offset + count] = (byte) ((accum >> shift) & 0xff);
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * @see java.io.InputStream#close()
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+}
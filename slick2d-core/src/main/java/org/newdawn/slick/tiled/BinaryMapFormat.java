@@ -0,0 +1,208 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * The binary form maps are compiled to by TiledMapCompiler. Everything is
+ * little endian, strings are held as their length in bytes (-1 for null)
+ * followed by their UTF-8 encoding, and each layer's tiles are aligned to four
+ * bytes so they can be read in place from a mapped file.
+ *
+ * <pre>
+ * int magic, int version
+ * int orientation, width, height, tileWidth, tileHeight
+ * properties
+ * int largest global tile ID used by the layers
+ * int tileset count, each:
+ *     int last global ID, string name, int firstGID, tileWidth, tileHeight,
+ *     spacing, margin, string image, int transparent colour or -1,
+ *     int tile property count, each: int tile ID within the tileset,
+ *     properties
+ * int layer count, each:
+ *     string name, int width, height, properties, padding, int[width*height]
+ *     tiles packed as Layer holds them
+ * int object group count, each:
+ *     string name, int width, height, properties, int object count, each:
+ *     string name, type, int x, y, width, height, string image, properties
+ * </pre>
+ *
+ * Properties are held as their count (-1 for none) followed by the name and
+ * value of each.
+ */
+class BinaryMapFormat {
+	/** The bytes every binary map starts with */
+	static final byte[] MAGIC = new byte[] { 'S', 'T', 'M', 'B' };
+	/** The version of the format written */
+	static final int VERSION = 1;
+
+	/**
+	 * Check if the start of some data marks a binary map
+	 *
+	 * @param header
+	 *            The first bytes of the data
+	 * @return True if the data is a binary map
+	 */
+	static boolean isBinary(byte[] header) {
+		if (header.length < MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Map a binary map into memory if it's a file. The buffer is read only so
+	 * the file is never changed.
+	 *
+	 * @param ref
+	 *            The location of the map
+	 * @return The contents of the map or null if the map isn't a file or isn't
+	 *         a binary map
+	 * @throws IOException
+	 *             Indicates a failure to map the file
+	 */
+	static ByteBuffer map(String ref) throws IOException {
+		File file;
+		try {
+			URL url = ResourceLoader.getResource(ref);
+			if (!url.getProtocol().equals("file")) {
+				return null;
+			}
+			file = new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		}
+
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			byte[] header = new byte[MAGIC.length];
+			if (in.length() < header.length) {
+				return null;
+			}
+			in.readFully(header);
+			if (!isBinary(header)) {
+				return null;
+			}
+
+			// the mapping stays valid once the file is closed
+			FileChannel channel = in.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+					.order(ByteOrder.LITTLE_ENDIAN);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the whole of a binary map from a stream
+	 *
+	 * @param in
+	 *            The stream to read from
+	 * @return The contents of the map
+	 * @throws IOException
+	 *             Indicates a failure to read the stream
+	 */
+	static ByteBuffer read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, count);
+		}
+
+		return ByteBuffer.wrap(bytes.toByteArray()).order(
+				ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Check the header of a binary map and move past it
+	 *
+	 * @param buffer
+	 *            The contents of the map
+	 * @throws SlickException
+	 *             Indicates the data isn't a binary map of a supported version
+	 */
+	static void readHeader(ByteBuffer buffer) throws SlickException {
+		byte[] header = new byte[MAGIC.length];
+		buffer.get(header);
+		if (!isBinary(header)) {
+			throw new SlickException("Not a binary map");
+		}
+
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new SlickException("Unsupported binary map version: "
+					+ version + " (only " + VERSION + " supported)");
+		}
+	}
+
+	/**
+	 * Read a string
+	 *
+	 * @param buffer
+	 *            The buffer to read from
+	 * @return The string read, which may be null
+	 */
+	static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read a set of properties
+	 *
+	 * @param buffer
+	 *            The buffer to read from
+	 * @return The properties read or null if there were none
+	 */
+	static Properties readProperties(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count < 0) {
+			return null;
+		}
+
+		Properties props = new Properties();
+		for (int i = 0; i < count; i++) {
+			String name = readString(buffer);
+			props.setProperty(name, readString(buffer));
+		}
+		return props;
+	}
+
+	/**
+	 * Move past the padding before a layer's tiles
+	 *
+	 * @param buffer
+	 *            The buffer being read
+	 */
+	static void align(ByteBuffer buffer) {
+		buffer.position((buffer.position() + 3) & ~3);
+	}
+}
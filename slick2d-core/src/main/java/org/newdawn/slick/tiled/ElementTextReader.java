@@ -0,0 +1,104 @@
+package org.newdawn.slick.tiled;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A reader of the text content of the current element of an XML stream, read
+ * as the parser reaches it rather than collected into a string first. Once the
+ * text has been read, or the reader is closed, the stream is left at the end
+ * of the element.
+ */
+class ElementTextReader extends Reader {
+	/** The XML stream being read */
+	private XMLStreamReader reader;
+	/** The depth of elements within the one whose text is being read */
+	private int depth;
+	/** True once the end of the element has been reached */
+	private boolean done;
+	/** True if the stream is at a text event */
+	private boolean inText;
+	/** The position of the next character in the current text event */
+	private int textPosition;
+
+	/**
+	 * Create a new reader
+	 * 
+	 * @param reader
+	 *            The XML stream positioned at the start of the element whose
+	 *            text should be read
+	 */
+	public ElementTextReader(XMLStreamReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * @see java.io.Reader#read(char[], int, int)
+	 */
+	public int read(char[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		try {
+			while (true) {
+				if (inText) {
+					int remaining = reader.getTextLength() - textPosition;
+					if (remaining > 0) {
+						int count = reader.getTextCharacters(textPosition,
+								buffer, offset, Math.min(remaining, length));
+						textPosition += count;
+						return count;
+					}
+					inText = false;
+				}
+				if (done) {
+					return -1;
+				}
+
+				switch (reader.next()) {
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					// only the text directly in the element is wanted
+					inText = (depth == 0);
+					textPosition = 0;
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (depth == 0) {
+						done = true;
+					} else {
+						depth--;
+					}
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					throw new IOException("XML ended before the end of the element");
+				default:
+					break;
+				}
+			}
+		} catch (XMLStreamException e) {
+			IOException failure = new IOException("Failed to read element text");
+			failure.initCause(e);
+			throw failure;
+		}
+	}
+
+	/**
+	 * Skip any text left, leaving the stream at the end of the element
+	 * 
+	 * @see java.io.Reader#close()
+	 */
+	public void close() throws IOException {
+		char[] buffer = new char[1024];
+		while (read(buffer, 0, buffer.length) != -1) {
+		}
+	}
+}
@@ -1,14 +1,27 @@
 package org.newdawn.slick.tiled;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.Properties;
 import java.util.zip.GZIPInputStream;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
+import org.newdawn.slick.SpriteSheet;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
 import org.newdawn.slick.util.Log;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
@@ -17,24 +30,21 @@ import org.w3c.dom.NodeList;
  * @author kevin
  */
 public class Layer {
-	/** The code used to decode Base64 encoding */
-	private static byte[] baseCodes = new byte[256];
-
+	/** The width and height in tiles of the chunks the layer's geometry is cached in */
+	public static final int CHUNK_SIZE = 32;
+	/** The largest number of tilesets a map's layers can use */
+	public static final int MAX_TILESETS = 255;
+	/** The largest global tile ID a layer can hold */
+	public static final int MAX_TILE_ID = (1 << 24) - 1;
+	/** The number of bits the tileset index is shifted up by in each tile */
+	private static final int TILESET_SHIFT = 24;
 	/**
-	 * Static initialiser for the codes created against Base64
+	 * The bits Tiled sets in a global tile ID when the tile is flipped or
+	 * rotated, which aren't kept so the tile is drawn as it is in its tileset
 	 */
-	static {
-		for (int i = 0; i < 256; i++)
-			baseCodes[i] = -1;
-		for (int i = 'A'; i <= 'Z'; i++)
-			baseCodes[i] = (byte) (i - 'A');
-		for (int i = 'a'; i <= 'z'; i++)
-			baseCodes[i] = (byte) (26 + i - 'a');
-		for (int i = '0'; i <= '9'; i++)
-			baseCodes[i] = (byte) (52 + i - '0');
-		baseCodes['+'] = 62;
-		baseCodes['/'] = 63;
-	}
+	private static final int FLIP_FLAGS = 0xE0000000;
+	/** The renderer to use for all GL operations */
+	protected static SGL GL = Renderer.get();
 
 	/** The map this layer belongs to */
 	private final TiledMap map;
@@ -43,10 +53,12 @@ public class Layer {
 	/** The name of this layer - read from the XML */
 	public String name;
 	/**
-	 * The tile data representing this data, index 0 = tileset, index 1 = tile
-	 * id
+	 * The tiles of the layer, row by row. Each holds the global ID of the tile
+	 * in the low 24 bits and the index of its tileset plus one in the high 8
+	 * bits, or zero where there's no tileset. Layers loaded from a binary map
+	 * read these straight from the map's buffer until they're first changed.
 	 */
-	public int[][][] data;
+	private IntBuffer tileData;
 	/** The width of this layer */
 	public int width;
 	/** The height of this layer */
@@ -55,6 +67,14 @@ public class Layer {
 	/** the properties of this layer */
 	public Properties props;
 
+	/**
+	 * The cached geometry of each chunk of the layer, row by row, null until
+	 * the chunk is first rendered or after a tile in it changes
+	 */
+	private Chunk[] chunks;
+	/** The number of chunks across the layer */
+	private int chunksAcross;
+
 	/**
 	 * Create a new layer based on the XML definition
 	 * 
@@ -70,23 +90,13 @@ public class Layer {
 		name = element.getAttribute("name");
 		width = Integer.parseInt(element.getAttribute("width"));
 		height = Integer.parseInt(element.getAttribute("height"));
-		data = new int[width][height][3];
+		tileData = IntBuffer.allocate(width * height);
 
 		// now read the layer properties
 		Element propsElement = (Element) element.getElementsByTagName(
 				"properties").item(0);
 		if (propsElement != null) {
-			NodeList properties = propsElement.getElementsByTagName("property");
-			if (properties != null) {
-				props = new Properties();
-				for (int p = 0; p < properties.getLength(); p++) {
-					Element propElement = (Element) properties.item(p);
-
-					String name = propElement.getAttribute("name");
-					String value = propElement.getAttribute("value");
-					props.setProperty(name, value);
-				}
-			}
+			readProperties(propsElement);
 		}
 
 		Element dataNode = (Element) element.getElementsByTagName("data").item(
@@ -94,45 +104,291 @@ public class Layer {
 		String encoding = dataNode.getAttribute("encoding");
 		String compression = dataNode.getAttribute("compression");
 
-		if (encoding.equals("base64") && compression.equals("gzip")) {
-			try {
-				Node cdata = dataNode.getFirstChild();
-				char[] enc = cdata.getNodeValue().trim().toCharArray();
-				byte[] dec = decodeBase64(enc);
-				GZIPInputStream is = new GZIPInputStream(
-						new ByteArrayInputStream(dec));
-
-				for (int y = 0; y < height; y++) {
-					for (int x = 0; x < width; x++) {
-						int tileId = 0;
-						tileId |= is.read();
-						tileId |= is.read() << 8;
-						tileId |= is.read() << 16;
-						tileId |= is.read() << 24;
-
-						if (tileId == 0) {
-							data[x][y][0] = -1;
-							data[x][y][1] = 0;
-							data[x][y][2] = 0;
-						} else {
-							TileSet set = map.findTileSet(tileId);
-
-							if (set != null) {
-								data[x][y][0] = set.index;
-								data[x][y][1] = tileId - set.firstGID;
-							}
-							data[x][y][2] = tileId;
+		readTiles(encoding, compression,
+				new StringReader(dataNode.getTextContent()));
+	}
+
+	/**
+	 * Create a new layer read from a stream of XML, decoding the tiles as
+	 * they're read rather than holding the whole layer as text first
+	 * 
+	 * @param map
+	 *            The map this layer is part of
+	 * @param reader
+	 *            The XML stream positioned at the start of the layer element,
+	 *            left at the end of it
+	 * @throws SlickException
+	 *             Indicates a failure to parse the XML layer
+	 * @throws XMLStreamException
+	 *             Indicates a failure to read the XML
+	 */
+	Layer(TiledMap map, XMLStreamReader reader) throws SlickException,
+			XMLStreamException {
+		this.map = map;
+		name = TiledMap.getAttribute(reader, "name");
+		width = Integer.parseInt(TiledMap.getAttribute(reader, "width"));
+		height = Integer.parseInt(TiledMap.getAttribute(reader, "height"));
+		tileData = IntBuffer.allocate(width * height);
+
+		boolean read = false;
+		while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+			if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+
+			if (reader.getLocalName().equals("properties") && (props == null)) {
+				readProperties(TiledMap.readElement(reader));
+			} else if (reader.getLocalName().equals("data") && (!read)) {
+				String encoding = TiledMap.getAttribute(reader, "encoding");
+				String compression = TiledMap.getAttribute(reader,
+						"compression");
+				readTiles(encoding, compression, new ElementTextReader(reader));
+				read = true;
+			} else {
+				TiledMap.skipElement(reader);
+			}
+		}
+
+		if (!read) {
+			throw new SlickException("No tile data found for layer: " + name);
+		}
+	}
+
+	/**
+	 * Create a new layer from a binary map, whose tiles are read from the
+	 * map's buffer in place
+	 * 
+	 * @param map
+	 *            The map this layer is part of
+	 * @param buffer
+	 *            The contents of the map positioned at the start of the
+	 *            layer, left at the end of it
+	 */
+	Layer(TiledMap map, ByteBuffer buffer) {
+		this.map = map;
+		name = BinaryMapFormat.readString(buffer);
+		width = buffer.getInt();
+		height = buffer.getInt();
+		props = BinaryMapFormat.readProperties(buffer);
+
+		BinaryMapFormat.align(buffer);
+		ByteBuffer tiles = buffer.slice();
+		tiles.limit(width * height * 4);
+		tileData = tiles.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		buffer.position(buffer.position() + (width * height * 4));
+	}
+
+	/**
+	 * Read the properties of the layer
+	 * 
+	 * @param propsElement
+	 *            The XML element holding the properties
+	 */
+	private void readProperties(Element propsElement) {
+		NodeList properties = propsElement.getElementsByTagName("property");
+		if (properties != null) {
+			props = new Properties();
+			for (int p = 0; p < properties.getLength(); p++) {
+				Element propElement = (Element) properties.item(p);
+
+				String name = propElement.getAttribute("name");
+				String value = propElement.getAttribute("value");
+				props.setProperty(name, value);
+			}
+		}
+	}
+
+	/**
+	 * Decode the tiles of the layer from its data, straight into the tiles
+	 * array as the text is read
+	 * 
+	 * @param encoding
+	 *            The encoding of the data
+	 * @param compression
+	 *            The compression of the data
+	 * @param text
+	 *            The text of the data, closed once the tiles are read
+	 * @throws SlickException
+	 *             Indicates a failure to decode the data
+	 */
+	private void readTiles(String encoding, String compression, Reader text)
+			throws SlickException {
+		if (!(encoding.equals("base64") && compression.equals("gzip"))) {
+			throw new SlickException("Unsupport tiled map type: " + encoding
+					+ "," + compression + " (only gzip base64 supported)");
+		}
+
+		try {
+			InputStream is = new GZIPInputStream(new BufferedInputStream(
+					new Base64InputStream(text), 8192), 8192);
+
+			byte[] buffer = new byte[8192];
+			int available = 0;
+			int position = 0;
+			TileSet set = null;
+			for (int i = 0; i < tileData.capacity(); i++) {
+				if (position + 4 > available) {
+					// keep any partial tile and top the buffer back up
+					System.arraycopy(buffer, position, buffer, 0, available
+							- position);
+					available -= position;
+					position = 0;
+					while (available < 4) {
+						int count = is.read(buffer, available, buffer.length
+								- available);
+						if (count == -1) {
+							throw new SlickException(
+									"Layer data ended before all the tiles were read: "
+											+ name);
 						}
+						available += count;
+					}
+				}
+
+				int tileId = (buffer[position] & 0xff)
+						| ((buffer[position + 1] & 0xff) << 8)
+						| ((buffer[position + 2] & 0xff) << 16)
+						| ((buffer[position + 3] & 0xff) << 24);
+				position += 4;
+
+				tileId &= ~FLIP_FLAGS;
+				if (tileId > MAX_TILE_ID) {
+					throw new SlickException("Tile ID " + tileId + " at "
+							+ (i % width) + "," + (i / width) + " in layer "
+							+ name + " is larger than a layer can hold ("
+							+ MAX_TILE_ID + ")");
+				}
+				if (tileId != 0) {
+					// neighbouring tiles are usually from the same set
+					if ((set == null) || (!set.contains(tileId))) {
+						set = map.findTileSet(tileId);
 					}
+					tileData.put(i, pack(tileId, set));
 				}
-			} catch (IOException e) {
-				Log.error(e);
-				throw new SlickException("Unable to decode base 64 block");
 			}
-		} else {
-			throw new SlickException("Unsupport tiled map type: " + encoding
-					+ "," + compression + " (only gzip base64 supported)");
+
+			text.close();
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Unable to decode base 64 block");
+		}
+	}
+
+	/**
+	 * Pack the tiles again against the map's tilesets, for a binary map
+	 * whose tilesets don't match those it was compiled with. Only the tiles
+	 * that change are written.
+	 */
+	void repack() {
+		TileSet set = null;
+		for (int i = 0; i < tileData.capacity(); i++) {
+			int tile = tileData.get(i);
+			int tileId = tile & MAX_TILE_ID;
+			if (tileId == 0) {
+				continue;
+			}
+
+			if ((set == null) || (!set.contains(tileId))) {
+				set = map.findTileSet(tileId);
+			}
+			int packed = pack(tileId, set);
+			if (packed != tile) {
+				makeWritable();
+				tileData.put(i, packed);
+			}
+		}
+	}
+
+	/**
+	 * Copy the tiles out of the map's buffer if they're being read from it in
+	 * place, so they can be changed
+	 */
+	private void makeWritable() {
+		if (tileData.isReadOnly()) {
+			IntBuffer copy = IntBuffer.allocate(tileData.capacity());
+			copy.put(getTileData());
+			tileData = copy;
+		}
+	}
+
+	/**
+	 * Get the largest global tile ID in this layer
+	 * 
+	 * @return The largest global tile ID or 0 if the layer is empty
+	 */
+	int getMaxTileID() {
+		int max = 0;
+		for (int i = 0; i < tileData.capacity(); i++) {
+			max = Math.max(max, tileData.get(i) & MAX_TILE_ID);
+		}
+		return max;
+	}
+
+	/**
+	 * Get the tiles of this layer as they're held, row by row
+	 * 
+	 * @return The packed tiles, which shouldn't be modified
+	 */
+	IntBuffer getTileData() {
+		return tileData.duplicate();
+	}
+
+	/**
+	 * Pack a tile into the form it's held in
+	 * 
+	 * @param tile
+	 *            The global ID of the tile, without any flip flags
+	 * @param set
+	 *            The tileset the tile belongs to or null if there isn't one
+	 * @return The tile packed with the index of its tileset
+	 */
+	private int pack(int tile, TileSet set) {
+		if ((tile < 0) || (tile > MAX_TILE_ID)) {
+			throw new IllegalArgumentException("Tile ID " + tile
+					+ " is larger than layer " + name + " can hold ("
+					+ MAX_TILE_ID + ")");
+		}
+		if (set == null) {
+			return tile;
+		}
+
+		return ((set.index + 1) << TILESET_SHIFT) | tile;
+	}
+
+	/**
+	 * Get the index of the tileset the tile at the specified location in this
+	 * layer is drawn from
+	 * 
+	 * @param x
+	 *            The x coorindate of the tile
+	 * @param y
+	 *            The y coorindate of the tile
+	 * @return The index of the tileset or -1 if the location is empty or the
+	 *         tile isn't in any tileset
+	 */
+	public int getTileSetIndex(int x, int y) {
+		return (tileData.get((y * width) + x) >>> TILESET_SHIFT) - 1;
+	}
+
+	/**
+	 * Get the ID of the tile at the specified location in this layer within
+	 * its tileset
+	 * 
+	 * @param x
+	 *            The x coorindate of the tile
+	 * @param y
+	 *            The y coorindate of the tile
+	 * @return The ID of the tile within its tileset or 0 if the location is
+	 *         empty or the tile isn't in any tileset
+	 */
+	public int getLocalTileID(int x, int y) {
+		int tile = tileData.get((y * width) + x);
+		int tileset = (tile >>> TILESET_SHIFT) - 1;
+		if (tileset < 0) {
+			return 0;
 		}
+
+		return (tile & MAX_TILE_ID) - map.getTileSet(tileset).firstGID;
 	}
 
 	/**
@@ -145,7 +401,7 @@ public class Layer {
 	 * @return The global ID of the tile
 	 */
 	public int getTileID(int x, int y) {
-		return data[x][y][2];
+		return tileData.get((y * width) + x) & MAX_TILE_ID;
 	}
 
 	/**
@@ -156,20 +412,45 @@ public class Layer {
 	 * @param y
 	 *            The y location to set
 	 * @param tile
-	 *            The tile value to set
+	 *            The tile value to set, any flip flags Tiled sets on it are
+	 *            dropped
 	 */
 	public void setTileID(int x, int y, int tile) {
+		tile &= ~FLIP_FLAGS;
+		if (chunks != null) {
+			chunks[((y / CHUNK_SIZE) * chunksAcross) + (x / CHUNK_SIZE)] = null;
+		}
+		makeWritable();
+
 		if (tile == 0) {
-			data[x][y][0] = -1;
-			data[x][y][1] = 0;
-			data[x][y][2] = 0;
+			tileData.put((y * width) + x, 0);
 		} else {
-			TileSet set = map.findTileSet(tile);
+			tileData.put((y * width) + x, pack(tile, map.findTileSet(tile)));
+		}
+	}
 
-			data[x][y][0] = set.index;
-			data[x][y][1] = tile - set.firstGID;
-			data[x][y][2] = tile;
+	/**
+	 * Get the tiles of this layer in the form they used to be held, index 0 =
+	 * tileset (-1 where there isn't one), index 1 = tile id within the
+	 * tileset, index 2 = global tile id. The array is built from the packed
+	 * tiles on each call, so it's large and changes to it aren't written back
+	 * to the layer.
+	 *
+	 * @return A copy of the tiles indexed by x, then y
+	 * @deprecated Use getTileSetIndex(), getLocalTileID() and getTileID() to
+	 *             read tiles and setTileID() to change them
+	 */
+	public int[][][] getData() {
+		int[][][] data = new int[width][height][3];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				data[x][y][0] = getTileSetIndex(x, y);
+				data[x][y][1] = getLocalTileID(x, y);
+				data[x][y][2] = getTileID(x, y);
+			}
 		}
+
+		return data;
 	}
 
 	/**
@@ -208,14 +489,15 @@ public class Layer {
 					continue;
 				}
 
-				if (data[sx + tx][sy + ty][0] == tileset) {
+				if (getTileSetIndex(sx + tx, sy + ty) == tileset) {
 					if (set == null) {
 						set = map.getTileSet(tileset);
 						set.tiles.startUse();
 					}
 
-					int sheetX = set.getTileX(data[sx + tx][sy + ty][1]);
-					int sheetY = set.getTileY(data[sx + tx][sy + ty][1]);
+					int id = getLocalTileID(sx + tx, sy + ty);
+					int sheetX = set.getTileX(id);
+					int sheetY = set.getTileY(id);
 
 					int tileOffsetY = set.tileHeight - mapTileHeight;
 
@@ -242,52 +524,273 @@ public class Layer {
 	}
 
 	/**
-	 * Decode a Base64 string as encoded by TilED
+	 * Render rows of this layer of an isometric map, the tiles whose x and y
+	 * coordinates add up to the same value, each row left to right. Tiles
+	 * from the same tileset are drawn in one batch until a tile from another
+	 * tileset comes along.
 	 * 
-	 * @param data
-	 *            The string of character to decode
-	 * @return The byte array represented by character encoding
+	 * @param x
+	 *            The x location of the tile at 0,0
+	 * @param y
+	 *            The y location of the tile at 0,0
+	 * @param rows
+	 *            The rows to render, each the row followed by the x
+	 *            coordinate of the first and last tile on it to render
+	 * @param start
+	 *            The index of the first row to render
+	 * @param end
+	 *            The index after the last row to render
+	 * @param mapTileWidth
+	 *            the tile width specified in the map file
+	 * @param mapTileHeight
+	 *            the tile height specified in the map file
 	 */
-	private byte[] decodeBase64(char[] data) {
-		int temp = data.length;
-		for (int ix = 0; ix < data.length; ix++) {
-			if ((data[ix] > 255) || baseCodes[data[ix]] < 0) {
-				--temp;
+	public void renderIsometric(int x, int y, int[] rows, int start, int end,
+			int mapTileWidth, int mapTileHeight) {
+		int halfWidth = Math.max(1, mapTileWidth / 2);
+		int halfHeight = Math.max(1, mapTileHeight / 2);
+
+		TileSet set = null;
+		for (int i = start; i < end; i++) {
+			int row = rows[i * 3];
+			int screenY = y + (row * halfHeight);
+
+			for (int tx = rows[(i * 3) + 1]; tx <= rows[(i * 3) + 2]; tx++) {
+				int ty = row - tx;
+				int tileset = getTileSetIndex(tx, ty);
+				if (tileset < 0) {
+					continue;
+				}
+
+				TileSet tileSet = map.getTileSet(tileset);
+				if (tileSet != set) {
+					if (set != null) {
+						set.tiles.endUse();
+					}
+					set = tileSet;
+					set.tiles.startUse();
+				}
+
+				int id = getLocalTileID(tx, ty);
+				set.tiles.renderInUse(x + ((tx - ty) * halfWidth), screenY
+						- (set.tileHeight - mapTileHeight), set.getTileX(id),
+						set.getTileY(id));
 			}
 		}
 
-		int len = (temp / 4) * 3;
-		if ((temp % 4) == 3)
-			len += 2;
-		if ((temp % 4) == 2)
-			len += 1;
+		if (set != null) {
+			set.tiles.endUse();
+		}
+	}
+
+	/**
+	 * Render a section of this layer from the cached geometry of the chunks
+	 * it covers. Each tileset used in the section is only bound once, and
+	 * only the tiles of chunks on the edge of the section need to be checked
+	 * against it. Tiles are drawn a tileset at a time rather than line by
+	 * line so this should only be used when the tiles are the same size as
+	 * the map's tiles and can't overlap.
+	 * 
+	 * @param x
+	 *            The x location to render at
+	 * @param y
+	 *            The y location to render at
+	 * @param sx
+	 *            The x tile location to start rendering
+	 * @param sy
+	 *            The y tile location to start rendering
+	 * @param width
+	 *            The number of tiles across to render
+	 * @param height
+	 *            The number of tiles down to render
+	 * @param mapTileWidth
+	 *            the tile width specified in the map file
+	 * @param mapTileHeight
+	 *            the tile height specified in the map file
+	 */
+	public void renderChunks(int x, int y, int sx, int sy, int width,
+			int height, int mapTileWidth, int mapTileHeight) {
+		int x1 = Math.max(sx, 0);
+		int y1 = Math.max(sy, 0);
+		int x2 = Math.min(sx + width, this.width);
+		int y2 = Math.min(sy + height, this.height);
+		if ((x1 >= x2) || (y1 >= y2)) {
+			return;
+		}
+
+		if (chunks == null) {
+			chunksAcross = ((this.width - 1) / CHUNK_SIZE) + 1;
+			chunks = new Chunk[chunksAcross
+					* (((this.height - 1) / CHUNK_SIZE) + 1)];
+		}
+
+		int cx1 = x1 / CHUNK_SIZE;
+		int cy1 = y1 / CHUNK_SIZE;
+		int cx2 = (x2 - 1) / CHUNK_SIZE;
+		int cy2 = (y2 - 1) / CHUNK_SIZE;
+		for (int cy = cy1; cy <= cy2; cy++) {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				int index = (cy * chunksAcross) + cx;
+				if ((chunks[index] == null) || (!chunks[index].isCurrent())) {
+					chunks[index] = new Chunk(cx * CHUNK_SIZE, cy * CHUNK_SIZE);
+				}
+			}
+		}
 
-		byte[] out = new byte[len];
+		int offsetX = x - (sx * mapTileWidth);
+		int offsetY = y - (sy * mapTileHeight);
+		for (int tileset = 0; tileset < map.getTileSetCount(); tileset++) {
+			TileSet set = null;
 
-		int shift = 0;
-		int accum = 0;
-		int index = 0;
+			for (int cy = cy1; cy <= cy2; cy++) {
+				for (int cx = cx1; cx <= cx2; cx++) {
+					Chunk chunk = chunks[(cy * chunksAcross) + cx];
+					int count = chunk.counts[tileset];
+					if (count == 0) {
+						continue;
+					}
+					if (set == null) {
+						set = map.getTileSet(tileset);
+						set.tiles.startUse();
+					}
 
-		for (int ix = 0; ix < data.length; ix++) {
-			int value = (data[ix] > 255) ? -1 : baseCodes[data[ix]];
+					boolean inside = (chunk.x >= x1) && (chunk.y >= y1)
+							&& (chunk.x + CHUNK_SIZE <= x2)
+							&& (chunk.y + CHUNK_SIZE <= y2);
+					int[] tiles = chunk.tiles[tileset];
+					float[] coords = chunk.coords[tileset];
+					for (int i = 0; i < count; i++) {
+						int tx = tiles[i * 2];
+						int ty = tiles[(i * 2) + 1];
+						if ((!inside)
+								&& ((tx < x1) || (ty < y1) || (tx >= x2) || (ty >= y2))) {
+							continue;
+						}
 
-			if (value >= 0) {
-				accum <<= 6;
-				shift += 6;
-				accum |= value;
-				if (shift >= 8) {
-					shift -= 8;
-					out[index++] = (byte) ((accum >> shift) & 0xff);
+						float left = offsetX + (tx * mapTileWidth);
+						float top = offsetY + (ty * mapTileHeight);
+						float right = left + set.tileWidth;
+						float bottom = top + set.tileHeight;
+						float u = coords[i * 4];
+						float v = coords[(i * 4) + 1];
+						float u2 = coords[(i * 4) + 2];
+						float v2 = coords[(i * 4) + 3];
+
+						GL.glTexCoord2f(u, v);
+						GL.glVertex3f(left, top, 0);
+						GL.glTexCoord2f(u, v2);
+						GL.glVertex3f(left, bottom, 0);
+						GL.glTexCoord2f(u2, v2);
+						GL.glVertex3f(right, bottom, 0);
+						GL.glTexCoord2f(u2, v);
+						GL.glVertex3f(right, top, 0);
+					}
 				}
 			}
+
+			if (set != null) {
+				set.tiles.endUse();
+			}
 		}
+	}
+
+	/**
+	 * The geometry of a square of tiles on the layer, the position and
+	 * texture coordinates of each tile grouped by the tileset it's drawn from
+	 */
+	private class Chunk {
+		/** The x coordinate of the top left tile of the chunk */
+		private int x;
+		/** The y coordinate of the top left tile of the chunk */
+		private int y;
+		/** The sheet each tileset was using when the chunk was built */
+		private SpriteSheet[] sheets;
+		/** The number of tiles in the chunk from each tileset */
+		private int[] counts;
+		/** The x and y coordinate of each tile from each tileset */
+		private int[][] tiles;
+		/** The texture coordinates of each tile from each tileset, left, top, right, bottom */
+		private float[][] coords;
+
+		/**
+		 * Build the geometry of a chunk from the layer's tiles
+		 * 
+		 * @param x
+		 *            The x coordinate of the top left tile of the chunk
+		 * @param y
+		 *            The y coordinate of the top left tile of the chunk
+		 */
+		public Chunk(int x, int y) {
+			this.x = x;
+			this.y = y;
+
+			int tileSets = map.getTileSetCount();
+			sheets = new SpriteSheet[tileSets];
+			counts = new int[tileSets];
+			tiles = new int[tileSets][];
+			coords = new float[tileSets][];
+
+			int x2 = Math.min(x + CHUNK_SIZE, width);
+			int y2 = Math.min(y + CHUNK_SIZE, height);
+			for (int ty = y; ty < y2; ty++) {
+				for (int tx = x; tx < x2; tx++) {
+					int tileset = getTileSetIndex(tx, ty);
+					if ((tileset >= 0) && (tileset < tileSets)) {
+						counts[tileset]++;
+					}
+				}
+			}
 
-		if (index != out.length) {
-			throw new RuntimeException(
-					"Data length appears to be wrong (wrote " + index
-							+ " should be " + out.length + ")");
+			for (int i = 0; i < tileSets; i++) {
+				tiles[i] = new int[counts[i] * 2];
+				coords[i] = new float[counts[i] * 4];
+				if (counts[i] != 0) {
+					sheets[i] = map.getTileSet(i).tiles;
+				}
+				counts[i] = 0;
+			}
+
+			for (int ty = y; ty < y2; ty++) {
+				for (int tx = x; tx < x2; tx++) {
+					int tileset = getTileSetIndex(tx, ty);
+					if ((tileset < 0) || (tileset >= tileSets)) {
+						continue;
+					}
+
+					TileSet set = map.getTileSet(tileset);
+					int id = getLocalTileID(tx, ty);
+					Image image = set.tiles.getSubImage(set.getTileX(id),
+							set.getTileY(id));
+
+					int i = counts[tileset]++;
+					tiles[tileset][i * 2] = tx;
+					tiles[tileset][(i * 2) + 1] = ty;
+					coords[tileset][i * 4] = image.getTextureOffsetX();
+					coords[tileset][(i * 4) + 1] = image.getTextureOffsetY();
+					coords[tileset][(i * 4) + 2] = image.getTextureOffsetX()
+							+ image.getTextureWidth();
+					coords[tileset][(i * 4) + 3] = image.getTextureOffsetY()
+							+ image.getTextureHeight();
+				}
+			}
 		}
 
-		return out;
+		/**
+		 * Check if the chunk was built with the tilesets' current images
+		 * 
+		 * @return True if the chunk's texture coordinates are still correct
+		 */
+		public boolean isCurrent() {
+			if (sheets.length != map.getTileSetCount()) {
+				return false;
+			}
+			for (int i = 0; i < sheets.length; i++) {
+				if ((counts[i] != 0) && (sheets[i] != map.getTileSet(i).tiles)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,366 @@
+package org.newdawn.slick.tiled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An index over the objects of an object group, used to find the objects in
+ * an area, or with a given name or type, without checking every object.
+ *
+ * The area is covered by a uniform grid of cells, each recording the index of
+ * every object that overlaps it. The cells are sized so there's roughly one
+ * per object across the area the objects cover. Objects spanning more than a
+ * few cells across or down are kept in a separate list checked by every
+ * query instead, so a group of large objects doesn't fill every cell. The
+ * list is searched linearly, so when most of a group's objects are large
+ * compared to the spacing between them the index is no faster than checking
+ * every object. An object covers the pixels from its position up to but not
+ * including its position plus its size, and an object without a width or
+ * height covers the single pixel at its position.
+ *
+ * The index isn't changed once built so it may be queried from any thread.
+ */
+class ObjectIndex {
+	/** The result of a query that finds nothing */
+	static final int[] NONE = new int[0];
+	/** The most cells across or down an object may span and still be put in them */
+	private static final int MAX_SPAN = 4;
+
+	/** The left edge of each object */
+	private int[] left;
+	/** The top edge of each object */
+	private int[] top;
+	/** The right edge of each object, exclusive */
+	private int[] right;
+	/** The bottom edge of each object, exclusive */
+	private int[] bottom;
+	/** The x coordinate of the top corner of the grid */
+	private int minX;
+	/** The y coordinate of the top corner of the grid */
+	private int minY;
+	/** The width and height of each cell */
+	private int cellSize = 1;
+	/** The number of columns of cells */
+	private int columns;
+	/** The number of rows of cells */
+	private int rows;
+	/**
+	 * The position in cellObjects of the first object in each cell, with an
+	 * extra entry marking the end
+	 */
+	private int[] cellStart;
+	/** The index of the objects in each cell, one cell after another */
+	private int[] cellObjects;
+	/** The index of the objects too large to be put in the cells */
+	private int[] large = NONE;
+	/** The indices of the objects with each name */
+	private HashMap names = new HashMap();
+	/** The indices of the objects of each type */
+	private HashMap types = new HashMap();
+	/** The parsed properties of each object */
+	private PropertyMap[] properties;
+
+	/**
+	 * Create a new index
+	 *
+	 * @param objects
+	 *            The objects to index, the GroupObjects of a group
+	 */
+	ObjectIndex(ArrayList objects) {
+		int count = objects.size();
+		left = new int[count];
+		top = new int[count];
+		right = new int[count];
+		bottom = new int[count];
+		properties = new PropertyMap[count];
+
+		HashMap nameLists = new HashMap();
+		HashMap typeLists = new HashMap();
+		for (int i = 0; i < count; i++) {
+			TiledMap.GroupObject object = (TiledMap.GroupObject) objects.get(i);
+			left[i] = object.x;
+			top[i] = object.y;
+			right[i] = object.x + Math.max(1, object.width);
+			bottom[i] = object.y + Math.max(1, object.height);
+			properties[i] = new PropertyMap(object.props);
+
+			add(nameLists, object.name, i);
+			add(typeLists, object.type, i);
+		}
+		toArrays(nameLists, names);
+		toArrays(typeLists, types);
+
+		if (count == 0) {
+			cellStart = new int[1];
+			cellObjects = NONE;
+			return;
+		}
+
+		minX = Integer.MAX_VALUE;
+		minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, left[i]);
+			minY = Math.min(minY, top[i]);
+			maxX = Math.max(maxX, right[i]);
+			maxY = Math.max(maxY, bottom[i]);
+		}
+
+		double area = ((double) (maxX - minX)) * (maxY - minY);
+		cellSize = Math.max(1, (int) Math.ceil(Math.sqrt(area / count)));
+		columns = column(maxX - 1) + 1;
+		rows = row(maxY - 1) + 1;
+
+		// count the objects in each cell, then fill them in at their positions
+		cellStart = new int[(columns * rows) + 1];
+		int largeCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (isLarge(i)) {
+				largeCount++;
+				continue;
+			}
+			for (int y = row(top[i]); y <= row(bottom[i] - 1); y++) {
+				for (int x = column(left[i]); x <= column(right[i] - 1); x++) {
+					cellStart[(y * columns) + x + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < columns * rows; i++) {
+			cellStart[i + 1] += cellStart[i];
+		}
+
+		cellObjects = new int[cellStart[columns * rows]];
+		large = largeCount == 0 ? NONE : new int[largeCount];
+		largeCount = 0;
+		int[] next = new int[columns * rows];
+		System.arraycopy(cellStart, 0, next, 0, next.length);
+		for (int i = 0; i < count; i++) {
+			if (isLarge(i)) {
+				large[largeCount++] = i;
+				continue;
+			}
+			for (int y = row(top[i]); y <= row(bottom[i] - 1); y++) {
+				for (int x = column(left[i]); x <= column(right[i] - 1); x++) {
+					cellObjects[next[(y * columns) + x]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add an object to the list kept for a name or type
+	 *
+	 * @param lists
+	 *            The lists of object indices keyed on name or type
+	 * @param key
+	 *            The name or type of the object, may be null
+	 * @param index
+	 *            The index of the object
+	 */
+	private static void add(HashMap lists, String key, int index) {
+		if ((key == null) || (key.length() == 0)) {
+			return;
+		}
+
+		ArrayList list = (ArrayList) lists.get(key);
+		if (list == null) {
+			list = new ArrayList();
+			lists.put(key, list);
+		}
+		list.add(new Integer(index));
+	}
+
+	/**
+	 * Convert the lists of object indices into arrays
+	 *
+	 * @param lists
+	 *            The lists of object indices keyed on name or type
+	 * @param arrays
+	 *            The map to put the arrays in under the same keys
+	 */
+	private static void toArrays(HashMap lists, HashMap arrays) {
+		Object[] keys = lists.keySet().toArray();
+		for (int i = 0; i < keys.length; i++) {
+			ArrayList list = (ArrayList) lists.get(keys[i]);
+			int[] indices = new int[list.size()];
+			for (int j = 0; j < indices.length; j++) {
+				indices[j] = ((Integer) list.get(j)).intValue();
+			}
+			arrays.put(keys[i], indices);
+		}
+	}
+
+	/**
+	 * Check if an object spans too many cells to be put in them
+	 *
+	 * @param index
+	 *            The index of the object
+	 * @return True if the object should be kept in the list of large objects
+	 */
+	private boolean isLarge(int index) {
+		return (column(right[index] - 1) - column(left[index]) >= MAX_SPAN)
+				|| (row(bottom[index] - 1) - row(top[index]) >= MAX_SPAN);
+	}
+
+	/**
+	 * Get the column of cells holding a given x coordinate
+	 *
+	 * @param x
+	 *            The x coordinate to locate
+	 * @return The column, which may be outside the grid
+	 */
+	private int column(int x) {
+		return TiledMap.floorDiv(x - minX, cellSize);
+	}
+
+	/**
+	 * Get the row of cells holding a given y coordinate
+	 *
+	 * @param y
+	 *            The y coordinate to locate
+	 * @return The row, which may be outside the grid
+	 */
+	private int row(int y) {
+		return TiledMap.floorDiv(y - minY, cellSize);
+	}
+
+	/**
+	 * Find the objects that overlap an area
+	 *
+	 * @param x
+	 *            The x coordinate of the top corner of the area
+	 * @param y
+	 *            The y coordinate of the top corner of the area
+	 * @param width
+	 *            The width of the area
+	 * @param height
+	 *            The height of the area
+	 * @return The indices of the objects overlapping the area, in the order
+	 *         the objects appear in the group
+	 */
+	int[] find(int x, int y, int width, int height) {
+		if ((width <= 0) || (height <= 0)) {
+			return NONE;
+		}
+
+		int x1 = Math.max(0, column(x));
+		int y1 = Math.max(0, row(y));
+		int x2 = Math.min(columns - 1, column(x + width - 1));
+		int y2 = Math.min(rows - 1, row(y + height - 1));
+
+		int count = 0;
+		int[] result = NONE;
+		for (int yp = y1; yp <= y2; yp++) {
+			for (int xp = x1; xp <= x2; xp++) {
+				int cell = (yp * columns) + xp;
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+					int index = cellObjects[i];
+					if (!overlaps(index, x, y, width, height)) {
+						continue;
+					}
+					// an object in several cells is only reported from the
+					// first of them the query covers
+					if ((xp != Math.max(x1, column(left[index])))
+							|| (yp != Math.max(y1, row(top[index])))) {
+						continue;
+					}
+
+					result = append(result, count++, index);
+				}
+			}
+		}
+		for (int i = 0; i < large.length; i++) {
+			if (overlaps(large[i], x, y, width, height)) {
+				result = append(result, count++, large[i]);
+			}
+		}
+
+		if (count == 0) {
+			return NONE;
+		}
+		int[] sorted = new int[count];
+		System.arraycopy(result, 0, sorted, 0, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Check if an object overlaps an area
+	 *
+	 * @param index
+	 *            The index of the object
+	 * @param x
+	 *            The x coordinate of the top corner of the area
+	 * @param y
+	 *            The y coordinate of the top corner of the area
+	 * @param width
+	 *            The width of the area
+	 * @param height
+	 *            The height of the area
+	 * @return True if the object overlaps the area
+	 */
+	private boolean overlaps(int index, int x, int y, int width, int height) {
+		return (left[index] < x + width) && (right[index] > x)
+				&& (top[index] < y + height) && (bottom[index] > y);
+	}
+
+	/**
+	 * Add an object to the results of a query, growing them if they're full
+	 *
+	 * @param result
+	 *            The results so far
+	 * @param count
+	 *            The number of results so far
+	 * @param index
+	 *            The index of the object to add
+	 * @return The results with the object added
+	 */
+	private static int[] append(int[] result, int count, int index) {
+		if (count == result.length) {
+			int[] grown = new int[Math.max(8, result.length * 2)];
+			System.arraycopy(result, 0, grown, 0, count);
+			result = grown;
+		}
+		result[count] = index;
+		return result;
+	}
+
+	/**
+	 * Find the objects with a given name
+	 *
+	 * @param name
+	 *            The name to look for
+	 * @return The indices of the objects with the name, in the order the
+	 *         objects appear in the group
+	 */
+	int[] findByName(String name) {
+		int[] indices = (int[]) names.get(name);
+		return indices == null ? NONE : (int[]) indices.clone();
+	}
+
+	/**
+	 * Find the objects of a given type
+	 *
+	 * @param type
+	 *            The type to look for
+	 * @return The indices of the objects of the type, in the order the
+	 *         objects appear in the group
+	 */
+	int[] findByType(String type) {
+		int[] indices = (int[]) types.get(type);
+		return indices == null ? NONE : (int[]) indices.clone();
+	}
+
+	/**
+	 * Get the parsed properties of an object
+	 *
+	 * @param index
+	 *            The index of the object
+	 * @return The properties of the object
+	 */
+	PropertyMap getProperties(int index) {
+		return properties[index];
+	}
+}
@@ -0,0 +1,35 @@
+package org.newdawn.slick.tiled;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The source of the pages of a PagedTiledMap. Pages are read on the map's
+ * loader thread so implementations must be safe to call from it.
+ */
+public interface PageSource {
+	/**
+	 * Open the TMX data for a page
+	 *
+	 * @param x
+	 *            The x coordinate of the page in pages
+	 * @param y
+	 *            The y coordinate of the page in pages
+	 * @return The stream to read the page from or null if the page is empty
+	 * @throws IOException
+	 *             Indicates a failure to open the page
+	 */
+	public InputStream getPage(int x, int y) throws IOException;
+
+	/**
+	 * Get the location of the tileset images used by a page
+	 *
+	 * @param x
+	 *            The x coordinate of the page in pages
+	 * @param y
+	 *            The y coordinate of the page in pages
+	 * @return The location of the tileset images as a resource reference
+	 *         prefix
+	 */
+	public String getTilesLocation(int x, int y);
+}
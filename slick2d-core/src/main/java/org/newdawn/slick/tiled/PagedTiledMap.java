@@ -0,0 +1,1036 @@
+package org.newdawn.slick.tiled;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.loading.DeferredResource;
+import org.newdawn.slick.loading.LoadingList;
+import org.newdawn.slick.opengl.ImageData;
+import org.newdawn.slick.opengl.ImageDataFactory;
+import org.newdawn.slick.opengl.LoadableImageData;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+import org.newdawn.slick.util.pathfinding.PathFindingContext;
+import org.newdawn.slick.util.pathfinding.TileBasedMap;
+
+/**
+ * A map made up of a grid of pages, each a TMX map of the same size, for worlds
+ * too big to be held as one TiledMap. Only the pages around the area being
+ * viewed are held, the rest are read as the view approaches them and dropped
+ * again once they're far away.
+ *
+ * Pages are read and their tileset images decoded on a loader thread, nearest
+ * the view first. Only the creation of the textures is left to the game
+ * thread, in update(), which should be called once a frame. If deferred
+ * loading is on the textures are instead created as DeferredResources through
+ * the LoadingList. Rendering and tile look ups never wait for pages, a page
+ * that hasn't been loaded yet is simply empty. A page that fails to load is
+ * tried again a few times, waiting twice as long before each attempt, and
+ * then left failed until the view moves away from it and back.
+ *
+ * Pages are dropped, least recently rendered first, once the memory they use
+ * is over the budget set. Pages around the view are never dropped. Tileset
+ * images are shared by every page using them and kept for the life of the
+ * map, they aren't counted against the budget.
+ */
+public class PagedTiledMap implements TileBasedMap {
+	/** The rough number of bytes held by a page besides its tiles */
+	private static final int PAGE_OVERHEAD = 256;
+	/** The number of times a page is read before it's left failed */
+	private static final int MAX_ATTEMPTS = 3;
+
+	/** A page that's waiting to be read */
+	private static final int PENDING = 0;
+	/** A page that's been read and is waiting for its images to be created */
+	private static final int LOADED = 1;
+	/** A page that's ready to be used */
+	private static final int READY = 2;
+	/** A page that couldn't be read */
+	private static final int FAILED = 3;
+
+	/** The source the pages are read from */
+	private PageSource source;
+	/** The number of pages across the map */
+	private int pagesAcross;
+	/** The number of pages down the map */
+	private int pagesDown;
+	/** The width of each page in tiles */
+	private int pageWidth;
+	/** The height of each page in tiles */
+	private int pageHeight;
+	/** The width of the tiles */
+	private int tileWidth;
+	/** The height of the tiles */
+	private int tileHeight;
+
+	/**
+	 * The pages being held or loaded in the order they were last used, eldest
+	 * first, only used from the game thread - Integer to Page
+	 */
+	private LinkedHashMap pages = new LinkedHashMap(16, 0.75f, true);
+	/** The pages that are ready, safe to read from any thread - Integer to Page */
+	private ConcurrentHashMap ready = new ConcurrentHashMap();
+	/** The page last looked up, checked before the ready pages */
+	private volatile Page lastPage;
+	/** The pages that couldn't be read, safe to read from any thread - Integer to Page */
+	private ConcurrentHashMap failed = new ConcurrentHashMap();
+	/** The pages read by the loader thread waiting for their images - Page */
+	private ConcurrentLinkedQueue loaded = new ConcurrentLinkedQueue();
+	/** The decoded tileset images - String to ImageData or Image */
+	private HashMap images = new HashMap();
+	/** The pages rendered in the current call, reused between calls */
+	private ArrayList visible = new ArrayList();
+
+	/** The lock held while accessing the pending pages */
+	private final Object lock = new Object();
+	/** The pages waiting to be read - Page */
+	private LinkedList pending = new LinkedList();
+	/** The x coordinate of the centre of the view in tiles */
+	private int viewX;
+	/** The y coordinate of the centre of the view in tiles */
+	private int viewY;
+	/** The time in milliseconds waited before a failed page is first read again */
+	private int retryDelay = 500;
+	/** True while the loader thread should keep running */
+	private boolean running = true;
+	/** The thread reading the pages */
+	private Loader loader;
+
+	/** The pages around the view that are wanted, left top right bottom */
+	private int[] wanted = new int[] { 0, 0, -1, -1 };
+	/** The number of pages around the view that are read ahead */
+	private int preloadDistance = 1;
+	/** The memory used by the pages held in bytes */
+	private long memoryUsage;
+	/** The memory the pages may use in bytes before they're dropped */
+	private long memoryBudget = 64 * 1024 * 1024;
+	/** The maximum time in milliseconds update() will spend each call or 0 for no limit */
+	private int timeBudget;
+	/** The name of the layer whose tiles block movement or null */
+	private String collisionLayer;
+
+	/**
+	 * Create a new paged map whose pages are TMX files named by a pattern
+	 *
+	 * @param ref
+	 *            The location of the pages, a String.format() pattern given
+	 *            the x and y coordinate of each page, e.g. "world/%d_%d.tmx".
+	 *            Pages that don't exist are empty.
+	 * @param pagesAcross
+	 *            The number of pages across the map
+	 * @param pagesDown
+	 *            The number of pages down the map
+	 * @param pageWidth
+	 *            The width of each page in tiles
+	 * @param pageHeight
+	 *            The height of each page in tiles
+	 * @param tileWidth
+	 *            The width of the tiles
+	 * @param tileHeight
+	 *            The height of the tiles
+	 */
+	public PagedTiledMap(final String ref, int pagesAcross, int pagesDown,
+			int pageWidth, int pageHeight, int tileWidth, int tileHeight) {
+		this(new PageSource() {
+			public InputStream getPage(int x, int y) throws IOException {
+				String page = String.format(ref, x, y);
+				if (!ResourceLoader.resourceExists(page)) {
+					return null;
+				}
+				return ResourceLoader.getResourceAsStream(page);
+			}
+
+			public String getTilesLocation(int x, int y) {
+				String page = String.format(ref, x, y).replace('\\', '/');
+				return page.substring(0, Math.max(0, page.lastIndexOf("/")));
+			}
+		}, pagesAcross, pagesDown, pageWidth, pageHeight, tileWidth,
+				tileHeight);
+	}
+
+	/**
+	 * Create a new paged map
+	 *
+	 * @param source
+	 *            The source the pages are read from
+	 * @param pagesAcross
+	 *            The number of pages across the map
+	 * @param pagesDown
+	 *            The number of pages down the map
+	 * @param pageWidth
+	 *            The width of each page in tiles
+	 * @param pageHeight
+	 *            The height of each page in tiles
+	 * @param tileWidth
+	 *            The width of the tiles
+	 * @param tileHeight
+	 *            The height of the tiles
+	 */
+	public PagedTiledMap(PageSource source, int pagesAcross, int pagesDown,
+			int pageWidth, int pageHeight, int tileWidth, int tileHeight) {
+		this.source = source;
+		this.pagesAcross = pagesAcross;
+		this.pagesDown = pagesDown;
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+
+		loader = new Loader();
+		loader.setName("PagedTiledMap Loader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	/**
+	 * Set the number of pages around the view that are read ahead of it
+	 *
+	 * @param preloadDistance
+	 *            The number of pages read ahead in each direction
+	 */
+	public void setPreloadDistance(int preloadDistance) {
+		this.preloadDistance = preloadDistance;
+	}
+
+	/**
+	 * Get the number of pages around the view that are read ahead of it
+	 *
+	 * @return The number of pages read ahead in each direction
+	 */
+	public int getPreloadDistance() {
+		return preloadDistance;
+	}
+
+	/**
+	 * Set the memory the pages may use before the least recently used ones are
+	 * dropped. Pages around the view are held whatever the budget. Only the
+	 * tiles of the pages are counted, the tileset images are held for the life
+	 * of the map.
+	 *
+	 * @param memoryBudget
+	 *            The memory budget in bytes
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		evict();
+	}
+
+	/**
+	 * Get the memory the pages may use before they're dropped
+	 *
+	 * @return The memory budget in bytes
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Get the memory used by the tiles of the pages held, not counting the
+	 * tileset images
+	 *
+	 * @return The memory used in bytes
+	 */
+	public long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	/**
+	 * Set the maximum time update() will spend creating images each call. At
+	 * least one page is completed each update however long it takes.
+	 *
+	 * @param timeBudget
+	 *            The maximum time in milliseconds or 0 for no limit
+	 */
+	public void setTimeBudget(int timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Get the maximum time update() will spend each call
+	 *
+	 * @return The maximum time in milliseconds or 0 for no limit
+	 */
+	public int getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Set the time waited before a page that failed to load is read again.
+	 * The wait is doubled for each attempt after the first.
+	 *
+	 * @param retryDelay
+	 *            The time to wait before the first retry in milliseconds
+	 */
+	public void setRetryDelay(int retryDelay) {
+		synchronized (lock) {
+			this.retryDelay = retryDelay;
+		}
+	}
+
+	/**
+	 * Get the time waited before a page that failed to load is first read
+	 * again
+	 *
+	 * @return The time to wait before the first retry in milliseconds
+	 */
+	public int getRetryDelay() {
+		synchronized (lock) {
+			return retryDelay;
+		}
+	}
+
+	/**
+	 * Set the layer whose tiles block movement when the map is searched as a
+	 * TileBasedMap
+	 *
+	 * @param name
+	 *            The name of the layer, any tile on which is blocked, or null
+	 *            if only the pages not yet loaded are blocked
+	 */
+	public void setCollisionLayer(String name) {
+		this.collisionLayer = name;
+	}
+
+	/**
+	 * Get the width of each page
+	 *
+	 * @return The width of each page in tiles
+	 */
+	public int getPageWidth() {
+		return pageWidth;
+	}
+
+	/**
+	 * Get the height of each page
+	 *
+	 * @return The height of each page in tiles
+	 */
+	public int getPageHeight() {
+		return pageHeight;
+	}
+
+	/**
+	 * Get the width of the map
+	 *
+	 * @return The width of the map in tiles
+	 */
+	public int getWidth() {
+		return pagesAcross * pageWidth;
+	}
+
+	/**
+	 * Get the height of the map
+	 *
+	 * @return The height of the map in tiles
+	 */
+	public int getHeight() {
+		return pagesDown * pageHeight;
+	}
+
+	/**
+	 * Get the width of the tiles
+	 *
+	 * @return The width of the tiles in pixels
+	 */
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	/**
+	 * Get the height of the tiles
+	 *
+	 * @return The height of the tiles in pixels
+	 */
+	public int getTileHeight() {
+		return tileHeight;
+	}
+
+	/**
+	 * Set the area being viewed, the pages around which are read ahead and held.
+	 * This is done by render() so only needs calling to load pages without
+	 * rendering them.
+	 *
+	 * @param sx
+	 *            The x coordinate of the top left tile of the view
+	 * @param sy
+	 *            The y coordinate of the top left tile of the view
+	 * @param width
+	 *            The width of the view in tiles
+	 * @param height
+	 *            The height of the view in tiles
+	 */
+	public void setView(int sx, int sy, int width, int height) {
+		int left = Math.max(0, page(sx, pageWidth) - preloadDistance);
+		int top = Math.max(0, page(sy, pageHeight) - preloadDistance);
+		int right = Math.min(pagesAcross - 1,
+				page(sx + width - 1, pageWidth) + preloadDistance);
+		int bottom = Math.min(pagesDown - 1,
+				page(sy + height - 1, pageHeight) + preloadDistance);
+
+		synchronized (lock) {
+			viewX = sx + (width / 2);
+			viewY = sy + (height / 2);
+		}
+		if ((left == wanted[0]) && (top == wanted[1]) && (right == wanted[2])
+				&& (bottom == wanted[3])) {
+			return;
+		}
+		wanted[0] = left;
+		wanted[1] = top;
+		wanted[2] = right;
+		wanted[3] = bottom;
+
+		synchronized (lock) {
+			// pages that haven't been started or have failed and are no
+			// longer wanted are forgotten, they'll be requested again if the
+			// view comes back
+			for (Iterator i = pending.iterator(); i.hasNext();) {
+				Page page = (Page) i.next();
+				if (!isWanted(page.x, page.y)) {
+					i.remove();
+					pages.remove(key(page.x, page.y));
+				}
+			}
+			for (Iterator i = failed.values().iterator(); i.hasNext();) {
+				Page page = (Page) i.next();
+				if (!isWanted(page.x, page.y)) {
+					i.remove();
+					pages.remove(key(page.x, page.y));
+				}
+			}
+
+			for (int y = top; y <= bottom; y++) {
+				for (int x = left; x <= right; x++) {
+					Integer key = key(x, y);
+					if (!pages.containsKey(key)) {
+						Page page = new Page(x, y);
+						pages.put(key, page);
+						pending.add(page);
+					}
+				}
+			}
+			lock.notify();
+		}
+	}
+
+	/**
+	 * Complete the pages read by the loader thread by creating the textures for
+	 * their tileset images. This should be called once a frame from the game
+	 * thread.
+	 */
+	public void update() {
+		long start = System.nanoTime();
+		long budget = timeBudget * 1000000L;
+
+		boolean first = true;
+		while (first || (budget == 0) || (System.nanoTime() - start < budget)) {
+			Page page = (Page) loaded.poll();
+			if (page == null) {
+				break;
+			}
+
+			PageUpload upload = new PageUpload(page);
+			if (LoadingList.isDeferredLoading()) {
+				LoadingList.get().add(upload);
+			} else {
+				upload.load();
+				first = false;
+			}
+		}
+	}
+
+	/**
+	 * Stop the loader thread, pages not yet read are never loaded
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			running = false;
+			pending.clear();
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Check if the page holding a tile is ready
+	 *
+	 * @param x
+	 *            The x coordinate of the tile
+	 * @param y
+	 *            The y coordinate of the tile
+	 * @return True if the page holding the tile has been loaded
+	 */
+	public boolean isLoaded(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= getWidth()) || (y >= getHeight())) {
+			return false;
+		}
+		return getPage(x / pageWidth, y / pageHeight) != null;
+	}
+
+	/**
+	 * Check if the page holding a tile couldn't be read. The page is read
+	 * again if the view moves away from it and comes back.
+	 *
+	 * @param x
+	 *            The x coordinate of the tile
+	 * @param y
+	 *            The y coordinate of the tile
+	 * @return True if the page holding the tile failed to load
+	 */
+	public boolean isFailed(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= getWidth()) || (y >= getHeight())) {
+			return false;
+		}
+		return failed.containsKey(key(x / pageWidth, y / pageHeight));
+	}
+
+	/**
+	 * Get the map of a page, for access to its properties and objects
+	 *
+	 * @param px
+	 *            The x coordinate of the page in pages
+	 * @param py
+	 *            The y coordinate of the page in pages
+	 * @return The map of the page or null if it's empty or not loaded
+	 */
+	public TiledMap getPageMap(int px, int py) {
+		Page page = getPage(px, py);
+		return page == null ? null : page.map;
+	}
+
+	/**
+	 * Get the global ID of the tile at the specified location in the map
+	 *
+	 * @param x
+	 *            The x coordinate of the tile
+	 * @param y
+	 *            The y coordinate of the tile
+	 * @param layerIndex
+	 *            The index of the layer to retireve the tile from
+	 * @return The global ID of the tile, 0 if there's no tile or its page isn't
+	 *         loaded
+	 */
+	public int getTileId(int x, int y, int layerIndex) {
+		if ((x < 0) || (y < 0) || (x >= getWidth()) || (y >= getHeight())) {
+			return 0;
+		}
+
+		Page page = getPage(x / pageWidth, y / pageHeight);
+		if ((page == null) || (page.map == null)
+				|| (layerIndex >= page.map.getLayerCount())) {
+			return 0;
+		}
+		return page.map.getTileId(x - (page.x * pageWidth), y
+				- (page.y * pageHeight), layerIndex);
+	}
+
+	/**
+	 * Render a section of the map, pages not yet loaded are left empty
+	 *
+	 * @param x
+	 *            The x location to render at
+	 * @param y
+	 *            The y location to render at
+	 * @param sx
+	 *            The x tile location to start rendering
+	 * @param sy
+	 *            The y tile location to start rendering
+	 * @param width
+	 *            The width of the section to render (in tiles)
+	 * @param height
+	 *            The height of the secton to render (in tiles)
+	 */
+	public void render(int x, int y, int sx, int sy, int width, int height) {
+		render(x, y, sx, sy, width, height, -1);
+	}
+
+	/**
+	 * Render a layer of a section of the map, pages not yet loaded are left
+	 * empty
+	 *
+	 * @param x
+	 *            The x location to render at
+	 * @param y
+	 *            The y location to render at
+	 * @param sx
+	 *            The x tile location to start rendering
+	 * @param sy
+	 *            The y tile location to start rendering
+	 * @param width
+	 *            The width of the section to render (in tiles)
+	 * @param height
+	 *            The height of the secton to render (in tiles)
+	 * @param l
+	 *            The index of the layer to render or -1 for every layer
+	 */
+	public void render(int x, int y, int sx, int sy, int width, int height,
+			int l) {
+		setView(sx, sy, width, height);
+
+		int left = Math.max(0, page(sx, pageWidth));
+		int top = Math.max(0, page(sy, pageHeight));
+		int right = Math.min(pagesAcross - 1, page(sx + width - 1, pageWidth));
+		int bottom = Math.min(pagesDown - 1,
+				page(sy + height - 1, pageHeight));
+
+		visible.clear();
+		int layerCount = 0;
+		for (int py = top; py <= bottom; py++) {
+			for (int px = left; px <= right; px++) {
+				// looked up through the pages to mark them as used
+				Page page = (Page) pages.get(key(px, py));
+				if ((page != null) && (page.state == READY)
+						&& (page.map != null)) {
+					visible.add(page);
+					layerCount = Math.max(layerCount,
+							page.map.getLayerCount());
+				}
+			}
+		}
+
+		// each layer is rendered across every page before the next, so
+		// tiles overlapping the page edges are drawn in the right order
+		int first = l < 0 ? 0 : l;
+		int last = l < 0 ? layerCount - 1 : l;
+		for (int layer = first; layer <= last; layer++) {
+			for (int i = 0; i < visible.size(); i++) {
+				Page page = (Page) visible.get(i);
+				if (layer >= page.map.getLayerCount()) {
+					continue;
+				}
+
+				int ox = page.x * pageWidth;
+				int oy = page.y * pageHeight;
+				int x1 = Math.max(sx, ox);
+				int y1 = Math.max(sy, oy);
+				int x2 = Math.min(sx + width, ox + pageWidth);
+				int y2 = Math.min(sy + height, oy + pageHeight);
+				page.map.render(x + ((x1 - sx) * tileWidth), y
+						+ ((y1 - sy) * tileHeight), x1 - ox, y1 - oy, x2 - x1,
+						y2 - y1, layer, false);
+			}
+		}
+		visible.clear();
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getWidthInTiles()
+	 */
+	public int getWidthInTiles() {
+		return getWidth();
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getHeightInTiles()
+	 */
+	public int getHeightInTiles() {
+		return getHeight();
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#pathFinderVisited(int,
+	 *      int)
+	 */
+	public void pathFinderVisited(int x, int y) {
+	}
+
+	/**
+	 * Tiles on pages that aren't loaded, failed or don't exist are blocked, as
+	 * are tiles on the collision layer if one has been set.
+	 *
+	 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#blocked(org.newdawn.slick.util.pathfinding.PathFindingContext,
+	 *      int, int)
+	 */
+	public boolean blocked(PathFindingContext context, int tx, int ty) {
+		Page page = getPage(tx / pageWidth, ty / pageHeight);
+		if ((page == null) || (page.map == null)) {
+			return true;
+		}
+		if (collisionLayer == null) {
+			return false;
+		}
+
+		int layer = page.map.getLayerIndex(collisionLayer);
+		if (layer < 0) {
+			return false;
+		}
+		return page.map.getTileId(tx - (page.x * pageWidth), ty
+				- (page.y * pageHeight), layer) != 0;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.TileBasedMap#getCost(org.newdawn.slick.util.pathfinding.PathFindingContext,
+	 *      int, int)
+	 */
+	public float getCost(PathFindingContext context, int tx, int ty) {
+		return 1;
+	}
+
+	/**
+	 * Get a page that's ready, safe to call from any thread
+	 *
+	 * @param px
+	 *            The x coordinate of the page in pages
+	 * @param py
+	 *            The y coordinate of the page in pages
+	 * @return The page or null if it's not ready
+	 */
+	private Page getPage(int px, int py) {
+		Page page = lastPage;
+		if ((page != null) && (page.x == px) && (page.y == py)) {
+			return page;
+		}
+
+		page = (Page) ready.get(key(px, py));
+		if (page != null) {
+			lastPage = page;
+		}
+		return page;
+	}
+
+	/**
+	 * Get the page holding a tile coordinate
+	 *
+	 * @param tile
+	 *            The tile coordinate, which may be negative
+	 * @param size
+	 *            The size of each page in tiles
+	 * @return The page coordinate
+	 */
+	private static int page(int tile, int size) {
+		return tile < 0 ? ((tile + 1) / size) - 1 : tile / size;
+	}
+
+	/**
+	 * Get the key a page is held under
+	 *
+	 * @param px
+	 *            The x coordinate of the page in pages
+	 * @param py
+	 *            The y coordinate of the page in pages
+	 * @return The key for the page
+	 */
+	private Integer key(int px, int py) {
+		return new Integer((py * pagesAcross) + px);
+	}
+
+	/**
+	 * Check if a page is around the view
+	 *
+	 * @param px
+	 *            The x coordinate of the page in pages
+	 * @param py
+	 *            The y coordinate of the page in pages
+	 * @return True if the page is wanted
+	 */
+	private boolean isWanted(int px, int py) {
+		return (px >= wanted[0]) && (py >= wanted[1]) && (px <= wanted[2])
+				&& (py <= wanted[3]);
+	}
+
+	/**
+	 * Drop the least recently used pages away from the view until the memory
+	 * used is within the budget
+	 */
+	private void evict() {
+		for (Iterator i = pages.values().iterator(); i.hasNext()
+				&& (memoryUsage > memoryBudget);) {
+			Page page = (Page) i.next();
+			if ((page.state != READY) || isWanted(page.x, page.y)) {
+				continue;
+			}
+
+			i.remove();
+			ready.remove(key(page.x, page.y));
+			if (lastPage == page) {
+				lastPage = null;
+			}
+			memoryUsage -= page.size;
+		}
+	}
+
+	/**
+	 * Get the key the image of a tileset is shared under
+	 *
+	 * @param set
+	 *            The tileset whose image is wanted
+	 * @return The key for the image
+	 */
+	private static String imageKey(TileSet set) {
+		return set.transparent == null ? set.imageRef : set.imageRef + "#"
+				+ set.transparent;
+	}
+
+	/**
+	 * Read a page and decode the tileset images it uses that haven't been seen
+	 * before, on the loader thread
+	 *
+	 * @param page
+	 *            The page to read
+	 * @return True if the page was read or doesn't exist, false if it failed
+	 */
+	private boolean load(Page page) {
+		InputStream in = null;
+		try {
+			in = source.getPage(page.x, page.y);
+			if (in == null) {
+				return true;
+			}
+
+			TiledMap map = new TiledMap(in, source.getTilesLocation(page.x,
+					page.y), false);
+			if ((map.getWidth() != pageWidth)
+					|| (map.getHeight() != pageHeight)
+					|| (map.getTileWidth() != tileWidth)
+					|| (map.getTileHeight() != tileHeight)) {
+				Log.error("Map page " + page.x + "," + page.y
+						+ " doesn't match the size of the pages");
+				return false;
+			}
+
+			if (!TiledMap.isHeadless()) {
+				for (int i = 0; i < map.getTileSetCount(); i++) {
+					decode(map.getTileSet(i));
+				}
+			}
+
+			page.map = map;
+			page.size += map.getLayerCount() * pageWidth * pageHeight * 4;
+			return true;
+		} catch (IOException e) {
+			Log.error("Failed to load map page " + page.x + "," + page.y, e);
+		} catch (SlickException e) {
+			Log.error("Failed to load map page " + page.x + "," + page.y, e);
+		} catch (RuntimeException e) {
+			Log.error("Failed to load map page " + page.x + "," + page.y, e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					Log.error(e);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Decode the image of a tileset if it hasn't been already
+	 *
+	 * @param set
+	 *            The tileset whose image should be decoded
+	 * @throws IOException
+	 *             Indicates a failure to read the image
+	 */
+	private void decode(TileSet set) throws IOException {
+		String key = imageKey(set);
+		synchronized (images) {
+			if (images.containsKey(key)) {
+				return;
+			}
+		}
+
+		int[] trans = null;
+		if (set.transparent != null) {
+			trans = new int[3];
+			trans[0] = (int) (set.transparent.r * 255);
+			trans[1] = (int) (set.transparent.g * 255);
+			trans[2] = (int) (set.transparent.b * 255);
+		}
+
+		LoadableImageData data = ImageDataFactory.getImageDataFor(set.imageRef);
+		InputStream in = new BufferedInputStream(
+				ResourceLoader.getResourceAsStream(set.imageRef));
+		try {
+			data.loadImage(in, false, trans);
+		} finally {
+			in.close();
+		}
+
+		synchronized (images) {
+			images.put(key, data);
+		}
+	}
+
+	/**
+	 * A page of the map
+	 */
+	private class Page {
+		/** The x coordinate of the page in pages */
+		private int x;
+		/** The y coordinate of the page in pages */
+		private int y;
+		/** The map of the page or null if it's empty */
+		private TiledMap map;
+		/** The state of the page, PENDING, LOADED, READY or FAILED */
+		private volatile int state = PENDING;
+		/** The number of times the page has failed to be read */
+		private int attempts;
+		/** The time in milliseconds before which the page isn't read again */
+		private long retryTime;
+		/** The memory used by the page in bytes */
+		private int size = PAGE_OVERHEAD;
+
+		/**
+		 * Create a new page
+		 *
+		 * @param x
+		 *            The x coordinate of the page in pages
+		 * @param y
+		 *            The y coordinate of the page in pages
+		 */
+		public Page(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	/**
+	 * The creation of the textures for a page that's been read, which must be
+	 * done on the game thread
+	 */
+	private class PageUpload implements DeferredResource {
+		/** The page to complete */
+		private Page page;
+
+		/**
+		 * Create a new upload
+		 *
+		 * @param page
+		 *            The page to complete
+		 */
+		public PageUpload(Page page) {
+			this.page = page;
+		}
+
+		/**
+		 * @see org.newdawn.slick.loading.DeferredResource#load()
+		 */
+		public void load() {
+			// the page may have been dropped while it was being read
+			if (pages.get(key(page.x, page.y)) != page) {
+				return;
+			}
+
+			if ((page.map != null) && (!TiledMap.isHeadless())) {
+				for (int i = 0; i < page.map.getTileSetCount(); i++) {
+					TileSet set = page.map.getTileSet(i);
+					String key = imageKey(set);
+
+					Object image;
+					synchronized (images) {
+						image = images.get(key);
+					}
+					if (image instanceof ImageData) {
+						image = new Image((ImageData) image, Image.FILTER_NEAREST);
+						synchronized (images) {
+							images.put(key, image);
+						}
+					}
+					if (image != null) {
+						set.setTileSetImage((Image) image);
+					}
+				}
+			}
+
+			page.state = READY;
+			ready.put(key(page.x, page.y), page);
+			memoryUsage += page.size;
+			evict();
+		}
+
+		/**
+		 * @see org.newdawn.slick.loading.DeferredResource#getDescription()
+		 */
+		public String getDescription() {
+			return "Map page " + page.x + "," + page.y;
+		}
+	}
+
+	/**
+	 * The thread reading pages, nearest the view first
+	 */
+	private class Loader extends Thread {
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (true) {
+				Page page = null;
+				synchronized (lock) {
+					while (running) {
+						// pages waiting to be retried are skipped until their
+						// time comes, waiting for the first of them if there's
+						// nothing else to read
+						long now = System.currentTimeMillis();
+						long wait = 0;
+						int best = Integer.MAX_VALUE;
+						for (Iterator i = pending.iterator(); i.hasNext();) {
+							Page next = (Page) i.next();
+							if (next.retryTime > now) {
+								long remaining = next.retryTime - now;
+								wait = wait == 0 ? remaining : Math.min(wait, remaining);
+								continue;
+							}
+							int dx = ((next.x * pageWidth) + (pageWidth / 2)) - viewX;
+							int dy = ((next.y * pageHeight) + (pageHeight / 2)) - viewY;
+							int distance = Math.abs(dx) + Math.abs(dy);
+							if (distance < best) {
+								best = distance;
+								page = next;
+							}
+						}
+						if (page != null) {
+							break;
+						}
+
+						try {
+							lock.wait(wait);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (!running) {
+						return;
+					}
+					pending.remove(page);
+				}
+
+				if (load(page)) {
+					page.state = LOADED;
+					loaded.add(page);
+					continue;
+				}
+
+				synchronized (lock) {
+					page.attempts++;
+					if (!running) {
+						return;
+					}
+					if (page.attempts < MAX_ATTEMPTS) {
+						page.retryTime = System.currentTimeMillis()
+								+ ((long) retryDelay << (page.attempts - 1));
+						pending.add(page);
+					} else {
+						Log.error("Giving up on map page " + page.x + ","
+								+ page.y + " after " + page.attempts
+								+ " attempts");
+						page.state = FAILED;
+						failed.put(key(page.x, page.y), page);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.newdawn.slick.tiled;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Properties;
+
+/**
+ * The properties of an object with each value parsed once, when the map is
+ * indexed, into the types it can be read as. Reading a value as a number or a
+ * flag is then a single hash lookup rather than parsing the text every time
+ * it's asked for.
+ */
+class PropertyMap {
+	/** The values of the properties keyed on their names */
+	private HashMap values = new HashMap();
+
+	/**
+	 * Create a new map of properties
+	 *
+	 * @param props
+	 *            The properties to parse, may be null
+	 */
+	PropertyMap(Properties props) {
+		if (props == null) {
+			return;
+		}
+
+		for (Enumeration e = props.keys(); e.hasMoreElements();) {
+			String name = (String) e.nextElement();
+			values.put(name, new Value(props.getProperty(name)));
+		}
+	}
+
+	/**
+	 * Get the text of a property
+	 *
+	 * @param name
+	 *            The name of the property
+	 * @param def
+	 *            The value to return if the property isn't defined
+	 * @return The text of the property or def if it isn't defined
+	 */
+	String getString(String name, String def) {
+		Value value = (Value) values.get(name);
+		if (value == null) {
+			return def;
+		}
+		return value.text;
+	}
+
+	/**
+	 * Get a property as an integer
+	 *
+	 * @param name
+	 *            The name of the property
+	 * @param def
+	 *            The value to return if the property isn't defined or isn't an
+	 *            integer
+	 * @return The value of the property or def
+	 */
+	int getInt(String name, int def) {
+		Value value = (Value) values.get(name);
+		if ((value == null) || (!value.isInt)) {
+			return def;
+		}
+		return value.intValue;
+	}
+
+	/**
+	 * Get a property as a number
+	 *
+	 * @param name
+	 *            The name of the property
+	 * @param def
+	 *            The value to return if the property isn't defined or isn't a
+	 *            number
+	 * @return The value of the property or def
+	 */
+	float getFloat(String name, float def) {
+		Value value = (Value) values.get(name);
+		if ((value == null) || (!value.isFloat)) {
+			return def;
+		}
+		return value.floatValue;
+	}
+
+	/**
+	 * Get a property as a flag
+	 *
+	 * @param name
+	 *            The name of the property
+	 * @param def
+	 *            The value to return if the property isn't defined or isn't
+	 *            "true" or "false"
+	 * @return The value of the property or def
+	 */
+	boolean getBoolean(String name, boolean def) {
+		Value value = (Value) values.get(name);
+		if ((value == null) || (!value.isBoolean)) {
+			return def;
+		}
+		return value.booleanValue;
+	}
+
+	/**
+	 * The value of a single property in each of the types it can be read as
+	 */
+	private static class Value {
+		/** The text of the property */
+		private String text;
+		/** True if the text is an integer */
+		private boolean isInt;
+		/** The value as an integer */
+		private int intValue;
+		/** True if the text is a number */
+		private boolean isFloat;
+		/** The value as a number */
+		private float floatValue;
+		/** True if the text is "true" or "false" */
+		private boolean isBoolean;
+		/** The value as a flag */
+		private boolean booleanValue;
+
+		/**
+		 * Parse a property
+		 *
+		 * @param text
+		 *            The text of the property
+		 */
+		public Value(String text) {
+			this.text = text;
+
+			String trimmed = text.trim();
+			try {
+				intValue = Integer.parseInt(trimmed);
+				isInt = true;
+			} catch (NumberFormatException e) {
+				// not an integer
+			}
+			try {
+				floatValue = Float.parseFloat(trimmed);
+				isFloat = true;
+			} catch (NumberFormatException e) {
+				// not a number
+			}
+			if (trimmed.equalsIgnoreCase("true")
+					|| trimmed.equalsIgnoreCase("false")) {
+				booleanValue = trimmed.equalsIgnoreCase("true");
+				isBoolean = true;
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.newdawn.slick.tiled;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Properties;
 
@@ -45,12 +46,16 @@ public class TileSet {
 	/** The number of tiles down the sprite sheet */
 	public int tilesDown;
 
-	/** The properties for each tile */
-	private HashMap props = new HashMap();
+	/** The properties for each tile - Integer to Properties */
+	HashMap props = new HashMap();
 	/** The padding of the tiles */
 	protected int tileSpacing = 0;
 	/** The margin of the tileset */
 	protected int tileMargin = 0;
+	/** The location of the image containing the tiles */
+	String imageRef;
+	/** The colour treated as transparent in the image or null */
+	Color transparent;
 
 	/**
 	 * Create a tile set based on an XML definition
@@ -120,9 +125,11 @@ public class TileSet {
 			trans = new Color(c);
 		}
 
+		imageRef = map.getTilesLocation() + "/" + ref;
+		transparent = trans;
 		if (loadImage) {
-			Image image = new Image(map.getTilesLocation() + "/" + ref, false,
-					Image.FILTER_NEAREST, trans);
+			Image image = new Image(imageRef, false, Image.FILTER_NEAREST,
+					trans);
 			setTileSetImage(image);
 		}
 
@@ -152,6 +159,48 @@ public class TileSet {
 		}
 	}
 
+	/**
+	 * Create a tile set from a binary map
+	 * 
+	 * @param map
+	 *            The map this tileset was loaded from (gives context to paths)
+	 * @param buffer
+	 *            The contents of the map positioned at the start of the
+	 *            tileset, left at the end of it
+	 * @param loadImage
+	 *            True if we should load the image (useful in headless mode)
+	 * @throws SlickException
+	 *             Indicates a failure to load the tileset image
+	 */
+	TileSet(TiledMap map, ByteBuffer buffer, boolean loadImage)
+			throws SlickException {
+		this.map = map;
+		name = BinaryMapFormat.readString(buffer);
+		firstGID = buffer.getInt();
+		tileWidth = buffer.getInt();
+		tileHeight = buffer.getInt();
+		tileSpacing = buffer.getInt();
+		tileMargin = buffer.getInt();
+		imageRef = map.getTilesLocation() + "/"
+				+ BinaryMapFormat.readString(buffer);
+		int trans = buffer.getInt();
+		if (trans != -1) {
+			transparent = new Color(trans);
+		}
+
+		if (loadImage) {
+			Image image = new Image(imageRef, false, Image.FILTER_NEAREST,
+					transparent);
+			setTileSetImage(image);
+		}
+
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			Integer id = new Integer(buffer.getInt());
+			props.put(id, BinaryMapFormat.readProperties(buffer));
+		}
+	}
+
 	/**
 	 * Get the width of each tile in this set
 	 * 
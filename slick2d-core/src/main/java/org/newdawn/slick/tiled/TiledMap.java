@@ -1,24 +1,31 @@
 package org.newdawn.slick.tiled;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Properties;
 
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.newdawn.slick.Image;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.util.Log;
 import org.newdawn.slick.util.ResourceLoader;
+import org.newdawn.slick.util.pathfinding.TileChangeListener;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * This class is intended to parse TilED maps. TilED is a generic tool for tile
@@ -45,6 +52,15 @@ public class TiledMap {
 		headless = h;
 	}
 
+	/**
+	 * Check if we're running on a headless system
+	 * 
+	 * @return True if we're running on a headless system
+	 */
+	static boolean isHeadless() {
+		return headless;
+	}
+
 	/** The width of the map */
 	protected int width;
 	/** The height of the map */
@@ -77,6 +93,17 @@ public class TiledMap {
 
 	/** True if we want to load tilesets - including their image data */
 	private boolean loadTileSets = true;
+	/** True if we want to load the images of the tilesets */
+	private boolean loadImages = true;
+
+	/**
+	 * The rows of an isometric map being rendered, each the row followed by
+	 * the first and last x coordinate of the tiles on it
+	 */
+	int[] isometricRows = new int[0];
+
+	/** The listeners to be notified when a tile is changed */
+	private ArrayList tileChangeListeners = new ArrayList();
 
 	/**
 	 * Create a new tile map based on a given TMX file
@@ -103,8 +130,7 @@ public class TiledMap {
 	public TiledMap(String ref, boolean loadTileSets) throws SlickException {
 		this.loadTileSets = loadTileSets;
 		ref = ref.replace('\\', '/');
-		load(ResourceLoader.getResourceAsStream(ref),
-				ref.substring(0, ref.lastIndexOf("/")));
+		load(ref, ref.substring(0, ref.lastIndexOf("/")));
 	}
 
 	/**
@@ -119,7 +145,7 @@ public class TiledMap {
 	 *             Indicates a failure to load the tilemap
 	 */
 	public TiledMap(String ref, String tileSetsLocation) throws SlickException {
-		load(ResourceLoader.getResourceAsStream(ref), tileSetsLocation);
+		load(ref, tileSetsLocation);
 	}
 
 	/**
@@ -149,6 +175,25 @@ public class TiledMap {
 		load(in, tileSetsLocation);
 	}
 
+	/**
+	 * Load a tile map from an arbitary input stream, leaving the tileset
+	 * images to be set later
+	 * 
+	 * @param in
+	 *            The input stream to load from
+	 * @param tileSetsLocation
+	 *            The location at which we can find tileset images
+	 * @param loadImages
+	 *            True if we want to load the images of the tilesets
+	 * @throws SlickException
+	 *             Indicates a failure to load the tilemap
+	 */
+	TiledMap(InputStream in, String tileSetsLocation, boolean loadImages)
+			throws SlickException {
+		this.loadImages = loadImages;
+		load(in, tileSetsLocation);
+	}
+
 	/**
 	 * Get the location of the tile images specified
 	 * 
@@ -196,12 +241,12 @@ public class TiledMap {
 	public Image getTileImage(int x, int y, int layerIndex) {
 		Layer layer = (Layer) layers.get(layerIndex);
 
-		int tileSetIndex = layer.data[x][y][0];
+		int tileSetIndex = layer.getTileSetIndex(x, y);
 		if ((tileSetIndex >= 0) && (tileSetIndex < tileSets.size())) {
 			TileSet tileSet = (TileSet) tileSets.get(tileSetIndex);
 
-			int sheetX = tileSet.getTileX(layer.data[x][y][1]);
-			int sheetY = tileSet.getTileY(layer.data[x][y][1]);
+			int sheetX = tileSet.getTileX(layer.getLocalTileID(x, y));
+			int sheetY = tileSet.getTileY(layer.getLocalTileID(x, y));
 
 			return tileSet.tiles.getSprite(sheetX, sheetY);
 		}
@@ -276,6 +321,30 @@ public class TiledMap {
 	public void setTileId(int x, int y, int layerIndex, int tileid) {
 		Layer layer = (Layer) layers.get(layerIndex);
 		layer.setTileID(x, y, tileid);
+
+		for (int i = 0; i < tileChangeListeners.size(); i++) {
+			((TileChangeListener) tileChangeListeners.get(i)).tileChanged(x, y);
+		}
+	}
+
+	/**
+	 * Add a listener to be notified when a tile is changed with setTileId()
+	 * 
+	 * @param listener
+	 *            The listener to add
+	 */
+	public void addTileChangeListener(TileChangeListener listener) {
+		tileChangeListeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener so it's no longer notified when a tile is changed
+	 * 
+	 * @param listener
+	 *            The listener to remove
+	 */
+	public void removeTileChangeListener(TileChangeListener listener) {
+		tileChangeListeners.remove(listener);
 	}
 
 	/**
@@ -420,6 +489,11 @@ public class TiledMap {
 
 		switch (orientation) {
 		case ORTHOGONAL:
+			if ((!lineByLine) && (canRenderChunks())) {
+				layer.renderChunks(x, y, sx, sy, width, height, tileWidth,
+						tileHeight);
+				break;
+			}
 			for (int ty = 0; ty < height; ty++) {
 				layer.render(x, y, sx, sy, width, ty, lineByLine, tileWidth,
 						tileHeight);
@@ -457,6 +531,14 @@ public class TiledMap {
 			boolean lineByLine) {
 		switch (orientation) {
 		case ORTHOGONAL:
+			if ((!lineByLine) && (canRenderChunks())) {
+				for (int i = 0; i < layers.size(); i++) {
+					Layer layer = (Layer) layers.get(i);
+					layer.renderChunks(x, y, sx, sy, width, height,
+							tileWidth, tileHeight);
+				}
+				break;
+			}
 			for (int ty = 0; ty < height; ty++) {
 				for (int i = 0; i < layers.size(); i++) {
 					Layer layer = (Layer) layers.get(i);
@@ -474,12 +556,140 @@ public class TiledMap {
 	}
 
 	/**
-	 * Render of isometric map renders.
+	 * Check if the layers can be rendered a chunk at a time from their cached
+	 * geometry. This is only possible when every tileset's tiles are the same
+	 * size as the map's, otherwise tiles overlap and need to be drawn line by
+	 * line to be layered correctly.
+	 * 
+	 * @return True if the layers can be rendered a chunk at a time
+	 */
+	private boolean canRenderChunks() {
+		for (int i = 0; i < tileSets.size(); i++) {
+			TileSet set = (TileSet) tileSets.get(i);
+			if ((set.tiles == null) || (set.tileWidth != tileWidth)
+					|| (set.tileHeight != tileHeight)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Render the part of the map that can be seen in an area of the screen,
+	 * any tiles outside the area are skipped
 	 * 
 	 * @param x
-	 *            The x location to render at
+	 *            The x location the map is rendered at, i.e. that of the
+	 *            tile at 0,0
 	 * @param y
-	 *            The y location to render at
+	 *            The y location the map is rendered at, i.e. that of the
+	 *            tile at 0,0
+	 * @param viewX
+	 *            The x location of the area of the screen to fill
+	 * @param viewY
+	 *            The y location of the area of the screen to fill
+	 * @param viewWidth
+	 *            The width of the area of the screen to fill
+	 * @param viewHeight
+	 *            The height of the area of the screen to fill
+	 * @param lineByLine
+	 *            True if we should render line by line, i.e. giving us a chance
+	 *            to render something else between lines (@see
+	 *            {@link #renderedLine(int, int, int)}
+	 */
+	public void renderView(int x, int y, int viewX, int viewY,
+			int viewWidth, int viewHeight, boolean lineByLine) {
+		renderView(x, y, viewX, viewY, viewWidth, viewHeight, null,
+				lineByLine);
+	}
+
+	/**
+	 * Render a layer of the part of the map that can be seen in an area of
+	 * the screen, any tiles outside the area are skipped
+	 * 
+	 * @param x
+	 *            The x location the map is rendered at, i.e. that of the
+	 *            tile at 0,0
+	 * @param y
+	 *            The y location the map is rendered at, i.e. that of the
+	 *            tile at 0,0
+	 * @param viewX
+	 *            The x location of the area of the screen to fill
+	 * @param viewY
+	 *            The y location of the area of the screen to fill
+	 * @param viewWidth
+	 *            The width of the area of the screen to fill
+	 * @param viewHeight
+	 *            The height of the area of the screen to fill
+	 * @param l
+	 *            The index of the layer to render
+	 * @param lineByLine
+	 *            True if we should render line by line, i.e. giving us a chance
+	 *            to render something else between lines (@see
+	 *            {@link #renderedLine(int, int, int)}
+	 */
+	public void renderView(int x, int y, int viewX, int viewY,
+			int viewWidth, int viewHeight, int l, boolean lineByLine) {
+		renderView(x, y, viewX, viewY, viewWidth, viewHeight,
+				(Layer) layers.get(l), lineByLine);
+	}
+
+	/**
+	 * Render the part of the map that can be seen in an area of the screen
+	 * 
+	 * @param x
+	 *            The x location of the tile at 0,0
+	 * @param y
+	 *            The y location of the tile at 0,0
+	 * @param viewX
+	 *            The x location of the area of the screen to fill
+	 * @param viewY
+	 *            The y location of the area of the screen to fill
+	 * @param viewWidth
+	 *            The width of the area of the screen to fill
+	 * @param viewHeight
+	 *            The height of the area of the screen to fill
+	 * @param layer
+	 *            The layer to render or null to render all of them
+	 * @param lineByLine
+	 *            True if we should render line by line
+	 */
+	private void renderView(int x, int y, int viewX, int viewY,
+			int viewWidth, int viewHeight, Layer layer, boolean lineByLine) {
+		if (orientation == ISOMETRIC) {
+			int count = findIsometricRows(x, y, 0, 0, width, height, viewX,
+					viewY, viewWidth, viewHeight);
+			renderIsometricRows(x, y, count, layer, lineByLine);
+			return;
+		}
+
+		// tiles taller than the map's tiles reach up into the view from
+		// the rows below it
+		int sx = floorDiv(viewX - x, tileWidth);
+		int sy = floorDiv(viewY - y, tileHeight);
+		int ex = floorDiv(viewX + viewWidth - x - 1, tileWidth);
+		int ey = floorDiv(viewY + viewHeight - y - 1 + getMaxTileHeight()
+				- tileHeight, tileHeight);
+		if (layer == null) {
+			render(x + (sx * tileWidth), y + (sy * tileHeight), sx, sy, ex
+					- sx + 1, ey - sy + 1, lineByLine);
+		} else {
+			render(x + (sx * tileWidth), y + (sy * tileHeight), sx, sy, ex
+					- sx + 1, ey - sy + 1, layer.index, lineByLine);
+		}
+	}
+
+	/**
+	 * Render a section of an isometric map. The tiles are drawn a row at a
+	 * time from the back of the map to the front, a row being the tiles
+	 * whose x and y coordinates add up to the same value, and only the
+	 * tileset changes break up the batches of tiles drawn.
+	 * 
+	 * @param x
+	 *            The x location to render the tile at sx,sy at
+	 * @param y
+	 *            The y location to render the tile at sx,sy at
 	 * @param sx
 	 *            The x tile location to start rendering
 	 * @param sy
@@ -495,72 +705,190 @@ public class TiledMap {
 	 *            True if we should render line by line, i.e. giving us a chance
 	 *            to render something else between lines (@see
 	 *            {@link #renderedLine(int, int, int)}
-	 * 
-	 *            TODO: [Isometric map] Render stuff between lines, concept of
-	 *            line differs from ortho maps
 	 */
 	protected void renderIsometricMap(int x, int y, int sx, int sy, int width,
 			int height, Layer layer, boolean lineByLine) {
-		ArrayList drawLayers = layers;
-		if (layer != null) {
-			drawLayers = new ArrayList();
-			drawLayers.add(layer);
-		}
-
-		int maxCount = width * height;
-		int allCount = 0;
+		int halfWidth = Math.max(1, tileWidth / 2);
+		int halfHeight = Math.max(1, tileHeight / 2);
+		int originX = x - ((sx - sy) * halfWidth);
+		int originY = y - ((sx + sy) * halfHeight);
+
+		// the whole section is in view
+		int left = originX + ((sx - (sy + height - 1)) * halfWidth);
+		int top = originY + ((sx + sy) * halfHeight)
+				- (getMaxTileHeight() - tileHeight);
+		int right = originX + (((sx + width - 1) - sy) * halfWidth)
+				+ getMaxTileWidth();
+		int bottom = originY + ((sx + width + sy + height - 2) * halfHeight)
+				+ tileHeight;
+
+		int count = findIsometricRows(originX, originY, sx, sy, width, height,
+				left, top, right - left, bottom - top);
+		renderIsometricRows(originX, originY, count, layer, lineByLine);
+	}
 
-		boolean allProcessed = false;
+	/**
+	 * Render the rows of an isometric map found by findIsometricRows(). Each
+	 * layer is drawn in full before the next, unless rendering line by line
+	 * where each row is drawn for every layer before the next.
+	 * 
+	 * @param x
+	 *            The x location of the tile at 0,0
+	 * @param y
+	 *            The y location of the tile at 0,0
+	 * @param count
+	 *            The number of rows to render
+	 * @param layer
+	 *            The layer to render or null to render all of them
+	 * @param lineByLine
+	 *            True if we should render line by line
+	 */
+	private void renderIsometricRows(int x, int y, int count, Layer layer,
+			boolean lineByLine) {
+		int first = layer == null ? 0 : layer.index;
+		int last = layer == null ? layers.size() - 1 : layer.index;
 
-		int initialLineX = x;
-		int initialLineY = y;
+		if (!lineByLine) {
+			for (int i = first; i <= last; i++) {
+				((Layer) layers.get(i)).renderIsometric(x, y, isometricRows,
+						0, count, tileWidth, tileHeight);
+			}
+			return;
+		}
 
-		int startLineTileX = 0;
-		int startLineTileY = 0;
-		while (!allProcessed) {
+		for (int row = 0; row < count; row++) {
+			for (int i = first; i <= last; i++) {
+				((Layer) layers.get(i)).renderIsometric(x, y, isometricRows,
+						row, row + 1, tileWidth, tileHeight);
+				renderedLine(row, isometricRows[row * 3], i);
+			}
+		}
+	}
 
-			int currentTileX = startLineTileX;
-			int currentTileY = startLineTileY;
-			int currentLineX = initialLineX;
+	/**
+	 * Find the rows of tiles of an isometric map that can be seen in an area
+	 * of the screen, back to front so they can be painted in order. Each is
+	 * recorded in isometricRows as the row, i.e. the sum of the x and y
+	 * coordinates of its tiles, followed by the x coordinates of the first and
+	 * last tile on it that can be seen.
+	 * 
+	 * @param x
+	 *            The x location of the tile at 0,0
+	 * @param y
+	 *            The y location of the tile at 0,0
+	 * @param sx
+	 *            The x coordinate of the first tile that may be rendered
+	 * @param sy
+	 *            The y coordinate of the first tile that may be rendered
+	 * @param width
+	 *            The width of the section that may be rendered (in tiles)
+	 * @param height
+	 *            The height of the section that may be rendered (in tiles)
+	 * @param viewX
+	 *            The x location of the area of the screen to fill
+	 * @param viewY
+	 *            The y location of the area of the screen to fill
+	 * @param viewWidth
+	 *            The width of the area of the screen to fill
+	 * @param viewHeight
+	 *            The height of the area of the screen to fill
+	 * @return The number of rows found
+	 */
+	int findIsometricRows(int x, int y, int sx, int sy, int width,
+			int height, int viewX, int viewY, int viewWidth, int viewHeight) {
+		int x1 = Math.max(0, sx);
+		int y1 = Math.max(0, sy);
+		int x2 = Math.min(this.width, sx + width) - 1;
+		int y2 = Math.min(this.height, sy + height) - 1;
+		if ((x1 > x2) || (y1 > y2)) {
+			return 0;
+		}
 
-			int min = 0;
-			if (height > width)
-				min = (startLineTileY < width - 1) ? startLineTileY : (width
-						- currentTileX < height) ? width - currentTileX - 1
-						: width - 1;
-			else
-				min = (startLineTileY < height - 1) ? startLineTileY : (width
-						- currentTileX < height) ? width - currentTileX - 1
-						: height - 1;
-
-			for (int burner = 0; burner <= min; currentTileX++, currentTileY--, burner++) {
-				for (int layerIdx = 0; layerIdx < drawLayers.size(); layerIdx++) {
-					Layer currentLayer = (Layer) drawLayers.get(layerIdx);
-					currentLayer.render(currentLineX, initialLineY,
-							currentTileX, currentTileY, 1, 0, lineByLine,
-							tileWidth, tileHeight);
-				}
-				currentLineX += tileWidth;
+		// a tile at row r is drawn at y + (r * halfHeight), tiles taller than
+		// the map's tiles reaching up above that
+		int halfWidth = Math.max(1, tileWidth / 2);
+		int halfHeight = Math.max(1, tileHeight / 2);
+		int maxWidth = getMaxTileWidth();
+		int maxHeight = getMaxTileHeight();
+		int first = Math.max(x1 + y1, floorDiv(viewY - y - tileHeight,
+				halfHeight) + 1);
+		int last = Math.min(x2 + y2, ceilDiv(viewY + viewHeight - y
+				+ maxHeight - tileHeight, halfHeight) - 1);
+
+		if (isometricRows.length < (last - first + 1) * 3) {
+			isometricRows = new int[(last - first + 1) * 3];
+		}
 
-				allCount++;
+		// and a tile at tx on that row is drawn at
+		// x + (((2 * tx) - r) * halfWidth)
+		int count = 0;
+		for (int row = first; row <= last; row++) {
+			int start = Math.max(Math.max(x1, row - y2), floorDiv(viewX
+					- maxWidth - x + (row * halfWidth), 2 * halfWidth) + 1);
+			int end = Math.min(Math.min(x2, row - y1), ceilDiv(viewX
+					+ viewWidth - x + (row * halfWidth), 2 * halfWidth) - 1);
+			if (start <= end) {
+				isometricRows[count * 3] = row;
+				isometricRows[(count * 3) + 1] = start;
+				isometricRows[(count * 3) + 2] = end;
+				count++;
 			}
+		}
 
-			// System.out.println("Line : " + counter++ + " - " + count +
-			// "allcount : " + allCount);
-
-			if (startLineTileY < (height - 1)) {
-				startLineTileY += 1;
-				initialLineX -= tileWidth / 2;
-				initialLineY += tileHeight / 2;
-			} else {
-				startLineTileX += 1;
-				initialLineX += tileWidth / 2;
-				initialLineY += tileHeight / 2;
-			}
+		return count;
+	}
+
+	/**
+	 * Get the width of the widest tiles in the map's tilesets
+	 * 
+	 * @return The width of the widest tiles, at least that of the map's tiles
+	 */
+	private int getMaxTileWidth() {
+		int max = tileWidth;
+		for (int i = 0; i < tileSets.size(); i++) {
+			max = Math.max(max, ((TileSet) tileSets.get(i)).tileWidth);
+		}
+		return max;
+	}
 
-			if (allCount >= maxCount)
-				allProcessed = true;
+	/**
+	 * Get the height of the tallest tiles in the map's tilesets
+	 * 
+	 * @return The height of the tallest tiles, at least that of the map's
+	 *         tiles
+	 */
+	private int getMaxTileHeight() {
+		int max = tileHeight;
+		for (int i = 0; i < tileSets.size(); i++) {
+			max = Math.max(max, ((TileSet) tileSets.get(i)).tileHeight);
 		}
+		return max;
+	}
+
+	/**
+	 * Divide rounding down rather than towards zero
+	 * 
+	 * @param value
+	 *            The value to divide
+	 * @param divisor
+	 *            The positive value to divide by
+	 * @return The result rounded down
+	 */
+	static int floorDiv(int value, int divisor) {
+		return value >= 0 ? value / divisor : -((divisor - 1 - value) / divisor);
+	}
+
+	/**
+	 * Divide rounding up
+	 * 
+	 * @param value
+	 *            The value to divide
+	 * @param divisor
+	 *            The positive value to divide by
+	 * @return The result rounded up
+	 */
+	private static int ceilDiv(int value, int divisor) {
+		return -floorDiv(-value, divisor);
 	}
 
 	/**
@@ -588,7 +916,36 @@ public class TiledMap {
 	}
 
 	/**
-	 * Load a TilED map
+	 * Load a TilED map or a map compiled by TiledMapCompiler, which is mapped
+	 * into memory if it's a file
+	 * 
+	 * @param ref
+	 *            The location of the map
+	 * @param tileSetsLocation
+	 *            The location from which we can retrieve tileset images
+	 * @throws SlickException
+	 *             Indicates a failure to parse the map or find a tileset
+	 */
+	private void load(String ref, String tileSetsLocation)
+			throws SlickException {
+		ByteBuffer buffer;
+		try {
+			buffer = BinaryMapFormat.map(ref);
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Failed to map tilemap: " + ref, e);
+		}
+
+		if (buffer == null) {
+			load(ResourceLoader.getResourceAsStream(ref), tileSetsLocation);
+		} else {
+			tilesLocation = tileSetsLocation;
+			loadBinary(buffer);
+		}
+	}
+
+	/**
+	 * Load a TilED map or a map compiled by TiledMapCompiler
 	 * 
 	 * @param in
 	 *            The input stream from which to load the map
@@ -601,23 +958,144 @@ public class TiledMap {
 			throws SlickException {
 		tilesLocation = tileSetsLocation;
 
+		ByteBuffer buffer = null;
+		try {
+			if (!in.markSupported()) {
+				in = new BufferedInputStream(in);
+			}
+			byte[] header = new byte[BinaryMapFormat.MAGIC.length];
+			in.mark(header.length);
+			int read = 0;
+			while (read < header.length) {
+				int count = in.read(header, read, header.length - read);
+				if (count == -1) {
+					break;
+				}
+				read += count;
+			}
+			in.reset();
+
+			if (BinaryMapFormat.isBinary(header)) {
+				buffer = BinaryMapFormat.read(in);
+			}
+		} catch (IOException e) {
+			Log.error(e);
+			throw new SlickException("Failed to read tilemap", e);
+		}
+
+		if (buffer == null) {
+			loadXML(in);
+		} else {
+			loadBinary(buffer);
+		}
+	}
+
+	/**
+	 * Load a map compiled by TiledMapCompiler. The tiles of the layers are
+	 * read straight from the buffer.
+	 * 
+	 * @param buffer
+	 *            The contents of the map
+	 * @throws SlickException
+	 *             Indicates a failure to read the map or find a tileset
+	 */
+	private void loadBinary(ByteBuffer buffer) throws SlickException {
+		try {
+			BinaryMapFormat.readHeader(buffer);
+			orientation = buffer.getInt();
+			width = buffer.getInt();
+			height = buffer.getInt();
+			tileWidth = buffer.getInt();
+			tileHeight = buffer.getInt();
+			props = BinaryMapFormat.readProperties(buffer);
+			int maxTileID = buffer.getInt();
+
+			int tileSetCount = buffer.getInt();
+			int[] limits = new int[tileSetCount];
+			TileSet lastSet = null;
+			for (int i = 0; i < tileSetCount; i++) {
+				limits[i] = buffer.getInt();
+				TileSet tileSet = new TileSet(this, buffer, loadTileSets
+						&& loadImages && !headless);
+				if (!loadTileSets) {
+					continue;
+				}
+				tileSet.index = i;
+
+				if (lastSet != null) {
+					lastSet.setLimit(tileSet.firstGID - 1);
+				}
+				lastSet = tileSet;
+
+				tileSets.add(tileSet);
+			}
+
+			// the tiles were packed against the tilesets as they were when
+			// the map was compiled, they only need packing again if the
+			// tilesets now cover different tiles
+			boolean repack = (!loadTileSets) && (tileSetCount > 0);
+			for (int i = 0; i < tileSets.size(); i++) {
+				TileSet tileSet = (TileSet) tileSets.get(i);
+				if ((tileSet.lastGID != limits[i])
+						&& (Math.min(tileSet.lastGID, limits[i]) < maxTileID)) {
+					repack = true;
+				}
+			}
+
+			int layerCount = buffer.getInt();
+			for (int i = 0; i < layerCount; i++) {
+				Layer layer = new Layer(this, buffer);
+				layer.index = i;
+				if (repack) {
+					layer.repack();
+				}
+
+				layers.add(layer);
+			}
+
+			int objectGroupCount = buffer.getInt();
+			for (int i = 0; i < objectGroupCount; i++) {
+				ObjectGroup objectGroup = new ObjectGroup(buffer);
+				objectGroup.index = i;
+
+				objectGroups.add(objectGroup);
+			}
+		} catch (BufferUnderflowException e) {
+			throw new SlickException(
+					"Binary map ended before it was all read", e);
+		}
+	}
+
+	/**
+	 * Load a TilED map
+	 * 
+	 * @param in
+	 *            The input stream from which to load the map
+	 * @throws SlickException
+	 *             Indicates a failure to parse the map or find a tileset
+	 */
+	private void loadXML(InputStream in) throws SlickException {
 		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory
-					.newInstance();
-			factory.setValidating(false);
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			builder.setEntityResolver(new EntityResolver() {
-				public InputSource resolveEntity(String publicId,
-						String systemId) throws SAXException, IOException {
-					return new InputSource(
-							new ByteArrayInputStream(new byte[0]));
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(
+					XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+					Boolean.FALSE);
+			factory.setXMLResolver(new XMLResolver() {
+				public Object resolveEntity(String publicID, String systemID,
+						String baseURI, String namespace) {
+					return new ByteArrayInputStream(new byte[0]);
 				}
 			});
 
-			Document doc = builder.parse(in);
-			Element docElement = doc.getDocumentElement();
+			// the map is read as a stream so the layers' tiles can be decoded
+			// as they're read, the other elements are small enough to be read
+			// into elements
+			XMLStreamReader reader = factory.createXMLStreamReader(in);
+			while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+			}
 
-			if (docElement.getAttribute("orientation").equals("orthogonal"))
+			if (getAttribute(reader, "orientation").equals("orthogonal"))
 				orientation = ORTHOGONAL;
 			else
 				orientation = ISOMETRIC;
@@ -627,39 +1105,49 @@ public class TiledMap {
 			 * }
 			 */
 
-			width = parseInt(docElement.getAttribute("width"));
-			height = parseInt(docElement.getAttribute("height"));
-			tileWidth = parseInt(docElement.getAttribute("tilewidth"));
-			tileHeight = parseInt(docElement.getAttribute("tileheight"));
+			width = parseInt(getAttribute(reader, "width"));
+			height = parseInt(getAttribute(reader, "height"));
+			tileWidth = parseInt(getAttribute(reader, "tilewidth"));
+			tileHeight = parseInt(getAttribute(reader, "tileheight"));
 
-			// now read the map properties
-			Element propsElement = (Element) docElement.getElementsByTagName(
-					"properties").item(0);
-			if (propsElement != null) {
-				NodeList properties = propsElement
-						.getElementsByTagName("property");
-				if (properties != null) {
-					props = new Properties();
-					for (int p = 0; p < properties.getLength(); p++) {
-						Element propElement = (Element) properties.item(p);
+			TileSet lastSet = null;
+			int tileSetCount = 0;
+			int objectGroupCount = 0;
 
-						String name = propElement.getAttribute("name");
-						String value = propElement.getAttribute("value");
-						props.setProperty(name, value);
-					}
+			while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+				if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+					continue;
 				}
-			}
-
-			if (loadTileSets) {
-				TileSet tileSet = null;
-				TileSet lastSet = null;
-
-				NodeList setNodes = docElement.getElementsByTagName("tileset");
-				for (int i = 0; i < setNodes.getLength(); i++) {
-					Element current = (Element) setNodes.item(i);
+				String name = reader.getLocalName();
+
+				if (name.equals("properties") && (props == null)) {
+					// now read the map properties
+					Element propsElement = readElement(reader);
+					NodeList properties = propsElement
+							.getElementsByTagName("property");
+					if (properties != null) {
+						props = new Properties();
+						for (int p = 0; p < properties.getLength(); p++) {
+							Element propElement = (Element) properties.item(p);
+
+							String propName = propElement.getAttribute("name");
+							String value = propElement.getAttribute("value");
+							props.setProperty(propName, value);
+						}
+					}
+				} else if (name.equals("tileset")) {
+					Element current = readElement(reader);
+					if (!loadTileSets) {
+						continue;
+					}
+					if (tileSetCount == Layer.MAX_TILESETS) {
+						throw new SlickException("Maps can't use more than "
+								+ Layer.MAX_TILESETS + " tilesets");
+					}
 
-					tileSet = new TileSet(this, current, !headless);
-					tileSet.index = i;
+					TileSet tileSet = new TileSet(this, current,
+							loadImages && !headless);
+					tileSet.index = tileSetCount++;
 
 					if (lastSet != null) {
 						lastSet.setLimit(tileSet.firstGID - 1);
@@ -667,32 +1155,115 @@ public class TiledMap {
 					lastSet = tileSet;
 
 					tileSets.add(tileSet);
+				} else if (name.equals("layer")) {
+					Layer layer = new Layer(this, reader);
+					layer.index = layers.size();
+
+					layers.add(layer);
+				} else if (name.equals("objectgroup")) {
+					// acquire object-groups
+					Element current = readElement(reader);
+					ObjectGroup objectGroup = new ObjectGroup(current);
+					objectGroup.index = objectGroupCount++;
+
+					objectGroups.add(objectGroup);
+				} else {
+					skipElement(reader);
 				}
 			}
 
-			NodeList layerNodes = docElement.getElementsByTagName("layer");
-			for (int i = 0; i < layerNodes.getLength(); i++) {
-				Element current = (Element) layerNodes.item(i);
-				Layer layer = new Layer(this, current);
-				layer.index = i;
+			reader.close();
+		} catch (Exception e) {
+			Log.error(e);
+			throw new SlickException("Failed to parse tilemap", e);
+		}
+	}
 
-				layers.add(layer);
-			}
+	/**
+	 * Get an attribute of the current element of an XML stream
+	 * 
+	 * @param reader
+	 *            The XML stream positioned at the start of an element
+	 * @param name
+	 *            The name of the attribute
+	 * @return The value of the attribute or an empty string if it's not given
+	 */
+	static String getAttribute(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return (value == null) ? "" : value;
+	}
 
-			// acquire object-groups
-			NodeList objectGroupNodes = docElement
-					.getElementsByTagName("objectgroup");
+	/**
+	 * Read the current element of an XML stream, and everything in it, into
+	 * a DOM element
+	 * 
+	 * @param reader
+	 *            The XML stream positioned at the start of an element, left at
+	 *            the end of it
+	 * @return The element read
+	 * @throws XMLStreamException
+	 *             Indicates a failure to read the XML
+	 */
+	static Element readElement(XMLStreamReader reader)
+			throws XMLStreamException {
+		Document doc;
+		try {
+			doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+					.newDocument();
+		} catch (ParserConfigurationException e) {
+			throw new XMLStreamException(e);
+		}
+		Node parent = doc;
+
+		do {
+			switch (reader.getEventType()) {
+			case XMLStreamConstants.START_ELEMENT:
+				Element element = doc.createElement(reader.getLocalName());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					element.setAttribute(reader.getAttributeLocalName(i),
+							reader.getAttributeValue(i));
+				}
+				parent.appendChild(element);
+				parent = element;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				parent = parent.getParentNode();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				parent.appendChild(doc.createTextNode(reader.getText()));
+				break;
+			default:
+				break;
+			}
+			if (parent == doc) {
+				break;
+			}
+			reader.next();
+		} while (true);
 
-			for (int i = 0; i < objectGroupNodes.getLength(); i++) {
-				Element current = (Element) objectGroupNodes.item(i);
-				ObjectGroup objectGroup = new ObjectGroup(current);
-				objectGroup.index = i;
+		return doc.getDocumentElement();
+	}
 
-				objectGroups.add(objectGroup);
+	/**
+	 * Skip the current element of an XML stream and everything in it
+	 * 
+	 * @param reader
+	 *            The XML stream positioned at the start of an element, left at
+	 *            the end of it
+	 * @throws XMLStreamException
+	 *             Indicates a failure to read the XML
+	 */
+	static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
 			}
-		} catch (Exception e) {
-			Log.error(e);
-			throw new SlickException("Failed to parse tilemap", e);
 		}
 	}
 
@@ -757,12 +1328,15 @@ public class TiledMap {
 
 	/**
 	 * Overrideable to allow other sprites to be rendered between lines of the
-	 * map
+	 * map. On isometric maps a line is a row of tiles whose x and y
+	 * coordinates add up to the same value, rendered back to front.
 	 * 
 	 * @param visualY
-	 *            The visual Y coordinate, i.e. 0->height
+	 *            The visual Y coordinate, i.e. 0->height, or on isometric
+	 *            maps the number of rows rendered before this one
 	 * @param mapY
-	 *            The map Y coordinate, i.e. y->y+height
+	 *            The map Y coordinate, i.e. y->y+height, or on isometric maps
+	 *            the sum of the x and y coordinates of the row's tiles
 	 * @param layer
 	 *            The layer being rendered
 	 */
@@ -975,6 +1549,215 @@ public class TiledMap {
 		return def;
 	}
 
+	/**
+	 * Get the index of the object-group with given name
+	 * 
+	 * @param name
+	 *            The name of the object-group to search for
+	 * @return The index of the object-group or -1 if there is no object-group
+	 *         with given name
+	 */
+	public int getObjectGroupIndex(String name) {
+		for (int i = 0; i < objectGroups.size(); i++) {
+			ObjectGroup grp = (ObjectGroup) objectGroups.get(i);
+
+			if (name.equals(grp.name)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Get the index of an object-group's objects
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @return The index of the group's objects or null if there's no such
+	 *         group
+	 */
+	private ObjectIndex getObjectIndex(int groupID) {
+		if (groupID >= 0 && groupID < objectGroups.size()) {
+			return ((ObjectGroup) objectGroups.get(groupID)).getObjectIndex();
+		}
+		return null;
+	}
+
+	/**
+	 * Find the objects of a group that overlap an area. The objects are found
+	 * through a grid built over the group the first time it's queried, so
+	 * only the objects near the area are checked. Objects spanning more than
+	 * a few cells of the grid are checked by every query, so a group made
+	 * mostly of objects much larger than the spacing between them is
+	 * searched one object at a time.
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param x
+	 *            The x coordinate of the top corner of the area in pixels
+	 * @param y
+	 *            The y coordinate of the top corner of the area in pixels
+	 * @param width
+	 *            The width of the area in pixels
+	 * @param height
+	 *            The height of the area in pixels
+	 * @return The indices of the objects overlapping the area in the order
+	 *         they appear in the group, empty if there are none or there's
+	 *         no such group
+	 */
+	public int[] getObjectsIn(int groupID, int x, int y, int width, int height) {
+		ObjectIndex index = getObjectIndex(groupID);
+		if (index == null) {
+			return ObjectIndex.NONE;
+		}
+		return index.find(x, y, width, height);
+	}
+
+	/**
+	 * Find the objects of a group that cover a point
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param x
+	 *            The x coordinate of the point in pixels
+	 * @param y
+	 *            The y coordinate of the point in pixels
+	 * @return The indices of the objects covering the point in the order they
+	 *         appear in the group, empty if there are none or there's no such
+	 *         group
+	 */
+	public int[] getObjectsAt(int groupID, int x, int y) {
+		return getObjectsIn(groupID, x, y, 1, 1);
+	}
+
+	/**
+	 * Find the objects of a group with a given name
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param name
+	 *            The name of the objects to find
+	 * @return The indices of the objects with the name in the order they
+	 *         appear in the group, empty if there are none or there's no such
+	 *         group
+	 */
+	public int[] getObjectsByName(int groupID, String name) {
+		ObjectIndex index = getObjectIndex(groupID);
+		if (index == null) {
+			return ObjectIndex.NONE;
+		}
+		return index.findByName(name);
+	}
+
+	/**
+	 * Find the objects of a group with a given type
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param type
+	 *            The type of the objects to find
+	 * @return The indices of the objects of the type in the order they appear
+	 *         in the group, empty if there are none or there's no such group
+	 */
+	public int[] getObjectsByType(int groupID, String type) {
+		ObjectIndex index = getObjectIndex(groupID);
+		if (index == null) {
+			return ObjectIndex.NONE;
+		}
+		return index.findByType(type);
+	}
+
+	/**
+	 * Get the parsed properties of an object
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param objectID
+	 *            Index of an object
+	 * @return The properties of the object or null if there's no such object
+	 */
+	private PropertyMap getObjectProperties(int groupID, int objectID) {
+		ObjectIndex index = getObjectIndex(groupID);
+		if (index == null || objectID < 0
+				|| objectID >= getObjectCount(groupID)) {
+			return null;
+		}
+		return index.getProperties(objectID);
+	}
+
+	/**
+	 * Get a property of an object as an integer. The properties of a group's
+	 * objects are parsed once, when the group is first queried.
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param objectID
+	 *            Index of an object
+	 * @param propertyName
+	 *            Name of a property
+	 * @param def
+	 *            default value to return, if no property is found or it isn't
+	 *            an integer
+	 * @return The value of the property with the given name or def
+	 */
+	public int getObjectPropertyInt(int groupID, int objectID,
+			String propertyName, int def) {
+		PropertyMap props = getObjectProperties(groupID, objectID);
+		if (props == null) {
+			return def;
+		}
+		return props.getInt(propertyName, def);
+	}
+
+	/**
+	 * Get a property of an object as a number. The properties of a group's
+	 * objects are parsed once, when the group is first queried.
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param objectID
+	 *            Index of an object
+	 * @param propertyName
+	 *            Name of a property
+	 * @param def
+	 *            default value to return, if no property is found or it isn't
+	 *            a number
+	 * @return The value of the property with the given name or def
+	 */
+	public float getObjectPropertyFloat(int groupID, int objectID,
+			String propertyName, float def) {
+		PropertyMap props = getObjectProperties(groupID, objectID);
+		if (props == null) {
+			return def;
+		}
+		return props.getFloat(propertyName, def);
+	}
+
+	/**
+	 * Get a property of an object as a flag. The properties of a group's
+	 * objects are parsed once, when the group is first queried.
+	 * 
+	 * @param groupID
+	 *            Index of a group
+	 * @param objectID
+	 *            Index of an object
+	 * @param propertyName
+	 *            Name of a property
+	 * @param def
+	 *            default value to return, if no property is found or it isn't
+	 *            "true" or "false"
+	 * @return The value of the property with the given name or def
+	 */
+	public boolean getObjectPropertyBoolean(int groupID, int objectID,
+			String propertyName, boolean def) {
+		PropertyMap props = getObjectProperties(groupID, objectID);
+		if (props == null) {
+			return def;
+		}
+		return props.getBoolean(propertyName, def);
+	}
+
 	/**
 	 * A group of objects on the map (objects layer)
 	 * 
@@ -994,6 +1777,30 @@ public class TiledMap {
 
 		/** the properties of this group */
 		public Properties props;
+		/** The index of the objects, built when the group is first queried */
+		private volatile ObjectIndex objectIndex;
+
+		/**
+		 * Create a new group from a binary map
+		 * 
+		 * @param buffer
+		 *            The contents of the map positioned at the start of the
+		 *            group, left at the end of it
+		 */
+		ObjectGroup(ByteBuffer buffer) {
+			name = BinaryMapFormat.readString(buffer);
+			width = buffer.getInt();
+			height = buffer.getInt();
+			props = BinaryMapFormat.readProperties(buffer);
+
+			int count = buffer.getInt();
+			objects = new ArrayList(count);
+			for (int i = 0; i < count; i++) {
+				GroupObject object = new GroupObject(buffer);
+				object.index = i;
+				objects.add(object);
+			}
+		}
 
 		/**
 		 * Create a new group based on the XML definition
@@ -1035,6 +1842,35 @@ public class TiledMap {
 				objects.add(object);
 			}
 		}
+
+		/**
+		 * Get the index of the objects in this group, building it if it
+		 * hasn't been built since the objects last changed
+		 * 
+		 * @return The index of the objects
+		 */
+		ObjectIndex getObjectIndex() {
+			ObjectIndex index = objectIndex;
+			if (index == null) {
+				synchronized (this) {
+					index = objectIndex;
+					if (index == null) {
+						index = new ObjectIndex(objects);
+						objectIndex = index;
+					}
+				}
+			}
+			return index;
+		}
+
+		/**
+		 * Notification that the objects in this group, or their positions,
+		 * names, types or properties, have been changed so the index of them
+		 * must be built again before it's next used
+		 */
+		public synchronized void objectsChanged() {
+			objectIndex = null;
+		}
 	}
 
 	/**
@@ -1063,6 +1899,24 @@ public class TiledMap {
 		/** the properties of this group */
 		public Properties props;
 
+		/**
+		 * Create a new object from a binary map
+		 * 
+		 * @param buffer
+		 *            The contents of the map positioned at the start of the
+		 *            object, left at the end of it
+		 */
+		GroupObject(ByteBuffer buffer) {
+			name = BinaryMapFormat.readString(buffer);
+			type = BinaryMapFormat.readString(buffer);
+			x = buffer.getInt();
+			y = buffer.getInt();
+			width = buffer.getInt();
+			height = buffer.getInt();
+			image = BinaryMapFormat.readString(buffer);
+			props = BinaryMapFormat.readProperties(buffer);
+		}
+
 		/**
 		 * Create a new group based on the XML definition
 		 * 
@@ -0,0 +1,346 @@
+package org.newdawn.slick.tiled;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * A tool to compile TilED maps into a binary form that loads without parsing
+ * XML or decompressing the layers. The compiled map can be given to any of the
+ * TiledMap constructors in place of the TMX file, and when it's a file its
+ * layers are read in place from a memory mapping of it.
+ *
+ * Usage: TiledMapCompiler &lt;map.tmx&gt; &lt;output&gt;
+ */
+public class TiledMapCompiler {
+	/**
+	 * Compile a TilED map. The tileset images aren't loaded so this can be
+	 * run without a display.
+	 *
+	 * @param ref
+	 *            The location of the TMX file to compile
+	 * @param dest
+	 *            The file to write the compiled map to
+	 * @throws SlickException
+	 *             Indicates a failure to load the map
+	 * @throws IOException
+	 *             Indicates a failure to write the compiled map
+	 */
+	public static void compile(String ref, File dest) throws SlickException,
+			IOException {
+		ref = ref.replace('\\', '/');
+		InputStream in = ResourceLoader.getResourceAsStream(ref);
+		TiledMap map;
+		try {
+			map = new TiledMap(in, ref.substring(0,
+					Math.max(0, ref.lastIndexOf("/"))), false);
+		} finally {
+			in.close();
+		}
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(dest));
+		try {
+			compile(map, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Compile a map
+	 *
+	 * @param map
+	 *            The map to compile
+	 * @param stream
+	 *            The stream to write the compiled map to
+	 * @throws IOException
+	 *             Indicates a failure to write the compiled map
+	 */
+	public static void compile(TiledMap map, OutputStream stream)
+			throws IOException {
+		Output out = new Output(stream);
+		out.write(BinaryMapFormat.MAGIC);
+		out.writeInt(BinaryMapFormat.VERSION);
+		out.writeInt(map.orientation);
+		out.writeInt(map.width);
+		out.writeInt(map.height);
+		out.writeInt(map.tileWidth);
+		out.writeInt(map.tileHeight);
+		out.writeProperties(map.props);
+
+		int maxTileID = 0;
+		for (int i = 0; i < map.layers.size(); i++) {
+			maxTileID = Math.max(maxTileID,
+					((Layer) map.layers.get(i)).getMaxTileID());
+		}
+		out.writeInt(maxTileID);
+
+		String location = map.getTilesLocation() + "/";
+		out.writeInt(map.tileSets.size());
+		for (int i = 0; i < map.tileSets.size(); i++) {
+			TileSet set = (TileSet) map.tileSets.get(i);
+			out.writeInt(set.lastGID);
+			out.writeString(set.name);
+			out.writeInt(set.firstGID);
+			out.writeInt(set.tileWidth);
+			out.writeInt(set.tileHeight);
+			out.writeInt(set.tileSpacing);
+			out.writeInt(set.tileMargin);
+			out.writeString(set.imageRef.startsWith(location) ? set.imageRef
+					.substring(location.length()) : set.imageRef);
+			if (set.transparent == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt((Math.round(set.transparent.r * 255) << 16)
+						| (Math.round(set.transparent.g * 255) << 8)
+						| Math.round(set.transparent.b * 255));
+			}
+
+			out.writeInt(set.props.size());
+			for (Iterator it = set.props.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				out.writeInt(((Integer) entry.getKey()).intValue());
+				out.writeProperties((Properties) entry.getValue());
+			}
+		}
+
+		out.writeInt(map.layers.size());
+		for (int i = 0; i < map.layers.size(); i++) {
+			Layer layer = (Layer) map.layers.get(i);
+			out.writeString(layer.name);
+			out.writeInt(layer.width);
+			out.writeInt(layer.height);
+			out.writeProperties(layer.props);
+			out.align();
+			out.writeInts(layer.getTileData());
+		}
+
+		out.writeInt(map.objectGroups.size());
+		for (int i = 0; i < map.objectGroups.size(); i++) {
+			TiledMap.ObjectGroup group = (TiledMap.ObjectGroup) map.objectGroups
+					.get(i);
+			out.writeString(group.name);
+			out.writeInt(group.width);
+			out.writeInt(group.height);
+			out.writeProperties(group.props);
+
+			out.writeInt(group.objects.size());
+			for (int j = 0; j < group.objects.size(); j++) {
+				TiledMap.GroupObject object = (TiledMap.GroupObject) group.objects
+						.get(j);
+				out.writeString(object.name);
+				out.writeString(object.type);
+				out.writeInt(object.x);
+				out.writeInt(object.y);
+				out.writeInt(object.width);
+				out.writeInt(object.height);
+				out.writeString(map.getObjectImage(i, j));
+				out.writeProperties(object.props);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Entry point to the tool
+	 *
+	 * @param argv
+	 *            The location of the TMX file and the file to write the
+	 *            compiled map to
+	 */
+	public static void main(String[] argv) {
+		if (argv.length != 2) {
+			System.err.println("Usage: TiledMapCompiler <map.tmx> <output>");
+			System.exit(1);
+		}
+
+		try {
+			compile(argv[0], new File(argv[1]));
+		} catch (Exception e) {
+			Log.error(e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * A stream the parts of a binary map are written to
+	 */
+	private static class Output {
+		/** The stream being written to */
+		private OutputStream out;
+		/** The buffer the values are collected in, little endian */
+		private ByteBuffer buffer = ByteBuffer.allocate(8192).order(
+				ByteOrder.LITTLE_ENDIAN);
+		/** The number of bytes written so far */
+		private long written;
+
+		/**
+		 * Create a new output
+		 *
+		 * @param out
+		 *            The stream to write to
+		 */
+		public Output(OutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Make room for some bytes in the buffer
+		 *
+		 * @param count
+		 *            The number of bytes wanted
+		 * @throws IOException
+		 *             Indicates a failure to write the buffer
+		 */
+		private void reserve(int count) throws IOException {
+			if (buffer.remaining() < count) {
+				drain();
+			}
+		}
+
+		/**
+		 * Write out everything buffered
+		 *
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		private void drain() throws IOException {
+			out.write(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		}
+
+		/**
+		 * Write out everything buffered and flush the stream
+		 *
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void flush() throws IOException {
+			drain();
+			out.flush();
+		}
+
+		/**
+		 * Write some bytes
+		 *
+		 * @param bytes
+		 *            The bytes to write
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void write(byte[] bytes) throws IOException {
+			if (bytes.length > buffer.capacity()) {
+				drain();
+				out.write(bytes);
+			} else {
+				reserve(bytes.length);
+				buffer.put(bytes);
+			}
+			written += bytes.length;
+		}
+
+		/**
+		 * Write an int
+		 *
+		 * @param value
+		 *            The value to write
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void writeInt(int value) throws IOException {
+			reserve(4);
+			buffer.putInt(value);
+			written += 4;
+		}
+
+		/**
+		 * Write a run of ints
+		 *
+		 * @param values
+		 *            The values to write, from their position to their limit
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void writeInts(IntBuffer values) throws IOException {
+			while (values.hasRemaining()) {
+				reserve(4);
+				IntBuffer ints = buffer.asIntBuffer();
+				int count = Math.min(ints.remaining(), values.remaining());
+				for (int i = 0; i < count; i++) {
+					ints.put(values.get());
+				}
+				buffer.position(buffer.position() + (count * 4));
+				written += count * 4;
+			}
+		}
+
+		/**
+		 * Write a string, which may be null
+		 *
+		 * @param value
+		 *            The string to write
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void writeString(String value) throws IOException {
+			if (value == null) {
+				writeInt(-1);
+				return;
+			}
+
+			byte[] bytes = value.getBytes("UTF-8");
+			writeInt(bytes.length);
+			write(bytes);
+		}
+
+		/**
+		 * Write a set of properties, which may be null
+		 *
+		 * @param props
+		 *            The properties to write
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void writeProperties(Properties props) throws IOException {
+			if (props == null) {
+				writeInt(-1);
+				return;
+			}
+
+			writeInt(props.size());
+			for (Enumeration e = props.keys(); e.hasMoreElements();) {
+				String name = (String) e.nextElement();
+				writeString(name);
+				writeString(props.getProperty(name));
+			}
+		}
+
+		/**
+		 * Pad the output to a multiple of four bytes
+		 *
+		 * @throws IOException
+		 *             Indicates a failure to write
+		 */
+		public void align() throws IOException {
+			while ((written & 3) != 0) {
+				reserve(1);
+				buffer.put((byte) 0);
+				written++;
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.newdawn.slick.util;
+
+/**
+ * A small, fast random number generator (xorshift64*) for effects that draw a
+ * lot of random values. Unlike Math.random() each instance has its own state,
+ * so there's no contention between threads and a sequence can be replayed by
+ * giving the same seed. It's not thread safe and not suitable for anything
+ * that needs secure random numbers.
+ */
+public class FastRandom {
+	/** The value mixed into the seed of each generator created without one */
+	private static long seedUniquifier = 0x5DEECE66DL;
+
+	/** The current state of the generator, never zero */
+	private long state;
+
+	/**
+	 * Create a new generator with a seed that's different each time
+	 */
+	public FastRandom() {
+		this(nextSeedUniquifier() ^ System.nanoTime());
+	}
+
+	/**
+	 * Create a new generator
+	 *
+	 * @param seed The seed to start the sequence from
+	 */
+	public FastRandom(long seed) {
+		setSeed(seed);
+	}
+
+	/**
+	 * Get a different value to mix into the seed of each unseeded generator
+	 *
+	 * @return The value to mix into the seed
+	 */
+	private static synchronized long nextSeedUniquifier() {
+		seedUniquifier *= 0x2545F4914F6CDD1DL;
+		return seedUniquifier;
+	}
+
+	/**
+	 * Restart the sequence from a seed. Any seed, including zero, is fine.
+	 *
+	 * @param seed The seed to start the sequence from
+	 */
+	public void setSeed(long seed) {
+		// scramble the seed (splitmix64) so similar seeds give unrelated sequences
+		long z = seed + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+
+		state = (z == 0) ? 0x9E3779B97F4A7C15L : z;
+	}
+
+	/**
+	 * Get the next random value
+	 *
+	 * @return A random value spread over the whole range of a long
+	 */
+	public long nextLong() {
+		state ^= state >>> 12;
+		state ^= state << 25;
+		state ^= state >>> 27;
+		return state * 0x2545F4914F6CDD1DL;
+	}
+
+	/**
+	 * Get the next random value between zero and one
+	 *
+	 * @return A random value from 0 (inclusive) to 1 (exclusive)
+	 */
+	public float nextFloat() {
+		return (nextLong() >>> 40) * (1.0f / (1 << 24));
+	}
+
+	/**
+	 * Get the next random value between zero and one
+	 *
+	 * @return A random value from 0 (inclusive) to 1 (exclusive)
+	 */
+	public double nextDouble() {
+		return (nextLong() >>> 11) * (1.0 / (1L << 53));
+	}
+}
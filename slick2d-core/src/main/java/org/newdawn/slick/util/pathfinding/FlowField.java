@@ -0,0 +1,405 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A field of directions leading every tile on a map to a single target, for when
+ * many movers are heading to the same place. The field is built with a single
+ * search out from the target, after which the way to go from any tile is a
+ * simple look up rather than a search per mover.
+ *
+ * The cost of moving between tiles comes from TileBasedMap.getCost() as it does
+ * for AStarPathFinder. When tiles change they should be passed to invalidate()
+ * and the field brought up to date with update(), which only searches again the
+ * tiles whose way to the target passed through, or may now pass through, the
+ * changed tiles.
+ */
+public class FlowField implements PathFindingContext {
+	/** Indicates a tile with no direction, the target or an unreachable tile */
+	public static final int NONE = -1;
+	/** The cost recorded for tiles that can't reach the target */
+	private static final float UNREACHABLE = Float.MAX_VALUE;
+	/** The x offset of each direction, the four straight directions first */
+	private static final int[] DX = new int[] {0, 1, 0, -1, 1, 1, -1, -1};
+	/** The y offset of each direction, the four straight directions first */
+	private static final int[] DY = new int[] {-1, 0, 1, 0, -1, 1, 1, -1};
+	/** The direction opposite each direction */
+	private static final byte[] OPPOSITE = new byte[] {2, 3, 0, 1, 6, 7, 4, 5};
+
+	/** The map the field covers */
+	private TileBasedMap map;
+	/** The number of directions that can be moved in */
+	private int directions;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+
+	/** The cost of reaching the target from each tile */
+	private float[] cost;
+	/** The direction to move in from each tile or NONE */
+	private byte[] direction;
+	/** The tiles whose cost is being worked out */
+	private NodeHeap open;
+	/** The x coordinate of the target */
+	private int targetX = NONE;
+	/** The y coordinate of the target */
+	private int targetY = NONE;
+
+	/** The tiles changed since the field was last brought up to date */
+	private int[] changed = new int[16];
+	/** The number of tiles changed */
+	private int changedCount;
+	/** True for each tile that's been changed or reset in the current update */
+	private boolean[] reset;
+	/** The tiles reset in the current update */
+	private int[] resetTiles;
+
+	/** The mover the field is for */
+	private Mover mover;
+	/** The x coordinate of the source tile we're moving from */
+	private int sourceX;
+	/** The y coordinate of the source tile we're moving from */
+	private int sourceY;
+
+	/**
+	 * Create a new flow field, the target must be set with build() before use
+	 *
+	 * @param map The map the field covers
+	 * @param allowDiagMovement True if the field should use diaganol movement
+	 */
+	public FlowField(TileBasedMap map, boolean allowDiagMovement) {
+		this.map = map;
+		directions = allowDiagMovement ? 8 : 4;
+
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+		int size = width * height;
+
+		cost = new float[size];
+		direction = new byte[size];
+		reset = new boolean[size];
+		resetTiles = new int[size];
+		open = new NodeHeap(size);
+	}
+
+	/**
+	 * Build the field leading to a given target
+	 *
+	 * @param mover The entity that will be moving, passed to the map
+	 * @param tx The x coordinate of the target
+	 * @param ty The y coordinate of the target
+	 */
+	public void build(Mover mover, int tx, int ty) {
+		this.mover = mover;
+		this.targetX = tx;
+		this.targetY = ty;
+		changedCount = 0;
+
+		for (int i=0;i<cost.length;i++) {
+			cost[i] = UNREACHABLE;
+			direction[i] = NONE;
+		}
+
+		open.clear();
+		int target = (ty * width) + tx;
+		if (!isBlocked(tx, ty, tx, ty)) {
+			cost[target] = 0;
+			open.add(target, 0);
+		}
+		search();
+	}
+
+	/**
+	 * Indicate that a tile has changed, whether it's blocked or its cost
+	 *
+	 * @param x The x coordinate of the tile that changed
+	 * @param y The y coordinate of the tile that changed
+	 */
+	public void invalidate(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+			throw new IllegalArgumentException("Tile "+x+","+y+" is not on the "+width+"x"+height+" map");
+		}
+		if (changedCount == changed.length) {
+			int[] grown = new int[changed.length * 2];
+			System.arraycopy(changed, 0, grown, 0, changedCount);
+			changed = grown;
+		}
+		changed[changedCount++] = (y * width) + x;
+	}
+
+	/**
+	 * Indicate that an area of tiles has changed, whether they're blocked or their cost
+	 *
+	 * @param x The x coordinate of the top left tile that changed
+	 * @param y The y coordinate of the top left tile that changed
+	 * @param w The width of the area that changed in tiles
+	 * @param h The height of the area that changed in tiles
+	 */
+	public void invalidate(int x, int y, int w, int h) {
+		for (int yp=Math.max(0, y);yp<Math.min(height, y + h);yp++) {
+			for (int xp=Math.max(0, x);xp<Math.min(width, x + w);xp++) {
+				invalidate(xp, yp);
+			}
+		}
+	}
+
+	/**
+	 * Bring the field up to date with the tiles that have been invalidated
+	 */
+	public void update() {
+		if ((changedCount == 0) || (targetX == NONE)) {
+			changedCount = 0;
+			return;
+		}
+
+		// reset the changed tiles and every tile whose way to the target led
+		// through them, these are the only tiles that could get more expensive
+		int resetCount = 0;
+		for (int i=0;i<changedCount;i++) {
+			if (!reset[changed[i]]) {
+				reset[changed[i]] = true;
+				resetTiles[resetCount++] = changed[i];
+			}
+		}
+		changedCount = 0;
+
+		for (int i=0;i<resetCount;i++) {
+			int tile = resetTiles[i];
+			int x = tile % width;
+			int y = tile / width;
+
+			for (int d=0;d<directions;d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx < 0) || (ny < 0) || (nx >= width) || (ny >= height)) {
+					continue;
+				}
+
+				int next = (ny * width) + nx;
+				int back = direction[next];
+				if ((!reset[next]) && (back != NONE) && (nx + DX[back] == x) && (ny + DY[back] == y)) {
+					reset[next] = true;
+					resetTiles[resetCount++] = next;
+				}
+			}
+		}
+
+		for (int i=0;i<resetCount;i++) {
+			cost[resetTiles[i]] = UNREACHABLE;
+			direction[resetTiles[i]] = NONE;
+		}
+
+		// work out the reset tiles again from the tiles around them, then let
+		// any tiles that have got cheaper spread the saving
+		open.clear();
+		int target = (targetY * width) + targetX;
+		for (int i=0;i<resetCount;i++) {
+			int tile = resetTiles[i];
+			reset[tile] = false;
+
+			int x = tile % width;
+			int y = tile / width;
+			if (tile == target) {
+				if (!isBlocked(x, y, x, y)) {
+					cost[tile] = 0;
+					open.add(tile, 0);
+				}
+				continue;
+			}
+
+			for (int d=0;d<directions;d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx < 0) || (ny < 0) || (nx >= width) || (ny >= height)) {
+					continue;
+				}
+				int next = (ny * width) + nx;
+				if (cost[next] != UNREACHABLE) {
+					open.add(next, cost[next]);
+				}
+			}
+		}
+
+		search();
+	}
+
+	/**
+	 * Search out from the tiles in the open list, lowering the cost of any tile
+	 * that can be reached more cheaply through them
+	 */
+	private void search() {
+		while (open.size() != 0) {
+			int current = open.pop();
+			int cx = current % width;
+			int cy = current / width;
+
+			for (int d=0;d<directions;d++) {
+				int nx = cx + DX[d];
+				int ny = cy + DY[d];
+				if ((nx < 0) || (ny < 0) || (nx >= width) || (ny >= height)) {
+					continue;
+				}
+				int next = (ny * width) + nx;
+				if (cost[next] <= cost[current]) {
+					continue;
+				}
+
+				// movers go from the neighbour into the current tile, so the
+				// neighbour is the source of the move
+				if (isBlocked(nx, ny, nx, ny) || isBlocked(nx, ny, cx, cy)) {
+					continue;
+				}
+				float nextCost = cost[current] + map.getCost(this, cx, cy);
+				if (nextCost < cost[next]) {
+					cost[next] = nextCost;
+					direction[next] = OPPOSITE[d];
+					open.add(next, nextCost);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a tile can't be moved into
+	 *
+	 * @param sx The x coordinate of the tile being moved from
+	 * @param sy The y coordinate of the tile being moved from
+	 * @param x The x coordinate of the tile to check
+	 * @param y The y coordinate of the tile to check
+	 * @return True if the tile is blocked
+	 */
+	private boolean isBlocked(int sx, int sy, int x, int y) {
+		sourceX = sx;
+		sourceY = sy;
+		return map.blocked(this, x, y);
+	}
+
+	/**
+	 * Get the x coordinate of the target
+	 *
+	 * @return The x coordinate of the target or NONE if the field hasn't been built
+	 */
+	public int getTargetX() {
+		return targetX;
+	}
+
+	/**
+	 * Get the y coordinate of the target
+	 *
+	 * @return The y coordinate of the target or NONE if the field hasn't been built
+	 */
+	public int getTargetY() {
+		return targetY;
+	}
+
+	/**
+	 * Check if the target can be reached from a given tile
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return True if the target can be reached from the tile
+	 */
+	public boolean isReachable(int x, int y) {
+		return cost[(y * width) + x] != UNREACHABLE;
+	}
+
+	/**
+	 * Get the cost of reaching the target from a given tile
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The cost of reaching the target or Float.MAX_VALUE if it can't be reached
+	 */
+	public float getCost(int x, int y) {
+		return cost[(y * width) + x];
+	}
+
+	/**
+	 * Get the direction to move in from a given tile
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The direction, an index 0-7 clockwise from north with the straight
+	 * directions first, or NONE at the target or if the target can't be reached
+	 */
+	public int getDirection(int x, int y) {
+		return direction[(y * width) + x];
+	}
+
+	/**
+	 * Get the x component of the direction to move in from a given tile
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return -1, 0 or 1
+	 */
+	public int getDirectionX(int x, int y) {
+		int d = direction[(y * width) + x];
+		return d == NONE ? 0 : DX[d];
+	}
+
+	/**
+	 * Get the y component of the direction to move in from a given tile
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return -1, 0 or 1
+	 */
+	public int getDirectionY(int x, int y) {
+		int d = direction[(y * width) + x];
+		return d == NONE ? 0 : DY[d];
+	}
+
+	/**
+	 * Get the path from a given tile to the target by following the field
+	 *
+	 * @param sx The x coordinate of the tile to start from
+	 * @param sy The y coordinate of the tile to start from
+	 * @return The path to the target or null if the target can't be reached
+	 */
+	public Path getPath(int sx, int sy) {
+		if (((sx == targetX) && (sy == targetY)) || (!isReachable(sx, sy))) {
+			return null;
+		}
+
+		Path path = new Path();
+		int x = sx;
+		int y = sy;
+		path.appendStep(x, y);
+		while ((x != targetX) || (y != targetY)) {
+			int d = direction[(y * width) + x];
+			x += DX[d];
+			y += DY[d];
+			path.appendStep(x, y);
+		}
+
+		return path;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getMover()
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSearchDistance()
+	 */
+	public int getSearchDistance() {
+		return 0;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceX()
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceY()
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+}
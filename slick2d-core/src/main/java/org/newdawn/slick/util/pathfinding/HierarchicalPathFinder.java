@@ -0,0 +1,998 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.Arrays;
+
+import org.newdawn.slick.util.pathfinding.heuristics.ClosestHeuristic;
+
+/**
+ * A path finder for large maps that searches an abstract graph rather than
+ * every tile (HPA*). The map is split into square clusters and the open tiles
+ * either side of each cluster border are joined as entrances. The cost of moving
+ * between the entrances of each cluster is worked out in advance, so a search
+ * only has to cross the graph of entrances and then fill in the steps inside the
+ * clusters it passes through.
+ *
+ * The paths found are close to, but not always exactly, the shortest. When the
+ * map changes the tiles affected should be passed to invalidate(), only the
+ * clusters around them are worked out again, the next time a path is found or
+ * rebuild() is called. For maps backed by a TiledMap, the path finder can be
+ * added to the map as a TileChangeListener so changes made with
+ * TiledMap.setTileId() invalidate the tiles changed.
+ *
+ * The cluster graph is built with no mover given to the map, so maps where
+ * blocking depends on the mover should use AStarPathFinder.
+ */
+public class HierarchicalPathFinder implements PathFinder, PathFindingContext, TileChangeListener {
+	/** Indicates no node */
+	private static final int NONE = -1;
+	/** Indicates a node reached directly from the start of the path */
+	private static final int START = -2;
+	/** The cost recorded for locations that can't be reached */
+	private static final float UNREACHABLE = Float.MAX_VALUE;
+	/** The width of an opening at which it's given an entrance at each end rather than one in the middle */
+	private static final int MAX_ENTRANCE_WIDTH = 6;
+
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The maximum number of steps in a path we'll search for */
+	private int maxSearchDistance;
+	/** The width and height of each cluster in tiles */
+	private int clusterSize;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The heuristic used to order the search of the cluster graph */
+	private AStarHeuristic heuristic;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+	/** The number of clusters across the map */
+	private int clustersX;
+	/** The number of clusters down the map */
+	private int clustersY;
+
+	/** The pairs of tiles joined across the east border of each cluster */
+	private int[][] eastLinks;
+	/** The pairs of tiles joined across the south border of each cluster */
+	private int[][] southLinks;
+	/** True for each cluster whose east border needs to be worked out again */
+	private boolean[] eastDirty;
+	/** True for each cluster whose south border needs to be worked out again */
+	private boolean[] southDirty;
+	/** True for each cluster whose entrances need to be worked out again */
+	private boolean[] clusterDirty;
+	/** True if any part of the graph needs to be worked out again */
+	private boolean dirty;
+
+	/** The tiles that are entrances to each cluster */
+	private int[][] clusterNodes;
+	/** The cost of moving between each pair of entrances in each cluster, from * count + to */
+	private float[][] clusterCosts;
+	/** The number of steps between each pair of entrances in each cluster, from * count + to */
+	private int[][] clusterSteps;
+	/** The entrance index and tile on the far side for each link out of each cluster */
+	private int[][] clusterLinks;
+	/** The index of each tile in its cluster's entrances or NONE */
+	private int[] nodeSlot;
+
+	/** The cost to reach each entrance in the current search */
+	private float[] cost;
+	/** The entrance each entrance was reached from */
+	private int[] parent;
+	/** The number of steps to each entrance in the current search */
+	private int[] depth;
+	/** The search each entrance was last touched in */
+	private int[] searched;
+	/** True for each entrance that has been fully searched */
+	private boolean[] closed;
+	/** The entrances that we do not yet consider fully searched */
+	private NodeHeap open;
+	/** The current search of the cluster graph */
+	private int search;
+
+	/** The cost to reach each tile in the current search of a cluster */
+	private float[] localCost;
+	/** The tile each tile was reached from in the current search of a cluster */
+	private int[] localParent;
+	/** The number of steps to each tile in the current search of a cluster */
+	private int[] localDepth;
+	/** The search of a cluster each tile was last touched in */
+	private int[] localSearched;
+	/** The tiles that we do not yet consider fully searched in a cluster */
+	private NodeHeap localOpen;
+	/** The current search of a cluster */
+	private int localSearch;
+	/** The x coordinate of the cluster being searched */
+	private int localX;
+	/** The y coordinate of the cluster being searched */
+	private int localY;
+
+	/** The buffer used to gather integers while building the graph */
+	private int[] buffer = new int[64];
+	/** The number of integers in the buffer */
+	private int buffered;
+
+	/** The mover going through the path */
+	private Mover mover;
+	/** The x coordinate of the source tile we're moving from */
+	private int sourceX;
+	/** The y coordinate of the source tile we're moving from */
+	private int sourceY;
+	/** The distance searched so far */
+	private int distance;
+
+	/**
+	 * Create a path finder with the default heuristic - closest to target, that
+	 * will search for paths of any length.
+	 *
+	 * @param map The map to be searched
+	 * @param clusterSize The width and height of each cluster in tiles
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int clusterSize, boolean allowDiagMovement) {
+		this(map, Integer.MAX_VALUE, clusterSize, allowDiagMovement, new ClosestHeuristic());
+	}
+
+	/**
+	 * Create a path finder that will search for paths of any length
+	 *
+	 * @param map The map to be searched
+	 * @param clusterSize The width and height of each cluster in tiles
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param heuristic The heuristic used to order the search of the cluster graph
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int clusterSize,
+								  boolean allowDiagMovement, AStarHeuristic heuristic) {
+		this(map, Integer.MAX_VALUE, clusterSize, allowDiagMovement, heuristic);
+	}
+
+	/**
+	 * Create a path finder with the default heuristic - closest to target.
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum number of steps in a path we'll search for
+	 * @param clusterSize The width and height of each cluster in tiles
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int maxSearchDistance, int clusterSize,
+								  boolean allowDiagMovement) {
+		this(map, maxSearchDistance, clusterSize, allowDiagMovement, new ClosestHeuristic());
+	}
+
+	/**
+	 * Create a path finder
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum number of steps in a path we'll search for
+	 * @param clusterSize The width and height of each cluster in tiles
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param heuristic The heuristic used to order the search of the cluster graph
+	 */
+	public HierarchicalPathFinder(TileBasedMap map, int maxSearchDistance, int clusterSize,
+								  boolean allowDiagMovement, AStarHeuristic heuristic) {
+		if (clusterSize < 2) {
+			throw new RuntimeException("Cluster size must be at least 2: "+clusterSize);
+		}
+
+		this.map = map;
+		this.maxSearchDistance = maxSearchDistance;
+		this.clusterSize = clusterSize;
+		this.allowDiagMovement = allowDiagMovement;
+		this.heuristic = heuristic;
+
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+		clustersX = (width + clusterSize - 1) / clusterSize;
+		clustersY = (height + clusterSize - 1) / clusterSize;
+
+		int clusters = clustersX * clustersY;
+		eastLinks = new int[clusters][];
+		southLinks = new int[clusters][];
+		eastDirty = new boolean[clusters];
+		southDirty = new boolean[clusters];
+		clusterDirty = new boolean[clusters];
+		clusterNodes = new int[clusters][];
+		clusterCosts = new float[clusters][];
+		clusterSteps = new int[clusters][];
+		clusterLinks = new int[clusters][];
+
+		int size = width * height;
+		nodeSlot = new int[size];
+		cost = new float[size];
+		parent = new int[size];
+		depth = new int[size];
+		searched = new int[size];
+		closed = new boolean[size];
+		open = new NodeHeap(size);
+		for (int i=0;i<size;i++) {
+			nodeSlot[i] = NONE;
+		}
+
+		int localSize = clusterSize * clusterSize;
+		localCost = new float[localSize];
+		localParent = new int[localSize];
+		localDepth = new int[localSize];
+		localSearched = new int[localSize];
+		localOpen = new NodeHeap(localSize);
+
+		for (int i=0;i<clusters;i++) {
+			eastLinks[i] = new int[0];
+			southLinks[i] = new int[0];
+			clusterNodes[i] = new int[0];
+			clusterCosts[i] = new float[0];
+			clusterSteps[i] = new int[0];
+			clusterLinks[i] = new int[0];
+		}
+		invalidate(0, 0, width, height);
+		rebuild();
+	}
+
+	/**
+	 * Get the width and height of each cluster
+	 *
+	 * @return The width and height of each cluster in tiles
+	 */
+	public int getClusterSize() {
+		return clusterSize;
+	}
+
+	/**
+	 * Indicate that a tile has changed, whether it's blocked or its cost
+	 *
+	 * @param x The x coordinate of the tile that changed
+	 * @param y The y coordinate of the tile that changed
+	 */
+	public void invalidate(int x, int y) {
+		invalidate(x, y, 1, 1);
+	}
+
+	/**
+	 * Indicate that an area of tiles has changed, whether they're blocked or their cost
+	 *
+	 * @param x The x coordinate of the top left tile that changed
+	 * @param y The y coordinate of the top left tile that changed
+	 * @param w The width of the area that changed in tiles
+	 * @param h The height of the area that changed in tiles
+	 */
+	public void invalidate(int x, int y, int w, int h) {
+		int x1 = Math.min(width - 1, x + w - 1);
+		int y1 = Math.min(height - 1, y + h - 1);
+		x = Math.max(0, x);
+		y = Math.max(0, y);
+		if ((x > x1) || (y > y1)) {
+			return;
+		}
+
+		for (int cy=y/clusterSize;cy<=y1/clusterSize;cy++) {
+			for (int cx=x/clusterSize;cx<=x1/clusterSize;cx++) {
+				clusterDirty[(cy * clustersX) + cx] = true;
+			}
+		}
+
+		// any border within a tile of the change may have new entrances, including
+		// those of the clusters to the west and north
+		int cx0 = Math.max(0, (Math.max(0, x - 1) / clusterSize) - 1);
+		int cy0 = Math.max(0, (Math.max(0, y - 1) / clusterSize) - 1);
+		int cx1 = Math.min(width - 1, x1 + 1) / clusterSize;
+		int cy1 = Math.min(height - 1, y1 + 1) / clusterSize;
+		for (int cy=cy0;cy<=cy1;cy++) {
+			for (int cx=cx0;cx<=cx1;cx++) {
+				eastDirty[(cy * clustersX) + cx] = true;
+				southDirty[(cy * clustersX) + cx] = true;
+			}
+		}
+
+		dirty = true;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.TileChangeListener#tileChanged(int, int)
+	 */
+	public void tileChanged(int x, int y) {
+		invalidate(x, y);
+	}
+
+	/**
+	 * Work out again any parts of the cluster graph that have been invalidated.
+	 * This is called automatically when a path is found but may be called to do
+	 * the work at a better time.
+	 */
+	public void rebuild() {
+		if (!dirty) {
+			return;
+		}
+		mover = null;
+
+		for (int i=0;i<clusterDirty.length;i++) {
+			if (eastDirty[i]) {
+				eastLinks[i] = updateLinks(eastLinks[i], findEastLinks(i));
+				eastDirty[i] = false;
+			}
+			if (southDirty[i]) {
+				southLinks[i] = updateLinks(southLinks[i], findSouthLinks(i));
+				southDirty[i] = false;
+			}
+		}
+
+		for (int i=0;i<clusterDirty.length;i++) {
+			if (clusterDirty[i]) {
+				buildCluster(i);
+				clusterDirty[i] = false;
+			}
+		}
+
+		dirty = false;
+	}
+
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		rebuild();
+
+		// easy first check, if the destination is blocked, we can't get there
+		this.mover = mover;
+		this.sourceX = tx;
+		this.sourceY = ty;
+		this.distance = 0;
+
+		if (map.blocked(this, tx, ty)) {
+			return null;
+		}
+		if ((sx == tx) && (sy == ty)) {
+			return null;
+		}
+
+		int start = (sy * width) + sx;
+		int target = (ty * width) + tx;
+		int startCluster = clusterOf(start);
+		int targetCluster = clusterOf(target);
+
+		// find the cost to each entrance of the start cluster, and to the
+		// target directly if it's in the same cluster
+		float best = UNREACHABLE;
+		int bestNode = NONE;
+
+		searchCluster(startCluster, start, NONE, false);
+		if ((startCluster == targetCluster) && (getLocalSteps(target) <= maxSearchDistance)) {
+			best = getLocalCost(target);
+		}
+
+		startSearch();
+		int[] nodes = clusterNodes[startCluster];
+		for (int i=0;i<nodes.length;i++) {
+			float startCost = getLocalCost(nodes[i]);
+			int startSteps = getLocalSteps(nodes[i]);
+			if ((startCost != UNREACHABLE) && (startSteps <= maxSearchDistance)) {
+				touch(nodes[i]);
+				cost[nodes[i]] = startCost;
+				depth[nodes[i]] = startSteps;
+				parent[nodes[i]] = START;
+				open.add(nodes[i], startCost + getHeuristicCost(nodes[i], tx, ty));
+			}
+		}
+
+		// and the cost from each entrance of the target cluster to the target
+		searchCluster(targetCluster, target, NONE, true);
+		nodes = clusterNodes[targetCluster];
+		float[] targetCosts = new float[nodes.length];
+		int[] targetSteps = new int[nodes.length];
+		for (int i=0;i<nodes.length;i++) {
+			targetCosts[i] = getLocalCost(nodes[i]);
+			targetSteps[i] = getLocalSteps(nodes[i]);
+		}
+
+		// search the graph of entrances
+		while (open.size() != 0) {
+			int current = open.peek();
+			if (cost[current] + getHeuristicCost(current, tx, ty) >= best) {
+				break;
+			}
+			open.pop();
+			closed[current] = true;
+
+			int cluster = clusterOf(current);
+			int slot = nodeSlot[current];
+			if ((cluster == targetCluster) && (targetCosts[slot] != UNREACHABLE)
+					&& (targetSteps[slot] <= maxSearchDistance - depth[current])) {
+				float total = cost[current] + targetCosts[slot];
+				if (total < best) {
+					best = total;
+					bestNode = current;
+				}
+			}
+
+			nodes = clusterNodes[cluster];
+			float[] costs = clusterCosts[cluster];
+			int[] steps = clusterSteps[cluster];
+			int count = nodes.length;
+			for (int i=0;i<count;i++) {
+				float step = costs[(slot * count) + i];
+				if ((i != slot) && (step != UNREACHABLE)) {
+					reach(nodes[i], current, cost[current] + step, depth[current] + steps[(slot * count) + i], tx, ty);
+				}
+			}
+
+			int[] links = clusterLinks[cluster];
+			for (int i=0;i<links.length;i+=2) {
+				if (links[i] == slot) {
+					int other = links[i+1];
+					float step = getMovementCost(current % width, current / width, other % width, other / width);
+					reach(other, current, cost[current] + step, depth[current] + 1, tx, ty);
+				}
+			}
+		}
+
+		if (best == UNREACHABLE) {
+			return null;
+		}
+
+		// fill in the steps through each cluster the path crosses
+		Path path = new Path();
+		path.appendStep(sx, sy);
+		if (bestNode == NONE) {
+			appendClusterPath(path, start, target);
+			return path;
+		}
+
+		buffered = 0;
+		for (int node=bestNode;node!=START;node=parent[node]) {
+			addToBuffer(node);
+		}
+		int[] route = new int[buffered];
+		for (int i=0;i<buffered;i++) {
+			route[i] = buffer[buffered - 1 - i];
+		}
+
+		appendClusterPath(path, start, route[0]);
+		for (int i=1;i<route.length;i++) {
+			if (clusterOf(route[i-1]) == clusterOf(route[i])) {
+				appendClusterPath(path, route[i-1], route[i]);
+			} else {
+				path.appendStep(route[i] % width, route[i] / width);
+			}
+		}
+		appendClusterPath(path, bestNode, target);
+
+		return path;
+	}
+
+	/**
+	 * Record that an entrance has been reached in the search of the cluster graph
+	 *
+	 * @param node The tile of the entrance reached
+	 * @param from The tile of the entrance it was reached from
+	 * @param nextCost The cost of reaching the entrance this way
+	 * @param nextDepth The number of steps to the entrance this way
+	 * @param tx The x coordinate of the target
+	 * @param ty The y coordinate of the target
+	 */
+	private void reach(int node, int from, float nextCost, int nextDepth, int tx, int ty) {
+		if (nextDepth > maxSearchDistance) {
+			return;
+		}
+		touch(node);
+		if (closed[node]) {
+			return;
+		}
+
+		if ((!open.contains(node)) || (nextCost < cost[node])) {
+			cost[node] = nextCost;
+			depth[node] = nextDepth;
+			parent[node] = from;
+			open.add(node, nextCost + getHeuristicCost(node, tx, ty));
+		}
+	}
+
+	/**
+	 * Append the steps between two tiles in the same cluster to a path
+	 *
+	 * @param path The path to append to
+	 * @param from The tile to start from, not appended
+	 * @param to The tile to end at
+	 */
+	private void appendClusterPath(Path path, int from, int to) {
+		if (from == to) {
+			return;
+		}
+		searchCluster(clusterOf(from), from, to, false);
+
+		buffered = 0;
+		int local = toLocal(to);
+		int end = toLocal(from);
+		while (local != end) {
+			addToBuffer(local);
+			local = localParent[local];
+		}
+		for (int i=buffered-1;i>=0;i--) {
+			path.appendStep(localX + (buffer[i] % clusterSize), localY + (buffer[i] / clusterSize));
+		}
+	}
+
+	/**
+	 * Search the tiles of a single cluster from a given tile, finding the cheapest
+	 * cost to each tile without leaving the cluster. When searching for a single
+	 * tile the heuristic is used to direct the search towards it.
+	 *
+	 * @param cluster The index of the cluster to search
+	 * @param from The tile to search from
+	 * @param to The tile to stop at or NONE to search the whole cluster
+	 * @param reverse True if the costs found should be of moving to the tile
+	 * searched from rather than from it
+	 */
+	private void searchCluster(int cluster, int from, int to, boolean reverse) {
+		localX = (cluster % clustersX) * clusterSize;
+		localY = (cluster / clustersX) * clusterSize;
+		int x1 = Math.min(width, localX + clusterSize);
+		int y1 = Math.min(height, localY + clusterSize);
+
+		localSearch++;
+		if (localSearch == 0) {
+			for (int i=0;i<localSearched.length;i++) {
+				localSearched[i] = 0;
+			}
+			localSearch = 1;
+		}
+		localOpen.clear();
+
+		int first = toLocal(from);
+		int last = to == NONE ? NONE : toLocal(to);
+		int tx = to % width;
+		int ty = to / width;
+		localSearched[first] = localSearch;
+		localCost[first] = 0;
+		localDepth[first] = 0;
+		localParent[first] = NONE;
+		localOpen.add(first, 0);
+
+		while (localOpen.size() != 0) {
+			int current = localOpen.pop();
+			distance = localDepth[current];
+			if (current == last) {
+				return;
+			}
+
+			int cx = localX + (current % clusterSize);
+			int cy = localY + (current / clusterSize);
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					if ((x == 0) && (y == 0)) {
+						continue;
+					}
+					if ((!allowDiagMovement) && (x != 0) && (y != 0)) {
+						continue;
+					}
+
+					int nx = cx + x;
+					int ny = cy + y;
+					if ((nx < localX) || (ny < localY) || (nx >= x1) || (ny >= y1)) {
+						continue;
+					}
+					if (blocked(cx, cy, nx, ny)) {
+						continue;
+					}
+
+					float step = reverse ? getMovementCost(nx, ny, cx, cy) : getMovementCost(cx, cy, nx, ny);
+					float nextCost = localCost[current] + step;
+					int next = ((ny - localY) * clusterSize) + (nx - localX);
+
+					if (localSearched[next] != localSearch) {
+						localSearched[next] = localSearch;
+					} else if ((!localOpen.contains(next)) || (nextCost >= localCost[next])) {
+						continue;
+					}
+					localCost[next] = nextCost;
+					localDepth[next] = localDepth[current] + 1;
+					localParent[next] = current;
+					if (last == NONE) {
+						localOpen.add(next, nextCost);
+					} else {
+						localOpen.add(next, nextCost + heuristic.getCost(map, mover, nx, ny, tx, ty));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the cost found to a tile by the last search of a cluster
+	 *
+	 * @param tile The tile to check, which must be in the cluster searched
+	 * @return The cost to reach the tile or UNREACHABLE
+	 */
+	private float getLocalCost(int tile) {
+		int local = toLocal(tile);
+		if (localSearched[local] != localSearch) {
+			return UNREACHABLE;
+		}
+
+		return localCost[local];
+	}
+
+	/**
+	 * Get the number of steps found to a tile by the last search of a cluster
+	 *
+	 * @param tile The tile to check, which must be in the cluster searched
+	 * @return The number of steps to reach the tile, or Integer.MAX_VALUE if it can't be reached
+	 */
+	private int getLocalSteps(int tile) {
+		int local = toLocal(tile);
+		if (localSearched[local] != localSearch) {
+			return Integer.MAX_VALUE;
+		}
+
+		return localDepth[local];
+	}
+
+	/**
+	 * Get the index of a tile within the cluster being searched
+	 *
+	 * @param tile The tile, which must be in the cluster
+	 * @return The index of the tile within the cluster
+	 */
+	private int toLocal(int tile) {
+		return (((tile / width) - localY) * clusterSize) + ((tile % width) - localX);
+	}
+
+	/**
+	 * Get the cluster a tile is in
+	 *
+	 * @param tile The tile to check
+	 * @return The index of the cluster the tile is in
+	 */
+	private int clusterOf(int tile) {
+		return (((tile / width) / clusterSize) * clustersX) + ((tile % width) / clusterSize);
+	}
+
+	/**
+	 * Replace the links across a border, marking the clusters either side as
+	 * needing to be built again if they've changed
+	 *
+	 * @param old The pairs of tiles that were joined across the border
+	 * @param links The pairs of tiles now joined across the border
+	 * @return The pairs of tiles now joined across the border
+	 */
+	private int[] updateLinks(int[] old, int[] links) {
+		if (!Arrays.equals(old, links)) {
+			for (int i=0;i<old.length;i++) {
+				clusterDirty[clusterOf(old[i])] = true;
+			}
+			for (int i=0;i<links.length;i++) {
+				clusterDirty[clusterOf(links[i])] = true;
+			}
+		}
+
+		return links;
+	}
+
+	/**
+	 * Find the pairs of tiles joined across the east border of a cluster
+	 *
+	 * @param cluster The index of the cluster
+	 * @return The tiles joined as pairs, west tile then east tile
+	 */
+	private int[] findEastLinks(int cluster) {
+		int cx = cluster % clustersX;
+		int cy = cluster / clustersX;
+		if (cx == clustersX - 1) {
+			return new int[0];
+		}
+
+		int x = ((cx + 1) * clusterSize) - 1;
+		int y0 = cy * clusterSize;
+		int y1 = Math.min(height, y0 + clusterSize);
+		buffered = 0;
+
+		int run = NONE;
+		for (int y=y0;y<=y1;y++) {
+			boolean crossable = (y < y1) && (!blocked(x+1, y, x, y)) && (!blocked(x, y, x+1, y));
+			if (crossable && (run == NONE)) {
+				run = y;
+			} else if ((!crossable) && (run != NONE)) {
+				if (y - run < MAX_ENTRANCE_WIDTH) {
+					int middle = (run + y - 1) / 2;
+					addLink(x, middle, x+1, middle);
+				} else {
+					addLink(x, run, x+1, run);
+					addLink(x, y-1, x+1, y-1);
+				}
+				run = NONE;
+			}
+		}
+
+		if (allowDiagMovement) {
+			for (int y=y0;y<y1;y++) {
+				addCornerLink(x, y, x+1, y-1);
+				addCornerLink(x, y, x+1, y+1);
+			}
+		}
+
+		return copyBuffer();
+	}
+
+	/**
+	 * Find the pairs of tiles joined across the south border of a cluster
+	 *
+	 * @param cluster The index of the cluster
+	 * @return The tiles joined as pairs, north tile then south tile
+	 */
+	private int[] findSouthLinks(int cluster) {
+		int cx = cluster % clustersX;
+		int cy = cluster / clustersX;
+		if (cy == clustersY - 1) {
+			return new int[0];
+		}
+
+		int y = ((cy + 1) * clusterSize) - 1;
+		int x0 = cx * clusterSize;
+		int x1 = Math.min(width, x0 + clusterSize);
+		buffered = 0;
+
+		int run = NONE;
+		for (int x=x0;x<=x1;x++) {
+			boolean crossable = (x < x1) && (!blocked(x, y+1, x, y)) && (!blocked(x, y, x, y+1));
+			if (crossable && (run == NONE)) {
+				run = x;
+			} else if ((!crossable) && (run != NONE)) {
+				if (x - run < MAX_ENTRANCE_WIDTH) {
+					int middle = (run + x - 1) / 2;
+					addLink(middle, y, middle, y+1);
+				} else {
+					addLink(run, y, run, y+1);
+					addLink(x-1, y, x-1, y+1);
+				}
+				run = NONE;
+			}
+		}
+
+		// diagonals that also cross an east or west border belong to that border
+		if (allowDiagMovement) {
+			for (int x=x0;x<x1;x++) {
+				if (x - 1 >= x0) {
+					addCornerLink(x, y, x-1, y+1);
+				}
+				if (x + 1 < x1) {
+					addCornerLink(x, y, x+1, y+1);
+				}
+			}
+		}
+
+		return copyBuffer();
+	}
+
+	/**
+	 * Link two diagonally adjacent tiles across a border if the only way
+	 * between them is the diagonal step
+	 *
+	 * @param ax The x coordinate of the first tile
+	 * @param ay The y coordinate of the first tile
+	 * @param bx The x coordinate of the second tile
+	 * @param by The y coordinate of the second tile
+	 */
+	private void addCornerLink(int ax, int ay, int bx, int by) {
+		if ((by < 0) || (by >= height)) {
+			return;
+		}
+		if (blocked(bx, by, ax, ay) || blocked(ax, ay, bx, by)) {
+			return;
+		}
+		if ((!blocked(ax, ay, bx, ay)) || (!blocked(ax, ay, ax, by))) {
+			return;
+		}
+
+		addLink(ax, ay, bx, by);
+	}
+
+	/**
+	 * Add a pair of linked tiles to the buffer
+	 *
+	 * @param ax The x coordinate of the first tile
+	 * @param ay The y coordinate of the first tile
+	 * @param bx The x coordinate of the second tile
+	 * @param by The y coordinate of the second tile
+	 */
+	private void addLink(int ax, int ay, int bx, int by) {
+		addToBuffer((ay * width) + ax);
+		addToBuffer((by * width) + bx);
+	}
+
+	/**
+	 * Build the entrances of a cluster and the cost of moving between them
+	 *
+	 * @param cluster The index of the cluster to build
+	 */
+	private void buildCluster(int cluster) {
+		int[] old = clusterNodes[cluster];
+		for (int i=0;i<old.length;i++) {
+			nodeSlot[old[i]] = NONE;
+		}
+
+		// gather the links touching this cluster from the borders they may be held on
+		int cx = cluster % clustersX;
+		int cy = cluster / clustersX;
+		buffered = 0;
+		gatherLinks(cluster, eastLinks[cluster]);
+		gatherLinks(cluster, southLinks[cluster]);
+		if (cy > 0) {
+			gatherLinks(cluster, southLinks[cluster - clustersX]);
+		}
+		if (cx > 0) {
+			for (int y=Math.max(0, cy-1);y<=Math.min(clustersY-1, cy+1);y++) {
+				gatherLinks(cluster, eastLinks[(y * clustersX) + cx - 1]);
+			}
+		}
+		int[] links = copyBuffer();
+
+		// each distinct tile in this cluster is an entrance
+		buffered = 0;
+		for (int i=0;i<links.length;i+=2) {
+			if (nodeSlot[links[i]] == NONE) {
+				nodeSlot[links[i]] = buffered;
+				addToBuffer(links[i]);
+			}
+			links[i] = nodeSlot[links[i]];
+		}
+		int[] nodes = copyBuffer();
+
+		int count = nodes.length;
+		float[] costs = new float[count * count];
+		int[] steps = new int[count * count];
+		for (int i=0;i<count;i++) {
+			searchCluster(cluster, nodes[i], NONE, false);
+			for (int j=0;j<count;j++) {
+				costs[(i * count) + j] = getLocalCost(nodes[j]);
+				steps[(i * count) + j] = getLocalSteps(nodes[j]);
+			}
+		}
+
+		clusterNodes[cluster] = nodes;
+		clusterCosts[cluster] = costs;
+		clusterSteps[cluster] = steps;
+		clusterLinks[cluster] = links;
+	}
+
+	/**
+	 * Add the links from a border that touch a cluster to the buffer, as the
+	 * tile in the cluster followed by the tile on the far side
+	 *
+	 * @param cluster The index of the cluster
+	 * @param links The pairs of tiles joined across a border
+	 */
+	private void gatherLinks(int cluster, int[] links) {
+		for (int i=0;i<links.length;i+=2) {
+			if (clusterOf(links[i]) == cluster) {
+				addToBuffer(links[i]);
+				addToBuffer(links[i+1]);
+			} else if (clusterOf(links[i+1]) == cluster) {
+				addToBuffer(links[i+1]);
+				addToBuffer(links[i]);
+			}
+		}
+	}
+
+	/**
+	 * Add a value to the buffer, growing it if required
+	 *
+	 * @param value The value to add
+	 */
+	private void addToBuffer(int value) {
+		if (buffered == buffer.length) {
+			int[] grown = new int[buffer.length * 2];
+			System.arraycopy(buffer, 0, grown, 0, buffered);
+			buffer = grown;
+		}
+		buffer[buffered++] = value;
+	}
+
+	/**
+	 * Copy the contents of the buffer
+	 *
+	 * @return A new array holding the contents of the buffer
+	 */
+	private int[] copyBuffer() {
+		int[] copy = new int[buffered];
+		System.arraycopy(buffer, 0, copy, 0, buffered);
+		return copy;
+	}
+
+	/**
+	 * Check if a tile can't be moved into
+	 *
+	 * @param sx The x coordinate of the tile being moved from
+	 * @param sy The y coordinate of the tile being moved from
+	 * @param x The x coordinate of the tile to check
+	 * @param y The y coordinate of the tile to check
+	 * @return True if the tile is off the map or blocked
+	 */
+	private boolean blocked(int sx, int sy, int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+			return true;
+		}
+
+		sourceX = sx;
+		sourceY = sy;
+		return map.blocked(this, x, y);
+	}
+
+	/**
+	 * Get the cost of moving from one tile to another
+	 *
+	 * @param sx The x coordinate of the tile being moved from
+	 * @param sy The y coordinate of the tile being moved from
+	 * @param tx The x coordinate of the tile being moved to
+	 * @param ty The y coordinate of the tile being moved to
+	 * @return The cost of the move
+	 */
+	private float getMovementCost(int sx, int sy, int tx, int ty) {
+		sourceX = sx;
+		sourceY = sy;
+		return map.getCost(this, tx, ty);
+	}
+
+	/**
+	 * Get the heuristic cost from an entrance to the target
+	 *
+	 * @param node The tile of the entrance
+	 * @param tx The x coordinate of the target
+	 * @param ty The y coordinate of the target
+	 * @return The heuristic cost assigned to the entrance
+	 */
+	private float getHeuristicCost(int node, int tx, int ty) {
+		return heuristic.getCost(map, mover, node % width, node / width, tx, ty);
+	}
+
+	/**
+	 * Start a new search of the cluster graph
+	 */
+	private void startSearch() {
+		search++;
+		if (search == 0) {
+			for (int i=0;i<searched.length;i++) {
+				searched[i] = 0;
+			}
+			search = 1;
+		}
+
+		open.clear();
+	}
+
+	/**
+	 * Make sure an entrance's state belongs to the current search
+	 *
+	 * @param node The tile of the entrance to touch
+	 */
+	private void touch(int node) {
+		if (searched[node] != search) {
+			searched[node] = search;
+			closed[node] = false;
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getMover()
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSearchDistance()
+	 */
+	public int getSearchDistance() {
+		return distance;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceX()
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceY()
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+}
@@ -0,0 +1,471 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A path finder for maps where every open tile costs the same to move through,
+ * using Jump Point Search. Rather than adding every neighbour of a tile to the
+ * open list the search scans in straight lines and only stops at tiles where
+ * the choice of route could change - next to the corner of an obstacle or at
+ * the target. On open maps this searches far fewer tiles than AStarPathFinder.
+ *
+ * Only TileBasedMap.blocked() is consulted, TileBasedMap.getCost() is not. With
+ * diagonal movement a diagonal step costs the square root of two and moving
+ * diagonally past the corner of a blocked tile is allowed, as it is in
+ * AStarPathFinder. The paths returned include every step, not just the jump points.
+ * Since a single jump may cover many tiles, jump points further than the maximum
+ * search distance in steps from the start are discarded rather than the search
+ * stopping the first time that depth is reached.
+ */
+public class JumpPointPathFinder implements PathFinder, PathFindingContext {
+	/** Indicates no node */
+	private static final int NONE = -1;
+	/** The cost of a diagonal step */
+	private static final float DIAGONAL_COST = (float) Math.sqrt(2);
+
+	/** The map being searched */
+	private TileBasedMap map;
+	/** The maximum number of steps in a path we're willing to search for */
+	private int maxSearchDistance;
+	/** True if we allow diaganol movement */
+	private boolean allowDiagMovement;
+	/** The width of the map in tiles */
+	private int width;
+	/** The height of the map in tiles */
+	private int height;
+
+	/** The path cost for each node */
+	private float[] cost;
+	/** The index of the jump point each node was reached from */
+	private int[] parent;
+	/** The number of steps taken to reach each node */
+	private int[] depth;
+	/** The search each node was last touched in */
+	private int[] searched;
+	/** True for each node that is in the closed list */
+	private boolean[] closed;
+	/** The set of nodes that we do not yet consider fully searched */
+	private NodeHeap open;
+	/** The current search, incremented each time a search starts */
+	private int search;
+
+	/** The x coordinate of the target of the current search */
+	private int targetX;
+	/** The y coordinate of the target of the current search */
+	private int targetY;
+
+	/** The mover going through the path */
+	private Mover mover;
+	/** The x coordinate of the source tile we're moving from */
+	private int sourceX;
+	/** The y coordinate of the source tile we're moving from */
+	private int sourceY;
+	/** The distance searched so far */
+	private int distance;
+
+	/**
+	 * Create a path finder
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum number of steps in a path we'll search for
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 */
+	public JumpPointPathFinder(TileBasedMap map, int maxSearchDistance, boolean allowDiagMovement) {
+		this.map = map;
+		this.maxSearchDistance = maxSearchDistance;
+		this.allowDiagMovement = allowDiagMovement;
+
+		width = map.getWidthInTiles();
+		height = map.getHeightInTiles();
+		int size = width * height;
+
+		cost = new float[size];
+		parent = new int[size];
+		depth = new int[size];
+		searched = new int[size];
+		closed = new boolean[size];
+		open = new NodeHeap(size);
+	}
+
+	/**
+	 * @see PathFinder#findPath(Mover, int, int, int, int)
+	 */
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		// easy first check, if the destination is blocked, we can't get there
+		this.mover = mover;
+		this.sourceX = tx;
+		this.sourceY = ty;
+		this.distance = 0;
+
+		if (map.blocked(this, tx, ty)) {
+			return null;
+		}
+
+		startSearch();
+		targetX = tx;
+		targetY = ty;
+
+		int start = (sy * width) + sx;
+		int target = (ty * width) + tx;
+		touch(start);
+		touch(target);
+		parent[start] = NONE;
+		parent[target] = NONE;
+		open.add(start, heuristic(sx, sy));
+
+		while (open.size() != 0) {
+			int current = open.pop();
+			distance = depth[current];
+			if (current == target) {
+				break;
+			}
+			closed[current] = true;
+
+			int cx = current % width;
+			int cy = current / width;
+			int from = parent[current];
+
+			if (from == NONE) {
+				// the start has no direction of travel, so every neighbour is searched
+				for (int x=-1;x<2;x++) {
+					for (int y=-1;y<2;y++) {
+						if (((x != 0) || (y != 0)) && (allowDiagMovement || (x == 0) || (y == 0))) {
+							jumpFrom(current, cx, cy, x, y);
+						}
+					}
+				}
+			} else {
+				int dx = sign(cx - (from % width));
+				int dy = sign(cy - (from / width));
+
+				if (allowDiagMovement) {
+					searchDiagonalNeighbours(current, cx, cy, dx, dy);
+				} else {
+					searchStraightNeighbours(current, cx, cy, dx, dy);
+				}
+			}
+		}
+
+		// since we've got an empty open list or we've run out of search
+		// there was no path. Just return null
+		if (parent[target] == NONE) {
+			return null;
+		}
+
+		// walk back through the jump points filling in the steps between them
+		Path path = new Path();
+		int step = target;
+		while (step != start) {
+			int x = step % width;
+			int y = step / width;
+			int px = parent[step] % width;
+			int py = parent[step] / width;
+			int dx = sign(px - x);
+			int dy = sign(py - y);
+
+			while ((x != px) || (y != py)) {
+				path.prependStep(x, y);
+				x += dx;
+				y += dy;
+			}
+			step = parent[step];
+		}
+		path.prependStep(sx,sy);
+
+		return path;
+	}
+
+	/**
+	 * Search the neighbours of a jump point reached while diagonal movement is allowed
+	 *
+	 * @param node The index of the jump point
+	 * @param x The x coordinate of the jump point
+	 * @param y The y coordinate of the jump point
+	 * @param dx The x direction the jump point was reached in
+	 * @param dy The y direction the jump point was reached in
+	 */
+	private void searchDiagonalNeighbours(int node, int x, int y, int dx, int dy) {
+		if ((dx != 0) && (dy != 0)) {
+			jumpFrom(node, x, y, dx, dy);
+			jumpFrom(node, x, y, dx, 0);
+			jumpFrom(node, x, y, 0, dy);
+			if (blocked(x, y, x - dx, y)) {
+				jumpFrom(node, x, y, -dx, dy);
+			}
+			if (blocked(x, y, x, y - dy)) {
+				jumpFrom(node, x, y, dx, -dy);
+			}
+		} else if (dx != 0) {
+			jumpFrom(node, x, y, dx, 0);
+			if (blocked(x, y, x, y + 1)) {
+				jumpFrom(node, x, y, dx, 1);
+			}
+			if (blocked(x, y, x, y - 1)) {
+				jumpFrom(node, x, y, dx, -1);
+			}
+		} else {
+			jumpFrom(node, x, y, 0, dy);
+			if (blocked(x, y, x + 1, y)) {
+				jumpFrom(node, x, y, 1, dy);
+			}
+			if (blocked(x, y, x - 1, y)) {
+				jumpFrom(node, x, y, -1, dy);
+			}
+		}
+	}
+
+	/**
+	 * Search the neighbours of a jump point reached while only straight movement
+	 * is allowed. Turns are always considered since a jump point may sit on a turn.
+	 *
+	 * @param node The index of the jump point
+	 * @param x The x coordinate of the jump point
+	 * @param y The y coordinate of the jump point
+	 * @param dx The x direction the jump point was reached in
+	 * @param dy The y direction the jump point was reached in
+	 */
+	private void searchStraightNeighbours(int node, int x, int y, int dx, int dy) {
+		jumpFrom(node, x, y, dx, dy);
+
+		if (dx != 0) {
+			jumpFrom(node, x, y, 0, 1);
+			jumpFrom(node, x, y, 0, -1);
+		} else {
+			jumpFrom(node, x, y, 1, 0);
+			jumpFrom(node, x, y, -1, 0);
+		}
+	}
+
+	/**
+	 * Jump from a node in a given direction and add the jump point found, if any,
+	 * to the open list
+	 *
+	 * @param node The index of the node jumping from
+	 * @param x The x coordinate of the node jumping from
+	 * @param y The y coordinate of the node jumping from
+	 * @param dx The x direction to jump in
+	 * @param dy The y direction to jump in
+	 */
+	private void jumpFrom(int node, int x, int y, int dx, int dy) {
+		int point = allowDiagMovement ? jump(x, y, dx, dy) : jumpStraight(x, y, dx, dy);
+		if (point == NONE) {
+			return;
+		}
+
+		int px = point % width;
+		int py = point / width;
+		int steps = Math.max(Math.abs(px - x), Math.abs(py - y));
+		if (depth[node] + steps > maxSearchDistance) {
+			return;
+		}
+
+		touch(point);
+		if (closed[point]) {
+			return;
+		}
+		float nextStepCost = cost[node] + (((dx != 0) && (dy != 0)) ? steps * DIAGONAL_COST : steps);
+
+		if ((!open.contains(point)) || (nextStepCost < cost[point])) {
+			cost[point] = nextStepCost;
+			parent[point] = node;
+			depth[point] = depth[node] + steps;
+			map.pathFinderVisited(px, py);
+			open.add(point, nextStepCost + heuristic(px, py));
+		}
+	}
+
+	/**
+	 * Scan from a tile in a given direction for the next jump point, with
+	 * diagonal movement allowed
+	 *
+	 * @param x The x coordinate of the tile to scan from
+	 * @param y The y coordinate of the tile to scan from
+	 * @param dx The x direction to scan in
+	 * @param dy The y direction to scan in
+	 * @return The index of the jump point found or NONE if the scan was blocked
+	 */
+	private int jump(int x, int y, int dx, int dy) {
+		while (true) {
+			int nx = x + dx;
+			int ny = y + dy;
+			if (blocked(x, y, nx, ny)) {
+				return NONE;
+			}
+			x = nx;
+			y = ny;
+
+			if ((x == targetX) && (y == targetY)) {
+				return (y * width) + x;
+			}
+
+			if ((dx != 0) && (dy != 0)) {
+				// a blocked tile behind us on either side forces a turn here
+				if ((blocked(x, y, x - dx, y) && !blocked(x, y, x - dx, y + dy)) ||
+					(blocked(x, y, x, y - dy) && !blocked(x, y, x + dx, y - dy))) {
+					return (y * width) + x;
+				}
+				// as do jump points found by scanning straight from here
+				if ((jump(x, y, dx, 0) != NONE) || (jump(x, y, 0, dy) != NONE)) {
+					return (y * width) + x;
+				}
+			} else if (dx != 0) {
+				if ((blocked(x, y, x, y + 1) && !blocked(x, y, x + dx, y + 1)) ||
+					(blocked(x, y, x, y - 1) && !blocked(x, y, x + dx, y - 1))) {
+					return (y * width) + x;
+				}
+			} else {
+				if ((blocked(x, y, x + 1, y) && !blocked(x, y, x + 1, y + dy)) ||
+					(blocked(x, y, x - 1, y) && !blocked(x, y, x - 1, y + dy))) {
+					return (y * width) + x;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scan from a tile in a given direction for the next jump point, with
+	 * only straight movement allowed
+	 *
+	 * @param x The x coordinate of the tile to scan from
+	 * @param y The y coordinate of the tile to scan from
+	 * @param dx The x direction to scan in
+	 * @param dy The y direction to scan in
+	 * @return The index of the jump point found or NONE if the scan was blocked
+	 */
+	private int jumpStraight(int x, int y, int dx, int dy) {
+		while (true) {
+			int nx = x + dx;
+			int ny = y + dy;
+			if (blocked(x, y, nx, ny)) {
+				return NONE;
+			}
+			x = nx;
+			y = ny;
+
+			if ((x == targetX) && (y == targetY)) {
+				return (y * width) + x;
+			}
+
+			if (dx != 0) {
+				// a side opening that was closed on the last tile
+				if ((!blocked(x, y, x, y - 1) && blocked(x - dx, y, x - dx, y - 1)) ||
+					(!blocked(x, y, x, y + 1) && blocked(x - dx, y, x - dx, y + 1))) {
+					return (y * width) + x;
+				}
+			} else {
+				if ((!blocked(x, y, x - 1, y) && blocked(x, y - dy, x - 1, y - dy)) ||
+					(!blocked(x, y, x + 1, y) && blocked(x, y - dy, x + 1, y - dy))) {
+					return (y * width) + x;
+				}
+				// moving vertically, turns onto horizontal jump points are needed
+				if ((jumpStraight(x, y, 1, 0) != NONE) || (jumpStraight(x, y, -1, 0) != NONE)) {
+					return (y * width) + x;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a tile can't be moved into
+	 *
+	 * @param sx The x coordinate of the tile being moved from
+	 * @param sy The y coordinate of the tile being moved from
+	 * @param x The x coordinate of the tile to check
+	 * @param y The y coordinate of the tile to check
+	 * @return True if the tile is off the map or blocked
+	 */
+	private boolean blocked(int sx, int sy, int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) {
+			return true;
+		}
+
+		sourceX = sx;
+		sourceY = sy;
+		return map.blocked(this, x, y);
+	}
+
+	/**
+	 * Get the estimated cost from a tile to the target, the octile distance with
+	 * diagonal movement or the Manhattan distance without
+	 *
+	 * @param x The x coordinate of the tile
+	 * @param y The y coordinate of the tile
+	 * @return The estimated cost to the target
+	 */
+	private float heuristic(int x, int y) {
+		int dx = Math.abs(x - targetX);
+		int dy = Math.abs(y - targetY);
+
+		if (allowDiagMovement) {
+			return Math.max(dx, dy) + ((DIAGONAL_COST - 1) * Math.min(dx, dy));
+		}
+		return dx + dy;
+	}
+
+	/**
+	 * Get the sign of a value
+	 *
+	 * @param value The value to check
+	 * @return -1, 0 or 1
+	 */
+	private static int sign(int value) {
+		return value < 0 ? -1 : (value > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Start a new search, invalidating the state recorded against every node
+	 */
+	private void startSearch() {
+		search++;
+		if (search == 0) {
+			// the counter has wrapped, clear it down so no node looks current
+			for (int i=0;i<searched.length;i++) {
+				searched[i] = 0;
+			}
+			search = 1;
+		}
+
+		open.clear();
+	}
+
+	/**
+	 * Make sure a node's state belongs to the current search, resetting it
+	 * if it was last touched in a previous search
+	 *
+	 * @param node The index of the node to touch
+	 */
+	private void touch(int node) {
+		if (searched[node] != search) {
+			searched[node] = search;
+			cost[node] = 0;
+			depth[node] = 0;
+			closed[node] = false;
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getMover()
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSearchDistance()
+	 */
+	public int getSearchDistance() {
+		return distance;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceX()
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * @see org.newdawn.slick.util.pathfinding.PathFindingContext#getSourceY()
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+}
@@ -0,0 +1,204 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A binary heap of node indices used as the open list by the path finders. The
+ * position of each node in the heap is recorded so a node can be found, moved
+ * to a new priority or removed without searching.
+ *
+ * Nodes with equal priority are taken in the order they were added or last
+ * re-prioritised, which keeps searches deterministic.
+ */
+class NodeHeap {
+	/** Indicates a node that is not in the heap */
+	private static final int NOT_IN_HEAP = -1;
+
+	/** The node indices held in heap order */
+	private int[] heap;
+	/** The number of nodes in the heap */
+	private int size;
+	/** The position of each node in the heap or NOT_IN_HEAP */
+	private int[] index;
+	/** The priority of each node, lowest first */
+	private float[] priority;
+	/** The order each node was given its priority, used to break ties */
+	private int[] order;
+	/** The order to be given to the next node prioritised */
+	private int next;
+
+	/**
+	 * Create a new heap
+	 *
+	 * @param nodes The number of nodes that may be held, nodes are indexed from zero
+	 */
+	public NodeHeap(int nodes) {
+		heap = new int[nodes];
+		index = new int[nodes];
+		priority = new float[nodes];
+		order = new int[nodes];
+
+		for (int i=0;i<nodes;i++) {
+			index[i] = NOT_IN_HEAP;
+		}
+	}
+
+	/**
+	 * Remove all the nodes from the heap
+	 */
+	public void clear() {
+		for (int i=0;i<size;i++) {
+			index[heap[i]] = NOT_IN_HEAP;
+		}
+		size = 0;
+		next = 0;
+	}
+
+	/**
+	 * Get the number of nodes in the heap
+	 *
+	 * @return The number of nodes in the heap
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Check if a node is in the heap
+	 *
+	 * @param node The index of the node to check
+	 * @return True if the node is in the heap
+	 */
+	public boolean contains(int node) {
+		return index[node] != NOT_IN_HEAP;
+	}
+
+	/**
+	 * Get the node with the lowest priority without removing it
+	 *
+	 * @return The index of the node with the lowest priority
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Remove the node with the lowest priority
+	 *
+	 * @return The index of the node removed
+	 */
+	public int pop() {
+		int node = heap[0];
+		remove(node);
+
+		return node;
+	}
+
+	/**
+	 * Add a node to the heap or, if it's already in the heap, give it a new
+	 * priority.
+	 *
+	 * @param node The index of the node
+	 * @param value The priority of the node, lowest first
+	 */
+	public void add(int node, float value) {
+		float old = priority[node];
+		priority[node] = value;
+		order[node] = next++;
+
+		if (index[node] == NOT_IN_HEAP) {
+			heap[size] = node;
+			index[node] = size;
+			size++;
+			siftUp(size - 1);
+		} else if (value >= old) {
+			siftDown(index[node]);
+		} else {
+			siftUp(index[node]);
+		}
+	}
+
+	/**
+	 * Remove a node from the heap
+	 *
+	 * @param node The index of the node to remove
+	 */
+	public void remove(int node) {
+		int position = index[node];
+		if (position == NOT_IN_HEAP) {
+			return;
+		}
+
+		index[node] = NOT_IN_HEAP;
+		size--;
+
+		if (position != size) {
+			int last = heap[size];
+			heap[position] = last;
+			index[last] = position;
+			siftDown(position);
+			siftUp(index[last]);
+		}
+	}
+
+	/**
+	 * Check if one node should be taken before another
+	 *
+	 * @param a The index of the first node
+	 * @param b The index of the second node
+	 * @return True if the first node should be taken before the second
+	 */
+	private boolean before(int a, int b) {
+		if (priority[a] != priority[b]) {
+			return priority[a] < priority[b];
+		}
+
+		return order[a] < order[b];
+	}
+
+	/**
+	 * Move the node at a given position in the heap up until it's in order
+	 *
+	 * @param position The position in the heap of the node to move
+	 */
+	private void siftUp(int position) {
+		int node = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) >> 1;
+			int other = heap[parent];
+			if (!before(node, other)) {
+				break;
+			}
+			heap[position] = other;
+			index[other] = position;
+			position = parent;
+		}
+		heap[position] = node;
+		index[node] = position;
+	}
+
+	/**
+	 * Move the node at a given position in the heap down until it's in order
+	 *
+	 * @param position The position in the heap of the node to move
+	 */
+	private void siftDown(int position) {
+		int node = heap[position];
+		while (true) {
+			int child = (position << 1) + 1;
+			if (child >= size) {
+				break;
+			}
+			if ((child + 1 < size) && (before(heap[child + 1], heap[child]))) {
+				child++;
+			}
+			int other = heap[child];
+			if (!before(other, node)) {
+				break;
+			}
+			heap[position] = other;
+			index[other] = position;
+			position = child;
+		}
+		heap[position] = node;
+		index[node] = position;
+	}
+}
@@ -0,0 +1,14 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * A factory for path finders, used where a path finder is needed per thread
+ * since path finders hold the state of the search in progress.
+ */
+public interface PathFinderFactory {
+	/**
+	 * Create a new path finder
+	 *
+	 * @return The newly created path finder
+	 */
+	public PathFinder createPathFinder();
+}
@@ -0,0 +1,16 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * The description of any class needing to recieve notification of paths
+ * found by a PathRequestQueue.
+ */
+public interface PathListener {
+	/**
+	 * Notification that a requested path has been searched for. This is called
+	 * from PathRequestQueue.update(), on the game thread.
+	 *
+	 * @param request The request that has been searched for
+	 * @param path The path found or null if there is no path
+	 */
+	public void pathFound(PathRequest request, Path path);
+}
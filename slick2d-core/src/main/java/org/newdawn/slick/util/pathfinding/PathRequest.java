@@ -0,0 +1,193 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A request for a path made to a PathRequestQueue. The request completes as
+ * soon as the path has been searched for, so get() may be used from any thread,
+ * but any listener is only notified from PathRequestQueue.update().
+ */
+public class PathRequest implements Future<Path> {
+	/** The mover the path is for */
+	private Mover mover;
+	/** The x coordinate of the start of the path */
+	private int sourceX;
+	/** The y coordinate of the start of the path */
+	private int sourceY;
+	/** The x coordinate of the end of the path */
+	private int targetX;
+	/** The y coordinate of the end of the path */
+	private int targetY;
+	/** The listener to notify when the path has been found, or null */
+	private PathListener listener;
+
+	/** The path found or null if there isn't one */
+	private Path path;
+	/** True if the request has completed or been cancelled */
+	private boolean done;
+	/** True if the request has been cancelled */
+	private boolean cancelled;
+
+	/**
+	 * Create a new request
+	 *
+	 * @param mover The mover the path is for
+	 * @param sx The x coordinate of the start of the path
+	 * @param sy The y coordinate of the start of the path
+	 * @param tx The x coordinate of the end of the path
+	 * @param ty The y coordinate of the end of the path
+	 * @param listener The listener to notify when the path has been found, or null
+	 */
+	PathRequest(Mover mover, int sx, int sy, int tx, int ty, PathListener listener) {
+		this.mover = mover;
+		this.sourceX = sx;
+		this.sourceY = sy;
+		this.targetX = tx;
+		this.targetY = ty;
+		this.listener = listener;
+	}
+
+	/**
+	 * Get the mover the path is for
+	 *
+	 * @return The mover the path is for
+	 */
+	public Mover getMover() {
+		return mover;
+	}
+
+	/**
+	 * Get the x coordinate of the start of the path
+	 *
+	 * @return The x coordinate of the start of the path
+	 */
+	public int getSourceX() {
+		return sourceX;
+	}
+
+	/**
+	 * Get the y coordinate of the start of the path
+	 *
+	 * @return The y coordinate of the start of the path
+	 */
+	public int getSourceY() {
+		return sourceY;
+	}
+
+	/**
+	 * Get the x coordinate of the end of the path
+	 *
+	 * @return The x coordinate of the end of the path
+	 */
+	public int getTargetX() {
+		return targetX;
+	}
+
+	/**
+	 * Get the y coordinate of the end of the path
+	 *
+	 * @return The y coordinate of the end of the path
+	 */
+	public int getTargetY() {
+		return targetY;
+	}
+
+	/**
+	 * Get the listener to notify when the path has been found
+	 *
+	 * @return The listener to notify or null if there isn't one
+	 */
+	PathListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Complete the request
+	 *
+	 * @param path The path found or null if there isn't one
+	 * @return True if the request was completed, false if it had been cancelled
+	 */
+	synchronized boolean complete(Path path) {
+		if (done) {
+			return false;
+		}
+
+		this.path = path;
+		done = true;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+		if (done) {
+			return false;
+		}
+
+		cancelled = true;
+		done = true;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Get the path found without waiting
+	 *
+	 * @return The path found or null if there isn't one or the search hasn't completed
+	 */
+	public synchronized Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @see java.util.concurrent.Future#get()
+	 */
+	public synchronized Path get() throws InterruptedException {
+		while (!done) {
+			wait();
+		}
+		if (cancelled) {
+			throw new CancellationException();
+		}
+
+		return path;
+	}
+
+	/**
+	 * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+	 */
+	public synchronized Path get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		while (!done) {
+			long remaining = end - System.nanoTime();
+			if (remaining <= 0) {
+				throw new TimeoutException();
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		if (cancelled) {
+			throw new CancellationException();
+		}
+
+		return path;
+	}
+}
@@ -0,0 +1,405 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * A queue of path requests searched for off the game thread. Each worker thread
+ * has its own path finder from a PathFinderFactory, since path finders hold the
+ * state of the search in progress. The map being searched must be safe to read
+ * from the worker threads while they run.
+ *
+ * Requests return a PathRequest that completes as soon as the search is done,
+ * listeners are notified from update(), which should be called once a frame
+ * from the game's update. Requests for the same path by equal movers while an
+ * earlier one is still waiting or being searched share the one search.
+ *
+ * With no worker threads the searches are run in update() instead. A time
+ * budget limits how long update() spends searching and notifying listeners
+ * each frame, the rest being left until the next update.
+ */
+public class PathRequestQueue {
+	/** The factory used to create path finders */
+	private PathFinderFactory factory;
+	/** The worker threads searching for paths */
+	private Worker[] workers;
+	/** The path finder used on the game thread when there are no workers */
+	private PathFinder finder;
+
+	/** The lock held while accessing the pending searches */
+	private final Object lock = new Object();
+	/** The searches waiting to be started - Search */
+	private LinkedList pending = new LinkedList();
+	/** The searches not yet completed by the path being searched for - SearchKey to Search */
+	private HashMap searches = new HashMap();
+	/** The requests that have completed but whose listener hasn't been notified - PathRequest */
+	private ConcurrentLinkedQueue completed = new ConcurrentLinkedQueue();
+	/** True while the queue accepts requests */
+	private boolean running = true;
+
+	/** The maximum time in milliseconds update() will spend each call or 0 for no limit */
+	private int timeBudget;
+
+	/**
+	 * Create a new queue that searches with AStarPathFinders
+	 *
+	 * @param map The map to be searched
+	 * @param maxSearchDistance The maximum depth we'll search before giving up
+	 * @param allowDiagMovement True if the search should try diaganol movement
+	 * @param threads The number of worker threads to search with, zero to search in update()
+	 */
+	public PathRequestQueue(final TileBasedMap map, final int maxSearchDistance,
+							final boolean allowDiagMovement, int threads) {
+		this(new PathFinderFactory() {
+			public PathFinder createPathFinder() {
+				return new AStarPathFinder(map, maxSearchDistance, allowDiagMovement);
+			}
+		}, threads);
+	}
+
+	/**
+	 * Create a new queue
+	 *
+	 * @param factory The factory used to create a path finder for each thread
+	 * @param threads The number of worker threads to search with, zero to search in update()
+	 */
+	public PathRequestQueue(PathFinderFactory factory, int threads) {
+		this.factory = factory;
+
+		workers = new Worker[threads];
+		for (int i=0;i<threads;i++) {
+			workers[i] = new Worker(factory.createPathFinder());
+			workers[i].setName("PathRequestQueue Worker "+i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Set the maximum time update() will spend each call. At least one search
+	 * and one notification are made each update however long they take.
+	 *
+	 * @param timeBudget The maximum time in milliseconds or 0 for no limit
+	 */
+	public void setTimeBudget(int timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Get the maximum time update() will spend each call
+	 *
+	 * @return The maximum time in milliseconds or 0 for no limit
+	 */
+	public int getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Request a path
+	 *
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @return The request, which completes when the path has been searched for
+	 */
+	public PathRequest request(Mover mover, int sx, int sy, int tx, int ty) {
+		return request(mover, sx, sy, tx, ty, null);
+	}
+
+	/**
+	 * Request a path
+	 *
+	 * @param mover The entity that will be moving along the path
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param listener The listener to notify from update() when the path has been found, or null
+	 * @return The request, which completes when the path has been searched for
+	 */
+	public PathRequest request(Mover mover, int sx, int sy, int tx, int ty, PathListener listener) {
+		PathRequest request = new PathRequest(mover, sx, sy, tx, ty, listener);
+		SearchKey key = new SearchKey(mover, sx, sy, tx, ty);
+
+		synchronized (lock) {
+			if (!running) {
+				throw new RuntimeException("Path requests can't be made once the queue has been shut down");
+			}
+
+			Search search = (Search) searches.get(key);
+			if (search == null) {
+				search = new Search(key);
+				searches.put(key, search);
+				pending.add(search);
+				lock.notify();
+			}
+			search.requests.add(request);
+		}
+
+		return request;
+	}
+
+	/**
+	 * Get the number of searches waiting to be started
+	 *
+	 * @return The number of searches waiting to be started
+	 */
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pending.size();
+		}
+	}
+
+	/**
+	 * Notify listeners of the paths that have been found and, if there are no
+	 * worker threads, search for waiting requests. This should be called once
+	 * a frame from the game thread.
+	 */
+	public void update() {
+		long start = System.nanoTime();
+		long budget = timeBudget * 1000000L;
+
+		if (workers.length == 0) {
+			if (finder == null) {
+				finder = factory.createPathFinder();
+			}
+
+			boolean first = true;
+			while (first || (budget == 0) || (System.nanoTime() - start < budget)) {
+				Search search;
+				synchronized (lock) {
+					if (pending.isEmpty()) {
+						break;
+					}
+					search = (Search) pending.removeFirst();
+				}
+				run(search, finder);
+				first = false;
+			}
+		}
+
+		boolean first = true;
+		while (first || (budget == 0) || (System.nanoTime() - start < budget)) {
+			PathRequest request = (PathRequest) completed.poll();
+			if (request == null) {
+				break;
+			}
+			if (!request.isCancelled()) {
+				request.getListener().pathFound(request, request.getPath());
+			}
+			first = false;
+		}
+	}
+
+	/**
+	 * Stop the worker threads and cancel any requests still waiting
+	 */
+	public void shutdown() {
+		ArrayList waiting = new ArrayList();
+
+		synchronized (lock) {
+			running = false;
+			for (int i=0;i<pending.size();i++) {
+				waiting.addAll(((Search) pending.get(i)).requests);
+			}
+			pending.clear();
+			lock.notifyAll();
+		}
+
+		for (int i=0;i<waiting.size();i++) {
+			((PathRequest) waiting.get(i)).cancel(false);
+		}
+	}
+
+	/**
+	 * Run a search and complete the requests waiting on it
+	 *
+	 * @param search The search to run
+	 * @param pathFinder The path finder to search with
+	 */
+	private void run(Search search, PathFinder pathFinder) {
+		SearchKey key = search.key;
+		Path path = null;
+
+		if (search.isWanted()) {
+			try {
+				path = pathFinder.findPath(key.mover, key.sx, key.sy, key.tx, key.ty);
+			} catch (RuntimeException e) {
+				Log.error("Failed to find path from "+key.sx+","+key.sy+" to "+key.tx+","+key.ty, e);
+			}
+		}
+
+		ArrayList requests;
+		synchronized (lock) {
+			searches.remove(key);
+			requests = search.requests;
+		}
+
+		for (int i=0;i<requests.size();i++) {
+			PathRequest request = (PathRequest) requests.get(i);
+			// each request gets its own copy since paths can be modified
+			Path copy = (path == null) || (i == 0) ? path : copy(path);
+			// held so anyone waiting on the request sees it queued for its listener
+			synchronized (request) {
+				if (request.complete(copy) && (request.getListener() != null)) {
+					completed.add(request);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy a path
+	 *
+	 * @param path The path to copy
+	 * @return The new copy of the path
+	 */
+	private static Path copy(Path path) {
+		Path copy = new Path();
+		for (int i=0;i<path.getLength();i++) {
+			copy.appendStep(path.getX(i), path.getY(i));
+		}
+
+		return copy;
+	}
+
+	/**
+	 * A thread searching for paths with its own path finder
+	 */
+	private class Worker extends Thread {
+		/** The path finder this thread searches with */
+		private PathFinder pathFinder;
+
+		/**
+		 * Create a new worker
+		 *
+		 * @param pathFinder The path finder this thread searches with
+		 */
+		public Worker(PathFinder pathFinder) {
+			this.pathFinder = pathFinder;
+		}
+
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		public void run() {
+			while (true) {
+				Search search;
+				synchronized (lock) {
+					while (running && pending.isEmpty()) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (!running) {
+						return;
+					}
+					search = (Search) pending.removeFirst();
+				}
+
+				PathRequestQueue.this.run(search, pathFinder);
+			}
+		}
+	}
+
+	/**
+	 * A single search and the requests waiting on it
+	 */
+	private class Search {
+		/** The path being searched for */
+		private SearchKey key;
+		/** The requests waiting on this search - PathRequest */
+		private ArrayList requests = new ArrayList();
+
+		/**
+		 * Create a new search
+		 *
+		 * @param key The path being searched for
+		 */
+		public Search(SearchKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * Check if any request still wants the result of this search
+		 *
+		 * @return True if any request waiting on this search hasn't been cancelled
+		 */
+		public boolean isWanted() {
+			synchronized (lock) {
+				for (int i=0;i<requests.size();i++) {
+					if (!((PathRequest) requests.get(i)).isCancelled()) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * The description of a path being searched for, requests with equal keys share
+	 * a search
+	 */
+	private static class SearchKey {
+		/** The mover the path is for */
+		private Mover mover;
+		/** The x coordinate of the start of the path */
+		private int sx;
+		/** The y coordinate of the start of the path */
+		private int sy;
+		/** The x coordinate of the end of the path */
+		private int tx;
+		/** The y coordinate of the end of the path */
+		private int ty;
+
+		/**
+		 * Create a new key
+		 *
+		 * @param mover The mover the path is for
+		 * @param sx The x coordinate of the start of the path
+		 * @param sy The y coordinate of the start of the path
+		 * @param tx The x coordinate of the end of the path
+		 * @param ty The y coordinate of the end of the path
+		 */
+		public SearchKey(Mover mover, int sx, int sy, int tx, int ty) {
+			this.mover = mover;
+			this.sx = sx;
+			this.sy = sy;
+			this.tx = tx;
+			this.ty = ty;
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			int hash = (mover == null) ? 0 : mover.hashCode();
+			return (((((hash * 31) + sx) * 31 + sy) * 31 + tx) * 31) + ty;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object other) {
+			if (!(other instanceof SearchKey)) {
+				return false;
+			}
+
+			SearchKey o = (SearchKey) other;
+			if ((sx != o.sx) || (sy != o.sy) || (tx != o.tx) || (ty != o.ty)) {
+				return false;
+			}
+			return (mover == null) ? (o.mover == null) : mover.equals(o.mover);
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package org.newdawn.slick.util.pathfinding;
+
+/**
+ * The description of any class needing to recieve notification of changes
+ * to the tiles of a map, for instance to update a path finder's view of
+ * the map.
+ */
+public interface TileChangeListener {
+
+	/**
+	 * Notification that a tile on the map has been changed
+	 * 
+	 * @param x The x location of the tile
+	 * @param y The y location of the tile
+	 */
+	public void tileChanged(int x, int y);
+}
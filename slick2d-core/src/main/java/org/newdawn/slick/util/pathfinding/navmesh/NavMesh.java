@@ -14,6 +14,8 @@ import java.util.ArrayList;
 public class NavMesh {
 	/** The list of spaces that build up this navigation mesh */
 	private ArrayList spaces = new ArrayList();
+	/** The index used to find spaces by location, null until it's next needed */
+	private SpaceIndex index;
 	
 	/**
 	 * Create a new empty mesh
@@ -57,6 +59,21 @@ public class NavMesh {
 	 */
 	public void addSpace(Space space) {
 		spaces.add(space);
+		index = null;
+	}
+	
+	/**
+	 * Get the index used to find spaces by location, building it if spaces
+	 * have been added since it was last used
+	 * 
+	 * @return The index of the spaces in the mesh
+	 */
+	SpaceIndex getIndex() {
+		if (index == null) {
+			index = new SpaceIndex(spaces);
+		}
+		
+		return index;
 	}
 	
 	/**
@@ -67,14 +84,7 @@ public class NavMesh {
 	 * @return The space at the given location
 	 */
 	public Space findSpace(float x, float y) {
-		for (int i=0;i<spaces.size();i++) {
-			Space space = getSpace(i);
-			if (space.contains(x,y)) {
-				return space;
-			}
-		}
-		
-		return null;
+		return getIndex().find(x, y);
 	}
 	
 	/**
@@ -1,6 +1,8 @@
 package org.newdawn.slick.util.pathfinding.navmesh;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 
 import org.newdawn.slick.util.pathfinding.Mover;
 import org.newdawn.slick.util.pathfinding.PathFindingContext;
@@ -47,12 +49,23 @@ public class NavMeshBuilder implements PathFindingContext {
 		ArrayList spaces = new ArrayList();
 		
 		if (tileBased) {
+			// start from the runs of open tiles down each column rather than
+			// single tiles, it's the same as merging them but much cheaper
 			for (int x=0;x<map.getWidthInTiles();x++) {
+				int start = -1;
 				for (int y=0;y<map.getHeightInTiles();y++) {
 					if (!map.blocked(this, x, y)) {
-						spaces.add(new Space(x,y,1,1));
+						if (start == -1) {
+							start = y;
+						}
+					} else if (start != -1) {
+						spaces.add(new Space(x,start,1,y-start));
+						start = -1;
 					}
 				}
+				if (start != -1) {
+					spaces.add(new Space(x,start,1,map.getHeightInTiles()-start));
+				}
 			}
 		} else {
 			Space space = new Space(0,0,map.getWidthInTiles(),map.getHeightInTiles());
@@ -60,49 +73,163 @@ public class NavMeshBuilder implements PathFindingContext {
 			subsection(map, space, spaces);
 		}
 		
-		while (mergeSpaces(spaces)) {}
-		linkSpaces(spaces);
+		spaces = mergeSpaces(spaces);
+		NavMesh mesh = new NavMesh(spaces);
+		linkSpaces(spaces, mesh.getIndex());
 		
-		return new NavMesh(spaces);
+		return mesh;
 	}
 	
 	/**
 	 * Merge the spaces that have been created to optimize out anywhere
-	 * we can.
+	 * we can. The spaces are kept in maps keyed by each of their edges so
+	 * the space that can be merged on to each side is found directly, and
+	 * the space created by each merge is checked again in turn, until no 
+	 * two spaces can be merged.
 	 * 
 	 * @param spaces The list of spaces to be merged
-	 * @return True if a merge occured and we'll have to start the merge
-	 * process again
+	 * @return The list of spaces once merged
 	 */
-	private boolean mergeSpaces(ArrayList spaces) {
-		for (int source=0;source<spaces.size();source++) {
-			Space a = (Space) spaces.get(source);
+	private ArrayList mergeSpaces(ArrayList spaces) {
+		HashMap left = new HashMap();
+		HashMap right = new HashMap();
+		HashMap top = new HashMap();
+		HashMap bottom = new HashMap();
+		
+		ArrayList created = new ArrayList(spaces);
+		LinkedList open = new LinkedList(spaces);
+		for (int i=0;i<spaces.size();i++) {
+			addEdges((Space) spaces.get(i), left, right, top, bottom);
+		}
+		
+		while (!open.isEmpty()) {
+			Space a = (Space) open.removeFirst();
+			if (left.get(leftEdge(a)) != a) {
+				// already merged into another space
+				continue;
+			}
 			
-			for (int target=source+1;target<spaces.size();target++) {
-				Space b = (Space) spaces.get(target);
-				
-				if (a.canMerge(b)) {
-					spaces.remove(a);
-					spaces.remove(b);
-					spaces.add(a.merge(b));
-					return true;
-				}
+			Space b = (Space) right.get(leftEdge(a));
+			if (b == null) {
+				b = (Space) left.get(rightEdge(a));
+			}
+			if (b == null) {
+				b = (Space) bottom.get(topEdge(a));
+			}
+			if (b == null) {
+				b = (Space) top.get(bottomEdge(a));
+			}
+			
+			if (b != null) {
+				removeEdges(a, left, right, top, bottom);
+				removeEdges(b, left, right, top, bottom);
+				Space merged = a.merge(b);
+				addEdges(merged, left, right, top, bottom);
+				created.add(merged);
+				open.add(merged);
 			}
 		}
 		
-		return false;
+		ArrayList result = new ArrayList();
+		for (int i=0;i<created.size();i++) {
+			Space space = (Space) created.get(i);
+			if (left.get(leftEdge(space)) == space) {
+				result.add(space);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Record the edges of a space in the edge maps
+	 * 
+	 * @param space The space whose edges should be recorded
+	 * @param left The map from left edges to spaces
+	 * @param right The map from right edges to spaces
+	 * @param top The map from top edges to spaces
+	 * @param bottom The map from bottom edges to spaces
+	 */
+	private void addEdges(Space space, HashMap left, HashMap right, HashMap top, HashMap bottom) {
+		left.put(leftEdge(space), space);
+		right.put(rightEdge(space), space);
+		top.put(topEdge(space), space);
+		bottom.put(bottomEdge(space), space);
+	}
+	
+	/**
+	 * Remove the edges of a space from the edge maps
+	 * 
+	 * @param space The space whose edges should be removed
+	 * @param left The map from left edges to spaces
+	 * @param right The map from right edges to spaces
+	 * @param top The map from top edges to spaces
+	 * @param bottom The map from bottom edges to spaces
+	 */
+	private void removeEdges(Space space, HashMap left, HashMap right, HashMap top, HashMap bottom) {
+		left.remove(leftEdge(space));
+		right.remove(rightEdge(space));
+		top.remove(topEdge(space));
+		bottom.remove(bottomEdge(space));
+	}
+	
+	/**
+	 * Get the left edge of a space
+	 * 
+	 * @param space The space whose edge should be returned
+	 * @return The left edge of the space
+	 */
+	private Edge leftEdge(Space space) {
+		return new Edge(space.getX(), space.getY(), space.getHeight());
+	}
+	
+	/**
+	 * Get the right edge of a space
+	 * 
+	 * @param space The space whose edge should be returned
+	 * @return The right edge of the space
+	 */
+	private Edge rightEdge(Space space) {
+		return new Edge(space.getX() + space.getWidth(), space.getY(), space.getHeight());
+	}
+	
+	/**
+	 * Get the top edge of a space
+	 * 
+	 * @param space The space whose edge should be returned
+	 * @return The top edge of the space
+	 */
+	private Edge topEdge(Space space) {
+		return new Edge(space.getY(), space.getX(), space.getWidth());
+	}
+	
+	/**
+	 * Get the bottom edge of a space
+	 * 
+	 * @param space The space whose edge should be returned
+	 * @return The bottom edge of the space
+	 */
+	private Edge bottomEdge(Space space) {
+		return new Edge(space.getY() + space.getHeight(), space.getX(), space.getWidth());
 	}
 	
 	/**
-	 * Determine the links between spaces
+	 * Determine the links between spaces, only checking the spaces
+	 * around each space
 	 * 
 	 * @param spaces The spaces to link up
+	 * @param index The index of the spaces used to find those around each space
 	 */
-	private void linkSpaces(ArrayList spaces) {
+	private void linkSpaces(ArrayList spaces, SpaceIndex index) {
 		for (int source=0;source<spaces.size();source++) {
 			Space a = (Space) spaces.get(source);
+			int[] around = index.findAround(a.getX(), a.getY(), a.getWidth(), a.getHeight());
 			
-			for (int target=source+1;target<spaces.size();target++) {
+			for (int i=0;i<around.length;i++) {
+				int target = around[i];
+				if (target <= source) {
+					continue;
+				}
 				Space b = (Space) spaces.get(target);
 				
 				if (a.hasJoinedEdge(b)) {
@@ -219,4 +346,64 @@ public class NavMeshBuilder implements PathFindingContext {
 	public int getSourceY() {
 		return sy;
 	}
+	
+	/**
+	 * An edge of a space, used to find the space that can be merged with 
+	 * another on a particular side
+	 */
+	private static class Edge {
+		/** The position of the line the edge lies on */
+		private float position;
+		/** The start of the edge along the line */
+		private float start;
+		/** The length of the edge */
+		private float length;
+		
+		/**
+		 * Create a new edge
+		 * 
+		 * @param position The position of the line the edge lies on
+		 * @param start The start of the edge along the line
+		 * @param length The length of the edge
+		 */
+		public Edge(float position, float start, float length) {
+			this.position = position;
+			this.start = start;
+			this.length = length;
+		}
+		
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			// whole numbers have no low bits set as floats, so mix the high 
+			// bits down before combining
+			int hash = mix(Float.floatToIntBits(position));
+			hash = mix(hash + Float.floatToIntBits(start));
+			return mix(hash + Float.floatToIntBits(length));
+		}
+		
+		/**
+		 * Spread the bits of a value across the whole of it
+		 * 
+		 * @param value The value to mix
+		 * @return The mixed value
+		 */
+		private static int mix(int value) {
+			value *= 0x9E3779B9;
+			return value ^ (value >>> 16);
+		}
+		
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object other) {
+			if (!(other instanceof Edge)) {
+				return false;
+			}
+			
+			Edge o = (Edge) other;
+			return (position == o.position) && (start == o.start) && (length == o.length);
+		}
+	}
 }
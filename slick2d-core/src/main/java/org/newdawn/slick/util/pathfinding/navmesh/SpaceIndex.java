@@ -0,0 +1,186 @@
+package org.newdawn.slick.util.pathfinding.navmesh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the spaces of a mesh, used to find the spaces at a
+ * point or around a space without checking every space. Each cell records
+ * the index of every space that overlaps it, in the order the spaces appear
+ * in the mesh, so the first space found at a point is the same one a search
+ * through the whole list would find.
+ *
+ * The cells are sized so there's roughly one per space across the area the
+ * spaces cover.
+ */
+class SpaceIndex {
+	/** The spaces indexed */
+	private Space[] spaces;
+	/** The x coordinate of the top corner of the grid */
+	private float minX;
+	/** The y coordinate of the top corner of the grid */
+	private float minY;
+	/** The width and height of each cell */
+	private float cellSize;
+	/** The number of columns of cells */
+	private int columns;
+	/** The number of rows of cells */
+	private int rows;
+	/** The position in cellSpaces of the first space in each cell, with an extra entry marking the end */
+	private int[] cellStart;
+	/** The index of the spaces in each cell, one cell after another */
+	private int[] cellSpaces;
+	/** The last query each space was found in, used to only report each space once */
+	private int[] found;
+	/** The number of queries made, used to mark the spaces found */
+	private int query;
+
+	/**
+	 * Create a new index
+	 *
+	 * @param list The spaces to index
+	 */
+	public SpaceIndex(ArrayList list) {
+		spaces = (Space[]) list.toArray(new Space[list.size()]);
+		found = new int[spaces.length];
+		if (spaces.length == 0) {
+			cellStart = new int[1];
+			cellSpaces = new int[0];
+			return;
+		}
+
+		minX = Float.MAX_VALUE;
+		minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int i=0;i<spaces.length;i++) {
+			Space space = spaces[i];
+			minX = Math.min(minX, space.getX());
+			minY = Math.min(minY, space.getY());
+			maxX = Math.max(maxX, space.getX() + space.getWidth());
+			maxY = Math.max(maxY, space.getY() + space.getHeight());
+		}
+
+		float area = (maxX - minX) * (maxY - minY);
+		cellSize = (float) Math.sqrt(area / spaces.length);
+		if (!(cellSize > 0)) {
+			cellSize = 1;
+		}
+		columns = column(maxX) + 1;
+		rows = row(maxY) + 1;
+
+		// count the spaces in each cell, then fill them in at their positions
+		cellStart = new int[(columns * rows) + 1];
+		for (int i=0;i<spaces.length;i++) {
+			Space space = spaces[i];
+			for (int y=row(space.getY());y<=row(space.getY() + space.getHeight());y++) {
+				for (int x=column(space.getX());x<=column(space.getX() + space.getWidth());x++) {
+					cellStart[(y * columns) + x + 1]++;
+				}
+			}
+		}
+		for (int i=0;i<columns*rows;i++) {
+			cellStart[i+1] += cellStart[i];
+		}
+
+		cellSpaces = new int[cellStart[columns * rows]];
+		int[] next = new int[columns * rows];
+		System.arraycopy(cellStart, 0, next, 0, next.length);
+		for (int i=0;i<spaces.length;i++) {
+			Space space = spaces[i];
+			for (int y=row(space.getY());y<=row(space.getY() + space.getHeight());y++) {
+				for (int x=column(space.getX());x<=column(space.getX() + space.getWidth());x++) {
+					cellSpaces[next[(y * columns) + x]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the column of cells holding a given x coordinate
+	 *
+	 * @param x The x coordinate to locate
+	 * @return The column, which may be outside the grid
+	 */
+	private int column(float x) {
+		return (int) Math.floor((x - minX) / cellSize);
+	}
+
+	/**
+	 * Get the row of cells holding a given y coordinate
+	 *
+	 * @param y The y coordinate to locate
+	 * @return The row, which may be outside the grid
+	 */
+	private int row(float y) {
+		return (int) Math.floor((y - minY) / cellSize);
+	}
+
+	/**
+	 * Find the space at a given location
+	 *
+	 * @param x The x coordinate at which to find the space
+	 * @param y The y coordinate at which to find the space
+	 * @return The space at the given location or null if there isn't one
+	 */
+	public Space find(float x, float y) {
+		int column = column(x);
+		int row = row(y);
+		if ((column < 0) || (row < 0) || (column >= columns) || (row >= rows)) {
+			return null;
+		}
+
+		int cell = (row * columns) + column;
+		for (int i=cellStart[cell];i<cellStart[cell+1];i++) {
+			Space space = spaces[cellSpaces[i]];
+			if (space.contains(x, y)) {
+				return space;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Find the spaces that overlap or touch an area
+	 *
+	 * @param x The x coordinate of the top corner of the area
+	 * @param y The y coordinate of the top corner of the area
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @return The indices of the spaces that may overlap or touch the area, in
+	 * the order the spaces appear in the mesh
+	 */
+	public int[] findAround(float x, float y, float width, float height) {
+		int x1 = Math.max(0, column(x));
+		int y1 = Math.max(0, row(y));
+		int x2 = Math.min(columns - 1, column(x + width));
+		int y2 = Math.min(rows - 1, row(y + height));
+
+		query++;
+		int count = 0;
+		int[] result = new int[8];
+		for (int yp=y1;yp<=y2;yp++) {
+			for (int xp=x1;xp<=x2;xp++) {
+				int cell = (yp * columns) + xp;
+				for (int i=cellStart[cell];i<cellStart[cell+1];i++) {
+					int index = cellSpaces[i];
+					if (found[index] != query) {
+						found[index] = query;
+						if (count == result.length) {
+							int[] grown = new int[result.length * 2];
+							System.arraycopy(result, 0, grown, 0, count);
+							result = grown;
+						}
+						result[count++] = index;
+					}
+				}
+			}
+		}
+
+		int[] sorted = new int[count];
+		System.arraycopy(result, 0, sorted, 0, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
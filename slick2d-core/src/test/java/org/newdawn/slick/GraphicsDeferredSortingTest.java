@@ -0,0 +1,105 @@
+package org.newdawn.slick;
+
+import java.util.List;
+
+import org.newdawn.slick.opengl.renderer.RecordingSGL;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class GraphicsDeferredSortingTest {
+
+    /**
+     * An image with no texture of its own, as BigImage has, that notes when it's drawn
+     */
+    private static class UntexturedImage extends Image {
+        private List<Object> events;
+        private int drawnAt = -1;
+
+        UntexturedImage(List<Object> events) {
+            this.events = events;
+            width = 8;
+            height = 8;
+            inited = true;
+        }
+
+        public void draw(float x, float y, Color filter) {
+            drawnAt = events.size();
+        }
+    }
+
+    private RecordingSGL gl;
+    private RecordedGL recorded;
+
+    @BeforeMethod
+    public void record() {
+        gl = new RecordingSGL();
+        recorded = new RecordedGL(gl);
+    }
+
+    @AfterMethod
+    public void restore() {
+        recorded.restore();
+    }
+
+    private static Image[] images(int count) {
+        Image[] images = new Image[count];
+        for (int i = 0; i < count; i++) {
+            images[i] = RecordedGL.image(i + 1, 8, 8);
+        }
+        return images;
+    }
+
+    private int drawInterleaved(boolean sorted) {
+        Image[] images = images(3);
+        Graphics g = new Graphics();
+        g.setDeferred(true);
+        g.setDeferredSorting(sorted);
+        for (int i = 0; i < 30; i++) {
+            g.drawImage(images[i % 3], i * 10, 0);
+        }
+        g.setLayer(1);
+        g.drawImage(images[0], 0, 0);
+        g.setDeferred(false);
+
+        int binds = 0;
+        int quads = 0;
+        for (Object event : gl.getEvents()) {
+            if (event.toString().startsWith("glBindTexture")) {
+                binds++;
+            } else if (event instanceof RecordingSGL.Primitive) {
+                quads += ((RecordingSGL.Primitive) event).getVertexCount() / 6;
+            }
+        }
+        Assert.assertEquals(quads, 31);
+        return binds;
+    }
+
+    public void interleavedTexturesAreBoundPerDrawWhenNotSorted() {
+        Assert.assertEquals(drawInterleaved(false), 31);
+    }
+
+    public void sortingBindsEachTextureOncePerLayer() {
+        Assert.assertEquals(drawInterleaved(true), 4);
+    }
+
+    public void imagesWithoutATextureAreDrawnDirectly() {
+        Image[] images = images(1);
+        UntexturedImage big = new UntexturedImage(gl.getEvents());
+        Graphics g = new Graphics();
+        g.setDeferred(true);
+        g.drawImage(images[0], 0, 0);
+        g.drawImage(big, 0, 0);
+        Assert.assertTrue(big.drawnAt >= 0);
+
+        // the image deferred before it is drawn first
+        boolean flushed = false;
+        for (Object event : gl.getEvents().subList(0, big.drawnAt)) {
+            flushed |= event instanceof RecordingSGL.Primitive;
+        }
+        Assert.assertTrue(flushed);
+        g.setDeferred(false);
+    }
+}
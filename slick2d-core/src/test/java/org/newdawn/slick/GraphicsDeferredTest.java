@@ -0,0 +1,82 @@
+package org.newdawn.slick;
+
+import org.lwjgl.LWJGLException;
+import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.DisplayMode;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.newdawn.slick.tests.util.TestWithLWJGL;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups="display")
+public class GraphicsDeferredTest extends TestWithLWJGL {
+
+    private static final int SIZE = 16;
+
+    @BeforeClass
+    public void createDisplay() throws LWJGLException {
+        Display.setDisplayMode(new DisplayMode(SIZE, SIZE));
+        Display.create();
+
+        SGL gl = Renderer.get();
+        gl.initDisplay(SIZE, SIZE);
+        gl.enterOrtho(SIZE, SIZE);
+    }
+
+    @AfterClass
+    public void destroyDisplay() {
+        Display.destroy();
+    }
+
+    private static Image solid(int r, int g, int b) {
+        ImageBuffer buffer = new ImageBuffer(8, 8);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                buffer.setRGBA(x, y, r, g, b, 255);
+            }
+        }
+        return buffer.getImage();
+    }
+
+    private static void assertRGB(Color color, Color expected) {
+        Assert.assertEquals(color.r, expected.r);
+        Assert.assertEquals(color.g, expected.g);
+        Assert.assertEquals(color.b, expected.b);
+    }
+
+    public void overlappingImagesKeepTheirOrderWithinALayer() {
+        Image red = solid(255, 0, 0);
+        Image blue = solid(0, 0, 255);
+        Assert.assertTrue(red.getTexture().getTextureID() < blue.getTexture().getTextureID());
+
+        Graphics g = new Graphics(SIZE, SIZE);
+        g.setDeferred(true);
+        // the later texture is drawn first, so sorting by texture would swap them
+        g.drawImage(blue, 0, 0);
+        g.drawImage(red, 4, 4);
+        g.setDeferred(false);
+
+        assertRGB(g.getPixel(2, 2), Color.blue);
+        assertRGB(g.getPixel(6, 6), Color.red);
+        assertRGB(g.getPixel(10, 10), Color.red);
+    }
+
+    public void layersAreDrawnInAscendingOrder() {
+        Image red = solid(255, 0, 0);
+        Image blue = solid(0, 0, 255);
+
+        Graphics g = new Graphics(SIZE, SIZE);
+        g.setDeferred(true);
+        g.setLayer(1);
+        g.drawImage(red, 4, 4);
+        g.setLayer(0);
+        g.drawImage(blue, 0, 0);
+        g.setDeferred(false);
+
+        assertRGB(g.getPixel(6, 6), Color.red);
+        assertRGB(g.getPixel(2, 2), Color.blue);
+    }
+}
@@ -0,0 +1,80 @@
+package org.newdawn.slick;
+
+import org.newdawn.slick.opengl.TextureImpl;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * Points the GL the core rendering classes use at another SGL, normally a
+ * RecordingSGL, so what they draw can be checked without a display.
+ */
+public class RecordedGL {
+
+    /**
+     * A texture that needs nothing uploading and can point the GL it binds through elsewhere
+     */
+    private static class RecordedTexture extends TextureImpl {
+        RecordedTexture(int id, int width, int height) {
+            super("recorded", SGL.GL_TEXTURE_2D, id);
+            setWidth(width);
+            setHeight(height);
+            setTextureWidth(width);
+            setTextureHeight(height);
+        }
+
+        static SGL use(SGL gl) {
+            SGL old = GL;
+            GL = gl;
+            return old;
+        }
+    }
+
+    private SGL renderer;
+    private SGL[] old = new SGL[5];
+
+    /**
+     * Start drawing through a given GL
+     *
+     * @param gl The GL to draw through until restore() is called
+     */
+    public RecordedGL(SGL gl) {
+        renderer = Renderer.get();
+        Renderer.setRenderer(gl);
+        old[0] = Graphics.GL;
+        old[1] = Image.GL;
+        old[2] = SpriteBatch.GL;
+        old[3] = RecordedTexture.use(gl);
+        old[4] = Color.white.GL;
+        Graphics.GL = gl;
+        Image.GL = gl;
+        SpriteBatch.GL = gl;
+        Color.white.GL = gl;
+    }
+
+    /**
+     * Go back to drawing through the GL in use before
+     */
+    public void restore() {
+        Graphics.GL = old[0];
+        Image.GL = old[1];
+        SpriteBatch.GL = old[2];
+        RecordedTexture.use(old[3]);
+        Color.white.GL = old[4];
+        Renderer.setRenderer(renderer);
+        TextureImpl.unbind();
+    }
+
+    /**
+     * Create an image on a texture that's never uploaded
+     *
+     * @param id The ID of the texture, recorded when it's bound
+     * @param width The width of the image and its texture
+     * @param height The height of the image and its texture
+     * @return The image covering the whole texture
+     */
+    public static Image image(int id, int width, int height) {
+        Image image = new Image(new RecordedTexture(id, width, height));
+        TextureImpl.unbind();
+        return image;
+    }
+}
@@ -0,0 +1,167 @@
+package org.newdawn.slick.atlas;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class AtlasCompilerTest {
+
+    /**
+     * Create an image with a distinct colour in each pixel, inside a transparent border
+     */
+    private static BufferedImage image(int width, int height, int border, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = border; y < height - border; y++) {
+            for (int x = border; x < width - border; x++) {
+                image.setRGB(x, y, 0xff000000 | (seed << 16) | (y << 8) | x);
+            }
+        }
+        return image;
+    }
+
+    private static File tempDir() throws IOException {
+        File dir = File.createTempFile("atlas", "");
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @BeforeMethod
+    public void clearRegistry() {
+        AtlasRegistry.clear();
+    }
+
+    public void writesPagesAndDescriptorThatTheAtlasReads() throws Exception {
+        File dir = tempDir();
+        AtlasCompiler compiler = new AtlasCompiler();
+        compiler.setPageSize(64, 64);
+        compiler.setPadding(1);
+        compiler.setExtrude(1);
+        compiler.add("sprites/a.png", image(40, 30, 0, 1));
+        compiler.add("sprites/b.png", image(40, 30, 0, 2));
+        compiler.add("sprites\\c.png", image(10, 12, 0, 3));
+
+        File descriptor = new File(dir, "ui.xml");
+        Assert.assertEquals(compiler.compile(descriptor), 2);
+        Assert.assertTrue(new File(dir, "ui-0.png").exists());
+        Assert.assertTrue(new File(dir, "ui-1.png").exists());
+
+        TextureAtlas atlas = new TextureAtlas(descriptor.getAbsolutePath());
+        Assert.assertEquals(atlas.getPageCount(), 2);
+        Assert.assertEquals(atlas.getRegionCount(), 3);
+
+        BufferedImage[] pages = new BufferedImage[] {
+            ImageIO.read(new File(dir, "ui-0.png")),
+            ImageIO.read(new File(dir, "ui-1.png"))
+        };
+        for (int seed = 1; seed <= 3; seed++) {
+            String name = "sprites/" + (char) ('a' + seed - 1) + ".png";
+            AtlasRegion region = atlas.getRegion(name);
+            Assert.assertNotNull(region, name);
+            Assert.assertTrue(region.isPlain());
+            Assert.assertSame(region.getAtlas(), atlas);
+
+            BufferedImage page = pages[region.getPage()];
+            for (int y = 0; y < region.getHeight(); y++) {
+                for (int x = 0; x < region.getWidth(); x++) {
+                    Assert.assertEquals(page.getRGB(region.getX() + x, region.getY() + y),
+                            0xff000000 | (seed << 16) | (y << 8) | x);
+                }
+            }
+            // the edges are extruded by a pixel
+            Assert.assertEquals(page.getRGB(region.getX() - 1, region.getY() - 1),
+                    page.getRGB(region.getX(), region.getY()));
+            Assert.assertEquals(page.getRGB(region.getX() + region.getWidth(), region.getY() + 3),
+                    page.getRGB(region.getX() + region.getWidth() - 1, region.getY() + 3));
+        }
+
+        // the small sprite fits beside the first, the second page is cut down to a power of two that fits
+        Assert.assertEquals(atlas.getRegion("sprites/c.png").getPage(), atlas.getRegion("sprites/a.png").getPage());
+        Assert.assertEquals(pages[1].getWidth(), 64);
+        Assert.assertEquals(pages[1].getHeight(), 32);
+    }
+
+    public void trimsAndRotatesSprites() throws Exception {
+        File dir = tempDir();
+        AtlasCompiler compiler = new AtlasCompiler();
+        compiler.setPageSize(128, 32);
+        compiler.setPadding(0);
+        compiler.setTrim(true);
+        compiler.setRotation(true);
+        compiler.setPowerOfTwo(false);
+        compiler.add("tall.png", image(20, 100, 4, 5));
+        compiler.add("empty.png", new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB));
+
+        File descriptor = new File(dir, "packed.xml");
+        Assert.assertEquals(compiler.compile(descriptor), 1);
+        TextureAtlas atlas = new TextureAtlas(descriptor.getAbsolutePath());
+
+        AtlasRegion tall = atlas.getRegion("tall.png");
+        Assert.assertTrue(tall.isRotated());
+        Assert.assertFalse(tall.isPlain());
+        Assert.assertEquals(tall.getWidth(), 92);
+        Assert.assertEquals(tall.getHeight(), 12);
+        Assert.assertEquals(tall.getOffsetX(), 4);
+        Assert.assertEquals(tall.getOffsetY(), 4);
+        Assert.assertEquals(tall.getOriginalWidth(), 20);
+        Assert.assertEquals(tall.getOriginalHeight(), 100);
+
+        // turned clockwise, so the sprite's bottom left pixel is at the top left of the region
+        BufferedImage page = ImageIO.read(new File(dir, "packed-0.png"));
+        Assert.assertEquals(page.getRGB(tall.getX(), tall.getY()), 0xff000000 | (5 << 16) | (95 << 8) | 4);
+        Assert.assertEquals(page.getRGB(tall.getX() + 91, tall.getY()), 0xff000000 | (5 << 16) | (4 << 8) | 4);
+        Assert.assertEquals(page.getRGB(tall.getX() + 91, tall.getY() + 11), 0xff000000 | (5 << 16) | (4 << 8) | 15);
+
+        AtlasRegion empty = atlas.getRegion("empty.png");
+        Assert.assertEquals(empty.getWidth(), 1);
+        Assert.assertEquals(empty.getOriginalWidth(), 8);
+    }
+
+    public void refusesSpritesBiggerThanAPage() {
+        AtlasCompiler compiler = new AtlasCompiler();
+        compiler.setPageSize(32, 32);
+        compiler.add("big.png", image(40, 10, 0, 1));
+        try {
+            compiler.compile(new File(tempDir(), "big.xml"));
+            Assert.fail("expected the sprite to be refused");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("big.png"));
+        }
+    }
+
+    public void registryFindsSpritesByName() throws Exception {
+        File dir = tempDir();
+        AtlasCompiler compiler = new AtlasCompiler();
+        compiler.add("res/ship.png", image(16, 16, 0, 1));
+        File first = new File(dir, "first.xml");
+        compiler.compile(first);
+
+        compiler = new AtlasCompiler();
+        compiler.add("res/ship.png", image(16, 16, 0, 2));
+        compiler.add("res/rock.png", image(8, 8, 0, 3));
+        File second = new File(dir, "second.xml");
+        compiler.compile(second);
+
+        TextureAtlas a = new TextureAtlas(first.getAbsolutePath());
+        TextureAtlas b = new TextureAtlas(second.getAbsolutePath());
+        Assert.assertNull(AtlasRegistry.getRegion("res/ship.png"));
+
+        AtlasRegistry.register(a);
+        AtlasRegistry.register(b);
+        Assert.assertEquals(AtlasRegistry.getAtlasCount(), 2);
+        Assert.assertSame(AtlasRegistry.getRegion("res/ship.png").getAtlas(), b);
+        Assert.assertSame(AtlasRegistry.getRegion("res\\rock.png").getAtlas(), b);
+
+        AtlasRegistry.unregister(b);
+        Assert.assertSame(AtlasRegistry.getRegion("res/ship.png").getAtlas(), a);
+        Assert.assertNull(AtlasRegistry.getRegion("res/rock.png"));
+    }
+}
@@ -0,0 +1,97 @@
+package org.newdawn.slick.atlas;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.LWJGLException;
+import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.DisplayMode;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.newdawn.slick.tests.util.TestWithLWJGL;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups="display")
+public class AtlasImageTest extends TestWithLWJGL {
+
+    private TextureAtlas atlas;
+    private String ship;
+
+    @BeforeClass
+    public void createDisplay() throws Exception {
+        Display.setDisplayMode(new DisplayMode(16, 16));
+        Display.create();
+
+        SGL gl = Renderer.get();
+        gl.initDisplay(16, 16);
+        gl.enterOrtho(16, 16);
+
+        File dir = File.createTempFile("atlas", "");
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+
+        // the sprite is written out too, so it can be loaded without the atlas
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                image.setRGB(x, y, 0xff000000 | (y << 12) | (x << 4));
+            }
+        }
+        File file = new File(dir, "ship.png");
+        ImageIO.write(image, "PNG", file);
+        ship = file.getAbsolutePath();
+
+        AtlasCompiler compiler = new AtlasCompiler();
+        compiler.add(ship, image);
+        File descriptor = new File(dir, "ships.xml");
+        compiler.compile(descriptor);
+        atlas = new TextureAtlas(descriptor.getAbsolutePath(), Image.FILTER_LINEAR);
+        AtlasRegistry.register(atlas);
+    }
+
+    @AfterClass
+    public void destroyDisplay() throws LWJGLException {
+        AtlasRegistry.clear();
+        Display.destroy();
+    }
+
+    public void imagesWithTheAtlasFilterShareThePage() throws SlickException {
+        Image image = new Image(ship);
+        Assert.assertSame(image.getTexture(), atlas.getPage(0).getTexture());
+
+        Image nearest = new Image(ship, false, Image.FILTER_NEAREST);
+        Assert.assertNotSame(nearest.getTexture(), atlas.getPage(0).getTexture());
+        Assert.assertEquals(nearest.getFilter(), SGL.GL_NEAREST);
+        nearest.destroy();
+    }
+
+    public void theFilterOfTheSharedPageCantBeChanged() throws SlickException {
+        Image image = new Image(ship);
+        image.setFilter(Image.FILTER_LINEAR);
+        try {
+            image.setFilter(Image.FILTER_NEAREST);
+            Assert.fail("Expected the filter change to be refused");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        try {
+            image.copy().setFilter(Image.FILTER_NEAREST);
+            Assert.fail("Expected the filter change to be refused");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test(expectedExceptions = SlickException.class)
+    public void theSharedPageCantBeDrawnTo() throws SlickException {
+        new Image(ship).getGraphics();
+    }
+}
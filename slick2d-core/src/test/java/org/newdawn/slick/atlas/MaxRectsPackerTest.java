@@ -0,0 +1,158 @@
+package org.newdawn.slick.atlas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class MaxRectsPackerTest {
+
+    private static void assertNoOverlap(List<int[]> placed, int width, int height) {
+        for (int i = 0; i < placed.size(); i++) {
+            int[] a = placed.get(i);
+            Assert.assertTrue(a[0] >= 0 && a[1] >= 0 && a[0] + a[2] <= width && a[1] + a[3] <= height);
+            for (int j = i + 1; j < placed.size(); j++) {
+                int[] b = placed.get(j);
+                boolean apart = a[0] + a[2] <= b[0] || b[0] + b[2] <= a[0]
+                        || a[1] + a[3] <= b[1] || b[1] + b[3] <= a[1];
+                Assert.assertTrue(apart, "rectangles " + i + " and " + j + " overlap");
+            }
+        }
+    }
+
+    public void packsMixedSizesWithoutOverlapping() {
+        Random random = new Random(3);
+        MaxRectsPacker packer = new MaxRectsPacker(512, 512, false);
+        List<int[]> placed = new ArrayList<int[]>();
+        int[] result = new int[3];
+        long area = 0;
+        for (int i = 0; i < 400; i++) {
+            int w = 4 + random.nextInt(60);
+            int h = 4 + random.nextInt(60);
+            if (packer.insert(w, h, result)) {
+                Assert.assertEquals(result[2], 0);
+                placed.add(new int[] {result[0], result[1], w, h});
+                area += w * h;
+            }
+        }
+
+        assertNoOverlap(placed, 512, 512);
+        Assert.assertEquals(packer.getOccupancy(), area / (512f * 512f), 0.0001f);
+        // row packing these manages about 70%
+        Assert.assertTrue(packer.getOccupancy() > 0.85f, "occupancy " + packer.getOccupancy());
+    }
+
+    public void fillsTheAreaExactlyWithMatchingTiles() {
+        MaxRectsPacker packer = new MaxRectsPacker(64, 64, false);
+        int[] result = new int[3];
+        for (int i = 0; i < 16; i++) {
+            Assert.assertTrue(packer.insert(16, 16, result));
+        }
+        Assert.assertFalse(packer.insert(1, 1, result));
+        Assert.assertEquals(packer.getOccupancy(), 1f);
+        Assert.assertEquals(packer.getUsedWidth(), 64);
+        Assert.assertEquals(packer.getUsedHeight(), 64);
+    }
+
+    public void rotatesRectanglesThatOnlyFitTurned() {
+        MaxRectsPacker packer = new MaxRectsPacker(100, 40, true);
+        int[] result = new int[3];
+        Assert.assertTrue(packer.insert(30, 90, result));
+        Assert.assertEquals(result[2], 1);
+
+        MaxRectsPacker fixed = new MaxRectsPacker(100, 40, false);
+        Assert.assertFalse(fixed.insert(30, 90, result));
+    }
+
+    public void reusesFreedSpace() {
+        MaxRectsPacker packer = new MaxRectsPacker(64, 64, false);
+        int[] result = new int[3];
+        List<int[]> placed = new ArrayList<int[]>();
+        for (int i = 0; i < 16; i++) {
+            packer.insert(16, 16, result);
+            placed.add(new int[] {result[0], result[1], 16, 16});
+        }
+
+        // free a 2x2 block of tiles, which should join back into one 32x32 space
+        int[][] freed = new int[][] {{0, 0}, {16, 0}, {0, 16}, {16, 16}};
+        for (int[] f : freed) {
+            packer.free(f[0], f[1], 16, 16);
+            for (int i = 0; i < placed.size(); i++) {
+                if (placed.get(i)[0] == f[0] && placed.get(i)[1] == f[1]) {
+                    placed.remove(i);
+                }
+            }
+        }
+        Assert.assertEquals(packer.getOccupancy(), 0.75f);
+
+        Assert.assertTrue(packer.insert(32, 32, result));
+        Assert.assertEquals(result[0], 0);
+        Assert.assertEquals(result[1], 0);
+        placed.add(new int[] {0, 0, 32, 32});
+        assertNoOverlap(placed, 64, 64);
+        Assert.assertFalse(packer.insert(1, 1, result));
+    }
+
+    public void freedSpaceJoinsWithFreeSpaceThatDoesntLineUp() {
+        MaxRectsPacker packer = new MaxRectsPacker(64, 64, false);
+        int[] result = new int[3];
+        // a column down the left, and two stacked rectangles to its right
+        Assert.assertTrue(packer.insert(32, 64, result));
+        Assert.assertEquals(result[0], 0);
+        Assert.assertTrue(packer.insert(32, 16, result));
+        Assert.assertEquals(result[0], 32);
+        Assert.assertEquals(result[1], 0);
+        Assert.assertTrue(packer.insert(32, 48, result));
+        Assert.assertEquals(result[1], 16);
+
+        // the freed spaces don't share a whole edge, but together leave a
+        // 64x16 strip along the top
+        packer.free(0, 0, 32, 64);
+        packer.free(32, 0, 32, 16);
+        Assert.assertTrue(packer.insert(64, 16, result));
+        Assert.assertEquals(result[0], 0);
+        Assert.assertEquals(result[1], 0);
+        Assert.assertTrue(packer.insert(32, 48, result));
+        Assert.assertFalse(packer.insert(1, 1, result));
+    }
+
+    public void freeingEverythingLeavesTheWholeArea() {
+        Random random = new Random(5);
+        MaxRectsPacker packer = new MaxRectsPacker(256, 256, false);
+        List<int[]> placed = new ArrayList<int[]>();
+        int[] result = new int[3];
+        for (int i = 0; i < 200; i++) {
+            int w = 4 + random.nextInt(40);
+            int h = 4 + random.nextInt(40);
+            if (packer.insert(w, h, result)) {
+                placed.add(new int[] {result[0], result[1], w, h});
+            }
+        }
+
+        // free in a scattered order, checking the space left stays usable
+        while (!placed.isEmpty()) {
+            int[] rect = placed.remove(random.nextInt(placed.size()));
+            packer.free(rect[0], rect[1], rect[2], rect[3]);
+            if (packer.insert(rect[2], rect[3], result)) {
+                placed.add(new int[] {result[0], result[1], rect[2], rect[3]});
+                assertNoOverlap(placed, 256, 256);
+                placed.remove(placed.size() - 1);
+                packer.free(result[0], result[1], rect[2], rect[3]);
+            } else {
+                Assert.fail("freed space can't be used again");
+            }
+        }
+        Assert.assertEquals(packer.getOccupancy(), 0f);
+        Assert.assertTrue(packer.insert(256, 256, result));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void freeingSpaceNeverPlacedFails() {
+        MaxRectsPacker packer = new MaxRectsPacker(64, 64, false);
+        packer.insert(16, 16, new int[3]);
+        packer.free(16, 16, 16, 16);
+    }
+}
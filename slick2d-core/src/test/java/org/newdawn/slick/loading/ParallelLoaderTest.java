@@ -0,0 +1,216 @@
+package org.newdawn.slick.loading;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(singleThreaded = true)
+public class ParallelLoaderTest {
+
+    private static final Set<Thread> decodeThreads = Collections.synchronizedSet(new HashSet<Thread>());
+
+    /**
+     * A resource that records the threads it's decoded and uploaded on, and can be held in decode.
+     */
+    private static class FakeResource implements DecodableResource {
+        private final String name;
+        private final CountDownLatch release;
+        private final int uploadMillis;
+        private volatile boolean decoded;
+        private boolean uploaded;
+        private Thread uploadThread;
+
+        FakeResource(String name, CountDownLatch release, int uploadMillis) {
+            this.name = name;
+            this.release = release;
+            this.uploadMillis = uploadMillis;
+            LoadingList.get().add(this);
+        }
+
+        public void decode() throws IOException {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted");
+            }
+            if (name.startsWith("broken")) {
+                throw new IOException("can't decode " + name);
+            }
+            decodeThreads.add(Thread.currentThread());
+            decoded = true;
+        }
+
+        public void upload() throws IOException {
+            Assert.assertTrue(decoded, name);
+            uploadThread = Thread.currentThread();
+            uploaded = true;
+            if (uploadMillis > 0) {
+                try {
+                    Thread.sleep(uploadMillis);
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+            }
+        }
+
+        public void load() throws IOException {
+            decode();
+            upload();
+        }
+
+        public String getDescription() {
+            return name;
+        }
+    }
+
+    /**
+     * A resource that can only be loaded in one go.
+     */
+    private static class PlainResource implements DeferredResource {
+        private Thread loadThread;
+
+        PlainResource() {
+            LoadingList.get().add(this);
+        }
+
+        public void load() {
+            loadThread = Thread.currentThread();
+        }
+
+        public String getDescription() {
+            return "plain";
+        }
+    }
+
+    @BeforeMethod
+    public void emptyList() {
+        while (LoadingList.get().getNext() != null) {
+            // drain anything left by another test
+        }
+        decodeThreads.clear();
+    }
+
+    private static void waitFor(ParallelLoader loader, int updates) throws IOException {
+        for (int i = 0; i < updates; i++) {
+            if (loader.update()) {
+                return;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Assert.fail("interrupted");
+            }
+        }
+        Assert.fail("loading didn't complete");
+    }
+
+    public void decodesOnWorkersAndUploadsOnTheCallingThread() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeResource[] resources = new FakeResource[6];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = new FakeResource("image" + i, release, 0);
+        }
+        PlainResource plain = new PlainResource();
+        int total = LoadingList.get().getTotalResources();
+
+        ParallelLoader loader = new ParallelLoader(3);
+        try {
+            // nothing can be uploaded while decoding is held up, so everything is still remaining
+            Assert.assertFalse(loader.update());
+            Assert.assertEquals(LoadingList.get().getRemainingResources(), 7);
+            Assert.assertEquals(LoadingList.get().getTotalResources(), total);
+
+            release.countDown();
+            waitFor(loader, 1000);
+        } finally {
+            loader.shutdown();
+        }
+
+        Assert.assertEquals(LoadingList.get().getRemainingResources(), 0);
+        Assert.assertTrue(loader.isComplete());
+        for (int i = 0; i < resources.length; i++) {
+            Assert.assertTrue(resources[i].uploaded);
+            Assert.assertSame(resources[i].uploadThread, Thread.currentThread());
+        }
+        Assert.assertSame(plain.loadThread, Thread.currentThread());
+        Assert.assertFalse(decodeThreads.contains(Thread.currentThread()));
+        Assert.assertFalse(decodeThreads.isEmpty());
+    }
+
+    public void limitsUploadsToTheBudget() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeResource[] resources = new FakeResource[4];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = new FakeResource("slow" + i, release, 20);
+        }
+
+        ParallelLoader loader = new ParallelLoader(4);
+        loader.setUploadBudget(30);
+        try {
+            loader.update();
+            release.countDown();
+            for (int i = 0; i < resources.length; i++) {
+                while (!resources[i].decoded) {
+                    Thread.yield();
+                }
+            }
+
+            loader.update();
+            // the first upload always goes through, the second is within the budget, the third isn't
+            Assert.assertEquals(countUploaded(resources), 2);
+            Assert.assertEquals(LoadingList.get().getRemainingResources(), 2);
+            waitFor(loader, 1000);
+        } finally {
+            loader.shutdown();
+        }
+        Assert.assertEquals(countUploaded(resources), 4);
+    }
+
+    private static int countUploaded(FakeResource[] resources) {
+        int count = 0;
+        for (int i = 0; i < resources.length; i++) {
+            if (resources[i].uploaded) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void reportsDecodeFailuresAndCarriesOn() throws IOException {
+        CountDownLatch release = new CountDownLatch(0);
+        new FakeResource("broken", release, 0);
+        FakeResource after = new FakeResource("after", release, 0);
+
+        ParallelLoader loader = new ParallelLoader(1);
+        loader.setUploadBudget(1000);
+        try {
+            boolean failed = false;
+            for (int i = 0; (i < 1000) && !loader.isComplete(); i++) {
+                try {
+                    loader.update();
+                } catch (IOException e) {
+                    Assert.assertEquals(e.getMessage(), "Failed to decode: broken");
+                    Assert.assertEquals(e.getCause().getMessage(), "can't decode broken");
+                    failed = true;
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Assert.fail("interrupted");
+                }
+            }
+            Assert.assertTrue(failed);
+        } finally {
+            loader.shutdown();
+        }
+        Assert.assertTrue(after.uploaded);
+        Assert.assertEquals(LoadingList.get().getRemainingResources(), 0);
+    }
+}
@@ -0,0 +1,245 @@
+package org.newdawn.slick.opengl;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.ImageBuffer;
+import org.newdawn.slick.opengl.renderer.RecordingSGL;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class DynamicAtlasTest {
+
+    /**
+     * An SGL that keeps the pixels of the textures uploaded, so what ends up on
+     * the pages can be checked without a display.
+     */
+    private static class TextureSGL extends RecordingSGL {
+        private Map<Integer, byte[]> textures = new HashMap<Integer, byte[]>();
+        private Map<Integer, Integer> widths = new HashMap<Integer, Integer>();
+        private int nextId = 1;
+        private int bound;
+
+        public void glGenTextures(IntBuffer ids) {
+            ids.put(ids.position(), nextId++);
+        }
+
+        public void glBindTexture(int target, int id) {
+            bound = id;
+        }
+
+        public void glDeleteTextures(IntBuffer ids) {
+            textures.remove(ids.get(ids.position()));
+        }
+
+        public void glTexImage2D(int target, int i, int dstPixelFormat, int width, int height, int j,
+                int srcPixelFormat, int glUnsignedByte, ByteBuffer textureBuffer) {
+            byte[] pixels = new byte[width * height * 4];
+            textureBuffer.duplicate().get(pixels);
+            textures.put(bound, pixels);
+            widths.put(bound, width);
+        }
+
+        public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY, int width, int height,
+                int glBgra, int glUnsignedByte, ByteBuffer pixels) {
+            byte[] texture = textures.get(bound);
+            int stride = widths.get(bound) * 4;
+            ByteBuffer source = pixels.duplicate();
+            for (int y = 0; y < height; y++) {
+                source.get(texture, (pageY + y) * stride + pageX * 4, width * 4);
+            }
+        }
+
+        public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+            pixels.duplicate().put(textures.get(bound));
+        }
+
+        int textureCount() {
+            return textures.size();
+        }
+
+        int pixel(Texture texture, int x, int y) {
+            byte[] pixels = textures.get(texture.getTextureID());
+            int ofs = (y * widths.get(texture.getTextureID()) + x) * 4;
+            return ((pixels[ofs] & 0xff) << 24) | ((pixels[ofs + 1] & 0xff) << 16)
+                    | ((pixels[ofs + 2] & 0xff) << 8) | (pixels[ofs + 3] & 0xff);
+        }
+    }
+
+    /**
+     * Create RGBA pixels for an image, each encoding the seed and its position
+     */
+    private static ByteBuffer pixels(int width, int height, int seed) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                buffer.put((byte) seed).put((byte) x).put((byte) y).put((byte) 255);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void assertPixels(TextureSGL gl, Image image, int seed) {
+        DynamicAtlasImage placed = (DynamicAtlasImage) image;
+        Assert.assertFalse(placed.isDestroyed());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                Assert.assertEquals(gl.pixel(image.getTexture(), placed.getPageX() + x, placed.getPageY() + y),
+                        (seed << 24) | (x << 16) | (y << 8) | 255);
+            }
+        }
+        Assert.assertEquals(image.getTextureOffsetX(), placed.getPageX() / (float) image.getTexture().getTextureWidth());
+        Assert.assertEquals(image.getTextureOffsetY(), placed.getPageY() / (float) image.getTexture().getTextureHeight());
+        Assert.assertEquals(image.getTextureWidth(), image.getWidth() / (float) image.getTexture().getTextureWidth());
+    }
+
+    public void packsImagesIntoSharedPages() {
+        TextureSGL gl = new TextureSGL();
+        DynamicAtlas atlas = new DynamicAtlas(gl, 60, 64, Image.FILTER_NEAREST);
+        Assert.assertEquals(atlas.getPageWidth(), 64);
+
+        List<Image> images = new ArrayList<Image>();
+        for (int i = 0; i < 9; i++) {
+            images.add(atlas.add(20, 20, pixels(20, 20, i + 1)));
+        }
+
+        // nine 21x21 cells fill a 65x65 packing area
+        Assert.assertEquals(atlas.getPageCount(), 1);
+        Assert.assertEquals(atlas.getImageCount(), 9);
+        for (int i = 0; i < images.size(); i++) {
+            Assert.assertSame(images.get(i).getTexture(), atlas.getPage(0));
+            assertPixels(gl, images.get(i), i + 1);
+        }
+
+        Image overflow = atlas.add(8, 8, pixels(8, 8, 10));
+        Assert.assertEquals(atlas.getPageCount(), 2);
+        Assert.assertSame(overflow.getTexture(), atlas.getPage(1));
+        assertPixels(gl, overflow, 10);
+        Assert.assertFalse(atlas.fits(65, 10));
+    }
+
+    public void destroyingImagesGivesBackTheirSpace() throws Exception {
+        TextureSGL gl = new TextureSGL();
+        DynamicAtlas atlas = new DynamicAtlas(gl, 64, 64, Image.FILTER_NEAREST);
+        List<Image> images = new ArrayList<Image>();
+        for (int i = 0; i < 9; i++) {
+            images.add(atlas.add(20, 20, pixels(20, 20, i + 1)));
+        }
+        Image overflow = atlas.add(8, 8, pixels(8, 8, 10));
+        Assert.assertEquals(gl.textureCount(), 2);
+
+        // the second page is released once it's empty
+        overflow.destroy();
+        Assert.assertEquals(atlas.getPageCount(), 1);
+        Assert.assertEquals(gl.textureCount(), 1);
+
+        DynamicAtlasImage freed = (DynamicAtlasImage) images.get(4);
+        freed.destroy();
+        Assert.assertEquals(atlas.getImageCount(), 8);
+        Image again = atlas.add(20, 20, pixels(20, 20, 11));
+        Assert.assertEquals(atlas.getPageCount(), 1);
+        Assert.assertEquals(((DynamicAtlasImage) again).getPageX(), freed.getPageX());
+        Assert.assertEquals(((DynamicAtlasImage) again).getPageY(), freed.getPageY());
+        assertPixels(gl, again, 11);
+    }
+
+    public void defragmentMovesImagesOntoFewerPages() throws Exception {
+        TextureSGL gl = new TextureSGL();
+        DynamicAtlas atlas = new DynamicAtlas(gl, 64, 64, Image.FILTER_LINEAR);
+        List<Image> images = new ArrayList<Image>();
+        for (int i = 0; i < 18; i++) {
+            images.add(atlas.add(20, 20 - (i % 3), pixels(20, 20 - (i % 3), i + 1)));
+        }
+        Assert.assertEquals(atlas.getPageCount(), 2);
+
+        // leave every other image, spread over both pages
+        List<Integer> kept = new ArrayList<Integer>();
+        for (int i = 0; i < images.size(); i++) {
+            if (i % 2 == 0) {
+                kept.add(i);
+            } else {
+                images.get(i).destroy();
+            }
+        }
+        Assert.assertEquals(atlas.getPageCount(), 2);
+        float before = atlas.getOccupancy();
+
+        Assert.assertEquals(atlas.defragment(), 1);
+        Assert.assertEquals(atlas.getPageCount(), 1);
+        Assert.assertEquals(gl.textureCount(), 1);
+        Assert.assertEquals(atlas.getImageCount(), 9);
+        Assert.assertEquals(atlas.getOccupancy(), before * 2, 0.0001f);
+        for (int i : kept) {
+            Assert.assertSame(images.get(i).getTexture(), atlas.getPage(0));
+            assertPixels(gl, images.get(i), i + 1);
+        }
+    }
+
+    public void texturesFromBeforeDefragmentCantBeDrawn() throws Exception {
+        TextureSGL gl = new TextureSGL();
+        DynamicAtlas atlas = new DynamicAtlas(gl, 64, 64, Image.FILTER_NEAREST);
+        Image first = atlas.add(20, 20, pixels(20, 20, 1));
+        atlas.add(20, 20, pixels(20, 20, 2)).destroy();
+        Image last = atlas.add(20, 20, pixels(20, 20, 3));
+
+        // what sub-images and copies of the images keep drawing from
+        Texture old = last.getTexture();
+        atlas.defragment();
+        Assert.assertNotSame(last.getTexture(), old);
+        Assert.assertSame(last.getTexture(), first.getTexture());
+        Assert.assertEquals(last.getTexture().getTextureID(), old.getTextureID());
+        assertPixels(gl, last, 3);
+        try {
+            old.bind();
+            Assert.fail("Expected the old page texture to be refused");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // destroying an image cut from the page leaves the page alone
+        old.release();
+        Assert.assertEquals(gl.textureCount(), 1);
+
+        Texture current = last.getTexture();
+        atlas.destroy();
+        Assert.assertEquals(gl.textureCount(), 0);
+        try {
+            current.bind();
+            Assert.fail("Expected the released page texture to be refused");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    public void copiesImageBuffersWithoutTheirTexturePadding() {
+        TextureSGL gl = new TextureSGL();
+        DynamicAtlas atlas = new DynamicAtlas(gl, 64, 64, Image.FILTER_NEAREST);
+        ImageBuffer buffer = new ImageBuffer(5, 3);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                buffer.setRGBA(x, y, 7, x, y, 255);
+            }
+        }
+
+        Image image = atlas.add(buffer);
+        Assert.assertEquals(image.getWidth(), 5);
+        Assert.assertEquals(image.getHeight(), 3);
+        byte[] rgba = buffer.getRGBA();
+        DynamicAtlasImage placed = (DynamicAtlasImage) image;
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                int ofs = (y * buffer.getTexWidth() + x) * 4;
+                int expected = ((rgba[ofs] & 0xff) << 24) | ((rgba[ofs + 1] & 0xff) << 16)
+                        | ((rgba[ofs + 2] & 0xff) << 8) | (rgba[ofs + 3] & 0xff);
+                Assert.assertEquals(gl.pixel(image.getTexture(), placed.getPageX() + x, placed.getPageY() + y), expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.newdawn.slick.opengl;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A simple benchmark of decoding PNGs with PNGDecoder against the decoder it
+ * replaced, LegacyPNGDecoder, and with PNGImageData, single threaded and with
+ * the decode pipelined across two threads, against ImageIOImageData. The
+ * images are generated and written by ImageIO so it can be run without any
+ * resources or a display.
+ */
+public class PNGDecodeBenchmark {
+	/** The number of times each image is decoded before timing */
+	private static final int WARMUP = 5;
+	/** The number of times each image is decoded while timing */
+	private static final int ROUNDS = 10;
+
+	/**
+	 * Decodes an image in one of the ways being compared
+	 */
+	private interface Decoder {
+		/**
+		 * Decode an image
+		 *
+		 * @param data The encoded image
+		 * @throws IOException Indicates a failure to decode the image
+		 */
+		void decode(byte[] data) throws IOException;
+	}
+
+	/**
+	 * Create an encoded image with smooth gradients and some noise, which gives
+	 * a mix of the PNG filters
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param alpha True if the image should have an alpha channel
+	 * @return The image encoded as a PNG
+	 * @throws IOException Indicates a failure to encode the image
+	 */
+	private static byte[] createImage(int width, int height, boolean alpha) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(1);
+		for (int y=0;y<height;y++) {
+			for (int x=0;x<width;x++) {
+				int r = (x * 255) / width;
+				int g = (y * 255) / height;
+				int b = ((x + y) & 63) + random.nextInt(16);
+				int a = alpha ? 255 - ((x * y) & 127) : 255;
+				image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "PNG", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Time decoding an image a number of times, reporting the average
+	 *
+	 * @param name The name of the way the image is decoded
+	 * @param decoder The decoder to time
+	 * @param data The encoded image
+	 * @throws IOException Indicates a failure to decode the image
+	 */
+	private static void time(String name, Decoder decoder, byte[] data) throws IOException {
+		for (int i=0;i<WARMUP;i++) {
+			decoder.decode(data);
+		}
+
+		long start = System.nanoTime();
+		for (int i=0;i<ROUNDS;i++) {
+			decoder.decode(data);
+		}
+		long time = (System.nanoTime() - start) / ROUNDS;
+
+		System.out.println("  "+name+": "+(time / 10000) / 100f+"ms");
+	}
+
+	/**
+	 * Compare the decoders on an image
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param alpha True if the image should have an alpha channel
+	 * @throws IOException Indicates a failure to encode or decode the image
+	 */
+	private static void compare(int width, int height, boolean alpha) throws IOException {
+		byte[] data = createImage(width, height, alpha);
+		System.out.println(width+"x"+height+(alpha ? " RGBA" : " RGB")+", "+(data.length / 1024)+"KB");
+
+		time("LegacyPNGDecoder", new Decoder() {
+			public void decode(byte[] data) throws IOException {
+				LegacyPNGDecoder decoder = new LegacyPNGDecoder(new ByteArrayInputStream(data));
+				int perPixel = decoder.hasAlpha() ? 4 : 3;
+				ByteBuffer buffer = ByteBuffer.allocateDirect(decoder.getWidth() * decoder.getHeight() * perPixel);
+				decoder.decode(buffer, decoder.getWidth() * perPixel, perPixel == 4 ? LegacyPNGDecoder.RGBA : LegacyPNGDecoder.RGB);
+			}
+		}, data);
+		time("PNGDecoder", new Decoder() {
+			public void decode(byte[] data) throws IOException {
+				PNGDecoder decoder = new PNGDecoder(new ByteArrayInputStream(data));
+				int perPixel = decoder.hasAlpha() ? 4 : 3;
+				ByteBuffer buffer = ByteBuffer.allocateDirect(decoder.getWidth() * decoder.getHeight() * perPixel);
+				decoder.decode(buffer, decoder.getWidth() * perPixel, perPixel == 4 ? PNGDecoder.RGBA : PNGDecoder.RGB);
+			}
+		}, data);
+		time("PNGImageData", new Decoder() {
+			public void decode(byte[] data) throws IOException {
+				PNGImageData.setPipelineThreshold(Integer.MAX_VALUE);
+				try {
+					new PNGImageData().loadImage(new ByteArrayInputStream(data), false, true, null);
+				} finally {
+					PNGImageData.setPipelineThreshold(PNGImageData.DEFAULT_PIPELINE_THRESHOLD);
+				}
+			}
+		}, data);
+		time("PNGImageData pipelined", new Decoder() {
+			public void decode(byte[] data) throws IOException {
+				PNGImageData.setPipelineThreshold(0);
+				try {
+					new PNGImageData().loadImage(new ByteArrayInputStream(data), false, true, null);
+				} finally {
+					PNGImageData.setPipelineThreshold(PNGImageData.DEFAULT_PIPELINE_THRESHOLD);
+				}
+			}
+		}, data);
+		time("ImageIOImageData", new Decoder() {
+			public void decode(byte[] data) throws IOException {
+				new ImageIOImageData().loadImage(new ByteArrayInputStream(data), false, true, null);
+			}
+		}, data);
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the benchmark
+	 * @throws Exception Indicates a failure to encode or decode the images
+	 */
+	public static void main(String[] argv) throws Exception {
+		compare(256, 256, true);
+		compare(1000, 700, false);
+		compare(2048, 2048, true);
+		compare(3000, 2000, false);
+	}
+}
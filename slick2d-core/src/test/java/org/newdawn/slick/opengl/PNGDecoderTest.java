@@ -0,0 +1,204 @@
+package org.newdawn.slick.opengl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test
+public class PNGDecoderTest {
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void createExecutor() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertTrue(ImageIO.write(image, "PNG", out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Fill an image with noise and gradients, so the encoder uses a mix of filters
+     */
+    private static BufferedImage fill(BufferedImage image, int seed) {
+        Random random = new Random(seed);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int argb = random.nextInt(4) == 0 ? random.nextInt()
+                        : ((x * 7) << 24) | ((x + y) << 16) | ((y * 3) << 8) | (x ^ y);
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage indexed(int width, int height, int bits, boolean alpha) {
+        int size = 1 << bits;
+        byte[] r = new byte[size];
+        byte[] g = new byte[size];
+        byte[] b = new byte[size];
+        byte[] a = new byte[size];
+        for (int i = 0; i < size; i++) {
+            r[i] = (byte) (i * 37);
+            g[i] = (byte) (255 - i * 11);
+            b[i] = (byte) (i * 5);
+            a[i] = (byte) (alpha ? i * 255 / Math.max(1, size - 1) : 255);
+        }
+        IndexColorModel model = alpha ? new IndexColorModel(bits, size, r, g, b, a) : new IndexColorModel(bits, size, r, g, b);
+        BufferedImage image = new BufferedImage(width, height,
+                bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, model);
+        Random random = new Random(bits);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.getRaster().setSample(x, y, 0, (x + y + random.nextInt(2)) % size);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Decode an image as RGBA at a stride wider than the image, with and without
+     * pipelining, and check it against ImageIO
+     */
+    private void assertDecodes(BufferedImage image) throws IOException {
+        byte[] data = encode(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+        for (int pass = 0; pass < 2; pass++) {
+            PNGDecoder decoder = new PNGDecoder(new ByteArrayInputStream(data));
+            Assert.assertEquals(decoder.getWidth(), width);
+            Assert.assertEquals(decoder.getHeight(), height);
+            int stride = (width + 3) * 4;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(stride * height + 8);
+            buffer.position(8);
+            decoder.decode(buffer, stride, PNGDecoder.RGBA, pass == 0 ? null : executor);
+
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int argb = expected.getRGB(x, y);
+                    int ofs = 8 + y * stride + x * 4;
+                    int alpha = buffer.get(ofs + 3) & 0xff;
+                    Assert.assertEquals(alpha, argb >>> 24, "alpha at " + x + "," + y);
+                    if (alpha != 0) {
+                        int rgb = ((buffer.get(ofs) & 0xff) << 16) | ((buffer.get(ofs + 1) & 0xff) << 8) | (buffer.get(ofs + 2) & 0xff);
+                        Assert.assertEquals(rgb, argb & 0xffffff, "pixel at " + x + "," + y);
+                    }
+                }
+                // the gap after each row is left alone
+                Assert.assertEquals(buffer.get(8 + y * stride + width * 4), 0);
+            }
+        }
+    }
+
+    public void decodesTruecolourWithAndWithoutAlpha() throws IOException {
+        assertDecodes(fill(new BufferedImage(37, 23, BufferedImage.TYPE_INT_ARGB), 1));
+        assertDecodes(fill(new BufferedImage(37, 23, BufferedImage.TYPE_INT_RGB), 2));
+    }
+
+    public void decodesLargeImagesInManyStrips() throws IOException {
+        // several strips of rows, so the pipeline has to wrap around its slots
+        assertDecodes(fill(new BufferedImage(301, 700, BufferedImage.TYPE_INT_ARGB), 3));
+        assertDecodes(fill(new BufferedImage(1200, 90, BufferedImage.TYPE_INT_RGB), 4));
+    }
+
+    public void decodesPalettesOfEveryDepth() throws IOException {
+        for (int bits : new int[] {1, 2, 4, 8}) {
+            assertDecodes(indexed(29, 11, bits, false));
+            assertDecodes(indexed(29, 11, bits, true));
+        }
+    }
+
+    public void convertsToOtherFormats() throws IOException {
+        BufferedImage image = fill(new BufferedImage(5, 4, BufferedImage.TYPE_INT_ARGB), 5);
+        byte[] data = encode(image);
+
+        ByteBuffer rgba = ByteBuffer.allocate(5 * 4 * 4);
+        new PNGDecoder(new ByteArrayInputStream(data)).decode(rgba, 5 * 4, PNGDecoder.RGBA);
+        ByteBuffer bgra = ByteBuffer.allocate(5 * 4 * 4);
+        new PNGDecoder(new ByteArrayInputStream(data)).decode(bgra, 5 * 4, PNGDecoder.BGRA);
+        ByteBuffer abgr = ByteBuffer.allocate(5 * 4 * 4);
+        new PNGDecoder(new ByteArrayInputStream(data)).decode(abgr, 5 * 4, PNGDecoder.ABGR);
+        ByteBuffer rgb = ByteBuffer.allocate(5 * 4 * 3);
+        new PNGDecoder(new ByteArrayInputStream(data)).decode(rgb, 5 * 3, PNGDecoder.RGB);
+
+        for (int i = 0; i < 20; i++) {
+            int argb = image.getRGB(i % 5, i / 5);
+            Assert.assertEquals(rgba.getInt(i * 4), (argb << 8) | (argb >>> 24));
+            Assert.assertEquals(bgra.getInt(i * 4), ((argb & 0xff) << 24) | ((argb & 0xff00) << 8)
+                    | ((argb >> 8) & 0xff00) | (argb >>> 24));
+            Assert.assertEquals(abgr.getInt(i * 4), (argb & 0xff000000) | ((argb & 0xff) << 16) | (argb & 0xff00)
+                    | ((argb >> 16) & 0xff));
+            Assert.assertEquals(((rgb.getShort(i * 3) & 0xffff) << 8) | (rgb.get(i * 3 + 2) & 0xff), argb & 0xffffff);
+        }
+    }
+
+    public void reportsFailuresFromEitherThread() throws IOException {
+        byte[] data = encode(fill(new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB), 6));
+        byte[] truncated = Arrays.copyOf(data, data.length / 2);
+        for (int pass = 0; pass < 2; pass++) {
+            PNGDecoder decoder = new PNGDecoder(new ByteArrayInputStream(truncated));
+            try {
+                decoder.decode(ByteBuffer.allocateDirect(400 * 400 * 4), 400 * 4, PNGDecoder.RGBA, pass == 0 ? null : executor);
+                Assert.fail("expected the decode to fail");
+            } catch (EOFException e) {
+                // expected
+            }
+        }
+
+        // a buffer too small for the image fails on the thread writing the rows,
+        // and is reported back to the caller
+        PNGDecoder decoder = new PNGDecoder(new ByteArrayInputStream(data));
+        try {
+            decoder.decode(ByteBuffer.allocate(16), 400 * 4, PNGDecoder.RGBA, executor);
+            Assert.fail("expected the decode to fail");
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+    }
+
+    public void forcesAlphaWhenDecodingStraightToTextures() throws IOException {
+        BufferedImage image = fill(new BufferedImage(10, 6, BufferedImage.TYPE_INT_RGB), 7);
+        PNGImageData data = new PNGImageData();
+        ByteBuffer buffer = data.loadImage(new ByteArrayInputStream(encode(image)), false, true, null);
+
+        Assert.assertEquals(data.getDepth(), 32);
+        Assert.assertEquals(data.getTexWidth(), 16);
+        Assert.assertEquals(data.getTexHeight(), 8);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 10; x++) {
+                int ofs = (y * 16 + x) * 4;
+                int rgb = ((buffer.get(ofs) & 0xff) << 16) | ((buffer.get(ofs + 1) & 0xff) << 8) | (buffer.get(ofs + 2) & 0xff);
+                Assert.assertEquals(rgb, image.getRGB(x, y) & 0xffffff);
+                Assert.assertEquals(buffer.get(ofs + 3), (byte) 255);
+            }
+        }
+        // past the edge copied for filtering the texture is clear
+        Assert.assertEquals(buffer.get((2 * 16 + 13) * 4 + 3), 0);
+    }
+}
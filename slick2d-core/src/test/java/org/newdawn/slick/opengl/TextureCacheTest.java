@@ -0,0 +1,129 @@
+package org.newdawn.slick.opengl;
+
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class TextureCacheTest {
+
+    /** The size of a 64x64 RGBA8 texture */
+    private static final int SIZE = 64 * 64 * 4;
+
+    /**
+     * A texture that records being evicted rather than releasing a GL texture.
+     */
+    private static class FakeTexture extends TextureImpl {
+        private boolean evicted;
+        private boolean restorable = true;
+
+        FakeTexture(String name) {
+            super(name, 0, 1);
+            setTextureWidth(64);
+            setTextureHeight(64);
+            setCacheName(name);
+            TextureImpl.unbind();
+        }
+
+        void evict() {
+            evicted = true;
+        }
+
+        boolean isEvicted() {
+            return evicted;
+        }
+
+        boolean canRestore() {
+            return restorable;
+        }
+    }
+
+    private long clock;
+
+    private FakeTexture add(TextureCache cache, String name) {
+        FakeTexture texture = new FakeTexture(name);
+        use(texture);
+        cache.put(name, texture, TextureCache.getSize(texture, SGL.GL_RGBA8));
+        return texture;
+    }
+
+    private void use(TextureImpl texture) {
+        texture.lastUsed = ++clock;
+    }
+
+    public void evictsTheLeastRecentlyUsedTexturesOverBudget() {
+        TextureCache cache = new TextureCache();
+        cache.setBudget(SIZE * 3);
+        FakeTexture a = add(cache, "a");
+        FakeTexture b = add(cache, "b");
+        FakeTexture c = add(cache, "c");
+        Assert.assertEquals(cache.getResidentBytes(), SIZE * 3);
+        Assert.assertEquals(cache.getEvictions(), 0);
+
+        use(a);
+        FakeTexture d = add(cache, "d");
+        Assert.assertTrue(b.evicted);
+        Assert.assertFalse(a.evicted || c.evicted || d.evicted);
+        Assert.assertEquals(cache.getResidentBytes(), SIZE * 3);
+        Assert.assertEquals(cache.getResidentCount(), 3);
+        Assert.assertEquals(cache.getTextureCount(), 4);
+        Assert.assertEquals(cache.getEvictions(), 1);
+
+        // evicted textures are still found, and come back when reloaded
+        Assert.assertSame(cache.get("b"), b);
+        Assert.assertNull(cache.get("e"));
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertEquals(cache.getMisses(), 1);
+        b.evicted = false;
+        use(b);
+        cache.restored(b);
+        Assert.assertTrue(c.evicted);
+        Assert.assertEquals(cache.getReloads(), 1);
+        Assert.assertEquals(cache.getResidentBytes(), SIZE * 3);
+
+        cache.setBudget(SIZE);
+        Assert.assertEquals(cache.getResidentCount(), 1);
+        Assert.assertFalse(b.evicted);
+    }
+
+    public void neverEvictsPinnedBoundOrUnrestorableTextures() {
+        TextureCache cache = new TextureCache();
+        FakeTexture pinned = add(cache, "pinned");
+        FakeTexture fixed = add(cache, "fixed");
+        fixed.restorable = false;
+        FakeTexture bound = add(cache, "bound");
+        FakeTexture other = add(cache, "other");
+        cache.pin(pinned);
+        Assert.assertTrue(cache.isPinned(pinned));
+        TextureImpl.lastBind = bound;
+        try {
+            cache.setBudget(0);
+        } finally {
+            TextureImpl.unbind();
+        }
+        Assert.assertTrue(other.evicted);
+        Assert.assertFalse(pinned.evicted || fixed.evicted || bound.evicted);
+        Assert.assertEquals(cache.getResidentBytes(), SIZE * 3);
+
+        cache.unpin(pinned);
+        Assert.assertFalse(cache.isPinned(pinned));
+        cache.setBudget(SIZE * 2);
+        Assert.assertTrue(pinned.evicted);
+        Assert.assertFalse(bound.evicted);
+    }
+
+    public void removingTexturesReleasesTheirBudget() {
+        TextureCache cache = new TextureCache();
+        cache.setBudget(SIZE);
+        add(cache, "a");
+        add(cache, "b");
+        Assert.assertEquals(cache.getResidentBytes(), SIZE);
+
+        cache.remove("a");
+        cache.remove("b");
+        Assert.assertEquals(cache.getResidentBytes(), 0);
+        Assert.assertEquals(cache.getTextureCount(), 0);
+
+        Assert.assertEquals(TextureCache.getSize(new FakeTexture("big"), SGL.GL_RGBA16), SIZE * 2);
+    }
+}
@@ -0,0 +1,98 @@
+package org.newdawn.slick.opengl.renderer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class InstrumentedSGLTest {
+
+    private static void quads(SGL gl, int count) {
+        for (int i = 0; i < count; i++) {
+            gl.glBegin(SGL.GL_QUADS);
+            gl.glVertex2f(0, 0);
+            gl.glVertex2f(0, 1);
+            gl.glVertex2f(1, 1);
+            gl.glVertex2f(1, 0);
+            gl.glEnd();
+        }
+    }
+
+    public void countsOperations() {
+        InstrumentedSGL gl = new InstrumentedSGL(new RecordingSGL());
+
+        gl.glBindTexture(SGL.GL_TEXTURE_2D, 1);
+        quads(gl, 3);
+        gl.glBindTexture(SGL.GL_TEXTURE_2D, 1);
+        gl.glPushMatrix();
+        gl.glTranslatef(1, 1, 0);
+        quads(gl, 2);
+        gl.glPopMatrix();
+        gl.glBlendFunc(SGL.GL_SRC_ALPHA, SGL.GL_ONE);
+        gl.endFrame();
+
+        RenderStatistics stats = gl.getFrameStatistics();
+        Assert.assertEquals(stats.getBatches(), 5);
+        Assert.assertEquals(stats.getVertices(), 20);
+        Assert.assertEquals(stats.getTextureBinds(), 2);
+        Assert.assertEquals(stats.getRedundantTextureBinds(), 1);
+        Assert.assertEquals(stats.getMatrixPushes(), 1);
+        Assert.assertEquals(stats.getMatrixChanges(), 2);
+        Assert.assertEquals(stats.getBlendChanges(), 1);
+
+        // only the first state change after geometry breaks a batch
+        Assert.assertEquals(stats.getFlushes(), 2);
+        Assert.assertEquals(stats.getFlushes("glBindTexture"), 1);
+        Assert.assertEquals(stats.getFlushes("glPopMatrix"), 1);
+        Assert.assertEquals(stats.getFlushes("glPushMatrix"), 0);
+    }
+
+    public void stripsBreakBatches() {
+        InstrumentedSGL gl = new InstrumentedSGL(new RecordingSGL());
+
+        for (int i = 0; i < 3; i++) {
+            gl.glBegin(SGL.GL_LINE_STRIP);
+            gl.glVertex2f(0, 0);
+            gl.glVertex2f(1, 1);
+            gl.glEnd();
+        }
+        quads(gl, 1);
+        gl.endFrame();
+
+        Assert.assertEquals(gl.getFrameStatistics().getFlushes("glBegin"), 3);
+        Assert.assertEquals(gl.getFrameStatistics().getTopFlushReason(), "glBegin");
+    }
+
+    public void framesAreSeparate() {
+        InstrumentedSGL gl = new InstrumentedSGL(new RecordingSGL());
+
+        quads(gl, 4);
+        gl.endFrame();
+        quads(gl, 1);
+        gl.setPaused(true);
+        quads(gl, 10);
+        gl.glBindTexture(SGL.GL_TEXTURE_2D, 2);
+        gl.setPaused(false);
+
+        Assert.assertEquals(gl.getFrameStatistics().getBatches(), 4);
+        Assert.assertEquals(gl.getCurrentStatistics().getBatches(), 1);
+        Assert.assertEquals(gl.getCurrentStatistics().getTextureBinds(), 0);
+
+        gl.endFrame();
+        Assert.assertEquals(gl.getFrameStatistics().getBatches(), 1);
+        Assert.assertEquals(gl.getCurrentStatistics().getBatches(), 0);
+    }
+
+    public void listsAreNotCounted() {
+        InstrumentedSGL gl = new InstrumentedSGL(new RecordingSGL());
+
+        gl.glNewList(1, SGL.GL_COMPILE);
+        quads(gl, 2);
+        gl.glEndList();
+        gl.glCallList(1);
+        gl.glCallList(1);
+        gl.endFrame();
+
+        Assert.assertEquals(gl.getFrameStatistics().getBatches(), 0);
+        Assert.assertEquals(gl.getFrameStatistics().getListCalls(), 2);
+    }
+}
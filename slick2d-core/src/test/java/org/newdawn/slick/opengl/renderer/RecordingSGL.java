@@ -0,0 +1,393 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An SGL that doesn't talk to GL at all but records what would have been drawn,
+ * so renderers can be compared without a display.
+ *
+ * State changes are recorded as strings. Geometry is recorded in a canonical form
+ * so that the same scene gives the same record however it was batched - quads are
+ * recorded as pairs of triangles and consecutive runs of triangles, lines or points
+ * are joined together. Colours and texture coordinates are recorded on each vertex.
+ */
+public class RecordingSGL implements SGL {
+    /** The number of floats recorded for each vertex - x, y, z, u, v, r, g, b, a */
+    public static final int VERTEX_SIZE = 9;
+
+    /** The events recorded, strings for state and Primitive for geometry */
+    private List<Object> events = new ArrayList<Object>();
+    /** The current colour as given */
+    private float[] color = new float[] {1, 1, 1, 1};
+    /** The current colour with the alpha scale applied */
+    private float[] scaled = new float[] {1, 1, 1, 1};
+    /** The current texture coordinate */
+    private float[] tex = new float[2];
+    /** The global alpha scale */
+    private float alphaScale = 1;
+    /** The type of geometry being built, or -1 if none */
+    private int mode = -1;
+    /** The vertices of the geometry being built */
+    private float[] building = new float[VERTEX_SIZE * 64];
+    /** The number of vertices in the geometry being built */
+    private int count;
+
+    /**
+     * A run of geometry recorded
+     */
+    public static class Primitive {
+        /** The type of geometry */
+        private int mode;
+        /** The interleaved vertex data */
+        private float[] data;
+
+        /**
+         * Create a new primitive
+         *
+         * @param mode The type of geometry
+         * @param data The interleaved vertex data
+         */
+        Primitive(int mode, float[] data) {
+            this.mode = mode;
+            this.data = data;
+        }
+
+        /**
+         * Get the number of vertices recorded
+         *
+         * @return The number of vertices recorded
+         */
+        public int getVertexCount() {
+            return data.length / VERTEX_SIZE;
+        }
+
+        /**
+         * Get the vertices recorded
+         *
+         * @return The interleaved vertex data, VERTEX_SIZE floats per vertex
+         */
+        public float[] getData() {
+            return data;
+        }
+
+        /**
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        public boolean equals(Object other) {
+            if (!(other instanceof Primitive)) {
+                return false;
+            }
+            Primitive p = (Primitive) other;
+            return (p.mode == mode) && Arrays.equals(p.data, data);
+        }
+
+        /**
+         * @see java.lang.Object#hashCode()
+         */
+        public int hashCode() {
+            return mode * 31 + Arrays.hashCode(data);
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        public String toString() {
+            return "[Primitive " + mode + " " + Arrays.toString(data) + "]";
+        }
+    }
+
+    /**
+     * Get the events recorded so far
+     *
+     * @return The list of events, strings for state and Primitive for geometry
+     */
+    public List<Object> getEvents() {
+        return events;
+    }
+
+    /**
+     * Record a run of geometry
+     *
+     * @param type The type of geometry - i.e. GL_QUADS
+     * @param data The interleaved vertex data, VERTEX_SIZE floats per vertex
+     * @param verts The number of vertices to record
+     */
+    public void addPrimitive(int type, float[] data, int verts) {
+        float[] copy;
+        if (type == SGL.GL_QUADS) {
+            short[] indices = VBOGLRenderer.createQuadIndices(verts / 4);
+            copy = new float[indices.length * VERTEX_SIZE];
+            for (int i = 0; i < indices.length; i++) {
+                System.arraycopy(data, indices[i] * VERTEX_SIZE, copy, i * VERTEX_SIZE, VERTEX_SIZE);
+            }
+            type = SGL.GL_TRIANGLES;
+        } else {
+            copy = new float[verts * VERTEX_SIZE];
+            System.arraycopy(data, 0, copy, 0, copy.length);
+        }
+
+        boolean list = (type == SGL.GL_TRIANGLES) || (type == SGL.GL_LINES) || (type == SGL.GL_POINTS);
+        if (list && !events.isEmpty() && (events.get(events.size() - 1) instanceof Primitive)) {
+            Primitive last = (Primitive) events.get(events.size() - 1);
+            if (last.mode == type) {
+                float[] joined = new float[last.data.length + copy.length];
+                System.arraycopy(last.data, 0, joined, 0, last.data.length);
+                System.arraycopy(copy, 0, joined, last.data.length, copy.length);
+                last.data = joined;
+                return;
+            }
+        }
+        if (copy.length > 0) {
+            events.add(new Primitive(type, copy));
+        }
+    }
+
+    /**
+     * Record a state change
+     *
+     * @param event The description of the change
+     */
+    private void record(String event) {
+        events.add(event);
+    }
+
+    public void initDisplay(int width, int height) {
+        record("initDisplay " + width + "," + height);
+    }
+
+    public void enterOrtho(int xsize, int ysize) {
+        record("enterOrtho " + xsize + "," + ysize);
+    }
+
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        // doesn't affect output until cleared
+    }
+
+    public void glClipPlane(int plane, DoubleBuffer buffer) {
+        record("glClipPlane " + plane);
+    }
+
+    public void glScissor(int x, int y, int width, int height) {
+        record("glScissor " + x + "," + y + "," + width + "," + height);
+    }
+
+    public void glLineWidth(float width) {
+        record("glLineWidth " + width);
+    }
+
+    public void glClear(int value) {
+        record("glClear " + value);
+    }
+
+    public void glColorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+        record("glColorMask " + red + "," + green + "," + blue + "," + alpha);
+    }
+
+    public void glLoadIdentity() {
+        record("glLoadIdentity");
+    }
+
+    public void glGetInteger(int id, IntBuffer ret) {
+        record("glGetInteger " + id);
+    }
+
+    public void glGetFloat(int id, FloatBuffer ret) {
+        record("glGetFloat " + id);
+    }
+
+    public void glEnable(int item) {
+        record("glEnable " + item);
+    }
+
+    public void glDisable(int item) {
+        record("glDisable " + item);
+    }
+
+    public void glBindTexture(int target, int id) {
+        record("glBindTexture " + target + "," + id);
+    }
+
+    public void glGetTexImage(int target, int level, int format, int type, ByteBuffer pixels) {
+        record("glGetTexImage " + target);
+    }
+
+    public void glDeleteTextures(IntBuffer buffer) {
+        record("glDeleteTextures");
+    }
+
+    public void glColor4f(float r, float g, float b, float a) {
+        color[0] = r;
+        color[1] = g;
+        color[2] = b;
+        color[3] = a;
+        scaled[0] = r;
+        scaled[1] = g;
+        scaled[2] = b;
+        scaled[3] = a * alphaScale;
+    }
+
+    public void glTexCoord2f(float u, float v) {
+        tex[0] = u;
+        tex[1] = v;
+    }
+
+    public void glVertex3f(float x, float y, float z) {
+        if (building.length < (count + 1) * VERTEX_SIZE) {
+            building = Arrays.copyOf(building, building.length * 2);
+        }
+        int i = count * VERTEX_SIZE;
+        building[i] = x;
+        building[i + 1] = y;
+        building[i + 2] = z;
+        building[i + 3] = tex[0];
+        building[i + 4] = tex[1];
+        building[i + 5] = scaled[0];
+        building[i + 6] = scaled[1];
+        building[i + 7] = scaled[2];
+        building[i + 8] = scaled[3];
+        count++;
+    }
+
+    public void glVertex2f(float x, float y) {
+        glVertex3f(x, y, 0);
+    }
+
+    public void glRotatef(float angle, float x, float y, float z) {
+        record("glRotatef " + angle + "," + x + "," + y + "," + z);
+    }
+
+    public void glTranslatef(float x, float y, float z) {
+        record("glTranslatef " + x + "," + y + "," + z);
+    }
+
+    public void glBegin(int geomType) {
+        mode = geomType;
+        count = 0;
+    }
+
+    public void glEnd() {
+        addPrimitive(mode, building, count);
+        mode = -1;
+        count = 0;
+    }
+
+    public void glTexEnvi(int target, int mode, int value) {
+        record("glTexEnvi " + target + "," + mode + "," + value);
+    }
+
+    public void glPointSize(float size) {
+        record("glPointSize " + size);
+    }
+
+    public void glScalef(float x, float y, float z) {
+        record("glScalef " + x + "," + y + "," + z);
+    }
+
+    public void glPushMatrix() {
+        record("glPushMatrix");
+    }
+
+    public void glPopMatrix() {
+        record("glPopMatrix");
+    }
+
+    public void glBlendFunc(int src, int dest) {
+        record("glBlendFunc " + src + "," + dest);
+    }
+
+    public int glGenLists(int count) {
+        return 1;
+    }
+
+    public void glNewList(int id, int option) {
+        record("glNewList " + id);
+    }
+
+    public void glEndList() {
+        record("glEndList");
+    }
+
+    public void glCallList(int id) {
+        record("glCallList " + id + " " + Arrays.toString(color));
+    }
+
+    public void glCopyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
+        record("glCopyTexImage2D " + target);
+    }
+
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, ByteBuffer pixels) {
+        record("glReadPixels " + x + "," + y + "," + width + "," + height);
+    }
+
+    public void glTexParameteri(int target, int param, int value) {
+        record("glTexParameteri " + target + "," + param + "," + value);
+    }
+
+    public float[] getCurrentColor() {
+        return scaled;
+    }
+
+    public void glDeleteLists(int list, int count) {
+        // doesn't affect output
+    }
+
+    public void glDepthMask(boolean mask) {
+        record("glDepthMask " + mask);
+    }
+
+    public void glClearDepth(float value) {
+        // doesn't affect output until cleared
+    }
+
+    public void glDepthFunc(int func) {
+        record("glDepthFunc " + func);
+    }
+
+    public void setGlobalAlphaScale(float alphaScale) {
+        this.alphaScale = alphaScale;
+    }
+
+    public void glLoadMatrix(FloatBuffer buffer) {
+        record("glLoadMatrix");
+    }
+
+    public void glGenTextures(IntBuffer ids) {
+        // doesn't affect output
+    }
+
+    public void glGetError() {
+        // doesn't affect output
+    }
+
+    public void glTexImage2D(int target, int i, int dstPixelFormat, int width, int height, int j,
+            int srcPixelFormat, int glUnsignedByte, ByteBuffer textureBuffer) {
+        record("glTexImage2D " + target + "," + width + "," + height);
+    }
+
+    public void glTexSubImage2D(int glTexture2d, int i, int pageX, int pageY, int width, int height,
+            int glBgra, int glUnsignedByte, ByteBuffer scratchByteBuffer) {
+        record("glTexSubImage2D " + glTexture2d + "," + pageX + "," + pageY + "," + width + "," + height);
+    }
+
+    public boolean canTextureMirrorClamp() {
+        return false;
+    }
+
+    public boolean canSecondaryColor() {
+        return false;
+    }
+
+    public void glSecondaryColor3ubEXT(byte b, byte c, byte d) {
+        record("glSecondaryColor3ubEXT " + b + "," + c + "," + d);
+    }
+
+    public void flush() {
+        record("flush");
+    }
+}
@@ -0,0 +1,210 @@
+package org.newdawn.slick.opengl.renderer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks the vertex buffer renderer produces the same vertex stream as drawing
+ * directly, by replaying its batches into a recording SGL instead of the card.
+ */
+@Test
+public class VBOGLRendererTest {
+
+    /**
+     * A vertex buffer renderer that hands its batches to a recorder rather than GL
+     */
+    private static class RecordedVBOGLRenderer extends VBOGLRenderer {
+        /** The recorder batches are replayed into */
+        private RecordingSGL recorder;
+        /** The number of batches drawn */
+        private int draws;
+        /** The most indices needed to draw a batch of quads */
+        private int maxQuadIndices;
+
+        RecordedVBOGLRenderer(RecordingSGL recorder, int capacity) {
+            super(recorder, capacity);
+            this.recorder = recorder;
+        }
+
+        protected void drawVertices(int type, float[] data, int count) {
+            draws++;
+            if (type == SGL.GL_QUADS) {
+                maxQuadIndices = Math.max(maxQuadIndices, (count / 4) * 6);
+            }
+            recorder.addPrimitive(type, data, count);
+        }
+    }
+
+    /**
+     * A scene that can be played through any SGL
+     */
+    private interface Scene {
+        void play(SGL gl);
+    }
+
+    private List<Object> direct(Scene scene) {
+        RecordingSGL recorder = new RecordingSGL();
+        scene.play(recorder);
+        return recorder.getEvents();
+    }
+
+    private RecordedVBOGLRenderer buffered(Scene scene, int capacity) {
+        RecordedVBOGLRenderer renderer = new RecordedVBOGLRenderer(new RecordingSGL(), capacity);
+        scene.play(renderer);
+        renderer.flush();
+        return renderer;
+    }
+
+    private List<Object> withoutFlush(List<Object> events) {
+        events.remove("flush");
+        return events;
+    }
+
+    private static void quad(SGL gl, float x, float y, float size) {
+        gl.glTexCoord2f(0, 0);
+        gl.glVertex3f(x, y, 0);
+        gl.glTexCoord2f(0, 1);
+        gl.glVertex3f(x, y + size, 0);
+        gl.glTexCoord2f(1, 1);
+        gl.glVertex3f(x + size, y + size, 0);
+        gl.glTexCoord2f(1, 0);
+        gl.glVertex3f(x + size, y, 0);
+    }
+
+    private static void sprites(SGL gl, int count) {
+        for (int i = 0; i < count; i++) {
+            gl.glColor4f(1, i / (float) count, 0.5f, 1);
+            gl.glBegin(SGL.GL_QUADS);
+            quad(gl, i * 2, i * 3, 16);
+            gl.glEnd();
+        }
+    }
+
+    private void assertSame(Scene scene, int capacity) {
+        List<Object> expected = direct(scene);
+        List<Object> actual = withoutFlush(buffered(scene, capacity).recorder.getEvents());
+
+        Assert.assertEquals(actual, expected);
+    }
+
+    public void quadsAcrossTextureBinds() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                gl.glEnable(SGL.GL_TEXTURE_2D);
+                gl.glBindTexture(SGL.GL_TEXTURE_2D, 1);
+                sprites(gl, 10);
+                gl.glBindTexture(SGL.GL_TEXTURE_2D, 2);
+                sprites(gl, 5);
+                gl.glTranslatef(10, 10, 0);
+                sprites(gl, 3);
+            }
+        };
+
+        assertSame(scene, VBOGLRenderer.DEFAULT_CAPACITY);
+        Assert.assertEquals(buffered(scene, VBOGLRenderer.DEFAULT_CAPACITY).draws, 3);
+    }
+
+    public void splitAtCapacity() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                sprites(gl, 100);
+            }
+        };
+
+        RecordedVBOGLRenderer renderer = buffered(scene, 48);
+        Assert.assertEquals(renderer.getCapacity(), 48);
+        Assert.assertEquals(renderer.draws, 100 * 4 / 48 + 1);
+        assertSame(scene, 48);
+    }
+
+    public void stripsAreNotMerged() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                for (int i = 0; i < 3; i++) {
+                    gl.glBegin(SGL.GL_LINE_STRIP);
+                    gl.glVertex2f(i, 0);
+                    gl.glVertex2f(i, 10);
+                    gl.glVertex2f(i + 10, 10);
+                    gl.glEnd();
+                }
+            }
+        };
+
+        assertSame(scene, VBOGLRenderer.DEFAULT_CAPACITY);
+        Assert.assertEquals(buffered(scene, VBOGLRenderer.DEFAULT_CAPACITY).draws, 3);
+    }
+
+    public void fanGrowsPastCapacity() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                gl.glBegin(SGL.GL_TRIANGLE_FAN);
+                gl.glVertex2f(0, 0);
+                for (int i = 0; i < 100; i++) {
+                    gl.glVertex2f(i, 10);
+                }
+                gl.glEnd();
+            }
+        };
+
+        assertSame(scene, 12);
+        Assert.assertEquals(buffered(scene, 12).draws, 1);
+    }
+
+    public void quadsAfterAGrownFanStayInTheIndexBuffer() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                gl.glBegin(SGL.GL_TRIANGLE_FAN);
+                gl.glVertex2f(0, 0);
+                for (int i = 0; i < 100; i++) {
+                    gl.glVertex2f(i, 10);
+                }
+                gl.glEnd();
+                sprites(gl, 40);
+            }
+        };
+
+        assertSame(scene, 12);
+        RecordedVBOGLRenderer renderer = buffered(scene, 12);
+        Assert.assertEquals(renderer.draws, 1 + 40 * 4 / 12 + 1);
+        Assert.assertTrue(renderer.maxQuadIndices <= VBOGLRenderer.createQuadIndices(12 / 4).length);
+    }
+
+    public void alphaScale() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                gl.setGlobalAlphaScale(0.5f);
+                sprites(gl, 4);
+                gl.setGlobalAlphaScale(1);
+                Assert.assertEquals(gl.getCurrentColor()[3], 0.5f);
+                sprites(gl, 4);
+            }
+        };
+
+        assertSame(scene, VBOGLRenderer.DEFAULT_CAPACITY);
+    }
+
+    public void displayListsPassThrough() {
+        Scene scene = new Scene() {
+            public void play(SGL gl) {
+                sprites(gl, 2);
+                gl.glNewList(1, SGL.GL_COMPILE);
+                sprites(gl, 2);
+                gl.glEndList();
+                gl.glColor4f(0.25f, 0.5f, 0.75f, 1);
+                gl.glCallList(1);
+                sprites(gl, 2);
+            }
+        };
+
+        assertSame(scene, VBOGLRenderer.DEFAULT_CAPACITY);
+    }
+
+    public void quadIndices() {
+        short[] indices = VBOGLRenderer.createQuadIndices(2);
+
+        Assert.assertTrue(Arrays.equals(indices, new short[] {0, 1, 2, 2, 3, 0, 4, 5, 6, 6, 7, 4}));
+    }
+}
@@ -0,0 +1,111 @@
+package org.newdawn.slick.particles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.geom.Vector2f;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class ConfigurableEmitterTest {
+
+    /**
+     * Create an emitter that draws all its spawn values from wide ranges
+     */
+    private static ConfigurableEmitter emitter(long seed) {
+        ConfigurableEmitter emitter = new ConfigurableEmitter("random");
+        emitter.setSeed(seed);
+        emitter.spawnInterval.setMin(10);
+        emitter.spawnInterval.setMax(60);
+        emitter.spawnCount.setMin(5);
+        emitter.spawnCount.setMax(40);
+        emitter.initialLife.setMin(200);
+        emitter.initialLife.setMax(900);
+        emitter.initialSize.setMin(2);
+        emitter.initialSize.setMax(20);
+        emitter.xOffset.setMin(-10);
+        emitter.xOffset.setMax(10);
+        emitter.initialDistance.setMin(0);
+        emitter.initialDistance.setMax(15);
+        emitter.speed.setMin(10);
+        emitter.speed.setMax(90);
+        emitter.addColorPoint(0.3f, new Color(0.1f, 0.8f, 0.3f));
+        emitter.replay();
+        return emitter;
+    }
+
+    private static float[][] run(long seed) {
+        PackedParticleSystem system = new PackedParticleSystem((Image) null, 5000);
+        ConfigurableEmitter emitter = emitter(seed);
+        system.addEmitter(emitter);
+        for (int frame = 0; frame < 50; frame++) {
+            system.update(16);
+        }
+
+        PackedParticles particles = system.getParticles(emitter);
+        float[][] result = new float[particles.size()][];
+        for (int i = 0; i < particles.size(); i++) {
+            result[i] = new float[] {particles.life[i], particles.x[i], particles.y[i], particles.velx[i],
+                    particles.vely[i], particles.size[i], particles.r[i], particles.g[i], particles.b[i]};
+        }
+        return result;
+    }
+
+    public void seededEmittersReplayTheSameParticles() {
+        float[][] first = run(42);
+        Assert.assertTrue(first.length > 100);
+        Assert.assertTrue(Arrays.deepEquals(run(42), first));
+        Assert.assertFalse(Arrays.deepEquals(run(43), first));
+    }
+
+    public void lookupFollowsTheCurve() {
+        ConfigurableEmitter emitter = new ConfigurableEmitter("curve");
+        ArrayList curve = new ArrayList();
+        curve.add(new Vector2f(0.0f, 10.0f));
+        curve.add(new Vector2f(0.37f, 200.0f));
+        curve.add(new Vector2f(0.5f, 20.0f));
+        curve.add(new Vector2f(1.0f, 100.0f));
+        emitter.size.setCurve(curve);
+        emitter.size.setActive(true);
+        emitter.update(new PackedParticleSystem((Image) null, 10), 0);
+
+        for (int i = 0; i <= 1000; i++) {
+            float t = i / 1000f;
+            // a step of the table is 1/256 so the error is bounded by the steepest slope over a step
+            Assert.assertEquals(emitter.size.lookup(t), emitter.size.getValue(t), 1440f / 256, "t " + t);
+        }
+        Assert.assertEquals(emitter.size.lookup(0.25f), emitter.size.getValue(0.25f), 0.001f);
+        Assert.assertEquals(emitter.size.lookup(0.75f), emitter.size.getValue(0.75f), 0.001f);
+        Assert.assertEquals(emitter.size.lookup(1.0f), 100f, 0.001f);
+    }
+
+    public void tablesFollowRangesChangedInPlace() {
+        ConfigurableEmitter emitter = new ConfigurableEmitter("edited");
+        ArrayList curve = new ArrayList();
+        curve.add(new Vector2f(0.0f, 10.0f));
+        curve.add(new Vector2f(1.0f, 10.0f));
+        emitter.size.setCurve(curve);
+        emitter.size.setActive(true);
+        PackedParticleSystem system = new PackedParticleSystem((Image) null, 10);
+        emitter.update(system, 0);
+        Assert.assertEquals(emitter.size.lookup(0.5f), 10f, 0.001f);
+
+        // the editor moves points and changes colours without telling the emitter
+        ((Vector2f) curve.get(1)).set(1.0f, 30.0f);
+        emitter.update(system, 0);
+        Assert.assertEquals(emitter.size.lookup(0.5f), 20f, 0.001f);
+
+        ConfigurableEmitter.ColorRecord end = (ConfigurableEmitter.ColorRecord) emitter.colors.get(1);
+        end.col = new Color(0f, 0f, 1f);
+        emitter.update(system, 0);
+        PackedParticles particles = new PackedParticles(1);
+        int particle = particles.add(1000);
+        particles.life[particle] = 500;
+        emitter.updateParticles(particles, 0, 1, 0, new float[PackedParticleEmitter.SCRATCH_SIZE]);
+        Assert.assertEquals(particles.r[particle], 0.5f, 0.01f);
+        Assert.assertEquals(particles.b[particle], 1f, 0.01f);
+    }
+}
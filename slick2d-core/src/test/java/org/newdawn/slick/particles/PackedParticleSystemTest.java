@@ -0,0 +1,262 @@
+package org.newdawn.slick.particles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class PackedParticleSystemTest {
+
+    /**
+     * A particle system holding a particle object each that keeps hold of every particle it creates.
+     */
+    private static class RecordingSystem extends ParticleSystem {
+        private List<Particle> created;
+
+        RecordingSystem(int maxParticles) {
+            super((Image) null, maxParticles);
+        }
+
+        protected Particle createParticle(ParticleSystem system) {
+            if (created == null) {
+                created = new ArrayList<Particle>();
+            }
+            Particle particle = new Particle(system);
+            created.add(particle);
+            return particle;
+        }
+
+        float[][] live() {
+            List<float[]> result = new ArrayList<float[]>();
+            for (Particle p : created) {
+                if (p.inUse()) {
+                    result.add(new float[] {p.life, p.x, p.y, p.velx, p.vely, p.size,
+                            p.color.r, p.color.g, p.color.b, p.color.a, p.scaleY});
+                }
+            }
+            return sorted(result);
+        }
+    }
+
+    /**
+     * An emitter that only works a particle at a time, spawning ten particles with different lives
+     * and growing them each update.
+     */
+    private static class GrowingEmitter implements ParticleEmitter {
+        private boolean spawned;
+
+        public void update(ParticleSystem system, int delta) {
+            if (!spawned) {
+                spawned = true;
+                for (int i = 0; i < 10; i++) {
+                    Particle p = system.getNewParticle(this, 100 + (i * 10));
+                    p.setPosition(i, 0);
+                    p.setVelocity(0, 1, 0.1f);
+                }
+            }
+        }
+
+        public void updateParticle(Particle particle, int delta) {
+            Assert.assertSame(particle.getEmitter(), this);
+            particle.adjustSize(1);
+        }
+
+        public boolean completed() {
+            return false;
+        }
+
+        public void wrapUp() {
+        }
+
+        public boolean isEnabled() {
+            return true;
+        }
+
+        public void setEnabled(boolean enabled) {
+        }
+
+        public boolean useAdditive() {
+            return false;
+        }
+
+        public Image getImage() {
+            return null;
+        }
+
+        public boolean isOriented() {
+            return false;
+        }
+
+        public boolean usePoints(ParticleSystem system) {
+            return false;
+        }
+
+        public void resetState() {
+        }
+    }
+
+    private static float[][] sorted(List<float[]> particles) {
+        float[][] result = particles.toArray(new float[particles.size()][]);
+        Arrays.sort(result, new java.util.Comparator<float[]>() {
+            public int compare(float[] a, float[] b) {
+                for (int i = 0; i < a.length; i++) {
+                    int c = Float.compare(a[i], b[i]);
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return 0;
+            }
+        });
+        return result;
+    }
+
+    private static float[][] state(PackedParticles particles) {
+        float[][] result = new float[particles.size()][];
+        for (int i = 0; i < particles.size(); i++) {
+            result[i] = new float[] {particles.life[i], particles.x[i], particles.y[i], particles.velx[i],
+                    particles.vely[i], particles.size[i], particles.r[i], particles.g[i], particles.b[i],
+                    particles.a[i], particles.scaleY[i]};
+        }
+        return result;
+    }
+
+    private static float[][] live(PackedParticles particles) {
+        return sorted(Arrays.asList(state(particles)));
+    }
+
+    /**
+     * Create an emitter with every range fixed so it produces the same particles each time
+     */
+    private static ConfigurableEmitter emitter() {
+        ConfigurableEmitter emitter = new ConfigurableEmitter("fixed");
+        emitter.spread.setValue(0);
+        emitter.angularOffset.setValue(30);
+        emitter.spawnInterval.setMin(40);
+        emitter.spawnInterval.setMax(40);
+        emitter.spawnCount.setMin(7);
+        emitter.spawnCount.setMax(7);
+        emitter.initialLife.setMin(700);
+        emitter.initialLife.setMax(700);
+        emitter.initialDistance.setMin(5);
+        emitter.initialDistance.setMax(5);
+        emitter.gravityFactor.setValue(20);
+        emitter.windFactor.setValue(-5);
+        emitter.growthFactor.setValue(12);
+        emitter.addColorPoint(0.5f, new Color(0.2f, 0.9f, 0.4f));
+        emitter.scaleY.setActive(true);
+        emitter.setPosition(100, 50);
+        return emitter;
+    }
+
+    public void matchesParticleSystem() {
+        RecordingSystem reference = new RecordingSystem(1000);
+        ConfigurableEmitter referenceEmitter = emitter();
+        reference.addEmitter(referenceEmitter);
+
+        PackedParticleSystem packed = new PackedParticleSystem((Image) null, 1000);
+        ConfigurableEmitter packedEmitter = emitter();
+        packed.addEmitter(packedEmitter);
+
+        for (int frame = 0; frame < 120; frame++) {
+            if (frame == 30) {
+                referenceEmitter.setPosition(80, 60);
+                packedEmitter.setPosition(80, 60);
+            }
+            reference.update(16);
+            packed.update(16);
+
+            Assert.assertEquals(packed.getParticleCount(), reference.getParticleCount(), "frame " + frame);
+            Assert.assertTrue(Arrays.deepEquals(live(packed.getParticles(packedEmitter)), reference.live()),
+                    "frame " + frame);
+        }
+        Assert.assertTrue(packed.getParticleCount() > 50);
+    }
+
+    public void parallelUpdateMatchesSequentialUpdate() {
+        PackedParticleSystem sequential = new PackedParticleSystem((Image) null, 20000);
+        PackedParticleSystem parallel = new PackedParticleSystem((Image) null, 20000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.setUpdatePool(pool);
+
+        ConfigurableEmitter[] sequentialEmitters = new ConfigurableEmitter[3];
+        ConfigurableEmitter[] parallelEmitters = new ConfigurableEmitter[3];
+        for (int i = 0; i < 3; i++) {
+            sequentialEmitters[i] = emitter();
+            sequentialEmitters[i].spawnCount.setMin(300 * (i + 1));
+            sequentialEmitters[i].spawnCount.setMax(300 * (i + 1));
+            sequential.addEmitter(sequentialEmitters[i]);
+            parallelEmitters[i] = emitter();
+            parallelEmitters[i].spawnCount.setMin(300 * (i + 1));
+            parallelEmitters[i].spawnCount.setMax(300 * (i + 1));
+            parallel.addEmitter(parallelEmitters[i]);
+        }
+        parallel.addEmitter(new GrowingEmitter());
+
+        try {
+            for (int frame = 0; frame < 60; frame++) {
+                sequential.update(16);
+                parallel.update(16);
+                for (int i = 0; i < 3; i++) {
+                    Assert.assertTrue(Arrays.deepEquals(state(parallel.getParticles(parallelEmitters[i])),
+                            state(sequential.getParticles(sequentialEmitters[i]))), "frame " + frame);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        // the largest emitter is split into several ranges
+        Assert.assertTrue(parallel.getParticles(parallelEmitters[2]).size() > 10000);
+        Assert.assertEquals(parallel.getParticleCount(), sequential.getParticleCount());
+    }
+
+    public void updatesParticleAtATimeEmitters() {
+        PackedParticleSystem packed = new PackedParticleSystem((Image) null, 100);
+        GrowingEmitter emitter = new GrowingEmitter();
+        packed.addEmitter(emitter);
+
+        packed.update(10);
+        PackedParticles particles = packed.getParticles(emitter);
+        Assert.assertEquals(particles.size(), 10);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(particles.size[i], 11f);
+            Assert.assertEquals(particles.y[i], 1f, 0.0001f);
+        }
+
+        // particles die in order of their life, the rest stay packed at the start
+        for (int updates = 2; updates < 20; updates++) {
+            packed.update(10);
+            int alive = 10 - Math.max(0, updates - 9);
+            Assert.assertEquals(particles.size(), alive);
+            float[] lives = new float[alive];
+            for (int i = 0; i < alive; i++) {
+                lives[i] = particles.life[i];
+                Assert.assertEquals(particles.size[i], 10f + updates);
+            }
+            Arrays.sort(lives);
+            for (int i = 0; i < alive; i++) {
+                Assert.assertEquals(lives[i], 100 + ((10 - alive + i) * 10) - (updates * 10), 0.0001f);
+            }
+        }
+        Assert.assertEquals(particles.size(), 0);
+    }
+
+    public void runsOutOfParticles() {
+        PackedParticleSystem packed = new PackedParticleSystem((Image) null, 3);
+        GrowingEmitter emitter = new GrowingEmitter();
+        packed.addEmitter(emitter);
+
+        packed.update(10);
+        Assert.assertEquals(packed.getParticles(emitter).size(), 3);
+        Assert.assertEquals(packed.getParticleCount(), 3);
+
+        packed.releaseAll(emitter);
+        Assert.assertEquals(packed.getParticles(emitter).size(), 0);
+    }
+}
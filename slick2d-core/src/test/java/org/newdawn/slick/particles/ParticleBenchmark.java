@@ -0,0 +1,153 @@
+package org.newdawn.slick.particles;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.opengl.TextureImpl;
+import org.newdawn.slick.opengl.renderer.RecordingSGL;
+import org.newdawn.slick.opengl.renderer.Renderer;
+import org.newdawn.slick.opengl.renderer.SGL;
+
+/**
+ * A simple benchmark of ParticleSystem against PackedParticleSystem, timing
+ * the update and render of a fire of around 100,000 live particles spread
+ * over a number of emitters. PackedParticleSystem is timed updating on the
+ * calling thread and across a pool with a thread for each processor. The
+ * geometry goes to a renderer that only counts it so this can be run without
+ * a display and only times the work done on the CPU.
+ */
+public class ParticleBenchmark {
+	/** The number of emitters in the system */
+	private static final int EMITTERS = 16;
+	/** The number of particles spawned by each emitter each update */
+	private static final int SPAWN = 50;
+	/** The life of each particle in milliseconds */
+	private static final int LIFE = 2000;
+	/** The time passed in each update in milliseconds */
+	private static final int DELTA = 16;
+	/** The number of updates timed */
+	private static final int FRAMES = 300;
+	/** The number of times each system is timed */
+	private static final int ROUNDS = 3;
+
+	/** The number of geometry calls made to the renderer */
+	private static long calls;
+
+	/**
+	 * A renderer that counts the geometry sent to it rather than recording it
+	 */
+	private static class CountingSGL extends RecordingSGL {
+		public void glBegin(int geomType) {
+			calls++;
+		}
+
+		public void glEnd() {
+			calls++;
+		}
+
+		public void glColor4f(float r, float g, float b, float a) {
+			calls++;
+		}
+
+		public void glTexCoord2f(float u, float v) {
+			calls++;
+		}
+
+		public void glVertex2f(float x, float y) {
+			calls++;
+		}
+
+		public void glVertex3f(float x, float y, float z) {
+			calls++;
+		}
+	}
+
+	/**
+	 * Create the emitter being timed
+	 *
+	 * @return The emitter being timed
+	 */
+	private static ConfigurableEmitter createEmitter() {
+		ConfigurableEmitter emitter = new ConfigurableEmitter("fire");
+		emitter.length.setEnabled(false);
+		emitter.emitCount.setEnabled(false);
+		emitter.spawnInterval.setMin(0);
+		emitter.spawnInterval.setMax(0);
+		emitter.spawnCount.setMin(SPAWN);
+		emitter.spawnCount.setMax(SPAWN);
+		emitter.initialLife.setMin(LIFE);
+		emitter.initialLife.setMax(LIFE);
+		emitter.speed.setMin(20);
+		emitter.speed.setMax(80);
+		emitter.gravityFactor.setValue(-10);
+		emitter.growthFactor.setValue(5);
+		emitter.addColorPoint(0.5f, new Color(1f, 0.5f, 0f));
+		emitter.setPosition(400, 300);
+		return emitter;
+	}
+
+	/**
+	 * Time a particle system
+	 *
+	 * @param name The name to report the system as
+	 * @param system The system to time
+	 */
+	private static void run(String name, ParticleSystem system) {
+		for (int i=0;i<EMITTERS;i++) {
+			system.addEmitter(createEmitter());
+		}
+
+		// fill the system up to the steady number of particles
+		for (int i=0;i<(LIFE/DELTA)+1;i++) {
+			system.update(DELTA);
+		}
+
+		long bestUpdate = Long.MAX_VALUE;
+		long bestRender = Long.MAX_VALUE;
+		long particles = 0;
+		for (int r=0;r<ROUNDS;r++) {
+			long update = 0;
+			long render = 0;
+			particles = 0;
+			calls = 0;
+			for (int i=0;i<FRAMES;i++) {
+				long start = System.nanoTime();
+				system.update(DELTA);
+				long mid = System.nanoTime();
+				system.render();
+				update += mid - start;
+				render += System.nanoTime() - mid;
+				particles += system.getParticleCount();
+			}
+			bestUpdate = Math.min(bestUpdate, update);
+			bestRender = Math.min(bestRender, render);
+		}
+
+		System.out.println(name+": "+(particles / FRAMES)+" live particles, update "
+				+(bestUpdate / FRAMES / 1000)+"us, render "+(bestRender / FRAMES / 1000)
+				+"us, "+(calls / FRAMES)+" geometry calls per frame");
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the benchmark
+	 */
+	public static void main(String[] argv) {
+		// renderers are captured as classes load so this must come first
+		Renderer.setRenderer(new CountingSGL());
+
+		Image sprite = new Image(new TextureImpl("particle", SGL.GL_TEXTURE_2D, 1));
+		int max = SPAWN * ((LIFE / DELTA) + 2);
+		run("PackedParticleSystem", new PackedParticleSystem(sprite, max));
+
+		ForkJoinPool pool = new ForkJoinPool();
+		PackedParticleSystem parallel = new PackedParticleSystem(sprite, max);
+		parallel.setUpdatePool(pool);
+		run("PackedParticleSystem ("+pool.getParallelism()+" threads)", parallel);
+		pool.shutdown();
+
+		run("ParticleSystem", new ParticleSystem(sprite, max));
+	}
+}
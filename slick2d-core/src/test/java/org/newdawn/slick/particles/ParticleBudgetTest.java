@@ -0,0 +1,128 @@
+package org.newdawn.slick.particles;
+
+import org.newdawn.slick.Image;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class ParticleBudgetTest {
+
+    /**
+     * A particle system that counts the particles it creates.
+     */
+    private static class CountingSystem extends ParticleSystem {
+        private int created;
+
+        CountingSystem(int maxParticles) {
+            super((Image) null, maxParticles);
+        }
+
+        protected Particle createParticle(ParticleSystem system) {
+            created++;
+            return super.createParticle(system);
+        }
+    }
+
+    /**
+     * Create an emitter spawning 20 particles every update that live for a second
+     */
+    private static ConfigurableEmitter emitter(float x, float y) {
+        ConfigurableEmitter emitter = new ConfigurableEmitter("budget");
+        emitter.spawnInterval.setMin(0);
+        emitter.spawnInterval.setMax(0);
+        emitter.spawnCount.setMin(20);
+        emitter.spawnCount.setMax(20);
+        emitter.speed.setMin(0);
+        emitter.speed.setMax(0);
+        emitter.setPosition(x, y, false);
+        return emitter;
+    }
+
+    public void throttlesSpawningAsTheBudgetFills() {
+        ParticleBudget budget = new ParticleBudget(400);
+        ParticleSystem first = new ParticleSystem((Image) null, 1000);
+        PackedParticleSystem second = new PackedParticleSystem((Image) null, 1000);
+        first.addEmitter(emitter(0, 0));
+        second.addEmitter(emitter(0, 0));
+        first.setBudget(budget);
+        second.setBudget(budget);
+        Assert.assertEquals(budget.getSystemCount(), 2);
+
+        boolean scaled = false;
+        for (int frame = 0; frame < 100; frame++) {
+            budget.update();
+            first.update(16);
+            second.update(16);
+
+            int live = first.getParticleCount() + second.getParticleCount();
+            Assert.assertTrue(budget.getLiveParticles() <= 400, "frame " + frame);
+            Assert.assertTrue(live <= 400 + 40, "frame " + frame);
+            Assert.assertEquals(budget.getSpawnedParticles() + budget.getThrottledParticles(), 40);
+            if ((budget.getSpawnScale() > 0) && (budget.getSpawnScale() < 1)) {
+                scaled = true;
+                Assert.assertTrue(budget.getThrottledParticles() > 0);
+            }
+        }
+        Assert.assertTrue(scaled);
+        Assert.assertTrue(budget.getLiveParticles() > 300);
+
+        first.setBudget(null);
+        Assert.assertEquals(budget.getSystemCount(), 1);
+        Assert.assertNull(first.getBudget());
+    }
+
+    public void cullsEmittersOutsideTheView() {
+        ParticleBudget budget = new ParticleBudget(10000);
+        budget.setView(0, 0, 800, 600);
+        PackedParticleSystem system = new PackedParticleSystem((Image) null, 1000);
+        system.setBudget(budget);
+        ConfigurableEmitter inside = emitter(400, 300);
+        ConfigurableEmitter outside = emitter(2000, 300);
+        system.addEmitter(inside);
+        system.addEmitter(outside);
+
+        for (int frame = 0; frame < 5; frame++) {
+            budget.update();
+            system.update(16);
+        }
+        Assert.assertEquals(budget.getCulledEmitters(), 1);
+        Assert.assertEquals(system.getParticles(outside).size(), 0);
+        Assert.assertEquals(system.getParticles(inside).size(), 100);
+
+        // moving the system brings the emitter into view
+        system.setPosition(-1500, 0);
+        budget.update();
+        system.update(16);
+        Assert.assertEquals(budget.getCulledEmitters(), 1);
+        Assert.assertEquals(system.getParticles(outside).size(), 20);
+
+        // the particles left behind are frozen while culled and still counted
+        system.setPosition(0, 0);
+        budget.update();
+        system.update(16);
+        Assert.assertEquals(budget.getCulledParticles(), 20);
+        budget.update();
+        Assert.assertEquals(budget.getLiveParticles(), system.getParticleCount() + 20);
+        system.update(16);
+        Assert.assertEquals(system.getParticles(outside).size(), 20);
+        Assert.assertEquals(system.getParticles(outside).life[0], 984f);
+    }
+
+    public void poolsCreateParticlesAsTheyreNeeded() {
+        CountingSystem system = new CountingSystem(1000);
+        int dummy = system.created;
+        ConfigurableEmitter emitter = emitter(0, 0);
+        system.addEmitter(emitter);
+        Assert.assertEquals(system.created, dummy);
+
+        system.update(16);
+        Assert.assertEquals(system.getParticleCount(), 20);
+        Assert.assertEquals(system.created - dummy, 32);
+
+        for (int frame = 0; frame < 100; frame++) {
+            system.update(16);
+        }
+        Assert.assertTrue(system.getParticleCount() > 900);
+        Assert.assertEquals(system.created - dummy, 1000);
+    }
+}
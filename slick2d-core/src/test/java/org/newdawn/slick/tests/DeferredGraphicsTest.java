@@ -0,0 +1,110 @@
+package org.newdawn.slick.tests;
+
+import org.newdawn.slick.AppGameContainer;
+import org.newdawn.slick.BasicGame;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.GameContainer;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.Input;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.renderer.Renderer;
+
+/**
+ * A test for deferred drawing through the graphics context. Images from different
+ * textures are drawn interleaved so direct drawing rebinds the texture for every
+ * image, deferred drawing puts each texture in its own layer to group them back
+ * together.
+ */
+public class DeferredGraphicsTest extends BasicGame {
+	/** The number of images to draw */
+	private static final int COUNT = 2000;
+
+	/** The images drawn, each with its own texture */
+	private Image[] images;
+	/** The x positions of the images */
+	private float[] xs = new float[COUNT];
+	/** The y positions of the images */
+	private float[] ys = new float[COUNT];
+	/** True if drawing is deferred */
+	private boolean deferred = true;
+
+	/**
+	 * Create a new test of deferred drawing
+	 */
+	public DeferredGraphicsTest() {
+		super("Deferred Graphics Test");
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#init(org.newdawn.slick.GameContainer)
+	 */
+	public void init(GameContainer container) throws SlickException {
+		images = new Image[] {new Image("testdata/rocket.png"), new Image("testdata/cross.png"),
+							  new Image("testdata/logo.png").getScaledCopy(0.25f)};
+
+		for (int i=0;i<COUNT;i++) {
+			xs[i] = (float) (Math.random() * container.getWidth());
+			ys[i] = (float) (Math.random() * container.getHeight());
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#render(org.newdawn.slick.GameContainer, org.newdawn.slick.Graphics)
+	 */
+	public void render(GameContainer container, Graphics g) {
+		g.setDeferred(deferred);
+
+		// each texture gets its own layer so its images are drawn together
+		for (int i=0;i<COUNT;i++) {
+			g.setLayer(1 + (i % images.length));
+			g.drawImage(images[i % images.length], xs[i], ys[i]);
+		}
+		// the background layer is drawn first even though it's given last
+		g.setLayer(0);
+		g.drawImage(images[2], 300, 250, new Color(1,1,1,0.5f));
+
+		g.setDeferred(false);
+
+		g.setColor(Color.black);
+		g.fillRect(0, 40, 400, 25);
+		g.setColor(Color.white);
+		g.drawString((deferred ? "Deferred" : "Direct")+" ("+COUNT+" images) - Space to toggle", 10, 45);
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#update(org.newdawn.slick.GameContainer, int)
+	 */
+	public void update(GameContainer container, int delta) {
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#keyPressed(int, char)
+	 */
+	public void keyPressed(int key, char c) {
+		if (key == Input.KEY_ESCAPE) {
+			System.exit(0);
+		}
+		if (key == Input.KEY_SPACE) {
+			deferred = !deferred;
+		}
+	}
+
+	/**
+	 * Entry point to our test
+	 *
+	 * @param argv The arguments passed to the test
+	 */
+	public static void main(String[] argv) {
+		try {
+			Renderer.setRenderer(Renderer.VERTEX_ARRAY_RENDERER);
+			Renderer.instrument();
+
+			AppGameContainer container = new AppGameContainer(new DeferredGraphicsTest());
+			container.setDisplayMode(800,600,false);
+			container.start();
+		} catch (SlickException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.newdawn.slick.tests;
+
+import org.newdawn.slick.AppGameContainer;
+import org.newdawn.slick.BasicGame;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.GameContainer;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.Input;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.SpriteBatch;
+import org.newdawn.slick.opengl.renderer.Renderer;
+
+/**
+ * A test for rendering large numbers of rotated sprites through a sprite batch
+ * compared to drawing them one at a time
+ */
+public class SpriteBatchTest extends BasicGame {
+	/** The number of sprites to render */
+	private static final int COUNT = 5000;
+
+	/** The image to render */
+	private Image image;
+	/** The batch to render through */
+	private SpriteBatch batch;
+	/** The x positions of the sprites */
+	private float[] xs = new float[COUNT];
+	/** The y positions of the sprites */
+	private float[] ys = new float[COUNT];
+	/** The rotation applied to all the sprites */
+	private float rot;
+	/** True if we're rendering through the batch */
+	private boolean batched = true;
+
+	/**
+	 * Create a new test of sprite batching
+	 */
+	public SpriteBatchTest() {
+		super("Sprite Batch Test");
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#init(org.newdawn.slick.GameContainer)
+	 */
+	public void init(GameContainer container) throws SlickException {
+		image = new Image("testdata/rocket.png");
+		batch = new SpriteBatch();
+
+		for (int i=0;i<COUNT;i++) {
+			xs[i] = (float) (Math.random() * container.getWidth());
+			ys[i] = (float) (Math.random() * container.getHeight());
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#render(org.newdawn.slick.GameContainer, org.newdawn.slick.Graphics)
+	 */
+	public void render(GameContainer container, Graphics g) {
+		image.setRotation(rot);
+
+		if (batched) {
+			batch.begin();
+			for (int i=0;i<COUNT;i++) {
+				image.draw(batch, xs[i], ys[i]);
+			}
+			batch.end();
+		} else {
+			for (int i=0;i<COUNT;i++) {
+				image.draw(xs[i], ys[i]);
+			}
+		}
+
+		g.setColor(Color.black);
+		g.fillRect(0, 0, 330, 60);
+		g.setColor(Color.white);
+		g.drawString((batched ? "Batched" : "Direct")+" ("+COUNT+" sprites) - Space to toggle", 10, 30);
+		if (batched) {
+			g.drawString("Render calls: "+batch.getRenderCalls(), 10, 45);
+		}
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#update(org.newdawn.slick.GameContainer, int)
+	 */
+	public void update(GameContainer container, int delta) {
+		rot += delta * 0.1f;
+	}
+
+	/**
+	 * @see org.newdawn.slick.BasicGame#keyPressed(int, char)
+	 */
+	public void keyPressed(int key, char c) {
+		if (key == Input.KEY_ESCAPE) {
+			System.exit(0);
+		}
+		if (key == Input.KEY_SPACE) {
+			batched = !batched;
+		}
+	}
+
+	/**
+	 * Entry point to our test
+	 *
+	 * @param argv The arguments passed to the test
+	 */
+	public static void main(String[] argv) {
+		try {
+			Renderer.setRenderer(Renderer.VERTEX_ARRAY_RENDERER);
+
+			AppGameContainer container = new AppGameContainer(new SpriteBatchTest());
+			container.setDisplayMode(800,600,false);
+			container.start();
+		} catch (SlickException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class IsometricRowsTest {
+
+    private static TiledMap isometricMap(int width, int height) throws Exception {
+        String xml = "<map orientation=\"isometric\" width=\"" + width + "\" height=\"" + height
+                + "\" tilewidth=\"64\" tileheight=\"32\">"
+                + TiledMapLoadTest.layer("ground", width, height, new int[width * height], false)
+                + "</map>";
+        return new TiledMap(new ByteArrayInputStream(xml.getBytes("UTF-8")), "", false);
+    }
+
+    private static Set<Long> found(TiledMap map, int count) {
+        Set<Long> tiles = new HashSet<Long>();
+        int previous = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int row = map.isometricRows[i * 3];
+            Assert.assertTrue(row > previous, "Rows should be back to front");
+            previous = row;
+            for (int tx = map.isometricRows[(i * 3) + 1]; tx <= map.isometricRows[(i * 3) + 2]; tx++) {
+                Assert.assertTrue(tiles.add(((long) tx << 32) | (row - tx)));
+            }
+        }
+        return tiles;
+    }
+
+    public void findsExactlyTheTilesInView() throws Exception {
+        int width = 40;
+        int height = 30;
+        TiledMap map = isometricMap(width, height);
+        Random random = new Random(3);
+
+        for (int round = 0; round < 300; round++) {
+            int x = random.nextInt(2000) - 1000;
+            int y = random.nextInt(1000) - 500;
+            int viewX = random.nextInt(1200) - 200;
+            int viewY = random.nextInt(800) - 200;
+            int viewWidth = 1 + random.nextInt(800);
+            int viewHeight = 1 + random.nextInt(600);
+
+            Set<Long> expected = new HashSet<Long>();
+            for (int ty = 0; ty < height; ty++) {
+                for (int tx = 0; tx < width; tx++) {
+                    int left = x + ((tx - ty) * 32);
+                    int top = y + ((tx + ty) * 16);
+                    if ((left + 64 > viewX) && (left < viewX + viewWidth)
+                            && (top + 32 > viewY) && (top < viewY + viewHeight)) {
+                        expected.add(((long) tx << 32) | ty);
+                    }
+                }
+            }
+
+            int count = map.findIsometricRows(x, y, 0, 0, width, height, viewX, viewY, viewWidth, viewHeight);
+            Assert.assertEquals(found(map, count), expected);
+        }
+    }
+
+    public void limitsRowsToTheSection() throws Exception {
+        TiledMap map = isometricMap(20, 20);
+        int count = map.findIsometricRows(0, 0, 3, 5, 4, 6, -100000, -100000, 200000, 200000);
+
+        Set<Long> tiles = found(map, count);
+        Assert.assertEquals(tiles.size(), 4 * 6);
+        for (int ty = 5; ty < 11; ty++) {
+            for (int tx = 3; tx < 7; tx++) {
+                Assert.assertTrue(tiles.contains(((long) tx << 32) | ty));
+            }
+        }
+        Assert.assertEquals(map.findIsometricRows(0, 0, 30, 0, 5, 5, -100000, -100000, 200000, 200000), 0);
+    }
+}
@@ -0,0 +1,140 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayInputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.newdawn.slick.RecordedGL;
+import org.newdawn.slick.opengl.renderer.RecordingSGL;
+import org.newdawn.slick.opengl.renderer.SGL;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class LayerChunkTest {
+    private static final int TILE = 16;
+    private static final int SIZE = Layer.CHUNK_SIZE * 2;
+
+    private RecordingSGL gl;
+    private RecordedGL recorded;
+    private SGL old;
+
+    @BeforeMethod
+    public void record() {
+        gl = new RecordingSGL();
+        recorded = new RecordedGL(gl);
+        old = Layer.GL;
+        Layer.GL = gl;
+    }
+
+    @AfterMethod
+    public void restore() {
+        Layer.GL = old;
+        recorded.restore();
+    }
+
+    private static TiledMap map(int tileHeight) throws Exception {
+        Random random = new Random(5);
+        int[] tiles = new int[SIZE * SIZE];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = 1 + random.nextInt(16);
+        }
+        String xml = "<map orientation=\"orthogonal\" width=\"" + SIZE + "\" height=\"" + SIZE
+                + "\" tilewidth=\"" + TILE + "\" tileheight=\"" + TILE + "\">\n"
+                + " <tileset firstgid=\"1\" name=\"a\" tilewidth=\"" + TILE + "\" tileheight=\"" + tileHeight + "\">\n"
+                + "  <image source=\"a.png\"/>\n"
+                + " </tileset>\n"
+                + TiledMapLoadTest.layer("ground", SIZE, SIZE, tiles, false)
+                + "</map>\n";
+        TiledMap map = new TiledMap(new ByteArrayInputStream(xml.getBytes("UTF-8")), "", false);
+        map.getTileSet(0).setTileSetImage(RecordedGL.image(1, TILE * 4, tileHeight * 4));
+        return map;
+    }
+
+    /**
+     * Render the whole map and split the vertices drawn up by the chunk each quad is in
+     */
+    private List<float[]> renderChunks(TiledMap map) {
+        gl.getEvents().clear();
+        map.render(0, 0, 0, 0, SIZE, SIZE, false);
+
+        List<List<Float>> chunks = new ArrayList<List<Float>>();
+        for (int i = 0; i < 4; i++) {
+            chunks.add(new ArrayList<Float>());
+        }
+        int quadSize = RecordingSGL.VERTEX_SIZE * 6;
+        for (Object event : gl.getEvents()) {
+            if (!(event instanceof RecordingSGL.Primitive)) {
+                continue;
+            }
+            float[] data = ((RecordingSGL.Primitive) event).getData();
+            for (int quad = 0; quad < data.length; quad += quadSize) {
+                int tx = (int) data[quad] / TILE;
+                int ty = (int) data[quad + 1] / TILE;
+                List<Float> chunk = chunks.get(((ty / Layer.CHUNK_SIZE) * 2) + (tx / Layer.CHUNK_SIZE));
+                for (int i = 0; i < quadSize; i++) {
+                    chunk.add(data[quad + i]);
+                }
+            }
+        }
+
+        List<float[]> streams = new ArrayList<float[]>();
+        for (List<Float> chunk : chunks) {
+            float[] stream = new float[chunk.size()];
+            for (int i = 0; i < stream.length; i++) {
+                stream[i] = chunk.get(i);
+            }
+            streams.add(stream);
+        }
+        return streams;
+    }
+
+    public void changingATileOnlyRebuildsItsChunk() throws Exception {
+        TiledMap map = map(TILE);
+        List<float[]> before = renderChunks(map);
+        for (float[] stream : before) {
+            Assert.assertEquals(stream.length, Layer.CHUNK_SIZE * Layer.CHUNK_SIZE * RecordingSGL.VERTEX_SIZE * 6);
+        }
+
+        // a tile changed behind the layer's back shows which chunks come from the cache
+        Layer layer = (Layer) map.layers.get(0);
+        IntBuffer tiles = layer.getTileData();
+        tiles.put(5, (tiles.get(5) & ~Layer.MAX_TILE_ID) | (layer.getTileID(5, 0) % 16) + 1);
+        map.setTileId(Layer.CHUNK_SIZE + 3, 4, 0, (map.getTileId(Layer.CHUNK_SIZE + 3, 4, 0) % 16) + 1);
+
+        List<float[]> after = renderChunks(map);
+        Assert.assertTrue(Arrays.equals(after.get(0), before.get(0)), "Unchanged chunk should be drawn from the cache");
+        Assert.assertFalse(Arrays.equals(after.get(1), before.get(1)), "Changed chunk should be rebuilt");
+        Assert.assertTrue(Arrays.equals(after.get(2), before.get(2)));
+        Assert.assertTrue(Arrays.equals(after.get(3), before.get(3)));
+    }
+
+    public void mismatchedTileSizesRenderLineByLine() throws Exception {
+        TiledMap map = map(TILE + 8);
+        gl.getEvents().clear();
+        map.render(0, 0, 0, 0, SIZE, SIZE, false);
+
+        float[] data = null;
+        for (Object event : gl.getEvents()) {
+            if (event instanceof RecordingSGL.Primitive) {
+                Assert.assertNull(data, "Expected one run of quads");
+                data = ((RecordingSGL.Primitive) event).getData();
+            }
+        }
+        Assert.assertNotNull(data);
+        Assert.assertEquals(data.length, SIZE * SIZE * RecordingSGL.VERTEX_SIZE * 6);
+
+        // the taller tiles are lifted to sit on the bottom of their cells and the
+        // first row is drawn all the way across before the next, neither of which
+        // the chunks do
+        int quadSize = RecordingSGL.VERTEX_SIZE * 6;
+        Assert.assertEquals(data[1], -8f);
+        Assert.assertEquals(data[Layer.CHUNK_SIZE * quadSize], (float) Layer.CHUNK_SIZE * TILE);
+        Assert.assertEquals(data[(Layer.CHUNK_SIZE * quadSize) + 1], -8f);
+    }
+}
@@ -0,0 +1,140 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class ObjectIndexTest {
+
+    private static final int OBJECTS = 300;
+
+    private static TiledMap load(Random random, int maxSize) throws Exception {
+        StringBuffer objects = new StringBuffer();
+        for (int i = 0; i < OBJECTS; i++) {
+            int width = random.nextInt(4) == 0 ? 0 : random.nextInt(maxSize);
+            int height = random.nextInt(4) == 0 ? 0 : random.nextInt(maxSize);
+            objects.append("  <object name=\"o" + (i % 10) + "\" type=\"t" + (i % 3) + "\" x=\""
+                    + (random.nextInt(3000) - 500) + "\" y=\"" + (random.nextInt(2000) - 500) + "\" width=\""
+                    + width + "\" height=\"" + height + "\">\n"
+                    + "   <properties><property name=\"hp\" value=\"" + i + "\"/>"
+                    + "<property name=\"speed\" value=\"" + (i * 0.5f) + "\"/>"
+                    + "<property name=\"solid\" value=\"" + (i % 2 == 0) + "\"/>"
+                    + "<property name=\"label\" value=\"thing " + i + "\"/></properties>\n"
+                    + "  </object>\n");
+        }
+
+        String tmx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<map version=\"1.0\" orientation=\"orthogonal\" width=\"100\" height=\"60\""
+                + " tilewidth=\"16\" tileheight=\"16\">\n"
+                + " <objectgroup name=\"empty\" width=\"100\" height=\"60\"/>\n"
+                + " <objectgroup name=\"things\" width=\"100\" height=\"60\">\n" + objects
+                + " </objectgroup>\n"
+                + "</map>\n";
+        return new TiledMap(new ByteArrayInputStream(tmx.getBytes("UTF-8")), "maps", false);
+    }
+
+    private static int[] scan(TiledMap map, int group, int x, int y, int width, int height) {
+        int[] result = new int[map.getObjectCount(group)];
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            int left = map.getObjectX(group, i);
+            int top = map.getObjectY(group, i);
+            int right = left + Math.max(1, map.getObjectWidth(group, i));
+            int bottom = top + Math.max(1, map.getObjectHeight(group, i));
+            if ((left < x + width) && (right > x) && (top < y + height) && (bottom > y)) {
+                result[count++] = i;
+            }
+        }
+
+        int[] trimmed = new int[count];
+        System.arraycopy(result, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static void checkQueries(TiledMap map, int group, Random random) {
+        for (int i = 0; i < 500; i++) {
+            int x = random.nextInt(3600) - 800;
+            int y = random.nextInt(2600) - 800;
+            int width = random.nextInt(400);
+            int height = random.nextInt(400);
+            Assert.assertEquals(map.getObjectsIn(group, x, y, width, height),
+                    width == 0 || height == 0 ? new int[0] : scan(map, group, x, y, width, height));
+            Assert.assertEquals(map.getObjectsAt(group, x, y), scan(map, group, x, y, 1, 1));
+        }
+    }
+
+    public void areaQueriesMatchScan() throws Exception {
+        Random random = new Random(3);
+        TiledMap map = load(random, 200);
+        int group = map.getObjectGroupIndex("things");
+        Assert.assertEquals(group, 1);
+
+        checkQueries(map, group, random);
+
+        // a point object is found at its own position
+        for (int i = 0; i < map.getObjectCount(group); i++) {
+            int[] found = map.getObjectsAt(group, map.getObjectX(group, i), map.getObjectY(group, i));
+            Assert.assertTrue(Arrays.binarySearch(found, i) >= 0);
+        }
+    }
+
+    public void looksUpNamesTypesAndTypedProperties() throws Exception {
+        TiledMap map = load(new Random(5), 200);
+        int group = map.getObjectGroupIndex("things");
+
+        int[] named = map.getObjectsByName(group, "o4");
+        Assert.assertEquals(named.length, OBJECTS / 10);
+        for (int i = 0; i < named.length; i++) {
+            Assert.assertEquals(named[i], 4 + (i * 10));
+        }
+        int[] typed = map.getObjectsByType(group, "t2");
+        Assert.assertEquals(typed.length, OBJECTS / 3);
+        Assert.assertEquals(typed[1], 5);
+        Assert.assertEquals(map.getObjectsByName(group, "missing").length, 0);
+
+        Assert.assertEquals(map.getObjectPropertyInt(group, 17, "hp", -1), 17);
+        Assert.assertEquals(map.getObjectPropertyFloat(group, 17, "speed", -1), 8.5f, 0.0001f);
+        Assert.assertEquals(map.getObjectPropertyBoolean(group, 17, "solid", true), false);
+        Assert.assertEquals(map.getObjectPropertyInt(group, 17, "label", -1), -1);
+        Assert.assertEquals(map.getObjectPropertyInt(group, 17, "speed", -1), -1);
+        Assert.assertEquals(map.getObjectProperty(group, 17, "label", null), "thing 17");
+
+        Assert.assertEquals(map.getObjectsIn(0, 0, 0, 1000, 1000).length, 0);
+        Assert.assertEquals(map.getObjectsIn(7, 0, 0, 1000, 1000).length, 0);
+        Assert.assertEquals(map.getObjectPropertyInt(group, OBJECTS, "hp", -1), -1);
+        Assert.assertEquals(map.getObjectGroupIndex("missing"), -1);
+    }
+
+    public void largeObjectsAreFound() throws Exception {
+        Random random = new Random(7);
+        TiledMap map = load(random, 3000);
+        checkQueries(map, 1, random);
+    }
+
+    public void queriesCanBeMadeFromSeveralThreads() throws Exception {
+        final TiledMap map = load(new Random(9), 400);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long seed = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        checkQueries(map, 1, new Random(seed));
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        Assert.assertNull(failure[0]);
+    }
+}
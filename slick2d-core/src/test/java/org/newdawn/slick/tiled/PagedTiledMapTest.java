@@ -0,0 +1,188 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class PagedTiledMapTest {
+
+    private static final int PAGE = 8;
+
+    private static class TestSource implements PageSource {
+        private final boolean[] empty;
+        private final int across;
+        private int reads;
+        private int failures;
+
+        TestSource(int across, boolean[] empty) {
+            this.across = across;
+            this.empty = empty;
+        }
+
+        public synchronized InputStream getPage(int x, int y) throws IOException {
+            reads++;
+            if (empty[(y * across) + x]) {
+                return null;
+            }
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Page " + x + "," + y + " can't be read");
+            }
+
+            int[] ground = new int[PAGE * PAGE];
+            int[] walls = new int[PAGE * PAGE];
+            for (int ty = 0; ty < PAGE; ty++) {
+                for (int tx = 0; tx < PAGE; tx++) {
+                    int gx = (x * PAGE) + tx;
+                    int gy = (y * PAGE) + ty;
+                    ground[(ty * PAGE) + tx] = 1 + gx + (gy * 1000);
+                    walls[(ty * PAGE) + tx] = (gx % 3 == 0) ? 5 : 0;
+                }
+            }
+            String xml = "<map orientation=\"orthogonal\" width=\"" + PAGE + "\" height=\"" + PAGE
+                    + "\" tilewidth=\"16\" tileheight=\"16\">\n"
+                    + TiledMapLoadTest.layer("ground", PAGE, PAGE, ground, false)
+                    + TiledMapLoadTest.layer("walls", PAGE, PAGE, walls, false)
+                    + "</map>\n";
+            return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+        }
+
+        public String getTilesLocation(int x, int y) {
+            return "";
+        }
+
+        synchronized int getReads() {
+            return reads;
+        }
+
+        synchronized void setFailures(int failures) {
+            this.failures = failures;
+        }
+    }
+
+    private static void waitFor(PagedTiledMap map, int[][] tiles) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (true) {
+            map.update();
+            boolean done = true;
+            for (int i = 0; i < tiles.length; i++) {
+                done &= map.isLoaded(tiles[i][0], tiles[i][1]);
+            }
+            if (done) {
+                return;
+            }
+            Assert.assertTrue(System.currentTimeMillis() < end, "Pages weren't loaded in time");
+            Thread.sleep(5);
+        }
+    }
+
+    public void readsTilesAcrossPages() throws Exception {
+        TestSource source = new TestSource(2, new boolean[] {false, false, false, true});
+        PagedTiledMap map = new PagedTiledMap(source, 2, 2, PAGE, PAGE, 16, 16);
+        try {
+            Assert.assertEquals(map.getWidthInTiles(), 16);
+            Assert.assertFalse(map.isLoaded(0, 0));
+            Assert.assertEquals(map.getTileId(0, 0, 0), 0);
+            Assert.assertTrue(map.blocked(null, 0, 0));
+
+            map.setView(0, 0, 16, 16);
+            waitFor(map, new int[][] {{0, 0}, {8, 0}, {0, 8}, {8, 8}});
+
+            for (int y = 0; y < 16; y++) {
+                for (int x = 0; x < 16; x++) {
+                    int expected = (x >= 8) && (y >= 8) ? 0 : 1 + x + (y * 1000);
+                    Assert.assertEquals(map.getTileId(x, y, 0), expected);
+                }
+            }
+            Assert.assertEquals(map.getTileId(16, 0, 0), 0);
+            Assert.assertNull(map.getPageMap(1, 1));
+            Assert.assertEquals(map.getPageMap(1, 0).getLayerCount(), 2);
+
+            Assert.assertFalse(map.blocked(null, 3, 9));
+            map.setCollisionLayer("walls");
+            Assert.assertTrue(map.blocked(null, 3, 9));
+            Assert.assertFalse(map.blocked(null, 4, 9));
+            // the page that doesn't exist can't be walked on
+            Assert.assertTrue(map.blocked(null, 9, 9));
+            Assert.assertEquals(source.getReads(), 4);
+        } finally {
+            map.shutdown();
+        }
+    }
+
+    public void dropsLeastRecentlyUsedPagesOverBudget() throws Exception {
+        TestSource source = new TestSource(4, new boolean[4]);
+        PagedTiledMap map = new PagedTiledMap(source, 4, 1, PAGE, PAGE, 16, 16);
+        try {
+            map.setPreloadDistance(0);
+            map.setMemoryBudget(1000);
+
+            map.setView(0, 0, PAGE, PAGE);
+            waitFor(map, new int[][] {{0, 0}});
+            map.setView(PAGE, 0, PAGE, PAGE);
+            waitFor(map, new int[][] {{PAGE, 0}});
+
+            // each page holds two layers of 8x8 tiles so only one fits
+            Assert.assertFalse(map.isLoaded(0, 0));
+            Assert.assertTrue(map.blocked(null, 0, 0));
+            Assert.assertTrue(map.getMemoryUsage() <= 1000);
+
+            // pages in view are held even when over budget
+            map.setView(PAGE * 2, 0, PAGE * 2, PAGE);
+            waitFor(map, new int[][] {{PAGE * 2, 0}, {PAGE * 3, 0}});
+            Assert.assertFalse(map.isLoaded(PAGE, 0));
+            Assert.assertTrue(map.getMemoryUsage() > 1000);
+
+            map.setView(0, 0, PAGE, PAGE);
+            waitFor(map, new int[][] {{0, 0}});
+            Assert.assertEquals(map.getTileId(1, 2, 0), 1 + 1 + 2000);
+            Assert.assertEquals(source.getReads(), 5);
+        } finally {
+            map.shutdown();
+        }
+    }
+
+    public void retriesPagesThatFailToLoad() throws Exception {
+        TestSource source = new TestSource(2, new boolean[2]);
+        PagedTiledMap map = new PagedTiledMap(source, 2, 1, PAGE, PAGE, 16, 16);
+        try {
+            map.setPreloadDistance(0);
+            map.setRetryDelay(100);
+            source.setFailures(2);
+            long start = System.currentTimeMillis();
+            map.setView(0, 0, PAGE, PAGE);
+            waitFor(map, new int[][] {{0, 0}});
+            Assert.assertFalse(map.isFailed(0, 0));
+            Assert.assertEquals(source.getReads(), 3);
+            // the retries wait 100ms then 200ms
+            Assert.assertTrue(System.currentTimeMillis() - start >= 300);
+
+            // a page that keeps failing is left failed and blocked
+            source.setFailures(100);
+            map.setView(PAGE, 0, PAGE, PAGE);
+            long end = System.currentTimeMillis() + 10000;
+            while (!map.isFailed(PAGE, 0)) {
+                map.update();
+                Assert.assertTrue(System.currentTimeMillis() < end, "Page didn't fail in time");
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(source.getReads(), 6);
+            Assert.assertFalse(map.isLoaded(PAGE, 0));
+            Assert.assertTrue(map.blocked(null, PAGE, 0));
+
+            // and read again once the view comes back to it
+            source.setFailures(0);
+            map.setView(0, 0, PAGE, PAGE);
+            map.setView(PAGE, 0, PAGE, PAGE);
+            waitFor(map, new int[][] {{PAGE, 0}});
+            Assert.assertFalse(map.isFailed(PAGE, 0));
+            Assert.assertEquals(map.getTileId(PAGE, 0, 0), 1 + PAGE);
+        } finally {
+            map.shutdown();
+        }
+    }
+}
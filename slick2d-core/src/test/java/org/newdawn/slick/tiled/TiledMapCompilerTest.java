@@ -0,0 +1,190 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.newdawn.slick.SlickException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class TiledMapCompilerTest {
+
+    private static final int WIDTH = 50;
+    private static final int HEIGHT = 40;
+
+    private static File writeTmx() throws IOException {
+        Random random = new Random(7);
+        int[] ground = new int[WIDTH * HEIGHT];
+        int[] detail = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < ground.length; i++) {
+            ground[i] = 1 + random.nextInt(40);
+            detail[i] = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(40);
+        }
+
+        return TiledMapLoadTest.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<map version=\"1.0\" orientation=\"orthogonal\" width=\"" + WIDTH + "\" height=\"" + HEIGHT
+                + "\" tilewidth=\"16\" tileheight=\"16\">\n"
+                + " <properties><property name=\"title\" value=\"caf\u00e9\"/></properties>\n"
+                + " <tileset firstgid=\"1\" name=\"terrain\" tilewidth=\"16\" tileheight=\"16\" spacing=\"1\" margin=\"2\">\n"
+                + "  <image source=\"terrain.png\" trans=\"ff00ff\"/>\n"
+                + "  <tile id=\"3\"><properties><property name=\"solid\" value=\"true\"/></properties></tile>\n"
+                + " </tileset>\n"
+                + " <tileset firstgid=\"21\" name=\"props\" tilewidth=\"16\" tileheight=\"16\">\n"
+                + "  <image source=\"sub/props.png\"/>\n"
+                + " </tileset>\n"
+                + TiledMapLoadTest.layer("ground", WIDTH, HEIGHT, ground, true)
+                + TiledMapLoadTest.layer("detail", WIDTH, HEIGHT, detail, false)
+                + " <objectgroup name=\"things\" width=\"" + WIDTH + "\" height=\"" + HEIGHT + "\">\n"
+                + "  <properties><property name=\"kind\" value=\"spawns\"/></properties>\n"
+                + "  <object name=\"door\" type=\"exit\" x=\"64\" y=\"96\" width=\"32\" height=\"16\">\n"
+                + "   <image source=\"door.png\"/>\n"
+                + "   <properties><property name=\"to\" value=\"cellar\"/></properties>\n"
+                + "  </object>\n"
+                + "  <object name=\"chest\" x=\"8\" y=\"4\" width=\"16\" height=\"16\"/>\n"
+                + " </objectgroup>\n"
+                + "</map>\n");
+    }
+
+    private static TiledMap loadWithoutImages(File file) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return new TiledMap(in, "maps", false);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static File compile(File tmx) throws Exception {
+        File binary = File.createTempFile("map", ".tmb");
+        binary.deleteOnExit();
+        TiledMapCompiler.compile(tmx.getAbsolutePath(), binary);
+        return binary;
+    }
+
+    private static void assertSameMap(TiledMap actual, TiledMap expected) {
+        Assert.assertEquals(actual.getWidth(), expected.getWidth());
+        Assert.assertEquals(actual.getHeight(), expected.getHeight());
+        Assert.assertEquals(actual.getTileWidth(), expected.getTileWidth());
+        Assert.assertEquals(actual.getTileHeight(), expected.getTileHeight());
+        Assert.assertEquals(actual.orientation, expected.orientation);
+        Assert.assertEquals(actual.getMapProperty("title", null), expected.getMapProperty("title", null));
+
+        Assert.assertEquals(actual.getTileSetCount(), expected.getTileSetCount());
+        for (int i = 0; i < expected.getTileSetCount(); i++) {
+            TileSet a = actual.getTileSet(i);
+            TileSet e = expected.getTileSet(i);
+            Assert.assertEquals(a.name, e.name);
+            Assert.assertEquals(a.firstGID, e.firstGID);
+            Assert.assertEquals(a.lastGID, e.lastGID);
+            Assert.assertEquals(a.getTileSpacing(), e.getTileSpacing());
+            Assert.assertEquals(a.getTileMargin(), e.getTileMargin());
+            Assert.assertEquals(a.imageRef, e.imageRef);
+            Assert.assertEquals(a.transparent == null, e.transparent == null);
+            Assert.assertEquals(a.props, e.props);
+        }
+        if (expected.getTileSetCount() > 0) {
+            Assert.assertEquals(actual.getTileProperty(4, "solid", null), expected.getTileProperty(4, "solid", null));
+        }
+
+        Assert.assertEquals(actual.getLayerCount(), expected.getLayerCount());
+        for (int l = 0; l < expected.getLayerCount(); l++) {
+            Layer a = (Layer) actual.layers.get(l);
+            Layer e = (Layer) expected.layers.get(l);
+            Assert.assertEquals(a.name, e.name);
+            Assert.assertEquals(a.props, e.props);
+            for (int y = 0; y < e.height; y++) {
+                for (int x = 0; x < e.width; x++) {
+                    Assert.assertEquals(a.getTileID(x, y), e.getTileID(x, y));
+                    Assert.assertEquals(a.getTileSetIndex(x, y), e.getTileSetIndex(x, y));
+                    Assert.assertEquals(a.getLocalTileID(x, y), e.getLocalTileID(x, y));
+                }
+            }
+        }
+
+        Assert.assertEquals(actual.getObjectGroupCount(), expected.getObjectGroupCount());
+        for (int g = 0; g < expected.getObjectGroupCount(); g++) {
+            TiledMap.ObjectGroup a = (TiledMap.ObjectGroup) actual.objectGroups.get(g);
+            TiledMap.ObjectGroup e = (TiledMap.ObjectGroup) expected.objectGroups.get(g);
+            Assert.assertEquals(a.name, e.name);
+            Assert.assertEquals(a.props, e.props);
+            Assert.assertEquals(actual.getObjectCount(g), expected.getObjectCount(g));
+            for (int o = 0; o < expected.getObjectCount(g); o++) {
+                Assert.assertEquals(actual.getObjectName(g, o), expected.getObjectName(g, o));
+                Assert.assertEquals(actual.getObjectType(g, o), expected.getObjectType(g, o));
+                Assert.assertEquals(actual.getObjectX(g, o), expected.getObjectX(g, o));
+                Assert.assertEquals(actual.getObjectY(g, o), expected.getObjectY(g, o));
+                Assert.assertEquals(actual.getObjectWidth(g, o), expected.getObjectWidth(g, o));
+                Assert.assertEquals(actual.getObjectHeight(g, o), expected.getObjectHeight(g, o));
+                Assert.assertEquals(actual.getObjectImage(g, o), expected.getObjectImage(g, o));
+                Assert.assertEquals(actual.getObjectProperty(g, o, "to", null),
+                        expected.getObjectProperty(g, o, "to", null));
+            }
+        }
+    }
+
+    public void compiledMapMatchesTmx() throws Exception {
+        File tmx = writeTmx();
+        File binary = compile(tmx);
+
+        TiledMap expected = loadWithoutImages(tmx);
+        TiledMap actual = loadWithoutImages(binary);
+        Assert.assertEquals(expected.getTileSet(0).imageRef, "maps/terrain.png");
+        Assert.assertEquals(expected.getTileSet(1).imageRef, "maps/sub/props.png");
+        Assert.assertEquals(expected.getMapProperty("title", null), "caf\u00e9");
+        assertSameMap(actual, expected);
+    }
+
+    public void mappedMapWithoutTileSetsMatchesTmx() throws Exception {
+        File tmx = writeTmx();
+        File binary = compile(tmx);
+
+        TiledMap expected = new TiledMap(tmx.getAbsolutePath(), false);
+        TiledMap actual = new TiledMap(binary.getAbsolutePath(), false);
+        Assert.assertEquals(actual.getTileSetCount(), 0);
+        assertSameMap(actual, expected);
+    }
+
+    public void changesAreNotWrittenToTheFile() throws Exception {
+        File binary = compile(writeTmx());
+        long modified = binary.length();
+
+        TiledMap map = new TiledMap(binary.getAbsolutePath(), false);
+        int original = map.getTileId(5, 6, 1);
+        map.setTileId(5, 6, 1, 39);
+        Assert.assertEquals(map.getTileId(5, 6, 1), 39);
+
+        TiledMap reloaded = new TiledMap(binary.getAbsolutePath(), false);
+        Assert.assertEquals(reloaded.getTileId(5, 6, 1), original);
+        Assert.assertEquals(binary.length(), modified);
+    }
+
+    public void compilesFromStream() throws Exception {
+        TiledMap expected = loadWithoutImages(writeTmx());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TiledMapCompiler.compile(expected, bytes);
+
+        TiledMap actual = new TiledMap(new ByteArrayInputStream(bytes.toByteArray()), "maps", false);
+        assertSameMap(actual, expected);
+    }
+
+    public void rejectsUnknownVersion() throws Exception {
+        File binary = compile(writeTmx());
+        RandomAccessFile file = new RandomAccessFile(binary, "rw");
+        file.seek(4);
+        file.write(99);
+        file.close();
+
+        try {
+            new TiledMap(binary.getAbsolutePath(), false);
+            Assert.fail("Expected the map to be rejected");
+        } catch (SlickException e) {
+            Assert.assertTrue(e.getMessage().contains("version"));
+        }
+    }
+}
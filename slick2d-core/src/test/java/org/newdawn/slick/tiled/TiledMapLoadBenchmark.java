@@ -0,0 +1,142 @@
+package org.newdawn.slick.tiled;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A simple benchmark of loading a huge map, as TMX and compiled by
+ * TiledMapCompiler, reporting the time taken, the most heap used while loading
+ * and the heap the loaded map holds on to. Tilesets
+ * aren't loaded so it can be run without a display. Best run with a large heap,
+ * e.g. -Xmx4g.
+ */
+public class TiledMapLoadBenchmark {
+	/** The width and height of the map in tiles */
+	private static final int SIZE = 4096;
+	/** The number of layers in the map */
+	private static final int LAYERS = 2;
+	/** The number of times the map is loaded */
+	private static final int ROUNDS = 3;
+
+	/**
+	 * Write a map of random tiles
+	 *
+	 * @param file The file to write the map to
+	 * @throws IOException Indicates a failure to write the map
+	 */
+	private static void writeMap(File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+"<map version=\"1.0\" orientation=\"orthogonal\" width=\""+SIZE+"\" height=\""+SIZE
+				+"\" tilewidth=\"32\" tileheight=\"32\">\n").getBytes("UTF-8"));
+
+		Random random = new Random(1);
+		for (int l=0;l<LAYERS;l++) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+			byte[] row = new byte[SIZE * 4];
+			for (int y=0;y<SIZE;y++) {
+				for (int x=0;x<SIZE;x++) {
+					// runs of the same tile as real maps have
+					int tile = (random.nextInt(8) == 0) ? random.nextInt(64) : 1;
+					row[x*4] = (byte) tile;
+				}
+				gzip.write(row);
+			}
+			gzip.close();
+
+			out.write(("<layer name=\"layer"+l+"\" width=\""+SIZE+"\" height=\""+SIZE+"\">\n"
+					+"<data encoding=\"base64\" compression=\"gzip\">\n").getBytes("UTF-8"));
+			out.write(TiledMapLoadTest.base64(bytes.toByteArray()).getBytes("UTF-8"));
+			out.write("\n</data>\n</layer>\n".getBytes("UTF-8"));
+		}
+		out.write("</map>\n".getBytes("UTF-8"));
+		out.close();
+	}
+
+	/**
+	 * Get the heap in use
+	 *
+	 * @return The number of bytes of heap in use
+	 */
+	private static long usedHeap() {
+		for (int i=0;i<3;i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Get the most heap used since the peaks were last reset
+	 *
+	 * @param pools The memory pools of the VM
+	 * @return The number of bytes
+	 */
+	private static long peakHeap(List<MemoryPoolMXBean> pools) {
+		long peak = 0;
+		for (int i=0;i<pools.size();i++) {
+			if (pools.get(i).getType() == MemoryType.HEAP) {
+				peak += pools.get(i).getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+
+	/**
+	 * Load a map a number of times, reporting the time and heap used by each
+	 *
+	 * @param file The map to load
+	 * @param pools The memory pools of the VM
+	 * @throws Exception Indicates a failure to load the map
+	 */
+	private static void load(File file, List<MemoryPoolMXBean> pools) throws Exception {
+		for (int r=0;r<ROUNDS;r++) {
+			long before = usedHeap();
+			for (int i=0;i<pools.size();i++) {
+				pools.get(i).resetPeakUsage();
+			}
+
+			long start = System.nanoTime();
+			TiledMap map = new TiledMap(file.getAbsolutePath(), false);
+			long time = System.nanoTime() - start;
+			long peak = peakHeap(pools) - before;
+			long retained = usedHeap() - before;
+
+			System.out.println("Load "+(time / 1000000)+"ms, peak heap "+(peak / (1024 * 1024))
+					+"MB, retained "+(retained / (1024 * 1024))+"MB ("+map.getLayerCount()+" layers)");
+			map = null;
+		}
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the benchmark
+	 * @throws Exception Indicates a failure to write or load the map
+	 */
+	public static void main(String[] argv) throws Exception {
+		File file = File.createTempFile("benchmark", ".tmx");
+		file.deleteOnExit();
+		writeMap(file);
+		File binary = File.createTempFile("benchmark", ".tmb");
+		binary.deleteOnExit();
+		TiledMapCompiler.compile(file.getAbsolutePath(), binary);
+
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		System.out.println(SIZE+"x"+SIZE+" map with "+LAYERS+" layers, TMX "+(file.length() / 1024)+"KB");
+		load(file, pools);
+		System.out.println("Compiled "+(binary.length() / 1024)+"KB");
+		load(binary, pools);
+	}
+}
@@ -0,0 +1,197 @@
+package org.newdawn.slick.tiled;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+
+@Test
+public class TiledMapLoadTest {
+
+    static String encode(int[] tiles) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        for (int i = 0; i < tiles.length; i++) {
+            out.write(tiles[i]);
+            out.write(tiles[i] >> 8);
+            out.write(tiles[i] >> 16);
+            out.write(tiles[i] >> 24);
+        }
+        out.close();
+
+        // wrapped across lines as TilED does
+        String text = base64(bytes.toByteArray());
+        StringBuilder wrapped = new StringBuilder();
+        for (int i = 0; i < text.length(); i += 76) {
+            wrapped.append("\n   ").append(text, i, Math.min(text.length(), i + 76));
+        }
+        return wrapped.append("\n  ").toString();
+    }
+
+    static String base64(byte[] data) {
+        String codes = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < data.length; i += 3) {
+            int remaining = Math.min(3, data.length - i);
+            int bits = (data[i] & 0xff) << 16;
+            bits |= remaining > 1 ? (data[i + 1] & 0xff) << 8 : 0;
+            bits |= remaining > 2 ? data[i + 2] & 0xff : 0;
+            for (int c = 0; c < 4; c++) {
+                text.append(c <= remaining ? codes.charAt((bits >> (18 - (c * 6))) & 63) : '=');
+            }
+        }
+        return text.toString();
+    }
+
+    static String layer(String name, int width, int height, int[] tiles, boolean properties) throws IOException {
+        return "<layer name=\"" + name + "\" width=\"" + width + "\" height=\"" + height + "\">\n"
+                + (properties ? "  <properties><property name=\"depth\" value=\"" + name + "\"/></properties>\n" : "")
+                + "  <data encoding=\"base64\" compression=\"gzip\">" + encode(tiles) + "</data>\n"
+                + "</layer>\n";
+    }
+
+    static File write(String xml) throws IOException {
+        File file = File.createTempFile("map", ".tmx");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(xml.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+
+    private static int[] randomTiles(int count, long seed) {
+        Random random = new Random(seed);
+        int[] tiles = new int[count];
+        for (int i = 0; i < count; i++) {
+            tiles[i] = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(200);
+        }
+        return tiles;
+    }
+
+    public void loadsLayersPropertiesAndObjects() throws Exception {
+        int width = 70;
+        int height = 45;
+        int[] ground = randomTiles(width * height, 1);
+        int[] detail = randomTiles(width * height, 2);
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE map SYSTEM \"http://mapeditor.org/dtd/1.0/map.dtd\">\n"
+                + "<map version=\"1.0\" orientation=\"orthogonal\" width=\"" + width + "\" height=\"" + height
+                + "\" tilewidth=\"32\" tileheight=\"32\">\n"
+                + " <properties><property name=\"title\" value=\"test\"/></properties>\n"
+                + " <tileset firstgid=\"1\" name=\"a\" tilewidth=\"32\" tileheight=\"32\">\n"
+                + "  <image source=\"a.png\"/>\n"
+                + "  <tile id=\"0\"><properties><property name=\"solid\" value=\"true\"/></properties></tile>\n"
+                + " </tileset>\n"
+                + layer("ground", width, height, ground, true)
+                + " <objectgroup name=\"things\" width=\"" + width + "\" height=\"" + height + "\">\n"
+                + "  <object name=\"door\" type=\"exit\" x=\"64\" y=\"96\" width=\"32\" height=\"32\"/>\n"
+                + " </objectgroup>\n"
+                + layer("detail", width, height, detail, false)
+                + "</map>\n";
+
+        TiledMap map = new TiledMap(write(xml).getAbsolutePath(), false);
+        Assert.assertEquals(map.getWidth(), width);
+        Assert.assertEquals(map.getHeight(), height);
+        Assert.assertEquals(map.getTileWidth(), 32);
+        Assert.assertEquals(map.getLayerCount(), 2);
+        Assert.assertEquals(map.getLayerIndex("detail"), 1);
+        Assert.assertEquals(map.getMapProperty("title", null), "test");
+        Assert.assertEquals(map.getLayerProperty(0, "depth", null), "ground");
+        Assert.assertNull(map.getLayerProperty(1, "depth", null));
+
+        Assert.assertEquals(map.getObjectGroupCount(), 1);
+        Assert.assertEquals(map.getObjectCount(0), 1);
+        Assert.assertEquals(map.getObjectName(0, 0), "door");
+        Assert.assertEquals(map.getObjectX(0, 0), 64);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                Assert.assertEquals(map.getTileId(x, y, 0), ground[(y * width) + x]);
+                Assert.assertEquals(map.getTileId(x, y, 1), detail[(y * width) + x]);
+            }
+        }
+
+        map.setTileId(3, 4, 1, 77);
+        Assert.assertEquals(map.getTileId(3, 4, 1), 77);
+        map.setTileId(3, 4, 1, 0);
+        Assert.assertEquals(map.getTileId(3, 4, 1), 0);
+    }
+
+    public void elementMatchesStream() throws Exception {
+        int[] tiles = randomTiles(20 * 30, 3);
+        String xml = layer("dom", 20, 30, tiles, true);
+        Element element = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes("UTF-8"))).getDocumentElement();
+
+        TiledMap map = new TiledMap(write("<map orientation=\"orthogonal\" width=\"20\" height=\"30\" tilewidth=\"8\""
+                + " tileheight=\"8\">" + xml + "</map>").getAbsolutePath(), false);
+        Layer layer = new Layer(map, element);
+        Assert.assertEquals(layer.props.getProperty("depth"), "dom");
+        int[][][] data = layer.getData();
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 20; x++) {
+                Assert.assertEquals(layer.getTileID(x, y), tiles[(y * 20) + x]);
+                Assert.assertEquals(map.getTileId(x, y, 0), tiles[(y * 20) + x]);
+                Assert.assertEquals(layer.getTileSetIndex(x, y), -1);
+                Assert.assertEquals(data[x][y][0], -1);
+                Assert.assertEquals(data[x][y][2], tiles[(y * 20) + x]);
+            }
+        }
+    }
+
+    public void flippedTilesLoadWithoutTheirFlags() throws Exception {
+        int[] tiles = new int[] {5, 0x80000000 | 5, 0x40000000 | 7, 0x20000000 | 9, 0xE0000000 | 1, 0};
+        String xml = "<map orientation=\"orthogonal\" width=\"3\" height=\"2\" tilewidth=\"8\" tileheight=\"8\">\n"
+                + " <tileset firstgid=\"1\" name=\"a\" tilewidth=\"8\" tileheight=\"8\">\n"
+                + "  <image source=\"a.png\"/>\n"
+                + " </tileset>\n"
+                + layer("flipped", 3, 2, tiles, false)
+                + "</map>\n";
+
+        TiledMap map = new TiledMap(write(xml).getAbsolutePath(), false);
+        int[] expected = new int[] {5, 5, 7, 9, 1, 0};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(map.getTileId(i % 3, i / 3, 0), expected[i]);
+        }
+        Layer layer = (Layer) map.layers.get(0);
+        Assert.assertEquals(layer.getTileSetIndex(1, 0), layer.getTileSetIndex(0, 0));
+        Assert.assertEquals(layer.getLocalTileID(1, 0), layer.getLocalTileID(0, 0));
+
+        map.setTileId(2, 1, 0, 0x80000000 | 3);
+        Assert.assertEquals(map.getTileId(2, 1, 0), 3);
+    }
+
+    public void oversizedTileFailsNamingTheLayer() throws Exception {
+        String xml = layer("huge", 2, 1, new int[] {1, Layer.MAX_TILE_ID + 1}, false);
+        try {
+            new TiledMap(write("<map orientation=\"orthogonal\" width=\"2\" height=\"1\" tilewidth=\"8\""
+                    + " tileheight=\"8\">" + xml + "</map>").getAbsolutePath(), false);
+            Assert.fail("Expected the map to fail to load");
+        } catch (org.newdawn.slick.SlickException e) {
+            String message = e.getCause().getMessage();
+            Assert.assertTrue(message.contains("huge"), message);
+            Assert.assertTrue(message.contains("1,0"), message);
+        }
+    }
+
+    public void truncatedLayerFails() throws Exception {
+        String xml = layer("short", 10, 10, new int[50], false).replace("height=\"10\"", "height=\"11\"");
+        try {
+            new TiledMap(write("<map orientation=\"orthogonal\" width=\"10\" height=\"11\" tilewidth=\"8\""
+                    + " tileheight=\"8\">" + xml + "</map>").getAbsolutePath(), false);
+            Assert.fail("Expected the map to fail to load");
+        } catch (org.newdawn.slick.SlickException e) {
+            // expected
+        }
+    }
+}
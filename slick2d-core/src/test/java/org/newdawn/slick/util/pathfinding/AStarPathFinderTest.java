@@ -0,0 +1,78 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class AStarPathFinderTest {
+
+    static void assertSamePath(Path actual, Path expected) {
+        if (expected == null) {
+            Assert.assertNull(actual);
+            return;
+        }
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(actual.getLength(), expected.getLength());
+        for (int i = 0; i < expected.getLength(); i++) {
+            Assert.assertEquals(actual.getX(i), expected.getX(i));
+            Assert.assertEquals(actual.getY(i), expected.getY(i));
+        }
+    }
+
+    private void compare(boolean diagonal, long seed) {
+        GridMap map = GridMap.random(48, 40, 0.3f, seed);
+        AStarPathFinder finder = new AStarPathFinder(map, 500, diagonal);
+        ReferenceAStarPathFinder reference = new ReferenceAStarPathFinder(map, 500, diagonal);
+        Random random = new Random(seed);
+
+        for (int i = 0; i < 200; i++) {
+            int sx = random.nextInt(48);
+            int sy = random.nextInt(40);
+            int tx = random.nextInt(48);
+            int ty = random.nextInt(40);
+            assertSamePath(finder.findPath(null, sx, sy, tx, ty), reference.findPath(null, sx, sy, tx, ty));
+        }
+    }
+
+    public void matchesReferenceWithDiagonals() {
+        compare(true, 1);
+        compare(true, 2);
+    }
+
+    public void matchesReferenceWithoutDiagonals() {
+        compare(false, 3);
+        compare(false, 4);
+    }
+
+    public void findsPathAroundWall() {
+        GridMap map = new GridMap(10, 10);
+        for (int y = 0; y < 9; y++) {
+            map.setBlocked(5, y, true);
+        }
+        Path path = new AStarPathFinder(map, 100, false).findPath(null, 0, 0, 9, 0);
+
+        Assert.assertNotNull(path);
+        Assert.assertEquals(path.getX(0), 0);
+        Assert.assertEquals(path.getX(path.getLength() - 1), 9);
+        Assert.assertEquals(path.getLength(), 28);
+    }
+
+    public void blockedTargetHasNoPath() {
+        GridMap map = new GridMap(10, 10);
+        map.setBlocked(4, 4, true);
+        Assert.assertNull(new AStarPathFinder(map, 100, true).findPath(null, 0, 0, 4, 4));
+    }
+
+    public void unreachableTargetHasNoPath() {
+        GridMap map = new GridMap(10, 10);
+        for (int y = 0; y < 10; y++) {
+            map.setBlocked(5, y, true);
+        }
+        AStarPathFinder finder = new AStarPathFinder(map, 100, true);
+        Assert.assertNull(finder.findPath(null, 0, 0, 9, 9));
+        // state from the failed search must not leak into the next one
+        Assert.assertNotNull(finder.findPath(null, 0, 0, 4, 9));
+    }
+}
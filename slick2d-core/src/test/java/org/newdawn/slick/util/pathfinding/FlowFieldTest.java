@@ -0,0 +1,182 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class FlowFieldTest {
+
+    /** Breadth first distances to the target, every step costing one */
+    private static int[] distances(GridMap map, int tx, int ty, boolean diagonal) {
+        int width = map.getWidthInTiles();
+        int height = map.getHeightInTiles();
+        int[] distance = new int[width * height];
+        java.util.Arrays.fill(distance, -1);
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        distance[ty * width + tx] = 0;
+        queue.add(ty * width + tx);
+
+        while (!queue.isEmpty()) {
+            int tile = queue.removeFirst();
+            int x = tile % width;
+            int y = tile / width;
+            for (int dx = -1; dx < 2; dx++) {
+                for (int dy = -1; dy < 2; dy++) {
+                    if ((dx == 0 && dy == 0) || (!diagonal && dx != 0 && dy != 0)) {
+                        continue;
+                    }
+                    int nx = x + dx;
+                    int ny = y + dy;
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= height || map.isBlocked(nx, ny)) {
+                        continue;
+                    }
+                    if (distance[ny * width + nx] == -1) {
+                        distance[ny * width + nx] = distance[tile] + 1;
+                        queue.add(ny * width + nx);
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static void assertMatches(FlowField field, FlowField expected, GridMap map) {
+        for (int y = 0; y < map.getHeightInTiles(); y++) {
+            for (int x = 0; x < map.getWidthInTiles(); x++) {
+                Assert.assertEquals(field.isReachable(x, y), expected.isReachable(x, y), "reachable " + x + "," + y);
+                if (expected.isReachable(x, y)) {
+                    Assert.assertEquals(field.getCost(x, y), expected.getCost(x, y), 0.001f, "cost " + x + "," + y);
+                    assertLeadsToTarget(field, map, x, y);
+                }
+            }
+        }
+    }
+
+    private static void assertLeadsToTarget(FlowField field, GridMap map, int x, int y) {
+        Path path = field.getPath(x, y);
+        if (x == field.getTargetX() && y == field.getTargetY()) {
+            return;
+        }
+        Assert.assertNotNull(path);
+        Assert.assertEquals(path.getX(path.getLength() - 1), field.getTargetX());
+        Assert.assertEquals(path.getY(path.getLength() - 1), field.getTargetY());
+        for (int i = 0; i < path.getLength(); i++) {
+            Assert.assertFalse(map.isBlocked(path.getX(i), path.getY(i)));
+        }
+    }
+
+    private void checkDistances(boolean diagonal, long seed) {
+        GridMap map = GridMap.random(50, 40, 0.3f, seed);
+        map.setBlocked(25, 20, false);
+        FlowField field = new FlowField(map, diagonal);
+        field.build(null, 25, 20);
+        int[] distance = distances(map, 25, 20, diagonal);
+
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 50; x++) {
+                int expected = distance[y * 50 + x];
+                Assert.assertEquals(field.isReachable(x, y), expected >= 0);
+                if (expected >= 0) {
+                    Assert.assertEquals(field.getCost(x, y), (float) expected, 0.001f);
+                    int dx = field.getDirectionX(x, y);
+                    int dy = field.getDirectionY(x, y);
+                    if (expected > 0) {
+                        Assert.assertEquals(distance[(y + dy) * 50 + x + dx], expected - 1);
+                    }
+                }
+            }
+        }
+    }
+
+    public void fourConnectedDistances() {
+        checkDistances(false, 1);
+    }
+
+    public void eightConnectedDistances() {
+        checkDistances(true, 2);
+    }
+
+    private void checkIncremental(boolean diagonal, long seed) {
+        GridMap map = GridMap.random(40, 40, 0.25f, seed);
+        map.setDiagonalCost(diagonal);
+        map.setBlocked(5, 5, false);
+        FlowField field = new FlowField(map, diagonal);
+        field.build(null, 5, 5);
+        Random random = new Random(seed);
+
+        for (int round = 0; round < 30; round++) {
+            for (int i = 0; i < 1 + random.nextInt(4); i++) {
+                int x = random.nextInt(40);
+                int y = random.nextInt(40);
+                if (x == 5 && y == 5) {
+                    continue;
+                }
+                map.setBlocked(x, y, !map.isBlocked(x, y));
+                field.invalidate(x, y);
+            }
+            field.update();
+
+            FlowField rebuilt = new FlowField(map, diagonal);
+            rebuilt.build(null, 5, 5);
+            assertMatches(field, rebuilt, map);
+        }
+    }
+
+    public void incrementalMatchesRebuild() {
+        checkIncremental(false, 3);
+    }
+
+    public void incrementalMatchesRebuildWithDiagonals() {
+        checkIncremental(true, 4);
+    }
+
+    public void blockedTargetIsUnreachable() {
+        GridMap map = new GridMap(10, 10);
+        FlowField field = new FlowField(map, true);
+        field.build(null, 5, 5);
+        Assert.assertTrue(field.isReachable(0, 0));
+
+        map.setBlocked(5, 5, true);
+        field.invalidate(5, 5);
+        field.update();
+        Assert.assertFalse(field.isReachable(0, 0));
+        Assert.assertNull(field.getPath(0, 0));
+
+        map.setBlocked(5, 5, false);
+        field.invalidate(5, 5);
+        field.update();
+        Assert.assertEquals(field.getCost(0, 0), 5f, 0.001f);
+        Assert.assertEquals(field.getPath(0, 0).getLength(), 6);
+    }
+
+    public void movesAreCheckedFromTheMoversSource() {
+        // a gate at 5,0 that can't be entered moving east, from 4,0
+        GridMap map = new GridMap(10, 1) {
+            public boolean blocked(PathFindingContext context, int tx, int ty) {
+                if (tx == 5) {
+                    return context.getSourceX() == 4;
+                }
+                return super.blocked(context, tx, ty);
+            }
+        };
+        FlowField west = new FlowField(map, false);
+        west.build(null, 0, 0);
+        Assert.assertTrue(west.isReachable(9, 0));
+        Assert.assertEquals(west.getPath(9, 0).getLength(), 10);
+
+        FlowField east = new FlowField(map, false);
+        east.build(null, 9, 0);
+        Assert.assertFalse(east.isReachable(0, 0));
+        Assert.assertTrue(east.isReachable(6, 0));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidTilesAreRejected() {
+        FlowField field = new FlowField(new GridMap(10, 10), false);
+        field.build(null, 5, 5);
+        field.invalidate(10, 3);
+    }
+}
@@ -0,0 +1,82 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.Random;
+
+/**
+ * A simple tile based map for testing path finders with, a grid of blocked
+ * and open tiles with a movement cost of one per tile, optionally with
+ * diagonal steps costing the square root of two.
+ */
+public class GridMap implements TileBasedMap {
+    private final int width;
+    private final int height;
+    private final boolean[] blocked;
+    private int visited;
+    private int checked;
+    private boolean diagonalCost;
+
+    public GridMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.blocked = new boolean[width * height];
+    }
+
+    /**
+     * Create a map with tiles randomly blocked
+     */
+    public static GridMap random(int width, int height, float density, long seed) {
+        GridMap map = new GridMap(width, height);
+        Random random = new Random(seed);
+        for (int i = 0; i < map.blocked.length; i++) {
+            map.blocked[i] = random.nextFloat() < density;
+        }
+        return map;
+    }
+
+    public void setBlocked(int x, int y, boolean value) {
+        blocked[(y * width) + x] = value;
+    }
+
+    public boolean isBlocked(int x, int y) {
+        return blocked[(y * width) + x];
+    }
+
+    public void setDiagonalCost(boolean diagonalCost) {
+        this.diagonalCost = diagonalCost;
+    }
+
+    public int getVisited() {
+        return visited;
+    }
+
+    /**
+     * Get the number of times path finders have checked if a tile is blocked
+     */
+    public int getChecked() {
+        return checked;
+    }
+
+    public int getWidthInTiles() {
+        return width;
+    }
+
+    public int getHeightInTiles() {
+        return height;
+    }
+
+    public void pathFinderVisited(int x, int y) {
+        visited++;
+    }
+
+    public boolean blocked(PathFindingContext context, int tx, int ty) {
+        checked++;
+        return blocked[(ty * width) + tx];
+    }
+
+    public float getCost(PathFindingContext context, int tx, int ty) {
+        if (diagonalCost && (context.getSourceX() != tx) && (context.getSourceY() != ty)) {
+            return (float) Math.sqrt(2);
+        }
+        return 1;
+    }
+}
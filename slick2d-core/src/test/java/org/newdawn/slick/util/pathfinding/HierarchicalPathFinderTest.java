@@ -0,0 +1,153 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.Random;
+
+import org.newdawn.slick.util.pathfinding.heuristics.ManhattanHeuristic;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class HierarchicalPathFinderTest {
+
+    private static void assertValid(GridMap map, Path path, int sx, int sy, int tx, int ty, boolean diagonal) {
+        Assert.assertEquals(path.getX(0), sx);
+        Assert.assertEquals(path.getY(0), sy);
+        Assert.assertEquals(path.getX(path.getLength() - 1), tx);
+        Assert.assertEquals(path.getY(path.getLength() - 1), ty);
+        for (int i = 1; i < path.getLength(); i++) {
+            int dx = Math.abs(path.getX(i) - path.getX(i - 1));
+            int dy = Math.abs(path.getY(i) - path.getY(i - 1));
+            Assert.assertTrue(dx <= 1 && dy <= 1 && dx + dy > 0, "steps must be adjacent");
+            Assert.assertTrue(diagonal || dx + dy == 1, "no diagonal steps");
+            Assert.assertFalse(map.isBlocked(path.getX(i), path.getY(i)));
+        }
+    }
+
+    private void compare(boolean diagonal, float density, long seed) {
+        GridMap map = GridMap.random(80, 60, density, seed);
+        AStarPathFinder astar = new AStarPathFinder(map, 80 * 60, diagonal, new ManhattanHeuristic(1));
+        HierarchicalPathFinder hpa = new HierarchicalPathFinder(map, 10, diagonal);
+        Random random = new Random(seed);
+        int found = 0;
+        long expectedSteps = 0;
+        long actualSteps = 0;
+
+        for (int i = 0; i < 300; i++) {
+            int sx = random.nextInt(80);
+            int sy = random.nextInt(60);
+            int tx = random.nextInt(80);
+            int ty = random.nextInt(60);
+            if (map.isBlocked(sx, sy)) {
+                continue;
+            }
+
+            Path expected = astar.findPath(null, sx, sy, tx, ty);
+            Path actual = hpa.findPath(null, sx, sy, tx, ty);
+            if (expected == null) {
+                Assert.assertNull(actual);
+                continue;
+            }
+            Assert.assertNotNull(actual, "no path from " + sx + "," + sy + " to " + tx + "," + ty);
+            assertValid(map, actual, sx, sy, tx, ty, diagonal);
+            found++;
+            expectedSteps += expected.getLength();
+            actualSteps += actual.getLength();
+        }
+
+        Assert.assertTrue(found > 50);
+        Assert.assertTrue(actualSteps < expectedSteps * 1.2, actualSteps + " steps against " + expectedSteps);
+    }
+
+    public void findsPathsWhereAStarDoes() {
+        compare(false, 0.1f, 1);
+        compare(false, 0.3f, 2);
+    }
+
+    public void findsPathsWhereAStarDoesWithDiagonals() {
+        compare(true, 0.1f, 3);
+        compare(true, 0.4f, 4);
+    }
+
+    public void rebuildsOnlyAffectedClusters() {
+        GridMap map = new GridMap(100, 100);
+        HierarchicalPathFinder hpa = new HierarchicalPathFinder(map, 10, false);
+        int full = map.getChecked();
+        Path open = hpa.findPath(null, 0, 55, 99, 55);
+        Assert.assertTrue(open.getLength() >= 100 && open.getLength() <= 110);
+
+        // wall off the middle row apart from a gap at the bottom, the clusters
+        // either side of the wall are worked out again but not the rest
+        for (int y = 0; y < 99; y++) {
+            map.setBlocked(50, y, true);
+        }
+        hpa.invalidate(50, 0, 1, 99);
+        int before = map.getChecked();
+        hpa.rebuild();
+        int rebuilt = map.getChecked() - before;
+        Assert.assertTrue(rebuilt < full * 0.35f, "checked " + rebuilt + " tiles against " + full);
+
+        Path path = hpa.findPath(null, 0, 55, 99, 55);
+        Assert.assertTrue(path.contains(50, 99));
+        assertValid(map, path, 0, 55, 99, 55, false);
+
+        // a change in the middle of a cluster only rebuilds that cluster
+        map.setBlocked(25, 25, true);
+        hpa.invalidate(25, 25);
+        before = map.getChecked();
+        hpa.rebuild();
+        rebuilt = map.getChecked() - before;
+        Assert.assertTrue(rebuilt < full * 0.03f, "checked " + rebuilt + " tiles against " + full);
+    }
+
+    public void tileChangesInvalidateTheGraph() {
+        GridMap map = new GridMap(40, 40);
+        for (int y = 0; y < 39; y++) {
+            map.setBlocked(20, y, true);
+        }
+        HierarchicalPathFinder hpa = new HierarchicalPathFinder(map, 8, false);
+        Assert.assertNotNull(hpa.findPath(null, 0, 0, 39, 0));
+
+        map.setBlocked(20, 39, true);
+        hpa.tileChanged(20, 39);
+        Assert.assertNull(hpa.findPath(null, 0, 0, 39, 0));
+
+        map.setBlocked(20, 10, false);
+        hpa.tileChanged(20, 10);
+        Path path = hpa.findPath(null, 0, 0, 39, 0);
+        Assert.assertTrue(path.contains(20, 10));
+    }
+
+    public void honoursTheMaximumSearchDistance() {
+        GridMap map = new GridMap(40, 40);
+        for (int y = 0; y < 39; y++) {
+            map.setBlocked(20, y, true);
+        }
+        // the only way round the wall is at least 80 steps
+        HierarchicalPathFinder limited = new HierarchicalPathFinder(map, 70, 8, false);
+        Assert.assertNull(limited.findPath(null, 19, 0, 21, 0));
+        Assert.assertNotNull(limited.findPath(null, 0, 0, 10, 30));
+
+        HierarchicalPathFinder enough = new HierarchicalPathFinder(map, 90, 8, false);
+        Path path = enough.findPath(null, 19, 0, 21, 0);
+        Assert.assertNotNull(path);
+        Assert.assertTrue(path.getLength() - 1 <= 90);
+        assertValid(map, path, 19, 0, 21, 0, false);
+
+        // within a single cluster too
+        Assert.assertNull(new HierarchicalPathFinder(map, 3, 8, false).findPath(null, 0, 0, 4, 0));
+        Assert.assertNotNull(new HierarchicalPathFinder(map, 4, 8, false).findPath(null, 0, 0, 4, 0));
+    }
+
+    public void closedGapHasNoPath() {
+        GridMap map = new GridMap(40, 40);
+        for (int y = 0; y < 39; y++) {
+            map.setBlocked(20, y, true);
+        }
+        HierarchicalPathFinder hpa = new HierarchicalPathFinder(map, 8, true);
+        Assert.assertNotNull(hpa.findPath(null, 0, 0, 39, 0));
+
+        map.setBlocked(20, 39, true);
+        hpa.invalidate(20, 39);
+        Assert.assertNull(hpa.findPath(null, 0, 0, 39, 0));
+    }
+}
@@ -0,0 +1,91 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class JumpPointPathFinderTest {
+
+    private static float cost(Path path) {
+        float total = 0;
+        for (int i = 1; i < path.getLength(); i++) {
+            int dx = Math.abs(path.getX(i) - path.getX(i - 1));
+            int dy = Math.abs(path.getY(i) - path.getY(i - 1));
+            Assert.assertTrue(dx <= 1 && dy <= 1 && dx + dy > 0, "steps must be adjacent");
+            total += (dx + dy == 2) ? (float) Math.sqrt(2) : 1;
+        }
+        return total;
+    }
+
+    private static void assertWalkable(GridMap map, Path path, int sx, int sy, int tx, int ty) {
+        Assert.assertEquals(path.getX(0), sx);
+        Assert.assertEquals(path.getY(0), sy);
+        Assert.assertEquals(path.getX(path.getLength() - 1), tx);
+        Assert.assertEquals(path.getY(path.getLength() - 1), ty);
+        for (int i = 0; i < path.getLength(); i++) {
+            Assert.assertFalse(map.isBlocked(path.getX(i), path.getY(i)));
+        }
+    }
+
+    private void compare(boolean diagonal, float density, long seed) {
+        GridMap map = GridMap.random(64, 48, density, seed);
+        map.setDiagonalCost(diagonal);
+        AStarPathFinder astar = new AStarPathFinder(map, 64 * 48, diagonal);
+        JumpPointPathFinder jps = new JumpPointPathFinder(map, 64 * 48, diagonal);
+        Random random = new Random(seed);
+
+        for (int i = 0; i < 300; i++) {
+            int sx = random.nextInt(64);
+            int sy = random.nextInt(48);
+            int tx = random.nextInt(64);
+            int ty = random.nextInt(48);
+            if (map.isBlocked(sx, sy)) {
+                continue;
+            }
+
+            Path expected = astar.findPath(null, sx, sy, tx, ty);
+            Path actual = jps.findPath(null, sx, sy, tx, ty);
+            if (expected == null) {
+                Assert.assertNull(actual);
+                continue;
+            }
+            Assert.assertNotNull(actual);
+            assertWalkable(map, actual, sx, sy, tx, ty);
+            Assert.assertEquals(cost(actual), cost(expected), 0.001f);
+        }
+    }
+
+    public void matchesAStarWithDiagonals() {
+        compare(true, 0.1f, 1);
+        compare(true, 0.3f, 2);
+        compare(true, 0.45f, 3);
+    }
+
+    public void matchesAStarWithoutDiagonals() {
+        compare(false, 0.1f, 4);
+        compare(false, 0.3f, 5);
+        compare(false, 0.4f, 6);
+    }
+
+    public void visitsFewerTilesOnOpenMap() {
+        GridMap map = GridMap.random(200, 200, 0.05f, 7);
+        map.setBlocked(0, 0, false);
+        map.setBlocked(199, 199, false);
+        map.setDiagonalCost(true);
+
+        Assert.assertNotNull(new AStarPathFinder(map, 40000, true).findPath(null, 0, 0, 199, 199));
+        int astarVisits = map.getVisited();
+        Assert.assertNotNull(new JumpPointPathFinder(map, 40000, true).findPath(null, 0, 0, 199, 199));
+        int jpsVisits = map.getVisited() - astarVisits;
+
+        Assert.assertTrue(jpsVisits < astarVisits, jpsVisits + " >= " + astarVisits);
+    }
+
+    public void respectsSearchDistance() {
+        GridMap map = new GridMap(100, 1);
+        Assert.assertNull(new JumpPointPathFinder(map, 10, false).findPath(null, 0, 0, 99, 0));
+        Assert.assertNotNull(new JumpPointPathFinder(map, 100, false).findPath(null, 0, 0, 99, 0));
+    }
+}
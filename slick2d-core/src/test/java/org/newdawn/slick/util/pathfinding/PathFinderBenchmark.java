@@ -0,0 +1,122 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.Random;
+
+/**
+ * A simple benchmark of the path finders, timing a fixed set of random searches
+ * across large randomly blocked maps.
+ */
+public class PathFinderBenchmark {
+	/** The width and height of the maps */
+	private static final int SIZE = 512;
+	/** The width and height of the large map */
+	private static final int LARGE_SIZE = 1024;
+	/** The number of searches timed for each path finder */
+	private static final int SEARCHES = 200;
+	/** The number of times each set of searches is repeated */
+	private static final int ROUNDS = 3;
+
+	/** The map being searched */
+	private GridMap map;
+	/** The start and end coordinates of each search, sx, sy, tx, ty */
+	private int[] searches = new int[SEARCHES * 4];
+
+	/**
+	 * Create a new benchmark
+	 *
+	 * @param size The width and height of the map
+	 * @param density The proportion of tiles that are blocked
+	 * @param diagonalCost True if diagonal steps should cost the square root of two
+	 * @param seed The seed used to generate the map and searches
+	 */
+	public PathFinderBenchmark(int size, float density, boolean diagonalCost, long seed) {
+		map = GridMap.random(size, size, density, seed);
+		map.setDiagonalCost(diagonalCost);
+
+		Random random = new Random(seed);
+		for (int i=0;i<searches.length;i+=2) {
+			int x;
+			int y;
+			do {
+				x = random.nextInt(size);
+				y = random.nextInt(size);
+			} while (map.isBlocked(x, y));
+			searches[i] = x;
+			searches[i+1] = y;
+		}
+	}
+
+	/**
+	 * Get the map being searched
+	 *
+	 * @return The map being searched
+	 */
+	public GridMap getMap() {
+		return map;
+	}
+
+	/**
+	 * Time a path finder over the set of searches
+	 *
+	 * @param name The name to report the path finder as
+	 * @param finder The path finder to time
+	 */
+	public void run(String name, PathFinder finder) {
+		long best = Long.MAX_VALUE;
+		int found = 0;
+		int steps = 0;
+
+		for (int r=0;r<ROUNDS;r++) {
+			found = 0;
+			steps = 0;
+			long start = System.nanoTime();
+			for (int i=0;i<searches.length;i+=4) {
+				Path path = finder.findPath(null, searches[i], searches[i+1], searches[i+2], searches[i+3]);
+				if (path != null) {
+					found++;
+					steps += path.getLength();
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		System.out.println(name+": "+(best / 1000000)+"ms for "+SEARCHES+" searches ("+
+						   found+" paths, "+steps+" steps)");
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the benchmark
+	 */
+	public static void main(String[] argv) {
+		int maxSearch = SIZE * SIZE;
+
+		// the A* implementations with every step costing the same
+		PathFinderBenchmark benchmark = new PathFinderBenchmark(SIZE, 0.25f, false, 1);
+		GridMap map = benchmark.getMap();
+		System.out.println("25% blocked, uniform step cost");
+		benchmark.run("List based A*", new ReferenceAStarPathFinder(map, maxSearch, true));
+		benchmark.run("Heap based A*", new AStarPathFinder(map, maxSearch, true));
+
+		// shortest paths with diagonal steps costing more, as jump point search assumes
+		float[] densities = new float[] {0.05f, 0.25f};
+		for (int i=0;i<densities.length;i++) {
+			benchmark = new PathFinderBenchmark(SIZE, densities[i], true, 1);
+			map = benchmark.getMap();
+			System.out.println((int) (densities[i] * 100)+"% blocked, diagonal steps cost more");
+			benchmark.run("Heap based A*", new AStarPathFinder(map, maxSearch, true));
+			benchmark.run("Jump point search", new JumpPointPathFinder(map, maxSearch, true));
+		}
+
+		// searching the cluster graph of a large map
+		benchmark = new PathFinderBenchmark(LARGE_SIZE, 0.25f, true, 1);
+		map = benchmark.getMap();
+		System.out.println(LARGE_SIZE+"x"+LARGE_SIZE+", 25% blocked, diagonal steps cost more");
+		benchmark.run("Heap based A*", new AStarPathFinder(map, LARGE_SIZE * LARGE_SIZE, true));
+		long start = System.nanoTime();
+		HierarchicalPathFinder hierarchical = new HierarchicalPathFinder(map, 16, true);
+		System.out.println("Cluster graph built in "+((System.nanoTime() - start) / 1000000)+"ms");
+		benchmark.run("Hierarchical", hierarchical);
+	}
+}
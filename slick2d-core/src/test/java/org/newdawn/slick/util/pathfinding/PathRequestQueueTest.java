@@ -0,0 +1,121 @@
+package org.newdawn.slick.util.pathfinding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class PathRequestQueueTest {
+
+    private static class Recorder implements PathListener {
+        private final List<PathRequest> requests = new ArrayList<PathRequest>();
+        private final List<Thread> threads = new ArrayList<Thread>();
+
+        public void pathFound(PathRequest request, Path path) {
+            requests.add(request);
+            threads.add(Thread.currentThread());
+        }
+    }
+
+    public void matchesDirectSearches() throws Exception {
+        GridMap map = GridMap.random(64, 64, 0.25f, 1);
+        PathRequestQueue queue = new PathRequestQueue(map, 64 * 64, true, 3);
+        AStarPathFinder finder = new AStarPathFinder(map, 64 * 64, true);
+
+        PathRequest[] requests = new PathRequest[40];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = queue.request(null, i, i % 7, 63 - i, 63 - (i % 5));
+        }
+        for (int i = 0; i < requests.length; i++) {
+            Path expected = finder.findPath(null, i, i % 7, 63 - i, 63 - (i % 5));
+            AStarPathFinderTest.assertSamePath(requests[i].get(5, TimeUnit.SECONDS), expected);
+        }
+        queue.shutdown();
+    }
+
+    public void listenersNotifiedOnUpdate() throws Exception {
+        GridMap map = new GridMap(32, 32);
+        PathRequestQueue queue = new PathRequestQueue(map, 1000, false, 2);
+        Recorder recorder = new Recorder();
+
+        PathRequest request = queue.request(null, 0, 0, 31, 31, recorder);
+        Assert.assertNotNull(request.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(recorder.requests.isEmpty());
+
+        queue.update();
+        Assert.assertEquals(recorder.requests.size(), 1);
+        Assert.assertSame(recorder.requests.get(0), request);
+        Assert.assertSame(recorder.threads.get(0), Thread.currentThread());
+        queue.shutdown();
+    }
+
+    public void identicalRequestsShareSearch() {
+        final GridMap map = new GridMap(32, 32);
+        final List<String> searches = new ArrayList<String>();
+        PathRequestQueue queue = new PathRequestQueue(new PathFinderFactory() {
+            public PathFinder createPathFinder() {
+                final PathFinder finder = new AStarPathFinder(map, 1000, false);
+                return new PathFinder() {
+                    public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+                        searches.add(sx + "," + sy + " to " + tx + "," + ty);
+                        return finder.findPath(mover, sx, sy, tx, ty);
+                    }
+                };
+            }
+        }, 0);
+        Recorder recorder = new Recorder();
+
+        PathRequest a = queue.request(null, 0, 0, 31, 31, recorder);
+        PathRequest b = queue.request(null, 0, 0, 31, 31, recorder);
+        PathRequest c = queue.request(null, 0, 0, 30, 31, recorder);
+        Assert.assertEquals(queue.getPendingCount(), 2);
+
+        queue.update();
+        Assert.assertEquals(searches.size(), 2);
+        Assert.assertEquals(recorder.requests.size(), 3);
+        Assert.assertEquals(a.getPath().getLength(), b.getPath().getLength());
+        Assert.assertNotSame(a.getPath(), b.getPath());
+        Assert.assertTrue(c.isDone());
+    }
+
+    public void timeBudgetSpreadsSearches() {
+        GridMap map = GridMap.random(200, 200, 0.2f, 2);
+        PathRequestQueue queue = new PathRequestQueue(map, 40000, true, 0);
+        queue.setTimeBudget(1);
+
+        for (int i = 0; i < 50; i++) {
+            queue.request(null, 0, i, 199, 199 - i);
+        }
+        queue.update();
+        Assert.assertTrue(queue.getPendingCount() > 0);
+        Assert.assertTrue(queue.getPendingCount() < 50);
+
+        queue.setTimeBudget(0);
+        queue.update();
+        Assert.assertEquals(queue.getPendingCount(), 0);
+    }
+
+    public void cancelledRequestsNotDelivered() {
+        GridMap map = new GridMap(16, 16);
+        PathRequestQueue queue = new PathRequestQueue(map, 1000, false, 0);
+        Recorder recorder = new Recorder();
+
+        PathRequest request = queue.request(null, 0, 0, 15, 15, recorder);
+        Assert.assertTrue(request.cancel(false));
+        queue.update();
+
+        Assert.assertTrue(request.isCancelled());
+        Assert.assertTrue(recorder.requests.isEmpty());
+    }
+
+    public void shutdownCancelsWaitingRequests() {
+        PathRequestQueue queue = new PathRequestQueue(new GridMap(16, 16), 1000, false, 0);
+        PathRequest request = queue.request(null, 0, 0, 15, 15);
+        queue.shutdown();
+
+        Assert.assertTrue(request.isCancelled());
+    }
+}
@@ -0,0 +1,156 @@
+package org.newdawn.slick.util.pathfinding.navmesh;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.newdawn.slick.util.pathfinding.GridMap;
+
+/**
+ * A simple benchmark of building navigation meshes from large randomly blocked
+ * maps and finding the spaces at random points in them. Building is compared 
+ * against merging every pair of spaces on a small map, where that's still 
+ * possible in reasonable time, and finding spaces against checking each space 
+ * in turn.
+ */
+public class NavMeshBenchmark {
+	/** The width and height of the large maps */
+	private static final int SIZE = 1024;
+	/** The width and height of the map where pairwise merging is timed */
+	private static final int SMALL_SIZE = 48;
+	/** The number of points looked up when timing findSpace() */
+	private static final int QUERIES = 1000000;
+	/** The number of points looked up when timing a search through every space */
+	private static final int LINEAR_QUERIES = 200;
+	/** The number of times each measurement is repeated */
+	private static final int ROUNDS = 3;
+
+	/**
+	 * Time building a mesh for a map
+	 *
+	 * @param name The name to report the map as
+	 * @param map The map to build a mesh for
+	 * @param tileBased True if the mesh should be built from tiles rather than quad spacing
+	 * @return The mesh built
+	 */
+	private static NavMesh build(String name, GridMap map, boolean tileBased) {
+		long best = Long.MAX_VALUE;
+		NavMesh mesh = null;
+		for (int r=0;r<ROUNDS;r++) {
+			long start = System.nanoTime();
+			mesh = new NavMeshBuilder().build(map, tileBased);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		System.out.println(name+": build "+(best / 1000000)+"ms, "+mesh.getSpaceCount()+" spaces");
+		return mesh;
+	}
+
+	/**
+	 * Time building a mesh by merging and linking every pair of spaces, as 
+	 * meshes were built before the spaces were indexed
+	 *
+	 * @param name The name to report the map as
+	 * @param map The map to build a mesh for
+	 */
+	private static void buildPairwise(String name, GridMap map) {
+		long start = System.nanoTime();
+		ArrayList spaces = new ArrayList();
+		for (int x=0;x<map.getWidthInTiles();x++) {
+			for (int y=0;y<map.getHeightInTiles();y++) {
+				if (!map.isBlocked(x, y)) {
+					spaces.add(new Space(x,y,1,1));
+				}
+			}
+		}
+
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int source=0;(source<spaces.size()) && (!merged);source++) {
+				Space a = (Space) spaces.get(source);
+				for (int target=source+1;target<spaces.size();target++) {
+					Space b = (Space) spaces.get(target);
+					if (a.canMerge(b)) {
+						spaces.remove(a);
+						spaces.remove(b);
+						spaces.add(a.merge(b));
+						merged = true;
+						break;
+					}
+				}
+			}
+		}
+		for (int source=0;source<spaces.size();source++) {
+			Space a = (Space) spaces.get(source);
+			for (int target=source+1;target<spaces.size();target++) {
+				Space b = (Space) spaces.get(target);
+				if (a.hasJoinedEdge(b)) {
+					a.link(b);
+					b.link(a);
+				}
+			}
+		}
+
+		System.out.println(name+": pairwise build "+((System.nanoTime() - start) / 1000000)+"ms, "+spaces.size()+" spaces");
+	}
+
+	/**
+	 * Time finding the spaces at random points in a mesh
+	 *
+	 * @param name The name to report the mesh as
+	 * @param mesh The mesh to search
+	 * @param size The width and height of the map the mesh was built from
+	 */
+	private static void query(String name, NavMesh mesh, int size) {
+		Random random = new Random(size);
+		float[] points = new float[QUERIES * 2];
+		for (int i=0;i<points.length;i++) {
+			points[i] = random.nextFloat() * size;
+		}
+
+		long best = Long.MAX_VALUE;
+		int found = 0;
+		for (int r=0;r<ROUNDS;r++) {
+			found = 0;
+			long start = System.nanoTime();
+			for (int i=0;i<points.length;i+=2) {
+				if (mesh.findSpace(points[i], points[i+1]) != null) {
+					found++;
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		long linear = System.nanoTime();
+		for (int i=0;i<LINEAR_QUERIES*2;i+=2) {
+			for (int s=0;s<mesh.getSpaceCount();s++) {
+				if (mesh.getSpace(s).contains(points[i], points[i+1])) {
+					break;
+				}
+			}
+		}
+		linear = System.nanoTime() - linear;
+
+		System.out.println(name+": findSpace "+(best / QUERIES)+"ns per query ("+found+"/"+QUERIES+" found), "
+						+"every space "+(linear / LINEAR_QUERIES)+"ns per query");
+	}
+
+	/**
+	 * Entry point to the benchmark
+	 *
+	 * @param argv The arguments passed to the benchmark
+	 */
+	public static void main(String[] argv) {
+		buildPairwise("Tiles "+SMALL_SIZE+" 25%", GridMap.random(SMALL_SIZE, SMALL_SIZE, 0.25f, 1));
+		build("Tiles "+SMALL_SIZE+" 25%", GridMap.random(SMALL_SIZE, SMALL_SIZE, 0.25f, 1), true);
+
+		float[] densities = new float[] {0.05f, 0.25f};
+		for (int i=0;i<densities.length;i++) {
+			String name = SIZE+" "+((int) (densities[i] * 100))+"%";
+			GridMap map = GridMap.random(SIZE, SIZE, densities[i], 1);
+
+			NavMesh mesh = build("Tiles "+name, map, true);
+			query("Tiles "+name, mesh, SIZE);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.newdawn.slick.util.pathfinding.navmesh;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.newdawn.slick.util.pathfinding.GridMap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test
+public class NavMeshBuilderTest {
+
+    private static ArrayList spaces(NavMesh mesh) {
+        ArrayList spaces = new ArrayList();
+        for (int i = 0; i < mesh.getSpaceCount(); i++) {
+            spaces.add(mesh.getSpace(i));
+        }
+        return spaces;
+    }
+
+    private static Space linearFind(ArrayList spaces, float x, float y) {
+        for (int i = 0; i < spaces.size(); i++) {
+            Space space = (Space) spaces.get(i);
+            if (space.contains(x, y)) {
+                return space;
+            }
+        }
+        return null;
+    }
+
+    private void checkMesh(GridMap map, boolean tileBased) {
+        NavMesh mesh = new NavMeshBuilder().build(map, tileBased);
+        ArrayList spaces = spaces(mesh);
+
+        // no two spaces overlap or could still be merged
+        for (int i = 0; i < spaces.size(); i++) {
+            Space a = (Space) spaces.get(i);
+            for (int j = i + 1; j < spaces.size(); j++) {
+                Space b = (Space) spaces.get(j);
+                Assert.assertFalse(a.canMerge(b), a + " " + b);
+                boolean overlap = a.getX() < b.getX() + b.getWidth() && b.getX() < a.getX() + a.getWidth()
+                        && a.getY() < b.getY() + b.getHeight() && b.getY() < a.getY() + a.getHeight();
+                Assert.assertFalse(overlap, a + " " + b);
+            }
+        }
+
+        // tile based meshes cover exactly the open tiles
+        if (tileBased) {
+            for (int y = 0; y < map.getHeightInTiles(); y++) {
+                for (int x = 0; x < map.getWidthInTiles(); x++) {
+                    Assert.assertEquals(mesh.findSpace(x + 0.5f, y + 0.5f) != null, !map.isBlocked(x, y));
+                }
+            }
+        }
+
+        // the links are the same as checking every pair would make
+        ArrayList copies = new ArrayList();
+        for (int i = 0; i < spaces.size(); i++) {
+            Space space = (Space) spaces.get(i);
+            copies.add(new Space(space.getX(), space.getY(), space.getWidth(), space.getHeight()));
+        }
+        for (int i = 0; i < copies.size(); i++) {
+            Space a = (Space) copies.get(i);
+            for (int j = i + 1; j < copies.size(); j++) {
+                Space b = (Space) copies.get(j);
+                if (a.hasJoinedEdge(b)) {
+                    a.link(b);
+                    b.link(a);
+                }
+            }
+        }
+        for (int i = 0; i < spaces.size(); i++) {
+            Space space = (Space) spaces.get(i);
+            Space copy = (Space) copies.get(i);
+            Assert.assertEquals(space.getLinkCount(), copy.getLinkCount());
+            for (int l = 0; l < space.getLinkCount(); l++) {
+                Assert.assertEquals(spaces.indexOf(space.getLink(l).getTarget()), copies.indexOf(copy.getLink(l).getTarget()));
+                Assert.assertEquals(space.getLink(l).getX(), copy.getLink(l).getX(), 0f);
+                Assert.assertEquals(space.getLink(l).getY(), copy.getLink(l).getY(), 0f);
+            }
+        }
+
+        // finding spaces matches checking every space
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            float x = (random.nextFloat() * (map.getWidthInTiles() + 2)) - 1;
+            float y = (random.nextFloat() * (map.getHeightInTiles() + 2)) - 1;
+            Assert.assertSame(mesh.findSpace(x, y), linearFind(spaces, x, y));
+        }
+    }
+
+    public void tileBasedMesh() {
+        checkMesh(GridMap.random(60, 40, 0.3f, 1), true);
+        checkMesh(GridMap.random(60, 40, 0.05f, 2), true);
+    }
+
+    public void quadMesh() {
+        checkMesh(GridMap.random(16, 16, 0.2f, 3), false);
+        checkMesh(new GridMap(32, 32), false);
+    }
+
+    public void addedSpacesAreFound() {
+        NavMesh mesh = new NavMesh();
+        Assert.assertNull(mesh.findSpace(0.5f, 0.5f));
+
+        Space first = new Space(0, 0, 1, 1);
+        mesh.addSpace(first);
+        Assert.assertSame(mesh.findSpace(0.5f, 0.5f), first);
+
+        Space second = new Space(10, 10, 2, 2);
+        mesh.addSpace(second);
+        Assert.assertSame(mesh.findSpace(11f, 11.5f), second);
+        Assert.assertNull(mesh.findSpace(5f, 5f));
+        Assert.assertNull(mesh.findSpace(12f, 12f));
+    }
+
+    public void pathAcrossMesh() {
+        GridMap map = new GridMap(20, 20);
+        for (int y = 0; y < 19; y++) {
+            map.setBlocked(10, y, true);
+        }
+        NavMesh mesh = new NavMeshBuilder().build(map);
+        NavPath path = mesh.findPath(1.5f, 1.5f, 18.5f, 1.5f, true);
+        Assert.assertNotNull(path);
+        Assert.assertEquals(path.getX(path.length() - 1), 18.5f, 0f);
+        Assert.assertEquals(path.getY(path.length() - 1), 1.5f, 0f);
+    }
+}
@@ -12,8 +12,11 @@ import java.util.Comparator;
 
 import javax.imageio.ImageIO;
 
+import org.newdawn.slick.atlas.MaxRectsPacker;
+import org.newdawn.slick.util.Log;
+
 /**
- * A daft image packer
+ * A daft image packer, placing sprites on the sheet with a MaxRectsPacker
  * 
  * @author kevin
  */
@@ -47,7 +50,8 @@ public class Pack {
 	}
 
 	/**
-	 * Pack the images provided
+	 * Pack the images provided. Sprites are placed largest first into the free
+	 * space left on the sheet, any that don't fit are left out of it.
 	 * 
 	 * @param images The list of sprite objects pointing at the images to be packed
 	 * @param width The width of the sheet to be generated 
@@ -63,18 +67,22 @@ public class Pack {
 				Sprite a = (Sprite) o1;
 				Sprite b = (Sprite) o2;
 				
-				int asize = a.getHeight();
-				int bsize = b.getHeight();
-				return bsize - asize;
+				int asize = Math.max(a.getWidth(), a.getHeight());
+				int bsize = Math.max(b.getWidth(), b.getHeight());
+				if (asize != bsize) {
+					return bsize - asize;
+				}
+				return (b.getWidth() * b.getHeight()) - (a.getWidth() * a.getHeight());
 			}
 		});
 		
-		int x = 0;
-		int y = 0;
+		// the border is kept to the right and below each sprite, so the
+		// sheet is given one extra border that the last sprites can spill into
+		MaxRectsPacker packer = new MaxRectsPacker(width + border, height + border, false);
+		int[] place = new int[3];
 		
 		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 		Graphics g = result.getGraphics();
-		int rowHeight = 0;
 		
 		try {
 			PrintStream pout = null;
@@ -85,15 +93,14 @@ public class Pack {
 			
 			for (int i=0;i<images.size();i++) {
 				Sprite current = (Sprite) images.get(i);
-				if (x + current.getWidth() > width) {
-					x = 0;
-					y += rowHeight;
-					rowHeight = 0;
-				}
-				
-				if (rowHeight == 0) {
-					rowHeight = current.getHeight() + border;
+				if (!packer.insert(current.getWidth() + border, current.getHeight() + border, place)) {
+					Log.warn("No room on the sheet for: "+current.getName());
+					images.remove(i);
+					i--;
+					continue;
 				}
+				int x = place[0];
+				int y = place[1];
 				
 				if (out != null) {
 					pout.print("\t<sprite ");
@@ -107,7 +114,6 @@ public class Pack {
 				
 				current.setPosition(x,y);
 				g.drawImage(current.getImage(), x, y, null);
-				x += current.getWidth() + border;
 			}
 			g.dispose();
 			